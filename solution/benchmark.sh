@@ -0,0 +1,10 @@
+#!/bin/bash
+source ../.bash_functions
+
+# optional JMH benchmark regexp, e.g.: ./benchmark.sh Leaderboard
+INCLUDE=${1:-.*}
+
+log "Running the JMH benchmarks matching: ${INCLUDE}"
+./mvnw clean verify -Pbenchmark -Djmh.include="${INCLUDE}"
+
+log "Benchmark results (JSON): target/jmh-result.json"
@@ -0,0 +1,10 @@
+#!/bin/bash
+source ../.bash_functions
+
+# drive a synthetic fleet around the track into the in-JVM broker stand-ins, and report the throughput, the end-to-end
+# latency percentiles and the heap and GC every second, e.g.:
+# ./load.sh load.cars=1000,load.rateInHz=10,load.target=KAFKA,load.jitterInMs=20,telemetryService.shards=2
+CONFIG=${1:-}
+
+log "Running the load generator: ${CONFIG}"
+./mvnw -q test-compile exec:exec -Pload -Dload.config="${CONFIG}"
@@ -0,0 +1,11 @@
+#!/bin/bash
+source ../.bash_functions
+
+# replay a recorded carCoordinates file (JSON lines or 28 byte binary records) as fast as possible, e.g.:
+# ./replay.sh race.jsonl target/replay.jsonl telemetryService.circuitLengthInKM=5.2,telemetryService.shards=0
+INPUT=${1:?"Usage: ./replay.sh input [output] [key=value,...]"}
+OUTPUT=${2:-target/replay.jsonl}
+CONFIG=${3:-}
+
+log "Replaying ${INPUT} to ${OUTPUT}"
+./mvnw -q compile exec:exec -Preplay -Dreplay.input="${INPUT}" -Dreplay.output="${OUTPUT}" -Dreplay.config="${CONFIG}"
@@ -0,0 +1,108 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.Location;
+
+/**
+ * Fixed-width (28 byte) big-endian binary encoding of a CarCoordinate:
+ * <br/>
+ * carIndex (int, 4 bytes), latitude (double, 8 bytes), longitude (double, 8 bytes) and timestamp (long, 8 bytes).
+ * <br/>
+ * A CarCoordinate without a Location is encoded with NaN for both the latitude and the longitude.
+ */
+public final class CarCoordinateBinaryCodec {
+
+    private CarCoordinateBinaryCodec() {
+        throw new IllegalStateException("This is a static utility class");
+    }
+
+    // the size of an encoded CarCoordinate in bytes
+    public static final int SIZE = 28;
+    public static final String ERROR_SIZE = "A binary CarCoordinate must be 28 bytes";
+
+    /**
+     * Encode a CarCoordinate into a new byte[].
+     *
+     * @param carCoordinate to be encoded
+     * @return the 28 byte encoding
+     */
+    public static byte[] encode(final CarCoordinate carCoordinate) {
+        final byte[] bytes = new byte[SIZE];
+        encode(carCoordinate, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Encode a CarCoordinate into an existing byte[].
+     *
+     * @param carCoordinate to be encoded
+     * @param bytes         with at least 28 bytes available from the offset
+     * @param offset        of the encoding in bytes
+     */
+    public static void encode(final CarCoordinate carCoordinate, final byte[] bytes, final int offset) {
+        final Location location = carCoordinate.getLocation();
+        putInt(bytes, offset, carCoordinate.getCarIndex());
+        putLong(bytes, offset + 4, Double.doubleToRawLongBits(location == null ? Double.NaN : location.getLatitude()));
+        putLong(bytes, offset + 12, Double.doubleToRawLongBits(location == null ? Double.NaN : location.getLongitude()));
+        putLong(bytes, offset + 20, carCoordinate.getTimestamp());
+    }
+
+    /**
+     * Decode a CarCoordinate into an existing CarCoordinate, reusing its Location when it has one.
+     *
+     * @param bytes         with at least 28 bytes available from the offset
+     * @param offset        of the encoding in bytes
+     * @param carCoordinate to decode into
+     * @return carCoordinate
+     */
+    public static CarCoordinate decode(final byte[] bytes, final int offset, final CarCoordinate carCoordinate) {
+        final double latitude = Double.longBitsToDouble(getLong(bytes, offset + 4));
+        final double longitude = Double.longBitsToDouble(getLong(bytes, offset + 12));
+        carCoordinate.setCarIndex(getInt(bytes, offset));
+        carCoordinate.setTimestamp(getLong(bytes, offset + 20));
+        if (Double.isNaN(latitude) && Double.isNaN(longitude)) {
+            carCoordinate.setLocation(null);
+        } else {
+            final Location location = carCoordinate.getLocation() != null ? carCoordinate.getLocation() : new Location();
+            location.setLatitude(latitude);
+            location.setLongitude(longitude);
+            carCoordinate.setLocation(location);
+        }
+        return carCoordinate;
+    }
+
+    /**
+     * Decode a CarCoordinate from its 28 byte encoding.
+     *
+     * @param bytes the 28 byte encoding
+     * @return a new CarCoordinate
+     * @throws IllegalArgumentException if bytes is not 28 bytes
+     */
+    public static CarCoordinate decode(final byte[] bytes) {
+        if (bytes.length != SIZE) {
+            throw new IllegalArgumentException(ERROR_SIZE);
+        }
+        return decode(bytes, 0, new CarCoordinate());
+    }
+
+    private static void putInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(final byte[] bytes, final int offset, final long value) {
+        putInt(bytes, offset, (int) (value >>> 32));
+        putInt(bytes, offset + 4, (int) value);
+    }
+
+    private static int getInt(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static long getLong(final byte[] bytes, final int offset) {
+        return ((long) getInt(bytes, offset) << 32) | (getInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+}
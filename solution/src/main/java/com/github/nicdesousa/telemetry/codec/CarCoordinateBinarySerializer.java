@@ -0,0 +1,29 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+
+/**
+ * Kafka serializer for the fixed-width {@link CarCoordinateBinaryCodec} encoding of a CarCoordinate.
+ */
+@RegisterForReflection
+public class CarCoordinateBinarySerializer implements Serializer<CarCoordinate> {
+
+    @Override
+    public void configure(final Map<String, ?> configs, final boolean isKey) {
+        // no configuration
+    }
+
+    @Override
+    public byte[] serialize(final String topic, final CarCoordinate carCoordinate) {
+        return carCoordinate == null ? null : CarCoordinateBinaryCodec.encode(carCoordinate);
+    }
+
+    @Override
+    public void close() {
+        // no resources
+    }
+}
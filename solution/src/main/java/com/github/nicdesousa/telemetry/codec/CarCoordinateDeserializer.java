@@ -0,0 +1,42 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * Kafka deserializer for CarCoordinates in either the {@link CarCoordinateBinaryCodec} or the JSON encoding, so that
+ * <br/>
+ * a topic can be consumed while its producers are switched from one encoding to the other.
+ * <br/>
+ * A record is decoded as binary when it is 28 bytes and does not start with a '{'.
+ */
+@RegisterForReflection
+public class CarCoordinateDeserializer implements Deserializer<CarCoordinate> {
+
+    // a Kafka deserializer is only used by the consumer's polling thread
+    private final CarCoordinateJsonDecoder jsonDecoder = new CarCoordinateJsonDecoder();
+
+    @Override
+    public void configure(final Map<String, ?> configs, final boolean isKey) {
+        // no configuration
+    }
+
+    @Override
+    public CarCoordinate deserialize(final String topic, final byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == CarCoordinateBinaryCodec.SIZE && data[0] != '{') {
+            return CarCoordinateBinaryCodec.decode(data);
+        }
+        return this.jsonDecoder.decode(data);
+    }
+
+    @Override
+    public void close() {
+        // no resources
+    }
+}
@@ -0,0 +1,277 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.Location;
+import io.vertx.core.json.Json;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes carCoordinates JSON messages, e.g. {"carIndex":3,"location":{"lat":52.06,"long":-1.02},"timestamp":1541693114862},
+ * <br/>
+ * by scanning the raw bytes and parsing the values straight into primitives, instead of creating a String and
+ * <br/>
+ * mapping it with Jackson databind.
+ * <br/>
+ * Only the plain form of the message is decoded by the scanner, anything else (escaped or unknown keys, numbers as
+ * <br/>
+ * strings, malformed JSON, etc.) falls back to {@link Json#decodeValue}, which keeps the previous behaviour and errors.
+ * <br/>
+ * Not thread-safe, a decoder holds the scan position and must be confined to a single thread.
+ */
+public final class CarCoordinateJsonDecoder {
+
+    private static final byte[] CAR_INDEX = "carIndex".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOCATION = "location".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SESSION = "session".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAT = "lat".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LONG = "long".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes;
+    private int pos;
+    private int end;
+    // the bounds of the last scanned key
+    private int keyStart;
+    private int keyEnd;
+
+    /**
+     * Decode a carCoordinates message into a new CarCoordinate.
+     *
+     * @param payload UTF-8 JSON
+     * @return CarCoordinate
+     * @throws io.vertx.core.json.DecodeException if the payload cannot be decoded
+     */
+    public CarCoordinate decode(final byte[] payload) {
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        if (this.decode(payload, 0, payload.length, carCoordinate)) {
+            return carCoordinate;
+        }
+        // fall back to Jackson databind for anything the scanner does not handle
+        return Json.decodeValue(new String(payload, StandardCharsets.UTF_8), CarCoordinate.class);
+    }
+
+    /**
+     * Decode a carCoordinates message into an existing CarCoordinate, reusing its Location when it has one.
+     * <br/>
+     * Fields that are missing from the message are reset to their defaults, as with a newly created CarCoordinate.
+     *
+     * @param payload       UTF-8 JSON
+     * @param offset        of the message in the payload
+     * @param length        of the message
+     * @param carCoordinate to decode into
+     * @return true if decoded, false if the message is not in the plain form (and carCoordinate is undefined)
+     */
+    public boolean decode(final byte[] payload, final int offset, final int length, final CarCoordinate carCoordinate) {
+        this.bytes = payload;
+        this.pos = offset;
+        this.end = offset + length;
+        try {
+            return this.decodeCarCoordinate(carCoordinate);
+        } catch (final NumberFormatException e) {
+            return false;
+        } finally {
+            this.bytes = null;
+        }
+    }
+
+    private boolean decodeCarCoordinate(final CarCoordinate carCoordinate) {
+        final Location reusableLocation = carCoordinate.getLocation();
+        carCoordinate.setCarIndex(0);
+        carCoordinate.setLocation(null);
+        carCoordinate.setTimestamp(0L);
+        carCoordinate.setSession(null);
+        if (!this.consume('{')) {
+            return false;
+        }
+        if (!this.consume('}')) {
+            do {
+                if (!this.key()) {
+                    return false;
+                }
+                if (this.keyEquals(CAR_INDEX)) {
+                    final long carIndex = this.longValue();
+                    if (carIndex < Integer.MIN_VALUE || carIndex > Integer.MAX_VALUE) {
+                        return false;
+                    }
+                    carCoordinate.setCarIndex((int) carIndex);
+                } else if (this.keyEquals(TIMESTAMP)) {
+                    carCoordinate.setTimestamp(this.longValue());
+                } else if (this.keyEquals(SESSION)) {
+                    if (this.literal(NULL)) {
+                        carCoordinate.setSession(null);
+                    } else {
+                        final String session = this.stringValue();
+                        if (session == null) {
+                            return false;
+                        }
+                        carCoordinate.setSession(session);
+                    }
+                } else if (this.keyEquals(LOCATION)) {
+                    if (this.literal(NULL)) {
+                        carCoordinate.setLocation(null);
+                    } else {
+                        final Location location = reusableLocation != null ? reusableLocation : new Location();
+                        if (!this.decodeLocation(location)) {
+                            return false;
+                        }
+                        carCoordinate.setLocation(location);
+                    }
+                } else {
+                    // unknown properties are rejected by Jackson, leave the error to the fallback
+                    return false;
+                }
+            } while (this.consume(','));
+            if (!this.consume('}')) {
+                return false;
+            }
+        }
+        this.skipWhitespace();
+        return this.pos == this.end;
+    }
+
+    private boolean decodeLocation(final Location location) {
+        location.setLatitude(0D);
+        location.setLongitude(0D);
+        if (!this.consume('{')) {
+            return false;
+        }
+        if (this.consume('}')) {
+            return true;
+        }
+        do {
+            if (!this.key()) {
+                return false;
+            }
+            if (this.keyEquals(LAT)) {
+                location.setLatitude(this.doubleValue());
+            } else if (this.keyEquals(LONG)) {
+                location.setLongitude(this.doubleValue());
+            } else {
+                return false;
+            }
+        } while (this.consume(','));
+        return this.consume('}');
+    }
+
+    // scan a "key": without escapes, recording its bounds
+    private boolean key() {
+        if (!this.consume('"')) {
+            return false;
+        }
+        this.keyStart = this.pos;
+        while (this.peek() != '"') {
+            if (this.pos == this.end || this.bytes[this.pos] == '\\') {
+                return false;
+            }
+            this.pos++;
+        }
+        this.keyEnd = this.pos++;
+        return this.consume(':');
+    }
+
+    // scan a "string" value without escapes
+    private String stringValue() {
+        if (!this.consume('"')) {
+            return null;
+        }
+        final int start = this.pos;
+        while (this.peek() != '"') {
+            if (this.pos == this.end || this.bytes[this.pos] == '\\') {
+                return null;
+            }
+            this.pos++;
+        }
+        return new String(this.bytes, start, this.pos++ - start, StandardCharsets.UTF_8);
+    }
+
+    private boolean keyEquals(final byte[] key) {
+        if (this.keyEnd - this.keyStart != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (this.bytes[this.keyStart + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long longValue() {
+        this.skipWhitespace();
+        final boolean negative = this.peek() == '-';
+        if (negative) {
+            this.pos++;
+        }
+        final int start = this.pos;
+        long value = 0L;
+        while (this.pos < this.end && this.bytes[this.pos] >= '0' && this.bytes[this.pos] <= '9') {
+            // accumulate negatively, so that Long.MIN_VALUE does not overflow
+            final long next = value * 10L - (this.bytes[this.pos] - '0');
+            if (value < Long.MIN_VALUE / 10L || next > value) {
+                throw new NumberFormatException("long overflow");
+            }
+            value = next;
+            this.pos++;
+        }
+        if (this.pos == start || this.isNumberByte(this.peek())) {
+            // no digits, or a fraction/exponent that Jackson would coerce
+            throw new NumberFormatException("not a long");
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new NumberFormatException("long overflow");
+        }
+        return negative ? value : -value;
+    }
+
+    private double doubleValue() {
+        this.skipWhitespace();
+        if (this.peek() == '+') {
+            throw new NumberFormatException("leading +");
+        }
+        final int start = this.pos;
+        while (this.pos < this.end && this.isNumberByte(this.bytes[this.pos])) {
+            this.pos++;
+        }
+        return DoubleParser.parse(this.bytes, start, this.pos - start);
+    }
+
+    private boolean isNumberByte(final byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    private boolean literal(final byte[] literal) {
+        this.skipWhitespace();
+        if (this.end - this.pos < literal.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length; i++) {
+            if (this.bytes[this.pos + i] != literal[i]) {
+                return false;
+            }
+        }
+        this.pos += literal.length;
+        return true;
+    }
+
+    private byte peek() {
+        return this.pos < this.end ? this.bytes[this.pos] : 0;
+    }
+
+    private boolean consume(final char c) {
+        this.skipWhitespace();
+        if (this.pos < this.end && this.bytes[this.pos] == c) {
+            this.pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (this.pos < this.end && (this.bytes[this.pos] == ' ' || this.bytes[this.pos] == '\n'
+                || this.bytes[this.pos] == '\r' || this.bytes[this.pos] == '\t')) {
+            this.pos++;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import io.vertx.core.json.Json;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+
+/**
+ * Kafka serializer for the JSON encoding of a CarCoordinate, which is the same JSON as previously produced with
+ * <br/>
+ * the JsonObjectSerializer.
+ */
+@RegisterForReflection
+public class CarCoordinateJsonSerializer implements Serializer<CarCoordinate> {
+
+    @Override
+    public void configure(final Map<String, ?> configs, final boolean isKey) {
+        // no configuration
+    }
+
+    @Override
+    public byte[] serialize(final String topic, final CarCoordinate carCoordinate) {
+        return carCoordinate == null ? null : Json.encodeToBuffer(carCoordinate).getBytes();
+    }
+
+    @Override
+    public void close() {
+        // no resources
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses ASCII decimal numbers directly from a byte[] into a double, with the same (correctly rounded) result as
+ * <br/>
+ * {@link Double#parseDouble} but without first allocating a String.
+ * <br/>
+ * Up to 19 significant digits are converted with the Clinger fast path or the Eisel-Lemire algorithm, any longer
+ * <br/>
+ * (or otherwise unsupported) input falls back to {@link Double#parseDouble}.
+ *
+ * @see <a href="https://arxiv.org/abs/2101.11408">Number Parsing at a Gigabyte per Second</a>
+ */
+public final class DoubleParser {
+
+    private DoubleParser() {
+        throw new IllegalStateException("This is a static utility class");
+    }
+
+    private static final int SMALLEST_POWER_OF_TEN = -342;
+    private static final int LARGEST_POWER_OF_TEN = 308;
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // 128-bit approximations of 5^q for q within [-342, 308], as {high, low} pairs
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    /**
+     * Parse a decimal number, e.g. "-1.0222223819238275" or "5.2e1".
+     *
+     * @param bytes  containing the ASCII number
+     * @param offset of the first byte of the number
+     * @param length of the number
+     * @return the correctly rounded double
+     * @throws NumberFormatException when the bytes are not a decimal number
+     */
+    public static double parse(final byte[] bytes, final int offset, final int length) {
+        final int end = offset + length;
+        int i = offset;
+        final boolean negative = i < end && bytes[i] == '-';
+        if (negative || (i < end && bytes[i] == '+')) {
+            i++;
+        }
+        long significand = 0L;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        // integer part
+        for (; i < end && isDigit(bytes[i]); i++) {
+            anyDigits = true;
+            if (digits < 19) {
+                significand = significand * 10L + (bytes[i] - '0');
+                if (significand != 0L) {
+                    digits++;
+                }
+            } else {
+                return slowParse(bytes, offset, length);
+            }
+        }
+        // fraction part
+        if (i < end && bytes[i] == '.') {
+            i++;
+            for (; i < end && isDigit(bytes[i]); i++) {
+                anyDigits = true;
+                if (digits < 19) {
+                    significand = significand * 10L + (bytes[i] - '0');
+                    if (significand != 0L) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    return slowParse(bytes, offset, length);
+                }
+            }
+        }
+        if (!anyDigits) {
+            throw new NumberFormatException(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+        }
+        // exponent part
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            final boolean negativeExponent = i < end && bytes[i] == '-';
+            if (negativeExponent || (i < end && bytes[i] == '+')) {
+                i++;
+            }
+            if (i == end) {
+                throw new NumberFormatException(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+            }
+            int explicitExponent = 0;
+            for (; i < end && isDigit(bytes[i]); i++) {
+                if (explicitExponent < 100_000) {
+                    explicitExponent = explicitExponent * 10 + (bytes[i] - '0');
+                }
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            throw new NumberFormatException(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+        }
+        final double value = toDouble(significand, exponent);
+        if (Double.isNaN(value)) {
+            return slowParse(bytes, offset, length);
+        }
+        return negative ? -value : value;
+    }
+
+    // significand * 10^exponent for a 19 digit (unsigned) significand, or NaN when it cannot be decided cheaply
+    private static double toDouble(final long significand, final int exponent) {
+        if (significand == 0L || exponent < SMALLEST_POWER_OF_TEN) {
+            return 0D;
+        }
+        if (exponent > LARGEST_POWER_OF_TEN) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // Clinger's fast path: both the significand and the power of ten are exact doubles
+        if (significand > 0L && significand <= MAX_EXACT_SIGNIFICAND && exponent >= -22 && exponent <= 22) {
+            return exponent < 0 ? significand / EXACT_POWERS_OF_TEN[-exponent]
+                    : significand * EXACT_POWERS_OF_TEN[exponent];
+        }
+        return eiselLemire(significand, exponent);
+    }
+
+    private static double eiselLemire(final long significand, final int exponent) {
+        final int leadingZeros = Long.numberOfLeadingZeros(significand);
+        final long w = significand << leadingZeros;
+        final int index = 2 * (exponent - SMALLEST_POWER_OF_TEN);
+        long high = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        // 0x1FF: the bits below the 55 bits of precision that are needed
+        if ((high & 0x1FFL) == 0x1FFL) {
+            final long secondHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (Long.compareUnsigned(secondHigh, low) > 0) {
+                high++;
+            }
+            if ((high & 0x1FFL) == 0x1FFL && low == -1L) {
+                return Double.NaN;
+            }
+        }
+        final int upperBit = (int) (high >>> 63);
+        long mantissa = high >>> (upperBit + 9);
+        int power2 = (((152170 + 65536) * exponent) >> 16) + 63 + upperBit - leadingZeros + 1023;
+        if (power2 <= 0) {
+            // subnormals are left to Double.parseDouble
+            return Double.NaN;
+        }
+        // round to even when exactly halfway between two doubles
+        if (Long.compareUnsigned(low, 1L) <= 0 && exponent >= -4 && exponent <= 23 && (mantissa & 3L) == 1L
+                && (mantissa << (upperBit + 9)) == high) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1L;
+        mantissa >>>= 1;
+        if (mantissa >= (2L << 52)) {
+            mantissa = 1L << 52;
+            power2++;
+        }
+        mantissa &= ~(1L << 52);
+        if (power2 >= 0x7FF) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.longBitsToDouble(mantissa | ((long) power2) << 52);
+    }
+
+    private static double slowParse(final byte[] bytes, final int offset, final int length) {
+        return Double.parseDouble(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+    }
+
+    private static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    // the high 64 bits of the unsigned 128-bit product of x and y
+    private static long unsignedMultiplyHigh(final long x, final long y) {
+        final long x0 = x & 0xFFFFFFFFL;
+        final long x1 = x >>> 32;
+        final long y0 = y & 0xFFFFFFFFL;
+        final long y1 = y >>> 32;
+        final long p00 = x0 * y0;
+        final long p01 = x0 * y1;
+        final long p10 = x1 * y0;
+        final long p11 = x1 * y1;
+        final long middle = (p00 >>> 32) + (p01 & 0xFFFFFFFFL) + (p10 & 0xFFFFFFFFL);
+        return p11 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+    }
+
+    private static long[] powersOfFive() {
+        final long[] powers = new long[2 * (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1)];
+        final BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        final BigInteger two127 = BigInteger.ONE.shiftLeft(127);
+        for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; q++) {
+            BigInteger power;
+            if (q < 0) {
+                final BigInteger power5 = BigInteger.valueOf(5L).pow(-q);
+                final int z = power5.subtract(BigInteger.ONE).bitLength();
+                final int b = q >= -27 ? z + 127 : 2 * z + 128;
+                power = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                while (power.compareTo(two128) >= 0) {
+                    power = power.shiftRight(1);
+                }
+            } else {
+                power = BigInteger.valueOf(5L).pow(q);
+                while (power.compareTo(two127) < 0) {
+                    power = power.shiftLeft(1);
+                }
+                while (power.compareTo(two128) >= 0) {
+                    power = power.shiftRight(1);
+                }
+            }
+            final int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+            powers[index] = power.shiftRight(64).longValue();
+            powers[index + 1] = power.longValue();
+        }
+        return powers;
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarLap;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.domain.RaceSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact big-endian binary encoding of a {@link RaceSnapshot}, followed by a CRC32 of the encoded bytes.
+ * <br/>
+ * Snapshot files are written to a temporary file that is then atomically moved over the previous snapshot, so a
+ * <br/>
+ * crash while writing never leaves a partially written snapshot behind.
+ */
+public final class RaceSnapshotCodec {
+
+    private RaceSnapshotCodec() {
+        throw new IllegalStateException("This is a static utility class");
+    }
+
+    // "MATS"
+    private static final int MAGIC = 0x4D415453;
+    // version 2 added the track lap detection state of each Car, version 3 the number of laps each Car completed,
+    // version 4 the track deficit of each Car, version 5 the identity of the topic and whether race sessions were
+    // consumed
+    private static final int VERSION = 5;
+
+    /**
+     * @param snapshot to be encoded
+     * @return the encoded snapshot
+     */
+    public static byte[] encode(final RaceSnapshot snapshot) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.getFastestLapTimeInMs());
+            out.writeInt(snapshot.getFastestLapCar());
+            out.writeInt(snapshot.getOffsets().size());
+            for (final Map.Entry<Integer, Long> offset : snapshot.getOffsets().entrySet()) {
+                out.writeInt(offset.getKey());
+                out.writeLong(offset.getValue());
+            }
+            out.writeInt(snapshot.getCarOrderingKeys().size());
+            for (final Map.Entry<Integer, Integer> orderingKey : snapshot.getCarOrderingKeys().entrySet()) {
+                out.writeInt(orderingKey.getKey());
+                out.writeInt(orderingKey.getValue());
+            }
+            out.writeInt(snapshot.getCars().size());
+            for (final Car car : snapshot.getCars()) {
+                writeCar(out, car);
+            }
+            out.writeInt(snapshot.getReleasedTimestamps().size());
+            final byte[] carCoordinate = new byte[CarCoordinateBinaryCodec.SIZE];
+            for (final Map.Entry<Integer, Long> released : snapshot.getReleasedTimestamps().entrySet()) {
+                out.writeInt(released.getKey());
+                out.writeLong(released.getValue());
+                final List<CarCoordinate> held = snapshot.getHeldCarCoordinates().getOrDefault(released.getKey(),
+                        new ArrayList<>());
+                out.writeInt(held.size());
+                for (final CarCoordinate heldCarCoordinate : held) {
+                    CarCoordinateBinaryCodec.encode(heldCarCoordinate, carCoordinate, 0);
+                    out.write(carCoordinate);
+                }
+            }
+            out.writeBoolean(snapshot.getTopicIdentity() != null);
+            if (snapshot.getTopicIdentity() != null) {
+                out.writeUTF(snapshot.getTopicIdentity());
+            }
+            out.writeBoolean(snapshot.isSessionsConsumed());
+            out.flush();
+            final CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+        } catch (final IOException e) {
+            // a ByteArrayOutputStream does not throw IOExceptions
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes an encoded snapshot
+     * @return the decoded snapshot
+     * @throws IOException if the bytes are not a valid snapshot
+     */
+    public static RaceSnapshot decode(final byte[] bytes) throws IOException {
+        if (bytes.length < 16) {
+            throw new IOException("Race snapshot is truncated");
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+            throw new IOException("Race snapshot checksum mismatch");
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a race snapshot");
+            }
+            final int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(String.format("Unsupported race snapshot version %d", version));
+            }
+            final RaceSnapshot snapshot = RaceSnapshot.builder().fastestLapTimeInMs(in.readLong())
+                    .fastestLapCar(in.readInt()).build();
+            for (int i = in.readInt(); i > 0; i--) {
+                snapshot.getOffsets().put(in.readInt(), in.readLong());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                snapshot.getCarOrderingKeys().put(in.readInt(), in.readInt());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                snapshot.getCars().add(readCar(in, version));
+            }
+            final byte[] carCoordinate = new byte[CarCoordinateBinaryCodec.SIZE];
+            for (int i = in.readInt(); i > 0; i--) {
+                final int carIndex = in.readInt();
+                snapshot.getReleasedTimestamps().put(carIndex, in.readLong());
+                final List<CarCoordinate> held = new ArrayList<>();
+                for (int j = in.readInt(); j > 0; j--) {
+                    in.readFully(carCoordinate);
+                    held.add(CarCoordinateBinaryCodec.decode(carCoordinate));
+                }
+                snapshot.getHeldCarCoordinates().put(carIndex, held);
+            }
+            if (version >= 5) {
+                snapshot.setTopicIdentity(in.readBoolean() ? in.readUTF() : null);
+                snapshot.setSessionsConsumed(in.readBoolean());
+            } else {
+                // unknown, the race sessions may have been consumed
+                snapshot.setSessionsConsumed(true);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Write a snapshot to a file, atomically replacing any previous snapshot.
+     *
+     * @param snapshot to be written
+     * @param path     of the snapshot file
+     * @throws IOException if the snapshot could not be written
+     */
+    public static void write(final RaceSnapshot snapshot, final Path path) throws IOException {
+        write(encode(snapshot), path);
+    }
+
+    /**
+     * Write an encoded snapshot to a file, atomically replacing any previous snapshot.
+     *
+     * @param bytes an encoded snapshot
+     * @param path  of the snapshot file
+     * @throws IOException if the snapshot could not be written
+     */
+    public static void write(final byte[] bytes, final Path path) throws IOException {
+        final Path absolute = path.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        final Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        Files.write(tmp, bytes);
+        Files.move(tmp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param path of the snapshot file
+     * @return the decoded snapshot
+     * @throws IOException if the snapshot could not be read or is not valid
+     */
+    public static RaceSnapshot read(final Path path) throws IOException {
+        return decode(Files.readAllBytes(path));
+    }
+
+    private static void writeCar(final DataOutputStream out, final Car car) throws IOException {
+        out.writeInt(car.getCarIndex());
+        out.writeDouble(car.getCurLocation().getLatitude());
+        out.writeDouble(car.getCurLocation().getLongitude());
+        out.writeDouble(car.getTotalDistance());
+        out.writeLong(car.getLastUpdateTimestamp());
+        out.writeDouble(car.getCurSpeedMPH());
+        out.writeLong(car.getLapStartTime());
+        out.writeInt(car.getLaps().size());
+        for (final CarLap carLap : car.getLaps()) {
+            out.writeLong(carLap.getStartTime());
+            out.writeLong(carLap.getEndTime());
+            out.writeDouble(carLap.getDistance());
+            out.writeDouble(carLap.getAverageSpeed());
+        }
+        out.writeInt(car.getTrackSegment());
+        out.writeDouble(car.getTrackProgress());
+        out.writeInt(car.getTrackLine());
+        out.writeInt(Math.max(car.getLapCount(), car.getLaps().size()));
+        out.writeDouble(car.getTrackDeficit());
+    }
+
+    private static Car readCar(final DataInputStream in, final int version) throws IOException {
+        final int carIndex = in.readInt();
+        final Location location = new Location();
+        location.setLatitude(in.readDouble());
+        location.setLongitude(in.readDouble());
+        final Car car = Car.builder().carIndex(carIndex).curLocation(location).totalDistance(in.readDouble())
+                .lastUpdateTimestamp(in.readLong()).curSpeedMPH(in.readDouble()).lapStartTime(in.readLong()).build();
+        for (int i = in.readInt(); i > 0; i--) {
+            final CarLap carLap = new CarLap();
+            carLap.setStartTime(in.readLong());
+            carLap.setEndTime(in.readLong());
+            carLap.setDistance(in.readDouble());
+            carLap.setAverageSpeed(in.readDouble());
+            car.getLaps().add(carLap);
+        }
+        if (version >= 2) {
+            car.setTrackSegment(in.readInt());
+            car.setTrackProgress(in.readDouble());
+            car.setTrackLine(in.readInt());
+        }
+        car.setLapCount(version >= 3 ? in.readInt() : car.getLaps().size());
+        if (version >= 4) {
+            car.setTrackDeficit(in.readDouble());
+        }
+        return car;
+    }
+}
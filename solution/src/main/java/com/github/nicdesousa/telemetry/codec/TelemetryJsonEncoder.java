@@ -0,0 +1,443 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the outgoing CarStatus and Event messages, e.g. {"timestamp":1541693114862,"carIndex":2,"type":"SPEED",
+ * <br/>
+ * "value":167.29461538461538}, straight into a reusable byte buffer, instead of mapping them to a JsonObject with
+ * <br/>
+ * Jackson databind and encoding that. The output is byte-identical to the previous JsonObject encoding: the fields in
+ * <br/>
+ * declaration order, the session and sector only when set, doubles as {@link Double#toString(double)} (non-numeric
+ * <br/>
+ * doubles quoted) and the same string escapes. The text of a templated Event is written from its arguments, as
+ * <br/>
+ * formatted by its template, without creating the String.
+ * <br/>
+ * Not thread-safe, an encoder holds its buffer and must be confined to a single thread.
+ */
+public final class TelemetryJsonEncoder {
+
+    private static final byte[] TIMESTAMP = ascii("{\"timestamp\":");
+    private static final byte[] CAR_INDEX = ascii(",\"carIndex\":");
+    private static final byte[] TYPE = ascii(",\"type\":");
+    private static final byte[] VALUE = ascii(",\"value\":");
+    private static final byte[] TEXT = ascii(",\"text\":");
+    private static final byte[] SESSION = ascii(",\"session\":\"");
+    private static final byte[] SECTOR = ascii(",\"sector\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[][] TYPES = new byte[CarStatus.TypeEnum.values().length][];
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+    // the largest magnitude up to which an integral double is written as a long, as Double.toString does
+    private static final double MAX_PLAIN_DOUBLE = 1e7D;
+
+    static {
+        for (final CarStatus.TypeEnum type : CarStatus.TypeEnum.values()) {
+            TYPES[type.ordinal()] = ascii("\"" + type.name() + "\"");
+        }
+    }
+
+    private byte[] buffer = new byte[256];
+    private int length = 0;
+    // the digits of a double, appended by the JDK's FloatingDecimal without creating a String
+    private final StringBuilder number = new StringBuilder(32);
+    private char[] digits = new char[32];
+
+    /**
+     * Encode a CarStatus message into the buffer.
+     *
+     * @param carStatus to encode
+     * @return this encoder, with the encoded CarStatus in its buffer
+     */
+    public TelemetryJsonEncoder encode(final CarStatus carStatus) {
+        this.length = 0;
+        this.write(TIMESTAMP);
+        this.writeLong(carStatus.getTimestamp());
+        this.write(CAR_INDEX);
+        this.writeLong(carStatus.getCarIndex());
+        this.write(TYPE);
+        this.write(carStatus.getType() == null ? NULL : TYPES[carStatus.getType().ordinal()]);
+        this.write(VALUE);
+        this.writeDouble(carStatus.getValue());
+        this.writeSession(carStatus.getSession());
+        // the sector is only included for sector times (JsonInclude.NON_NULL)
+        if (carStatus.getSector() != null) {
+            this.write(SECTOR);
+            this.writeLong(carStatus.getSector());
+        }
+        this.writeByte('}');
+        return this;
+    }
+
+    /**
+     * Encode an Event message into the buffer.
+     *
+     * @param event to encode
+     * @return this encoder, with the encoded Event in its buffer
+     */
+    public TelemetryJsonEncoder encode(final Event event) {
+        this.length = 0;
+        this.write(TIMESTAMP);
+        this.writeLong(event.getTimestamp());
+        this.write(TEXT);
+        if (event.getTemplate() != null && !event.isFormatted()) {
+            this.writeByte('"');
+            this.writeTemplate(event);
+            this.writeByte('"');
+        } else if (event.getText() == null) {
+            this.write(NULL);
+        } else {
+            this.writeByte('"');
+            this.writeEscaped(event.getText());
+            this.writeByte('"');
+        }
+        this.writeSession(event.getSession());
+        this.writeByte('}');
+        return this;
+    }
+
+    /**
+     * @return the buffer, which holds the last encoded message from 0 to {@link #length()}
+     */
+    public byte[] buffer() {
+        return this.buffer;
+    }
+
+    /**
+     * @return the length of the last encoded message
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * @return a copy of the last encoded message
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.length);
+    }
+
+    private void writeSession(final String session) {
+        // the session is only included for race sessions (JsonInclude.NON_NULL)
+        if (session != null) {
+            this.write(SESSION);
+            this.writeEscaped(session);
+            this.writeByte('"');
+        }
+    }
+
+    // the text of a templated Event, as formatted by Event.TemplateEnum
+    private void writeTemplate(final Event event) {
+        final long lapTimeInMs = event.getLapTimeInMs();
+        final long lapMinutes = lapTimeInMs / TimeUnit.MINUTES.toMillis(1);
+        final long lapSeconds = (lapTimeInMs - TimeUnit.MINUTES.toMillis(lapMinutes)) / TimeUnit.SECONDS.toMillis(1);
+        final long lapMillis = lapTimeInMs - TimeUnit.MINUTES.toMillis(lapMinutes)
+                - TimeUnit.SECONDS.toMillis(lapSeconds);
+        switch (event.getTemplate()) {
+            case LAP_TIME:
+                // Car %d completed lap %02d in %d:%02d.%03d with an average speed of %03.02f MPH
+                this.writeAscii("Car ");
+                this.writeLong(event.getCarIndex());
+                this.writeAscii(" completed lap ");
+                this.writeZeroPadded(event.getArgument(), 2);
+                this.writeAscii(" in ");
+                this.writeLapTime(lapMinutes, lapSeconds, lapMillis);
+                this.writeAscii(" with an average speed of ");
+                this.writeFixed2(event.getAverageSpeed());
+                this.writeAscii(" MPH");
+                break;
+            case FASTEST_LAP:
+                // Car %d has set the new fastest lap time at %d:%02d.%03d with an average speed of %03.02f MPH
+                this.writeAscii("Car ");
+                this.writeLong(event.getCarIndex());
+                this.writeAscii(" has set the new fastest lap time at ");
+                this.writeLapTime(lapMinutes, lapSeconds, lapMillis);
+                this.writeAscii(" with an average speed of ");
+                this.writeFixed2(event.getAverageSpeed());
+                this.writeAscii(" MPH");
+                break;
+            case OVERTAKE:
+                // Car %d races ahead of Car %d in a dramatic overtake, faster than... %s!
+                this.writeAscii("Car ");
+                this.writeLong(event.getCarIndex());
+                this.writeAscii(" races ahead of Car ");
+                this.writeLong(event.getArgument());
+                this.writeAscii(" in a dramatic overtake, faster than... ");
+                this.writeEscaped(String.valueOf(event.getPhrase()));
+                this.writeByte('!');
+                break;
+            default:
+                throw new IllegalStateException("Unknown Event template " + event.getTemplate());
+        }
+    }
+
+    // %d:%02d.%03d
+    private void writeLapTime(final long minutes, final long seconds, final long millis) {
+        this.writeLong(minutes);
+        this.writeByte(':');
+        this.writeZeroPadded(seconds, 2);
+        this.writeByte('.');
+        this.writeZeroPadded(millis, 3);
+    }
+
+    /**
+     * Write a double as {@link Double#toString(double)} does, which is how Jackson writes it (quoted when it is not
+     * <br/>
+     * a number), integral values without the JDK's FloatingDecimal.
+     */
+    private void writeDouble(final double value) {
+        if (value == (long) value && Math.abs(value) < MAX_PLAIN_DOUBLE
+                && (value != 0D || Double.doubleToRawLongBits(value) == 0L)) {
+            this.writeLong((long) value);
+            this.writeByte('.');
+            this.writeByte('0');
+            return;
+        }
+        final boolean quoted = Double.isNaN(value) || Double.isInfinite(value);
+        if (quoted) {
+            this.writeByte('"');
+        }
+        final StringBuilder number = this.number;
+        number.setLength(0);
+        number.append(value);
+        this.ensureCapacity(number.length() + 2);
+        for (int i = 0; i < number.length(); i++) {
+            this.buffer[this.length++] = (byte) number.charAt(i);
+        }
+        if (quoted) {
+            this.writeByte('"');
+        }
+    }
+
+    /**
+     * Write a double with two fraction digits as {@link java.util.Formatter} does for %03.02f (in the ROOT locale):
+     * <br/>
+     * the digits of {@link Double#toString(double)} rounded half up, which is never padded since it is at least four
+     * <br/>
+     * characters long.
+     */
+    private void writeFixed2(final double value) {
+        if (Double.isNaN(value)) {
+            this.writeAscii("NaN");
+            return;
+        }
+        if (Double.compare(value, 0D) < 0) {
+            this.writeByte('-');
+        }
+        final double magnitude = Math.abs(value);
+        if (Double.isInfinite(magnitude)) {
+            this.writeAscii("Infinity");
+            return;
+        }
+        final StringBuilder number = this.number;
+        number.setLength(0);
+        number.append(magnitude);
+        // the significant digits, and the position of the decimal point relative to them
+        if (this.digits.length < number.length() + 1) {
+            this.digits = new char[number.length() + 1];
+        }
+        final char[] digits = this.digits;
+        int count = 0;
+        int point = -1;
+        int exponent = 0;
+        for (int i = 0; i < number.length(); i++) {
+            final char c = number.charAt(i);
+            if (c == '.') {
+                point = count;
+            } else if (c == 'E') {
+                exponent = exponent(number, i + 1);
+                break;
+            } else {
+                digits[count++] = c;
+            }
+        }
+        point = (point < 0 ? count : point) + exponent;
+        // round half up at the second fraction digit
+        final int keep = point + 2;
+        boolean carry = false;
+        if (keep >= 0 && keep < count && digits[keep] >= '5') {
+            carry = true;
+            for (int i = keep - 1; i >= 0 && carry; i--) {
+                if (digits[i] == '9') {
+                    digits[i] = '0';
+                } else {
+                    digits[i]++;
+                    carry = false;
+                }
+            }
+        }
+        // the integer part, without leading zeros
+        this.ensureCapacity(Math.max(point, 0) + 8);
+        boolean leading = !carry;
+        if (carry) {
+            this.writeByte('1');
+        }
+        for (int i = 0; i < point; i++) {
+            final char c = i < count ? digits[i] : '0';
+            if (leading && c == '0') {
+                continue;
+            }
+            leading = false;
+            this.writeByte(c);
+        }
+        if (leading) {
+            this.writeByte('0');
+        }
+        this.writeByte('.');
+        for (int i = point; i < point + 2; i++) {
+            this.writeByte(i >= 0 && i < count ? digits[i] : '0');
+        }
+    }
+
+    // %0<width>d
+    private void writeZeroPadded(final long value, final int width) {
+        long magnitude = value;
+        int padding = width;
+        if (value < 0L) {
+            this.writeByte('-');
+            padding--;
+            if (value == Long.MIN_VALUE) {
+                this.writeAscii("9223372036854775808");
+                return;
+            }
+            magnitude = -value;
+        }
+        for (int digits = stringSize(magnitude); digits < padding; digits++) {
+            this.writeByte('0');
+        }
+        this.writeLong(magnitude);
+    }
+
+    private void writeLong(final long value) {
+        if (value == Long.MIN_VALUE) {
+            this.writeAscii("-9223372036854775808");
+            return;
+        }
+        this.ensureCapacity(20);
+        long magnitude = value;
+        if (value < 0L) {
+            this.buffer[this.length++] = '-';
+            magnitude = -value;
+        }
+        int pos = this.length + stringSize(magnitude);
+        this.length = pos;
+        do {
+            this.buffer[--pos] = (byte) ('0' + (magnitude % 10L));
+            magnitude /= 10L;
+        } while (magnitude != 0L);
+    }
+
+    // a JSON string, escaped as Jackson does, in UTF-8
+    private void writeEscaped(final String value) {
+        this.ensureCapacity(value.length() * 6);
+        final byte[] buffer = this.buffer;
+        int pos = this.length;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[pos++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                buffer[pos++] = '\\';
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x20) {
+                buffer[pos++] = '\\';
+                switch (c) {
+                    case '\b':
+                        buffer[pos++] = 'b';
+                        break;
+                    case '\t':
+                        buffer[pos++] = 't';
+                        break;
+                    case '\n':
+                        buffer[pos++] = 'n';
+                        break;
+                    case '\f':
+                        buffer[pos++] = 'f';
+                        break;
+                    case '\r':
+                        buffer[pos++] = 'r';
+                        break;
+                    default:
+                        buffer[pos++] = 'u';
+                        buffer[pos++] = '0';
+                        buffer[pos++] = '0';
+                        buffer[pos++] = HEX[c >> 4];
+                        buffer[pos++] = HEX[c & 0xF];
+                        break;
+                }
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // as the JsonObject encoding does, every surrogate char (of a pair or not) is escaped
+                buffer[pos++] = '\\';
+                buffer[pos++] = 'u';
+                buffer[pos++] = HEX[c >> 12];
+                buffer[pos++] = HEX[(c >> 8) & 0xF];
+                buffer[pos++] = HEX[(c >> 4) & 0xF];
+                buffer[pos++] = HEX[c & 0xF];
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.length = pos;
+    }
+
+    private void writeAscii(final String value) {
+        this.ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            this.buffer[this.length++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void write(final byte[] bytes) {
+        this.ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+        this.length += bytes.length;
+    }
+
+    private void writeByte(final int b) {
+        this.ensureCapacity(1);
+        this.buffer[this.length++] = (byte) b;
+    }
+
+    private void ensureCapacity(final int additional) {
+        if (this.length + additional > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + additional));
+        }
+    }
+
+    // the exponent of a double in E-notation
+    private static int exponent(final CharSequence number, final int start) {
+        final boolean negative = number.charAt(start) == '-';
+        int exponent = 0;
+        for (int i = negative ? start + 1 : start; i < number.length(); i++) {
+            exponent = exponent * 10 + (number.charAt(i) - '0');
+        }
+        return negative ? -exponent : exponent;
+    }
+
+    // the number of decimal digits of a non-negative long
+    private static int stringSize(final long value) {
+        long limit = 10L;
+        for (int digits = 1; digits < 19; digits++) {
+            if (value < limit) {
+                return digits;
+            }
+            limit *= 10L;
+        }
+        return 19;
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
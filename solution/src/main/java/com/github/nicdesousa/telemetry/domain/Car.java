@@ -23,16 +23,24 @@ public class Car {
     @Builder.Default
     private List<CarLap> laps = new ArrayList<>();
     private long lapStartTime = 0L;
+    // the number of laps completed, laps may only hold the most recent laps (see CarStateStore)
+    @Builder.Default
+    private int lapCount = 0;
+    // track lap detection: the nearest track segment, the along-track progress (in km) from the start/finish line
+    // including completed laps, how far (in km) the progress is behind the Car's furthest progress (e.g. after GPS
+    // jitter back along the track), and the last start/finish line crossed (-1 before the first crossing)
+    @Builder.Default
+    private int trackSegment = -1;
+    @Builder.Default
+    private double trackProgress = 0D;
+    @Builder.Default
+    private double trackDeficit = 0D;
+    @Builder.Default
+    private int trackLine = -1;
 
 
     public final void addDistance(final double distance) {
         this.setTotalDistance(this.getTotalDistance() + distance);
     }
 
-    public static Car from(final CarCoordinate carCoordinate) {
-        return Car.builder().carIndex(carCoordinate.getCarIndex()).curLocation(carCoordinate.getLocation())
-                .lastUpdateTimestamp(carCoordinate.getTimestamp()).lapStartTime(carCoordinate.getTimestamp()).build();
-    }
-
 }
-
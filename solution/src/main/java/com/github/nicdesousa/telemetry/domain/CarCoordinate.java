@@ -1,5 +1,6 @@
 package com.github.nicdesousa.telemetry.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.quarkus.runtime.annotations.RegisterForReflection;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,4 +12,7 @@ public class CarCoordinate {
     private int carIndex = 0;
     private Location location = null;
     private long timestamp = 0L;
+    // the race session, null for the default session
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String session = null;
 }
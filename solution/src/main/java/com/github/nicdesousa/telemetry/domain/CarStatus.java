@@ -1,5 +1,6 @@
 package com.github.nicdesousa.telemetry.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.quarkus.runtime.annotations.RegisterForReflection;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,6 +13,21 @@ public class CarStatus {
     private int carIndex = -1;
     private TypeEnum type = TypeEnum.SPEED;
     private double value = 0D;
+    // the race session, null for the default session
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String session = null;
+    // the sector (from 1) of a SECTOR_TIME, null for the other types
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer sector = null;
+
+    public CarStatus(final long timestamp, final int carIndex, final TypeEnum type, final double value) {
+        this(timestamp, carIndex, type, value, null, null);
+    }
+
+    public CarStatus(final long timestamp, final int carIndex, final TypeEnum type, final double value,
+                     final String session) {
+        this(timestamp, carIndex, type, value, session, null);
+    }
 
     public CarStatus(final Car car, final TypeEnum carStatusType) {
         this.setTimestamp(car.getLastUpdateTimestamp());
@@ -26,6 +42,18 @@ public class CarStatus {
 
     public enum TypeEnum {
         SPEED,
-        POSITION
+        POSITION,
+        // the exponentially weighted moving average speed in MPH
+        SMOOTHED_SPEED,
+        // the average speed in MPH over the last few samples
+        AVERAGE_SPEED,
+        // the top (smoothed) speed of the current lap in MPH, published when it increases
+        TOP_SPEED,
+        // the time of a completed sector in milliseconds
+        SECTOR_TIME,
+        // the time gap to the Car ahead in milliseconds
+        INTERVAL,
+        // the time gap to the leader in milliseconds
+        GAP_TO_LEADER
     }
 }
@@ -1,13 +1,142 @@
 package com.github.nicdesousa.telemetry.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.quarkus.runtime.annotations.RegisterForReflection;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 @Data
-@AllArgsConstructor
 @RegisterForReflection
 public class Event {
+    public static final String LAP_TIME_FORMAT = "Car %d completed lap %02d in %d:%02d.%03d with an average speed of %03.02f MPH";
+    public static final String FASTEST_LAP_TIME_FORMAT = "Car %d has set the new fastest lap time at %d:%02d.%03d with an average speed of %03.02f MPH";
+    public static final String EVENT_OVERTAKE_FORMAT = "Car %d races ahead of Car %d in a dramatic overtake, faster than... %s!";
+
     private long timestamp = 0L;
     private String text;
+    // the race session, null for the default session
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String session = null;
+    // a lap time, fastest lap or overtake Event is created from its template and arguments, and its text is only
+    // formatted when it is read (the TelemetryJsonEncoder writes it straight from the arguments)
+    @JsonIgnore
+    private TemplateEnum template = null;
+    @JsonIgnore
+    private int carIndex = -1;
+    // the lap of a lap time, or the overtaken Car of an overtake
+    @JsonIgnore
+    private int argument = 0;
+    @JsonIgnore
+    private long lapTimeInMs = 0L;
+    @JsonIgnore
+    private double averageSpeed = 0D;
+    // the faster than phrase of an overtake
+    @JsonIgnore
+    private String phrase = null;
+
+    public Event(final long timestamp, final String text) {
+        this(timestamp, text, null);
+    }
+
+    public Event(final long timestamp, final String text, final String session) {
+        this.timestamp = timestamp;
+        this.text = text;
+        this.session = session;
+    }
+
+    /**
+     * @param timestamp    of the Event
+     * @param carIndex     of the Car that completed the lap
+     * @param lap          the lap number
+     * @param lapTimeInMs  the lap time
+     * @param averageSpeed the average speed of the lap in MPH
+     * @return a lap time Event
+     */
+    public static Event lapTime(final long timestamp, final int carIndex, final int lap, final long lapTimeInMs,
+                                final double averageSpeed) {
+        final Event event = new Event(timestamp, null);
+        event.template = TemplateEnum.LAP_TIME;
+        event.carIndex = carIndex;
+        event.argument = lap;
+        event.lapTimeInMs = lapTimeInMs;
+        event.averageSpeed = averageSpeed;
+        return event;
+    }
+
+    /**
+     * @param timestamp    of the Event
+     * @param carIndex     of the Car that set the fastest lap
+     * @param lapTimeInMs  the lap time
+     * @param averageSpeed the average speed of the lap in MPH
+     * @return a new fastest lap Event
+     */
+    public static Event fastestLap(final long timestamp, final int carIndex, final long lapTimeInMs,
+                                   final double averageSpeed) {
+        final Event event = lapTime(timestamp, carIndex, 0, lapTimeInMs, averageSpeed);
+        event.template = TemplateEnum.FASTEST_LAP;
+        return event;
+    }
+
+    /**
+     * @param timestamp          of the Event
+     * @param carIndex           of the Car that overtakes
+     * @param overtakenCarIndex  of the Car that is overtaken
+     * @param phrase             what the overtake is faster than
+     * @return an overtake Event
+     */
+    public static Event overtake(final long timestamp, final int carIndex, final int overtakenCarIndex,
+                                 final String phrase) {
+        final Event event = new Event(timestamp, null);
+        event.template = TemplateEnum.OVERTAKE;
+        event.carIndex = carIndex;
+        event.argument = overtakenCarIndex;
+        event.phrase = phrase;
+        return event;
+    }
+
+    /**
+     * @return the text of the Event, formatted from its template the first time it is read
+     */
+    public String getText() {
+        if (this.text == null && this.template != null) {
+            this.text = this.template.format(this);
+        }
+        return this.text;
+    }
+
+    /**
+     * @return true if the text of the Event is set, rather than still to be formatted from its template
+     */
+    @JsonIgnore
+    public boolean isFormatted() {
+        return this.text != null;
+    }
+
+    public enum TemplateEnum {
+        LAP_TIME,
+        FASTEST_LAP,
+        OVERTAKE;
+
+        // the ROOT locale, so the digits and decimal separator do not depend on the default locale
+        private String format(final Event event) {
+            if (this == OVERTAKE) {
+                return String.format(Locale.ROOT, EVENT_OVERTAKE_FORMAT, event.carIndex, event.argument, event.phrase);
+            }
+            // convert the lap time into lapMinutes:lapSeconds.lapMillis
+            final long lapMinutes = event.lapTimeInMs / TimeUnit.MINUTES.toMillis(1);
+            final long lapSeconds = (event.lapTimeInMs - TimeUnit.MINUTES.toMillis(lapMinutes))
+                    / TimeUnit.SECONDS.toMillis(1);
+            final long lapMillis = event.lapTimeInMs - TimeUnit.MINUTES.toMillis(lapMinutes)
+                    - TimeUnit.SECONDS.toMillis(lapSeconds);
+            if (this == LAP_TIME) {
+                return String.format(Locale.ROOT, LAP_TIME_FORMAT, event.carIndex, event.argument, lapMinutes,
+                        lapSeconds, lapMillis, event.averageSpeed);
+            }
+            return String.format(Locale.ROOT, FASTEST_LAP_TIME_FORMAT, event.carIndex, lapMinutes, lapSeconds,
+                    lapMillis, event.averageSpeed);
+        }
+    }
 }
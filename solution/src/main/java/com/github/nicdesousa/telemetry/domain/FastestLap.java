@@ -0,0 +1,12 @@
+package com.github.nicdesousa.telemetry.domain;
+
+import lombok.Value;
+
+/**
+ * The fastest lap of a race, immutable so that the Car and its lap time are always read together.
+ */
+@Value
+public class FastestLap {
+    private int carIndex;
+    private long lapTimeInMs;
+}
@@ -0,0 +1,19 @@
+package com.github.nicdesousa.telemetry.domain;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * An immutable copy of a Car's lap history, replaced (rather than updated) every time the Car completes a lap, so
+ * <br/>
+ * that it can be read from any thread while the Car is being updated.
+ */
+@Value
+public class LapHistory {
+    private int carIndex;
+    // the number of laps completed, laps only holds the most recent laps (see CarStateStore)
+    private int lapCount;
+    // unmodifiable, the CarLap's are never modified once they are in a LapHistory
+    private List<CarLap> laps;
+}
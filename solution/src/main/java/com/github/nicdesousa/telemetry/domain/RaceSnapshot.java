@@ -0,0 +1,38 @@
+package com.github.nicdesousa.telemetry.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a race at a point in the carCoordinates stream, from which the TelemetryService can be restored.
+ */
+@Data
+@Builder
+public class RaceSnapshot {
+    @Builder.Default
+    private long fastestLapTimeInMs = Long.MAX_VALUE;
+    @Builder.Default
+    private int fastestLapCar = -1;
+    // the last Kafka offset per partition that is reflected in the snapshot
+    @Builder.Default
+    private Map<Integer, Long> offsets = new HashMap<>();
+    // the ordering key (e.g. Kafka partition) that each Car is pinned to
+    @Builder.Default
+    private Map<Integer, Integer> carOrderingKeys = new HashMap<>();
+    @Builder.Default
+    private List<Car> cars = new ArrayList<>();
+    // per Car reorder window: the timestamp of the last CarCoordinate released, and the CarCoordinates held
+    @Builder.Default
+    private Map<Integer, Long> releasedTimestamps = new HashMap<>();
+    @Builder.Default
+    private Map<Integer, List<CarCoordinate>> heldCarCoordinates = new HashMap<>();
+    // the identity of the Kafka topic (cluster id/topic) that the offsets refer to, null without offsets
+    private String topicIdentity;
+    // whether CarCoordinates of race sessions, which are not snapshotted, were consumed up to the offsets
+    private boolean sessionsConsumed;
+}
@@ -0,0 +1,38 @@
+package com.github.nicdesousa.telemetry.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * An immutable, versioned snapshot of the standings of a race, published by the standings worker and read by the
+ * <br/>
+ * query API without contending with the workers.
+ */
+@Value
+@Builder
+public class RaceStandings {
+    // incremented by every published snapshot
+    private long version;
+    // the race session, null for the default session
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String session;
+    // the latest CarCoordinate timestamp reflected in the snapshot
+    private long timestamp;
+    // unmodifiable, in order of position
+    private List<Standing> standings;
+    // null until the first lap is completed
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private FastestLap fastestLap;
+
+    @Value
+    public static class Standing {
+        private int position;
+        private int carIndex;
+        private double totalDistance;
+        private long lastUpdateTimestamp;
+        private int lapCount;
+    }
+}
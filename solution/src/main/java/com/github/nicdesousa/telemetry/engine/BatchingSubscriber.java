@@ -0,0 +1,158 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A Subscriber that collects items into batches of up to maxSize items, and hands a batch off to its handler when
+ * <br/>
+ * it is full or when its first item has waited for the linger time, whichever comes first.
+ * <br/>
+ * At most maxSize items are requested at a time, and more are only requested once a batch has been handed off, so
+ * <br/>
+ * a slow handler backs off the publisher instead of the items piling up. The handler is never invoked concurrently,
+ * <br/>
+ * either on the publisher's thread (full batches) or on the linger timer thread.
+ *
+ * @param <T> the type of item received
+ */
+@Slf4j
+public final class BatchingSubscriber<T> implements Subscriber<T> {
+
+    private final int maxSize;
+    private final long lingerInMs;
+    private final Consumer<List<T>> handler;
+    private final ScheduledExecutorService timer;
+    // guards the batch, and serializes the handler between the publisher's thread and the timer thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<T> batch;
+    private ScheduledFuture<?> lingerFlush;
+    private volatile Subscription subscription;
+
+    /**
+     * @param name       of the linger timer thread
+     * @param maxSize    the maximum number of items per batch
+     * @param lingerInMs how long the first item of a batch waits for the batch to fill up
+     * @param handler    invoked with every batch, which it may keep
+     */
+    public BatchingSubscriber(final String name, final int maxSize, final long lingerInMs,
+                              final Consumer<List<T>> handler) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        if (lingerInMs < 1L) {
+            throw new IllegalArgumentException("lingerInMs must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.lingerInMs = lingerInMs;
+        this.handler = handler;
+        this.batch = new ArrayList<>(maxSize);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onSubscribe(final Subscription subscription) {
+        if (this.subscription != null) {
+            // §2.5 only one active subscription
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(this.maxSize);
+    }
+
+    @Override
+    public void onNext(final T item) {
+        this.lock.lock();
+        try {
+            this.batch.add(item);
+            if (this.batch.size() >= this.maxSize) {
+                this.flush();
+            } else if (this.lingerFlush == null) {
+                this.lingerFlush = this.timer.schedule(this::lingerFlush, this.lingerInMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        log.error("BatchingSubscriber received an error, handing off the last batch", throwable);
+        this.close();
+    }
+
+    @Override
+    public void onComplete() {
+        this.close();
+    }
+
+    /**
+     * Cancel the subscription, hand off the items that have been received, and stop the linger timer.
+     */
+    public void cancel() {
+        final Subscription subscription = this.subscription;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        this.close();
+    }
+
+    private void close() {
+        this.lock.lock();
+        try {
+            if (!this.batch.isEmpty()) {
+                this.flush();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.timer.shutdown();
+    }
+
+    private void lingerFlush() {
+        this.lock.lock();
+        try {
+            // the batch may have filled up (and been handed off) while this flush was waiting for the lock
+            if (this.lingerFlush != null && !this.batch.isEmpty()) {
+                this.flush();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // must be called while holding the lock
+    private void flush() {
+        if (this.lingerFlush != null) {
+            this.lingerFlush.cancel(false);
+            this.lingerFlush = null;
+        }
+        final List<T> items = this.batch;
+        this.batch = new ArrayList<>(this.maxSize);
+        try {
+            this.handler.accept(items);
+        } catch (final RuntimeException e) {
+            log.error(String.format("Failed to handle a batch of %d items", items.size()), e);
+        }
+        final Subscription subscription = this.subscription;
+        if (subscription != null) {
+            // replenish the demand for the items that were handed off
+            subscription.request(items.size());
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A single-subscriber Publisher with a bounded buffer, that any number of producer threads can {@link #offer} to.
+ * <br/>
+ * When the buffer is full (i.e. the subscriber is not requesting fast enough) the {@link OverflowPolicy} decides <br/>
+ * whether the oldest item is dropped or the producer is blocked, and items are only mapped to their outgoing form <br/>
+ * when they are emitted, so dropped and conflated items are never mapped.
+ *
+ * @param <T> the type of item offered
+ * @param <R> the type of item emitted
+ */
+@Slf4j
+public final class BoundedPublisher<T, R> implements Publisher<R> {
+
+    /**
+     * What to do when an item is offered to a full buffer.
+     */
+    public enum OverflowPolicy {
+        // drop the oldest buffered item
+        DROP_OLDEST,
+        // always replace a buffered item with the same key (keeping its place), otherwise drop the oldest buffered item
+        CONFLATE,
+        // block the producer until the subscriber has taken an item
+        BLOCK
+    }
+
+    /**
+     * @param policy    the name of an OverflowPolicy
+     * @param eventLoop true if the items are offered on Vert.x event loops (the EVENT_LOOP executor mode of the
+     *                  TelemetryService workers), which must never block
+     * @return the OverflowPolicy, DROP_OLDEST instead of BLOCK when the items are offered on event loops
+     */
+    public static OverflowPolicy overflowPolicy(final String policy, final boolean eventLoop) {
+        final OverflowPolicy overflowPolicy = OverflowPolicy.valueOf(policy.trim().toUpperCase(Locale.ROOT));
+        if (overflowPolicy == OverflowPolicy.BLOCK && eventLoop) {
+            log.warn("The BLOCK overflow policy would block the event loops of the EVENT_LOOP executor mode, "
+                    + "using DROP_OLDEST instead");
+            return OverflowPolicy.DROP_OLDEST;
+        }
+        return overflowPolicy;
+    }
+
+    /**
+     * The key of items that are never conflated.
+     */
+    public static final long NO_KEY = Long.MIN_VALUE;
+
+    private static final long BLOCK_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Function<T, R> mapper;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = this.lock.newCondition();
+    // buffered items in FIFO order, and (when conflating) the buffered item for each key
+    private final ArrayDeque<Entry<T>> buffer = new ArrayDeque<>();
+    private final Map<Long, Entry<T>> buffered = new HashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private volatile int depth = 0;
+    // reactive streams subscription state
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private volatile Subscriber<? super R> subscriber;
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+    private boolean completed = false;
+
+    /**
+     * @param capacity the maximum number of buffered items
+     * @param policy   what to do when an item is offered to a full buffer
+     * @param mapper   maps an item to its outgoing form when it is emitted
+     */
+    public BoundedPublisher(final int capacity, final OverflowPolicy policy, final Function<T, R> mapper) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Offer an item to the subscriber, applying the OverflowPolicy when the buffer is full.
+     *
+     * @param key  the conflation key of the item, or {@link #NO_KEY}
+     * @param item to be emitted
+     * @return false if the publisher has been closed (and the item was not buffered)
+     */
+    public boolean offer(final long key, final T item) {
+        final boolean conflate = this.policy == OverflowPolicy.CONFLATE && key != NO_KEY;
+        this.lock.lock();
+        try {
+            if (this.done) {
+                return false;
+            }
+            if (conflate) {
+                final Entry<T> entry = this.buffered.get(key);
+                if (entry != null) {
+                    entry.item = item;
+                    this.conflated.incrementAndGet();
+                    return true;
+                }
+            }
+            while (this.buffer.size() >= this.capacity) {
+                if (this.policy == OverflowPolicy.BLOCK) {
+                    this.notFull.awaitNanos(BLOCK_WAIT_NANOS);
+                    if (this.done) {
+                        return false;
+                    }
+                } else {
+                    this.removed(this.buffer.poll());
+                    this.dropped.incrementAndGet();
+                }
+            }
+            final Entry<T> entry = new Entry<>(key, item);
+            this.buffer.offer(entry);
+            if (conflate) {
+                this.buffered.put(key, entry);
+            }
+            this.depth = this.buffer.size();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            this.lock.unlock();
+        }
+        this.drain();
+        return true;
+    }
+
+    /**
+     * @return the number of buffered items
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+    /**
+     * @return the maximum number of buffered items
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the number of items dropped because the buffer was full
+     */
+    public long dropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return the number of items replaced by a newer item with the same key
+     */
+    public long conflated() {
+        return this.conflated.get();
+    }
+
+    /**
+     * Stop accepting items, and complete the subscriber once the buffered items have been emitted.
+     */
+    public void close() {
+        this.lock.lock();
+        try {
+            this.done = true;
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        this.drain();
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super R> subscriber) {
+        if (!this.subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(final long n) {
+                    // the subscription has been rejected
+                }
+
+                @Override
+                public void cancel() {
+                    // the subscription has been rejected
+                }
+            });
+            subscriber.onError(new IllegalStateException("BoundedPublisher only supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(final long n) {
+                if (n <= 0L) {
+                    this.cancel();
+                    subscriber.onError(new IllegalArgumentException("§3.9 request must be greater than 0"));
+                    return;
+                }
+                long current;
+                do {
+                    current = BoundedPublisher.this.requested.get();
+                } while (!BoundedPublisher.this.requested.compareAndSet(current,
+                        current + n < 0L ? Long.MAX_VALUE : current + n));
+                BoundedPublisher.this.drain();
+            }
+
+            @Override
+            public void cancel() {
+                BoundedPublisher.this.cancelled = true;
+                BoundedPublisher.this.close();
+            }
+        });
+        this.subscriber = subscriber;
+        this.drain();
+    }
+
+    // emit buffered items while there is demand, only one thread at a time emits
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            final Subscriber<? super R> s = this.subscriber;
+            if (s != null && !this.completed) {
+                final long r = this.requested.get();
+                long emitted = 0L;
+                while (emitted != r && !this.cancelled) {
+                    final T item = this.poll();
+                    if (item == null) {
+                        break;
+                    }
+                    final R mapped;
+                    try {
+                        mapped = this.mapper.apply(item);
+                    } catch (final RuntimeException e) {
+                        log.error(String.format("Failed to map %s", item), e);
+                        this.dropped.incrementAndGet();
+                        continue;
+                    }
+                    s.onNext(mapped);
+                    emitted++;
+                }
+                if (emitted != 0L && r != Long.MAX_VALUE) {
+                    this.requested.addAndGet(-emitted);
+                }
+                if (this.cancelled) {
+                    this.clear();
+                } else if (this.done && this.depth == 0) {
+                    this.completed = true;
+                    s.onComplete();
+                }
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private T poll() {
+        this.lock.lock();
+        try {
+            final Entry<T> entry = this.buffer.poll();
+            if (entry == null) {
+                return null;
+            }
+            this.removed(entry);
+            this.depth = this.buffer.size();
+            this.notFull.signal();
+            return entry.item;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void clear() {
+        this.lock.lock();
+        try {
+            this.buffer.clear();
+            this.buffered.clear();
+            this.depth = 0;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void removed(final Entry<T> entry) {
+        if (this.policy == OverflowPolicy.CONFLATE && entry.key != NO_KEY) {
+            this.buffered.remove(entry.key);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final long key;
+        private T item;
+
+        private Entry(final long key, final T item) {
+            this.key = key;
+            this.item = item;
+        }
+    }
+}
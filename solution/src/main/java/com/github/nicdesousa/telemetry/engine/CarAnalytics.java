@@ -0,0 +1,272 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rolling per-Car analytics over the speed samples of each Car, in dense primitive arrays indexed by carIndex like
+ * <br/>
+ * the {@link CarStateStore}: an exponentially weighted moving average speed, the distance and time of the last
+ * <br/>
+ * windowSamples samples (for a windowed average speed) in a fixed-size ring per Car, the top speed of the current
+ * <br/>
+ * lap and the times of the sectors between the configured splits of a lap. Every update is O(1) and allocates
+ * <br/>
+ * nothing, the arrays are allocated in chunks of {@value #CHUNK_SIZE} Cars when the first Car of a chunk is updated.
+ * <br/>
+ * A Car must only be updated by one thread at a time (the shard worker that owns it).
+ */
+public final class CarAnalytics {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // the arrays of a chunk: 3 doubles, 2 longs and 3 ints per Car, 10 array headers, plus the sample rings
+    private static final long CHUNK_BYTES = CHUNK_SIZE * (3L * 8L + 2L * 8L + 3L * 4L) + 10L * 16L + 56L;
+    private static final long WINDOW_SAMPLE_BYTES = 8L + 8L;
+    // the sector of a Car that is not known yet (e.g. on an out lap), until it starts a lap
+    private static final int UNKNOWN_SECTOR = -1;
+
+    private final int windowSamples;
+    private final double ewmaTimeConstantInMs;
+    private final double[] sectorSplits;
+    // chunks are created under the chunks lock and never replaced, a Chunk's final fields publish its arrays safely
+    private final Chunk[] chunks;
+    private final AtomicInteger allocatedChunks = new AtomicInteger();
+
+    /**
+     * @param maxCars              carIndexes must be within 0 and maxCars - 1
+     * @param windowSamples        the number of samples in the windowed average speed
+     * @param ewmaTimeConstantInMs the time constant of the moving average speed, a sample this much newer than the
+     *                             previous sample moves the average 63% of the way to its speed
+     * @param sectorSplits         the ends of every sector but the last, as ascending fractions of a lap, see
+     *                             {@link #sectorSplits(String)}
+     */
+    public CarAnalytics(final int maxCars, final int windowSamples, final long ewmaTimeConstantInMs,
+                        final double[] sectorSplits) {
+        if (maxCars < 1) {
+            throw new IllegalArgumentException("maxCars must be greater than 0");
+        }
+        if (windowSamples < 1) {
+            throw new IllegalArgumentException("windowSamples must be greater than 0");
+        }
+        if (ewmaTimeConstantInMs < 1L) {
+            throw new IllegalArgumentException("ewmaTimeConstantInMs must be greater than 0");
+        }
+        this.windowSamples = windowSamples;
+        this.ewmaTimeConstantInMs = ewmaTimeConstantInMs;
+        this.sectorSplits = sectorSplits.clone();
+        this.chunks = new Chunk[(maxCars + CHUNK_MASK) >>> CHUNK_BITS];
+    }
+
+    /**
+     * Parse sector splits, e.g. 0.33,0.66 for 3 sectors that end a third, two thirds and all of the way round a lap.
+     *
+     * @param sectorSplits ascending fractions of a lap, greater than 0 and less than 1, or none for a single sector
+     * @return the sector splits
+     */
+    public static double[] sectorSplits(final String sectorSplits) {
+        if (sectorSplits == null || sectorSplits.trim().isEmpty() || "none".equalsIgnoreCase(sectorSplits.trim())) {
+            return new double[0];
+        }
+        final String[] values = sectorSplits.split(",");
+        final double[] splits = new double[values.length];
+        for (int s = 0; s < values.length; s++) {
+            splits[s] = Double.parseDouble(values[s].trim());
+            if (!(splits[s] > 0D && splits[s] < 1D) || (s > 0 && splits[s] <= splits[s - 1])) {
+                throw new IllegalArgumentException(String.format(
+                        "Sector splits must be ascending fractions of a lap between 0 and 1: %s", sectorSplits));
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * @return the number of sectors in a lap
+     */
+    public int sectors() {
+        return this.sectorSplits.length + 1;
+    }
+
+    /**
+     * Add a speed sample of a Car.
+     *
+     * @param carIndex    of the Car, within 0 and maxCars - 1
+     * @param distance    travelled since the Car's previous sample, in kilometres
+     * @param elapsedInMs since the Car's previous sample, greater than 0
+     * @param speedMPH    of the sample
+     * @return true if the sample raised the top speed of the Car's current lap
+     */
+    public boolean addSample(final int carIndex, final double distance, final long elapsedInMs,
+                             final double speedMPH) {
+        final Chunk chunk = this.chunkFor(carIndex);
+        final int i = carIndex & CHUNK_MASK;
+        final int size = chunk.windowSize[i];
+        // the moving average, weighted by the time since the previous sample, so irregular samples are not skewed
+        if (size == 0) {
+            chunk.smoothedSpeed[i] = speedMPH;
+        } else {
+            final double alpha = 1D - Math.exp(-elapsedInMs / this.ewmaTimeConstantInMs);
+            chunk.smoothedSpeed[i] += alpha * (speedMPH - chunk.smoothedSpeed[i]);
+        }
+
+        // replace the oldest sample of the window once it is full
+        final int position = chunk.windowPosition[i];
+        final int slot = i * this.windowSamples + position;
+        if (size == this.windowSamples) {
+            chunk.windowDistance[i] -= chunk.sampleDistance[slot];
+            chunk.windowTime[i] -= chunk.sampleTime[slot];
+        } else {
+            chunk.windowSize[i] = size + 1;
+        }
+        chunk.sampleDistance[slot] = distance;
+        chunk.sampleTime[slot] = elapsedInMs;
+        chunk.windowDistance[i] += distance;
+        chunk.windowTime[i] += elapsedInMs;
+        if (position + 1 == this.windowSamples) {
+            chunk.windowPosition[i] = 0;
+            // re-sum the window once per wrap, so the running sum cannot drift, O(1) amortized
+            double windowDistance = 0D;
+            for (int s = i * this.windowSamples; s < (i + 1) * this.windowSamples; s++) {
+                windowDistance += chunk.sampleDistance[s];
+            }
+            chunk.windowDistance[i] = windowDistance;
+        } else {
+            chunk.windowPosition[i] = position + 1;
+        }
+
+        // the top speed of the smoothed speed, so a single jittery sample does not set it
+        if (chunk.smoothedSpeed[i] > chunk.topSpeed[i]) {
+            chunk.topSpeed[i] = chunk.smoothedSpeed[i];
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param carIndex of a Car with at least one sample
+     * @return the Car's exponentially weighted moving average speed in MPH
+     */
+    public double smoothedSpeed(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].smoothedSpeed[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * @param carIndex of a Car with at least one sample
+     * @return the distance travelled in the Car's sample window, in kilometres
+     */
+    public double windowDistance(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].windowDistance[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * @param carIndex of a Car with at least one sample
+     * @return the time covered by the Car's sample window, in milliseconds
+     */
+    public long windowTime(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].windowTime[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * @param carIndex of a Car with at least one sample
+     * @return the top (smoothed) speed of the Car's current lap in MPH
+     */
+    public double topSpeed(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].topSpeed[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * Start a Car's lap, and its first sector, and reset its top speed.
+     *
+     * @param carIndex  of the Car, within 0 and maxCars - 1
+     * @param startTime of the lap
+     */
+    public void startLap(final int carIndex, final long startTime) {
+        final Chunk chunk = this.chunkFor(carIndex);
+        final int i = carIndex & CHUNK_MASK;
+        chunk.sector[i] = 0;
+        chunk.sectorStartTime[i] = startTime;
+        chunk.topSpeed[i] = 0D;
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @return the Car's current sector, from 0, or -1 if the Car has not started a lap
+     */
+    public int sector(final int carIndex) {
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        return chunk == null ? UNKNOWN_SECTOR : chunk.sector[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @return the fraction of a lap at which the Car's current sector ends, or positive infinity if it ends at the
+     * <br/>
+     * end of the lap (or the Car has not started a lap)
+     */
+    public double nextSplit(final int carIndex) {
+        final int sector = this.sector(carIndex);
+        return sector < 0 || sector >= this.sectorSplits.length ? Double.POSITIVE_INFINITY : this.sectorSplits[sector];
+    }
+
+    /**
+     * Complete a Car's current sector, and start its next sector.
+     *
+     * @param carIndex of a Car that has started a lap
+     * @param endTime  of the sector
+     * @return the sector time in milliseconds
+     */
+    public long completeSector(final int carIndex, final long endTime) {
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        final int i = carIndex & CHUNK_MASK;
+        final long sectorTime = endTime - chunk.sectorStartTime[i];
+        chunk.sector[i]++;
+        chunk.sectorStartTime[i] = endTime;
+        return sectorTime;
+    }
+
+    /**
+     * Calculate the heap retained by the analytics from the sizes of their arrays.
+     *
+     * @return the retained heap in bytes
+     */
+    public long estimatedBytes() {
+        return this.allocatedChunks.get() * (CHUNK_BYTES + CHUNK_SIZE * this.windowSamples * WINDOW_SAMPLE_BYTES);
+    }
+
+    private Chunk chunkFor(final int carIndex) {
+        final int c = carIndex >>> CHUNK_BITS;
+        Chunk chunk = this.chunks[c];
+        if (chunk == null) {
+            synchronized (this.chunks) {
+                chunk = this.chunks[c];
+                if (chunk == null) {
+                    chunk = new Chunk(this.windowSamples);
+                    this.chunks[c] = chunk;
+                    this.allocatedChunks.incrementAndGet();
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private static final class Chunk {
+        private final double[] smoothedSpeed = new double[CHUNK_SIZE];
+        // per Car rings of the distance and time of the last windowSamples samples, and their running sums
+        private final double[] sampleDistance;
+        private final long[] sampleTime;
+        private final int[] windowSize = new int[CHUNK_SIZE];
+        private final int[] windowPosition = new int[CHUNK_SIZE];
+        private final double[] windowDistance = new double[CHUNK_SIZE];
+        private final long[] windowTime = new long[CHUNK_SIZE];
+        private final double[] topSpeed = new double[CHUNK_SIZE];
+        private final int[] sector = new int[CHUNK_SIZE];
+        private final long[] sectorStartTime = new long[CHUNK_SIZE];
+
+        private Chunk(final int windowSamples) {
+            this.sampleDistance = new double[CHUNK_SIZE * windowSamples];
+            this.sampleTime = new long[CHUNK_SIZE * windowSamples];
+            Arrays.fill(this.sector, UNKNOWN_SECTOR);
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import com.github.nicdesousa.telemetry.domain.CarLap;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.util.Haversine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The state of every Car in dense primitive arrays indexed by carIndex (a struct of arrays), instead of a Car object
+ * <br/>
+ * per Car with a Location, GeoPoints and a list of CarLap objects, so updating a Car allocates nothing and a Car
+ * <br/>
+ * has a fixed footprint. The arrays are allocated in chunks of {@value #CHUNK_SIZE} Cars when the first Car of a
+ * <br/>
+ * chunk is added, so the store only grows with the carIndexes in use, and the most recent laps of each Car are kept
+ * <br/>
+ * in a primitive ring buffer that grows (by doubling) up to lapHistory laps.
+ * <br/>
+ * A Car must only be written by one thread at a time (the shard worker that owns it), while its total distance and
+ * <br/>
+ * last update timestamp can be read by any thread (e.g. the standings worker).
+ */
+public final class CarStateStore {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_LAPS = 4;
+    // the arrays of a chunk: 8 doubles, 3 longs, 3 ints, a boolean and 3 references per Car, and 18 array headers
+    private static final long CHUNK_BYTES = CHUNK_SIZE * (8L * 8L + 3L * 8L + 3L * 4L + 1L + 3L * 4L) + 18L * 16L + 96L;
+    // a lap ring of n laps: a long[] of start and end times and a double[] of distances and average speeds
+    private static final long LAP_BYTES = 2L * 8L + 2L * 8L;
+    private static final long LAP_RING_BYTES = 2L * 16L;
+
+    private final int maxCars;
+    private final int lapHistory;
+    // chunks are created under the chunks lock and never replaced, a Chunk's final fields publish its arrays safely
+    private final Chunk[] chunks;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger allocatedChunks = new AtomicInteger();
+    private final LongAdder lapRingBytes = new LongAdder();
+
+    /**
+     * @param maxCars    carIndexes must be within 0 and maxCars - 1
+     * @param lapHistory the maximum number of laps kept per Car, older laps are overwritten by newer laps
+     */
+    public CarStateStore(final int maxCars, final int lapHistory) {
+        if (maxCars < 1) {
+            throw new IllegalArgumentException("maxCars must be greater than 0");
+        }
+        if (lapHistory < 1) {
+            throw new IllegalArgumentException("lapHistory must be greater than 0");
+        }
+        this.maxCars = maxCars;
+        this.lapHistory = lapHistory;
+        this.chunks = new Chunk[(maxCars + CHUNK_MASK) >>> CHUNK_BITS];
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @return true if the carIndex is within 0 and maxCars - 1
+     */
+    public boolean accepts(final int carIndex) {
+        return carIndex >= 0 && carIndex < this.maxCars;
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @return true if the Car has been added
+     */
+    public boolean contains(final int carIndex) {
+        if (!this.accepts(carIndex)) {
+            return false;
+        }
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        return chunk != null && chunk.present[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * Add a Car at its first coordinate, which is also the start of its first lap.
+     *
+     * @param carIndex  of the Car, see {@link #accepts(int)}
+     * @param latitude  within -90D and +90D
+     * @param longitude within -180D and +180D
+     * @param timestamp of the coordinate
+     */
+    public void add(final int carIndex, final double latitude, final double longitude, final long timestamp) {
+        final Chunk chunk = this.chunkFor(carIndex);
+        final int i = carIndex & CHUNK_MASK;
+        if (chunk.present[i]) {
+            throw new IllegalStateException(String.format("Car %d has already been added", carIndex));
+        }
+        this.setLocation(chunk, i, latitude, longitude, Math.toRadians(latitude), Math.toRadians(longitude));
+        chunk.lastUpdateTimestamp.lazySet(i, timestamp);
+        chunk.lapStartTime[i] = timestamp;
+        chunk.trackSegment[i] = -1;
+        chunk.trackLine[i] = -1;
+        chunk.present[i] = true;
+        this.size.incrementAndGet();
+    }
+
+    /**
+     * Move a Car to its next coordinate.
+     *
+     * @param carIndex               of the Car
+     * @param latitude               within -90D and +90D
+     * @param longitude              within -180D and +180D
+     * @param flatEarthThresholdInKM see {@link Haversine#distance(double, double, double, double, double, double, double)}
+     * @return the distance (in kilometres) from the Car's previous coordinate
+     */
+    public double moveTo(final int carIndex, final double latitude, final double longitude,
+                         final double flatEarthThresholdInKM) {
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        final int i = carIndex & CHUNK_MASK;
+        final double latitudeInRadians = Math.toRadians(latitude);
+        final double longitudeInRadians = Math.toRadians(longitude);
+        final double cosLatitude = Math.cos(latitudeInRadians);
+        final double distance = Haversine.distance(chunk.latitudeInRadians[i], chunk.longitudeInRadians[i],
+                chunk.cosLatitude[i], latitudeInRadians, longitudeInRadians, cosLatitude, flatEarthThresholdInKM);
+        chunk.latitude[i] = latitude;
+        chunk.longitude[i] = longitude;
+        chunk.latitudeInRadians[i] = latitudeInRadians;
+        chunk.longitudeInRadians[i] = longitudeInRadians;
+        chunk.cosLatitude[i] = cosLatitude;
+        return distance;
+    }
+
+    public double latitude(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].latitude[carIndex & CHUNK_MASK];
+    }
+
+    public double longitude(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].longitude[carIndex & CHUNK_MASK];
+    }
+
+    public double latitudeInRadians(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].latitudeInRadians[carIndex & CHUNK_MASK];
+    }
+
+    public double longitudeInRadians(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].longitudeInRadians[carIndex & CHUNK_MASK];
+    }
+
+    public double totalDistance(final int carIndex) {
+        return Double.longBitsToDouble(this.chunks[carIndex >>> CHUNK_BITS].totalDistance.get(carIndex & CHUNK_MASK));
+    }
+
+    /**
+     * @param carIndex of the Car
+     * @param distance to add to the Car's total distance, in kilometres
+     */
+    public void addDistance(final int carIndex, final double distance) {
+        final AtomicLongArray totalDistance = this.chunks[carIndex >>> CHUNK_BITS].totalDistance;
+        final int i = carIndex & CHUNK_MASK;
+        // the single writer can read and then write
+        totalDistance.lazySet(i, Double.doubleToRawLongBits(Double.longBitsToDouble(totalDistance.get(i)) + distance));
+    }
+
+    public long lastUpdateTimestamp(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].lastUpdateTimestamp.get(carIndex & CHUNK_MASK);
+    }
+
+    public void setLastUpdateTimestamp(final int carIndex, final long timestamp) {
+        this.chunks[carIndex >>> CHUNK_BITS].lastUpdateTimestamp.lazySet(carIndex & CHUNK_MASK, timestamp);
+    }
+
+    public double speedMPH(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].speedMPH[carIndex & CHUNK_MASK];
+    }
+
+    public void setSpeedMPH(final int carIndex, final double speedMPH) {
+        this.chunks[carIndex >>> CHUNK_BITS].speedMPH[carIndex & CHUNK_MASK] = speedMPH;
+    }
+
+    public long lapStartTime(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].lapStartTime[carIndex & CHUNK_MASK];
+    }
+
+    public void setLapStartTime(final int carIndex, final long lapStartTime) {
+        this.chunks[carIndex >>> CHUNK_BITS].lapStartTime[carIndex & CHUNK_MASK] = lapStartTime;
+    }
+
+    public int trackSegment(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].trackSegment[carIndex & CHUNK_MASK];
+    }
+
+    public void setTrackSegment(final int carIndex, final int trackSegment) {
+        this.chunks[carIndex >>> CHUNK_BITS].trackSegment[carIndex & CHUNK_MASK] = trackSegment;
+    }
+
+    public double trackProgress(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].trackProgress[carIndex & CHUNK_MASK];
+    }
+
+    public void setTrackProgress(final int carIndex, final double trackProgress) {
+        this.chunks[carIndex >>> CHUNK_BITS].trackProgress[carIndex & CHUNK_MASK] = trackProgress;
+    }
+
+    public double trackDeficit(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].trackDeficit[carIndex & CHUNK_MASK];
+    }
+
+    public void setTrackDeficit(final int carIndex, final double trackDeficit) {
+        this.chunks[carIndex >>> CHUNK_BITS].trackDeficit[carIndex & CHUNK_MASK] = trackDeficit;
+    }
+
+    public int trackLine(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].trackLine[carIndex & CHUNK_MASK];
+    }
+
+    public void setTrackLine(final int carIndex, final int trackLine) {
+        this.chunks[carIndex >>> CHUNK_BITS].trackLine[carIndex & CHUNK_MASK] = trackLine;
+    }
+
+    /**
+     * @param carIndex of the Car
+     * @return the number of laps the Car has completed, including the laps that are no longer kept
+     */
+    public int lapCount(final int carIndex) {
+        return this.chunks[carIndex >>> CHUNK_BITS].lapCount[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * Add a completed lap to a Car's lap ring, overwriting its oldest lap once lapHistory laps are kept.
+     *
+     * @param carIndex     of the Car
+     * @param startTime    of the lap
+     * @param endTime      of the lap
+     * @param distance     of the lap in kilometres
+     * @param averageSpeed of the lap in MPH
+     * @return the lap number, i.e. the number of laps the Car has completed
+     */
+    public int addLap(final int carIndex, final long startTime, final long endTime, final double distance,
+                      final double averageSpeed) {
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        final int i = carIndex & CHUNK_MASK;
+        final int count = chunk.lapCount[i];
+        int capacity = chunk.lapTimes[i] == null ? 0 : chunk.lapTimes[i].length / 2;
+        if (count >= capacity && capacity < this.lapHistory) {
+            capacity = this.growLaps(chunk, i, count, capacity);
+        }
+        final int slot = count % capacity;
+        chunk.lapTimes[i][slot * 2] = startTime;
+        chunk.lapTimes[i][slot * 2 + 1] = endTime;
+        chunk.lapValues[i][slot * 2] = distance;
+        chunk.lapValues[i][slot * 2 + 1] = averageSpeed;
+        chunk.lapCount[i] = count + 1;
+        return count + 1;
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @return the Car's reorder window, or null if it has none
+     */
+    public ReorderBuffer reorderBuffer(final int carIndex) {
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        return chunk == null ? null : chunk.reorderBuffers[carIndex & CHUNK_MASK];
+    }
+
+    /**
+     * Attach a reorder window to a Car, which may not have been added yet (while its first coordinate is held).
+     *
+     * @param carIndex      of the Car, see {@link #accepts(int)}
+     * @param reorderBuffer the Car's reorder window
+     */
+    public void setReorderBuffer(final int carIndex, final ReorderBuffer reorderBuffer) {
+        this.chunkFor(carIndex).reorderBuffers[carIndex & CHUNK_MASK] = reorderBuffer;
+    }
+
+    /**
+     * @return the number of Cars that have been added
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * @param action invoked with the carIndex of every Car, in carIndex order
+     */
+    public void forEachCar(final IntConsumer action) {
+        for (int c = 0; c < this.chunks.length; c++) {
+            final Chunk chunk = this.chunks[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                if (chunk.present[i]) {
+                    action.accept((c << CHUNK_BITS) | i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param action invoked with every reorder window and the carIndex of its Car, in carIndex order
+     */
+    public void forEachReorderBuffer(final ObjIntConsumer<ReorderBuffer> action) {
+        for (int c = 0; c < this.chunks.length; c++) {
+            final Chunk chunk = this.chunks[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                if (chunk.reorderBuffers[i] != null) {
+                    action.accept(chunk.reorderBuffers[i], (c << CHUNK_BITS) | i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy a Car's state into a new Car, e.g. for a snapshot, only while the Car is not being written.
+     *
+     * @param carIndex of the Car
+     * @return the Car, or null if it has not been added
+     */
+    public Car toCar(final int carIndex) {
+        if (!this.contains(carIndex)) {
+            return null;
+        }
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        final int i = carIndex & CHUNK_MASK;
+        final Location location = new Location();
+        location.setLatitude(chunk.latitude[i]);
+        location.setLongitude(chunk.longitude[i]);
+        final int count = chunk.lapCount[i];
+        final int capacity = chunk.lapTimes[i] == null ? 0 : chunk.lapTimes[i].length / 2;
+        final List<CarLap> laps = new ArrayList<>(Math.min(count, capacity));
+        for (int lap = Math.max(0, count - capacity); lap < count; lap++) {
+            final int slot = lap % capacity;
+            final CarLap carLap = new CarLap();
+            carLap.setStartTime(chunk.lapTimes[i][slot * 2]);
+            carLap.setEndTime(chunk.lapTimes[i][slot * 2 + 1]);
+            carLap.setDistance(chunk.lapValues[i][slot * 2]);
+            carLap.setAverageSpeed(chunk.lapValues[i][slot * 2 + 1]);
+            laps.add(carLap);
+        }
+        return Car.builder().carIndex(carIndex).curLocation(location).totalDistance(this.totalDistance(carIndex))
+                .lastUpdateTimestamp(this.lastUpdateTimestamp(carIndex)).curSpeedMPH(chunk.speedMPH[i])
+                .lapStartTime(chunk.lapStartTime[i]).laps(laps).lapCount(count).trackSegment(chunk.trackSegment[i])
+                .trackProgress(chunk.trackProgress[i]).trackDeficit(chunk.trackDeficit[i]).trackLine(chunk.trackLine[i])
+                .build();
+    }
+
+    /**
+     * Add a Car from its state, e.g. from a snapshot, before the Car is written by any other thread.
+     *
+     * @param car the Car's state
+     */
+    public void put(final Car car) {
+        final int carIndex = car.getCarIndex();
+        this.add(carIndex, car.getCurLocation().getLatitude(), car.getCurLocation().getLongitude(),
+                car.getLastUpdateTimestamp());
+        final Chunk chunk = this.chunks[carIndex >>> CHUNK_BITS];
+        final int i = carIndex & CHUNK_MASK;
+        chunk.totalDistance.lazySet(i, Double.doubleToRawLongBits(car.getTotalDistance()));
+        chunk.speedMPH[i] = car.getCurSpeedMPH();
+        chunk.lapStartTime[i] = car.getLapStartTime();
+        chunk.trackSegment[i] = car.getTrackSegment();
+        chunk.trackProgress[i] = car.getTrackProgress();
+        chunk.trackDeficit[i] = car.getTrackDeficit();
+        chunk.trackLine[i] = car.getTrackLine();
+        // the laps that are no longer kept still count
+        chunk.lapCount[i] = Math.max(0, car.getLapCount() - car.getLaps().size());
+        for (final CarLap carLap : car.getLaps()) {
+            this.addLap(carIndex, carLap.getStartTime(), carLap.getEndTime(), carLap.getDistance(),
+                    carLap.getAverageSpeed());
+        }
+    }
+
+    /**
+     * Calculate the heap retained by the store from the sizes of its arrays.
+     *
+     * @return the retained heap in bytes, not including the reorder windows
+     */
+    public long estimatedBytes() {
+        return this.allocatedChunks.get() * CHUNK_BYTES + this.lapRingBytes.sum();
+    }
+
+    private Chunk chunkFor(final int carIndex) {
+        if (!this.accepts(carIndex)) {
+            throw new IndexOutOfBoundsException(String.format("carIndex %d is not within 0 and %d", carIndex,
+                    this.maxCars - 1));
+        }
+        final int c = carIndex >>> CHUNK_BITS;
+        Chunk chunk = this.chunks[c];
+        if (chunk == null) {
+            synchronized (this.chunks) {
+                chunk = this.chunks[c];
+                if (chunk == null) {
+                    chunk = new Chunk();
+                    this.chunks[c] = chunk;
+                    this.allocatedChunks.incrementAndGet();
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private void setLocation(final Chunk chunk, final int i, final double latitude, final double longitude,
+                             final double latitudeInRadians, final double longitudeInRadians) {
+        chunk.latitude[i] = latitude;
+        chunk.longitude[i] = longitude;
+        chunk.latitudeInRadians[i] = latitudeInRadians;
+        chunk.longitudeInRadians[i] = longitudeInRadians;
+        chunk.cosLatitude[i] = Math.cos(latitudeInRadians);
+    }
+
+    // double a Car's lap ring (up to lapHistory laps), keeping lap n in slot n % capacity
+    private int growLaps(final Chunk chunk, final int i, final int count, final int capacity) {
+        final int grown = Math.min(this.lapHistory, capacity == 0 ? INITIAL_LAPS : capacity * 2);
+        final long[] lapTimes = new long[grown * 2];
+        final double[] lapValues = new double[grown * 2];
+        for (int lap = Math.max(0, count - capacity); lap < count; lap++) {
+            final int from = (lap % capacity) * 2;
+            final int to = (lap % grown) * 2;
+            lapTimes[to] = chunk.lapTimes[i][from];
+            lapTimes[to + 1] = chunk.lapTimes[i][from + 1];
+            lapValues[to] = chunk.lapValues[i][from];
+            lapValues[to + 1] = chunk.lapValues[i][from + 1];
+        }
+        chunk.lapTimes[i] = lapTimes;
+        chunk.lapValues[i] = lapValues;
+        this.lapRingBytes.add((grown - capacity) * LAP_BYTES + (capacity == 0 ? LAP_RING_BYTES : 0L));
+        return grown;
+    }
+
+    private static final class Chunk {
+        private final boolean[] present = new boolean[CHUNK_SIZE];
+        private final double[] latitude = new double[CHUNK_SIZE];
+        private final double[] longitude = new double[CHUNK_SIZE];
+        // cached haversine values of the current coordinate, see GeoPoint
+        private final double[] latitudeInRadians = new double[CHUNK_SIZE];
+        private final double[] longitudeInRadians = new double[CHUNK_SIZE];
+        private final double[] cosLatitude = new double[CHUNK_SIZE];
+        // read by other threads, the total distances are stored as raw long bits
+        private final AtomicLongArray totalDistance = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray lastUpdateTimestamp = new AtomicLongArray(CHUNK_SIZE);
+        private final double[] speedMPH = new double[CHUNK_SIZE];
+        private final long[] lapStartTime = new long[CHUNK_SIZE];
+        // see Car for the track lap detection state
+        private final int[] trackSegment = new int[CHUNK_SIZE];
+        private final double[] trackProgress = new double[CHUNK_SIZE];
+        private final double[] trackDeficit = new double[CHUNK_SIZE];
+        private final int[] trackLine = new int[CHUNK_SIZE];
+        private final int[] lapCount = new int[CHUNK_SIZE];
+        // per Car lap rings of {startTime, endTime} and {distance, averageSpeed} pairs, null before the first lap
+        private final long[][] lapTimes = new long[CHUNK_SIZE][];
+        private final double[][] lapValues = new double[CHUNK_SIZE][];
+        private final ReorderBuffer[] reorderBuffers = new ReorderBuffer[CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Worker} without a thread of its own, whose items are run by the execution model of a
+ * <br/>
+ * {@link WorkerExecutor} (a fixed pool, a Vert.x event loop or virtual threads).
+ * <br/>
+ * The worker is scheduled on its Executor when an item is offered to it, and is only ever run by one thread at a
+ * <br/>
+ * time, so the handler is still the single writer of any state that it owns. Each run handles up to a quantum of
+ * <br/>
+ * items, then reschedules the worker if it has more.
+ *
+ * @param <T> the type of item handed off to the worker
+ */
+@Slf4j
+public final class ExecutorWorker<T> implements Worker<T> {
+
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final String name;
+    // items of type T, and control Tasks
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final Consumer<T> handler;
+    private final int capacity;
+    private final WorkerExecutor owner;
+    private final Executor executor;
+    private final Runnable run = this::run;
+    // true while the worker is scheduled on its Executor, or being run
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // the number of items offered to, and completed by, the worker (the difference is the queue depth)
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    // the number of items rejected because the worker was at capacity and the producer could not back off
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * @param name     the worker name, for logging
+     * @param capacity soft bound on the number of queued items, producers (other than the executor's own threads)
+     *                 back off when it is reached, or have their items rejected if they run on an event loop with
+     *                 EVENT_LOOP
+     * @param owner    the execution model that runs the worker
+     * @param handler  invoked for every item
+     */
+    public ExecutorWorker(final String name, final int capacity, final WorkerExecutor owner,
+                          final Consumer<T> handler) {
+        this.name = name;
+        this.capacity = capacity;
+        this.owner = owner;
+        this.executor = owner.newExecutor();
+        this.handler = handler;
+    }
+
+    @Override
+    public void offer(final T item) {
+        this.offerItem(item, 1);
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        this.execute(task, 1);
+    }
+
+    @Override
+    public void execute(final Runnable task, final int weight) {
+        this.offerItem(new Task(task, weight), weight);
+    }
+
+    private void offerItem(final Object item, final int weight) {
+        while (this.running && this.owner.isRunning() && this.depth() >= this.capacity
+                && !this.owner.isRunningWorker()) {
+            if (this.owner.mustNotBlock()) {
+                this.rejected.addAndGet(weight);
+                log.debug("{} is at capacity, rejected {} items", this.name, weight);
+                return;
+            }
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+        this.submitted.addAndGet(weight);
+        this.queue.offer(item);
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.schedule();
+        }
+    }
+
+    @Override
+    public long depth() {
+        return this.submitted.get() - this.completed.get();
+    }
+
+    @Override
+    public long busyNanos() {
+        return this.busyNanos.get();
+    }
+
+    @Override
+    public long rejected() {
+        return this.rejected.get();
+    }
+
+    @Override
+    public void awaitIdle() {
+        final long target = this.submitted.get();
+        while (this.completed.get() < target && this.owner.isRunning()) {
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * Stop accepting work and wait until the items that are already queued have been run.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        this.awaitIdle();
+    }
+
+    private void schedule() {
+        try {
+            this.executor.execute(this.run);
+        } catch (final RejectedExecutionException e) {
+            this.scheduled.set(false);
+            log.error(String.format("%s could not be scheduled, %d items are not run", this.name, this.depth()), e);
+        }
+    }
+
+    // run up to the quantum of items (a batch task counting as its weight), then reschedule if there are more
+    @SuppressWarnings("unchecked")
+    private void run() {
+        final long start = System.nanoTime();
+        this.owner.enter();
+        try {
+            int ran = 0;
+            while (ran < this.owner.quantum()) {
+                final Object item = this.queue.poll();
+                if (item == null) {
+                    break;
+                }
+                final int weight = item instanceof Task ? ((Task) item).weight : 1;
+                try {
+                    if (item instanceof Task) {
+                        ((Task) item).runnable.run();
+                    } else {
+                        this.handler.accept((T) item);
+                    }
+                } catch (final RuntimeException e) {
+                    // never let a single bad item stop the worker
+                    log.error(String.format("%s failed to handle %s", this.name, item), e);
+                }
+                this.completed.lazySet(this.completed.get() + weight);
+                ran += weight;
+            }
+        } finally {
+            this.owner.exit();
+            this.busyNanos.lazySet(this.busyNanos.get() + System.nanoTime() - start);
+        }
+        if (this.queue.isEmpty()) {
+            this.scheduled.set(false);
+            // an item offered after the queue was found empty, but before the flag was cleared, did not schedule it
+            if (this.queue.isEmpty() || !this.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+        // to the back of the Executor's queue, behind the other workers
+        this.schedule();
+    }
+
+    private static final class Task {
+        private final Runnable runnable;
+        // the number of items that the task counts as in the queue depth
+        private final int weight;
+
+        private Task(final Runnable runnable, final int weight) {
+            this.runnable = runnable;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import java.util.Arrays;
+
+/**
+ * Live time gaps between Cars from timing lines: the time at which each Car crossed each of the last markers
+ * <br/>
+ * (every markerSpacing of total distance) is kept in a fixed-size primitive ring per Car, interpolated between the
+ * <br/>
+ * Car's samples. The gap of a Car to any Car ahead is the difference between the time that the Car reached its
+ * <br/>
+ * current distance and the time that the Car ahead reached the same distance, interpolated between the Car ahead's
+ * <br/>
+ * crossings of the markers either side of it, so a gap is O(1) (and an update is O(1) per marker crossed) rather
+ * <br/>
+ * than a pairwise comparison of the whole grid. The arrays are allocated in chunks of {@value #CHUNK_SIZE} Cars
+ * <br/>
+ * when the first Car of a chunk is updated, like the {@link CarStateStore}.
+ * <br/>
+ * Not thread-safe, a GapTimer must only be accessed by a single (standings) thread.
+ */
+public final class GapTimer {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // the arrays of a chunk: a double, 2 longs and a boolean per Car, 6 array headers, plus the marker rings
+    private static final long CHUNK_BYTES = CHUNK_SIZE * (8L + 2L * 8L + 1L) + 6L * 16L + 40L;
+    private static final long MARKER_BYTES = 8L + 8L;
+
+    private final double markerSpacing;
+    private final int markers;
+    private Chunk[] chunks = new Chunk[1];
+    private int allocatedChunks = 0;
+
+    /**
+     * @param markerSpacing the distance between the timing lines, in kilometres
+     * @param markers       the number of timing lines kept per Car, which bounds the distance that a gap can cover
+     *                      to markers * markerSpacing
+     */
+    public GapTimer(final double markerSpacing, final int markers) {
+        if (!(markerSpacing > 0D)) {
+            throw new IllegalArgumentException("markerSpacing must be greater than 0");
+        }
+        if (markers < 2) {
+            throw new IllegalArgumentException("markers must be greater than 1");
+        }
+        this.markerSpacing = markerSpacing;
+        this.markers = markers;
+    }
+
+    /**
+     * Record a Car's progress, and the times at which it crossed the timing lines since its previous progress.
+     *
+     * @param carIndex      of the Car
+     * @param totalDistance the Car's total distance, in kilometres, never less than its previous total distance
+     * @param timestamp     of the Car's progress
+     */
+    public void advance(final int carIndex, final double totalDistance, final long timestamp) {
+        final Chunk chunk = this.chunkFor(carIndex);
+        final int i = carIndex & CHUNK_MASK;
+        final long marker = (long) Math.floor(totalDistance / this.markerSpacing);
+        if (!chunk.started[i]) {
+            // the Car crosses the timing line behind its first position at its first progress
+            chunk.started[i] = true;
+            this.record(chunk, i, marker, timestamp);
+        } else if (totalDistance > chunk.distance[i]) {
+            // interpolate the crossings of the timing lines between the previous and the current progress, at most a
+            // ring's worth
+            final double previousDistance = chunk.distance[i];
+            final long previousTimestamp = chunk.timestamp[i];
+            final long fromMarker = Math.max(chunk.lastMarker[i] + 1L, marker - this.markers + 1L);
+            for (long m = fromMarker; m <= marker; m++) {
+                final double fraction = (m * this.markerSpacing - previousDistance)
+                        / (totalDistance - previousDistance);
+                this.record(chunk, i, m, previousTimestamp
+                        + Math.round(Math.max(0D, fraction) * (timestamp - previousTimestamp)));
+            }
+        } else {
+            return;
+        }
+        chunk.distance[i] = totalDistance;
+        chunk.timestamp[i] = timestamp;
+    }
+
+    /**
+     * @param carIndex      of a Car
+     * @param aheadCarIndex of a Car with a total distance at least that of the Car
+     * @return the time gap between the Cars in milliseconds, or -1 if it is not known (either Car has no progress,
+     * <br/>
+     * or the Car ahead crossed the timing line behind the Car before the timing lines in its ring)
+     */
+    public long gap(final int carIndex, final int aheadCarIndex) {
+        final Chunk chunk = this.chunk(carIndex);
+        final Chunk ahead = this.chunk(aheadCarIndex);
+        final int i = carIndex & CHUNK_MASK;
+        if (chunk == null || ahead == null || !chunk.started[i]) {
+            return -1L;
+        }
+        final long aheadTime = this.timeAt(ahead, aheadCarIndex & CHUNK_MASK, chunk.distance[i]);
+        return aheadTime < 0L ? -1L : Math.max(0L, chunk.timestamp[i] - aheadTime);
+    }
+
+    /**
+     * Calculate the heap retained by the timer from the sizes of its arrays.
+     *
+     * @return the retained heap in bytes
+     */
+    public long estimatedBytes() {
+        return this.allocatedChunks * (CHUNK_BYTES + CHUNK_SIZE * (long) this.markers * MARKER_BYTES)
+                + this.chunks.length * 4L + 16L;
+    }
+
+    // the time at which a Car reached a distance, or -1 if it is not known
+    private long timeAt(final Chunk chunk, final int i, final double distance) {
+        if (!chunk.started[i] || distance > chunk.distance[i]) {
+            return -1L;
+        }
+        final long marker = (long) Math.floor(distance / this.markerSpacing);
+        final long markerTime = chunk.crossing(i, marker, this.markers);
+        if (markerTime < 0L) {
+            return -1L;
+        }
+        // between the crossing of the timing line behind the distance, and the next crossing (or the latest progress)
+        final long nextTime = chunk.crossing(i, marker + 1L, this.markers);
+        final double markerDistance = marker * this.markerSpacing;
+        final double nextDistance = nextTime < 0L ? chunk.distance[i] : markerDistance + this.markerSpacing;
+        final long endTime = nextTime < 0L ? chunk.timestamp[i] : nextTime;
+        if (nextDistance <= markerDistance) {
+            return markerTime;
+        }
+        return markerTime + Math.round(Math.min(1D, Math.max(0D, (distance - markerDistance)
+                / (nextDistance - markerDistance))) * (endTime - markerTime));
+    }
+
+    private void record(final Chunk chunk, final int i, final long marker, final long time) {
+        final int slot = i * this.markers + (int) Math.floorMod(marker, (long) this.markers);
+        chunk.markerIds[slot] = marker;
+        chunk.markerTimes[slot] = time;
+        chunk.lastMarker[i] = marker;
+    }
+
+    private Chunk chunk(final int carIndex) {
+        final int c = carIndex >>> CHUNK_BITS;
+        return c < this.chunks.length ? this.chunks[c] : null;
+    }
+
+    private Chunk chunkFor(final int carIndex) {
+        final int c = carIndex >>> CHUNK_BITS;
+        if (c >= this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, Math.max(c + 1, this.chunks.length * 2));
+        }
+        Chunk chunk = this.chunks[c];
+        if (chunk == null) {
+            chunk = new Chunk(this.markers);
+            this.chunks[c] = chunk;
+            this.allocatedChunks++;
+        }
+        return chunk;
+    }
+
+    private static final class Chunk {
+        // the total distance and timestamp of each Car's latest progress
+        private final double[] distance = new double[CHUNK_SIZE];
+        private final long[] timestamp = new long[CHUNK_SIZE];
+        private final boolean[] started = new boolean[CHUNK_SIZE];
+        // the last marker that each Car crossed
+        private final long[] lastMarker = new long[CHUNK_SIZE];
+        // per Car rings of the last markers crossed (the marker is stored so that an overwritten slot is detected),
+        // and the times at which they were crossed
+        private final long[] markerIds;
+        private final long[] markerTimes;
+
+        private Chunk(final int markers) {
+            this.markerIds = new long[CHUNK_SIZE * markers];
+            this.markerTimes = new long[CHUNK_SIZE * markers];
+            Arrays.fill(this.markerIds, -1L);
+        }
+
+        // the time at which the Car crossed the marker, or -1 if it is not in the Car's ring
+        private long crossing(final int i, final long marker, final int markers) {
+            if (marker < 0L) {
+                return -1L;
+            }
+            final int slot = i * markers + (int) Math.floorMod(marker, (long) markers);
+            return this.markerIds[slot] == marker ? this.markerTimes[slot] : -1L;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally maintained standings of Car's, ordered by total distance travelled in descending order.
+ * <br/>
+ * An update locates the Car's new position with a binary search (O(log n)) and only shifts the Car's that it
+ * <br/>
+ * passed (or that passed it), so the work done is proportional to the number of positions that actually changed.
+ * <br/>
+ * Car's with an equal total distance keep their previous relative order, as with a stable sort.
+ * <br/>
+ * Not thread-safe, a Leaderboard must only be accessed by a single (standings) thread.
+ */
+public final class Leaderboard {
+
+    private Car[] order = new Car[16];
+    private int size = 0;
+
+    /**
+     * Add a Car to the back of the standings and set its position.
+     *
+     * @param car to be added
+     */
+    public void add(final Car car) {
+        if (this.size == this.order.length) {
+            this.order = Arrays.copyOf(this.order, this.size * 2);
+        }
+        this.order[this.size++] = car;
+        car.setPosition(this.size);
+    }
+
+    /**
+     * Update a Car's total distance and move it to its new position, updating the position of every Car in between.
+     *
+     * @param car           a Car that has been added to the standings
+     * @param totalDistance the Car's new total distance
+     */
+    public void update(final Car car, final double totalDistance) {
+        final int from = car.getPosition() - 1;
+        car.setTotalDistance(totalDistance);
+        final int to;
+        if (from > 0 && this.order[from - 1].getTotalDistance() < totalDistance) {
+            // moving up: the first Car ahead with a shorter distance
+            to = this.firstShorterThan(totalDistance, 0, from);
+            System.arraycopy(this.order, to, this.order, to + 1, from - to);
+        } else if (from < this.size - 1 && this.order[from + 1].getTotalDistance() > totalDistance) {
+            // moving down: the last Car behind with a longer distance
+            to = this.firstNotLongerThan(totalDistance, from + 1, this.size) - 1;
+            System.arraycopy(this.order, from + 1, this.order, from, to - from);
+        } else {
+            return;
+        }
+        this.order[to] = car;
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+            this.order[i].setPosition(i + 1);
+        }
+    }
+
+    /**
+     * @param position 1-based position in the standings
+     * @return the Car in that position
+     */
+    public Car carAt(final int position) {
+        if (position < 1 || position > this.size) {
+            throw new IndexOutOfBoundsException(String.format("position %d is not within 1 and %d", position,
+                    this.size));
+        }
+        return this.order[position - 1];
+    }
+
+    /**
+     * @return the number of Car's in the standings
+     */
+    public int size() {
+        return this.size;
+    }
+
+    // the lowest index in [low, high) with a total distance < distance, or high if there is none
+    private int firstShorterThan(final double distance, int low, int high) {
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (this.order[mid].getTotalDistance() < distance) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // the lowest index in [low, high) with a total distance <= distance, or high if there is none
+    private int firstNotLongerThan(final double distance, int low, int high) {
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (this.order[mid].getTotalDistance() <= distance) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
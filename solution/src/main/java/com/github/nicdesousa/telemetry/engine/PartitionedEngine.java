@@ -0,0 +1,209 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import java.util.function.Consumer;
+
+/**
+ * Partitions work over a fixed number of {@link Worker}s by hashing an integer key, so that every key is owned
+ * <br/>
+ * by exactly one worker and the items for a key are handled in the order in which they were submitted.
+ * <br/>
+ * The workers are {@link SerialWorker}s with a thread each, or {@link PooledWorker}s that share the threads of a
+ * <br/>
+ * {@link WorkerPool} with the workers of other engines, or {@link ExecutorWorker}s run by the execution model of a
+ * <br/>
+ * {@link WorkerExecutor} (a fixed pool, Vert.x event loops or virtual threads).
+ * <br/>
+ * With zero shards the engine runs inline and the handler is invoked on the submitting thread.
+ *
+ * @param <T> the type of item handled by the engine
+ */
+public final class PartitionedEngine<T> {
+
+    private final Consumer<T> handler;
+    private final Worker<T>[] workers;
+
+    /**
+     * @param name          prefix for the worker thread names
+     * @param shards        the number of workers, 0 to run inline on the submitting thread
+     * @param queueCapacity soft bound on the number of queued items per worker
+     * @param handler       invoked for every submitted item
+     */
+    public PartitionedEngine(final String name, final int shards, final int queueCapacity, final Consumer<T> handler) {
+        this(name, shards, queueCapacity, handler, null, null);
+    }
+
+    /**
+     * @param name          prefix for the worker names
+     * @param shards        the number of workers, 0 to run inline on the submitting thread
+     * @param queueCapacity soft bound on the number of queued items per worker
+     * @param handler       invoked for every submitted item
+     * @param pool          the pool that runs the workers, or null for a thread per worker
+     */
+    public PartitionedEngine(final String name, final int shards, final int queueCapacity, final Consumer<T> handler,
+                             final WorkerPool pool) {
+        this(name, shards, queueCapacity, handler, pool, null);
+    }
+
+    /**
+     * @param name          prefix for the worker names
+     * @param shards        the number of workers, 0 to run inline on the submitting thread
+     * @param queueCapacity soft bound on the number of queued items per worker
+     * @param handler       invoked for every submitted item
+     * @param executor      the execution model that runs the workers, or null for a thread per worker
+     */
+    public PartitionedEngine(final String name, final int shards, final int queueCapacity, final Consumer<T> handler,
+                             final WorkerExecutor executor) {
+        this(name, shards, queueCapacity, handler, null, executor);
+    }
+
+    private PartitionedEngine(final String name, final int shards, final int queueCapacity, final Consumer<T> handler,
+                              final WorkerPool pool, final WorkerExecutor executor) {
+        if (shards < 0) {
+            throw new IllegalArgumentException("shards must be greater than or equal to 0");
+        }
+        this.handler = handler;
+        this.workers = newWorkers(shards);
+        for (int i = 0; i < shards; i++) {
+            final String workerName = String.format("%s-%d", name, i);
+            if (pool != null) {
+                // the engine's workers share the pool's quantum
+                this.workers[i] = new PooledWorker<>(workerName, queueCapacity, pool.quantum() / shards, pool, handler);
+            } else if (executor != null) {
+                this.workers[i] = new ExecutorWorker<>(workerName, queueCapacity, executor, handler);
+            } else {
+                this.workers[i] = new SerialWorker<>(workerName, queueCapacity, handler);
+            }
+        }
+    }
+
+    /**
+     * Submit an item to the worker that owns the key.
+     *
+     * @param key  partitioning key, e.g. a carIndex
+     * @param item to be handled
+     */
+    public void submit(final int key, final T item) {
+        if (this.workers.length == 0) {
+            this.handler.accept(item);
+            return;
+        }
+        this.workers[this.shardFor(key)].offer(item);
+    }
+
+    /**
+     * Run a task once on every worker, after the items that have already been submitted to it, or inline on the
+     * <br/>
+     * calling thread with zero shards.
+     *
+     * @param task to be run on every worker thread
+     */
+    public void executeOnEachShard(final Runnable task) {
+        if (this.workers.length == 0) {
+            task.run();
+            return;
+        }
+        for (final Worker<T> worker : this.workers) {
+            worker.execute(task);
+        }
+    }
+
+    /**
+     * Run a task that handles a batch of items on one worker, after the items that have already been submitted to
+     * <br/>
+     * it, or inline on the calling thread with zero shards. The task counts as weight items in the worker's queue.
+     *
+     * @param shard  the index of the worker, see {@link #shardFor(int)}
+     * @param weight the number of items that the task handles
+     * @param task   to be run on the worker thread
+     */
+    public void executeOnShard(final int shard, final int weight, final Runnable task) {
+        if (this.workers.length == 0) {
+            task.run();
+            return;
+        }
+        this.workers[shard].execute(task, weight);
+    }
+
+    /**
+     * @param key partitioning key
+     * @return the index of the worker that owns the key
+     */
+    public int shardFor(final int key) {
+        return this.workers.length == 0 ? 0 : Math.floorMod(mix(key), this.workers.length);
+    }
+
+    /**
+     * @return the number of workers, 0 when running inline
+     */
+    public int shards() {
+        return this.workers.length;
+    }
+
+    /**
+     * @return the total number of items queued across all workers
+     */
+    public long depth() {
+        long depth = 0L;
+        for (final Worker<T> worker : this.workers) {
+            depth += worker.depth();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the total time that the workers have spent handling items, in nanoseconds
+     */
+    public long busyNanos() {
+        long busyNanos = 0L;
+        for (final Worker<T> worker : this.workers) {
+            busyNanos += worker.busyNanos();
+        }
+        return busyNanos;
+    }
+
+    /**
+     * @return the total number of items rejected by the workers, see {@link Worker#rejected()}
+     */
+    public long rejected() {
+        long rejected = 0L;
+        for (final Worker<T> worker : this.workers) {
+            rejected += worker.rejected();
+        }
+        return rejected;
+    }
+
+    /**
+     * Wait until every item submitted before this call has been handled.
+     */
+    public void awaitIdle() {
+        for (final Worker<T> worker : this.workers) {
+            worker.awaitIdle();
+        }
+    }
+
+    /**
+     * Drain all queued items and stop the workers.
+     */
+    public void close() {
+        for (final Worker<T> worker : this.workers) {
+            worker.close();
+        }
+    }
+
+    // a generic array cannot be created, an array of the wildcard type only holds Worker<T>s
+    @SuppressWarnings("unchecked")
+    private static <T> Worker<T>[] newWorkers(final int shards) {
+        return (Worker<T>[]) new Worker<?>[shards];
+    }
+
+    // murmur3 finaliser, spreads sequential keys evenly over the workers
+    private static int mix(final int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
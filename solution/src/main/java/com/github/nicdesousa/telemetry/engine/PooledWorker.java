@@ -0,0 +1,168 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Worker} without a thread of its own, its items are run by the threads of a shared {@link WorkerPool}.
+ * <br/>
+ * A worker is only ever run by one pool thread at a time, so the handler is still the single writer of any state that
+ * <br/>
+ * it owns, and the pool runs at most the worker's quantum of items before moving on to the next worker.
+ *
+ * @param <T> the type of item handed off to the worker
+ */
+@Slf4j
+public final class PooledWorker<T> implements Worker<T> {
+
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final String name;
+    // items of type T, and control Tasks
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final Consumer<T> handler;
+    private final int capacity;
+    private final int quantum;
+    private final WorkerPool pool;
+    // true while the worker is in the pool's run queue, or being run
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // the number of items offered to, and completed by, the worker (the difference is the queue depth)
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    // only written by the pool thread that runs the worker
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * @param name     the worker name, for logging
+     * @param capacity soft bound on the number of queued items, producers (other than pool threads) back off when it
+     *                 is reached
+     * @param quantum  the maximum number of items run each time the pool runs the worker
+     * @param pool     the pool that runs the worker
+     * @param handler  invoked on a pool thread for every item
+     */
+    public PooledWorker(final String name, final int capacity, final int quantum, final WorkerPool pool,
+                        final Consumer<T> handler) {
+        this.name = name;
+        this.capacity = capacity;
+        this.quantum = Math.max(1, quantum);
+        this.pool = pool;
+        this.handler = handler;
+    }
+
+    @Override
+    public void offer(final T item) {
+        this.offerItem(item, 1);
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        this.execute(task, 1);
+    }
+
+    @Override
+    public void execute(final Runnable task, final int weight) {
+        this.offerItem(new Task(task, weight), weight);
+    }
+
+    private void offerItem(final Object item, final int weight) {
+        // a pool thread never backs off, it could be the only thread left to run this worker (e.g. a shard handing
+        // off to the standings engine), the queue is still bounded by the capacity of the workers that feed it
+        while (this.running && this.pool.isRunning() && this.depth() >= this.capacity && !this.pool.isPoolThread()) {
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+        this.submitted.addAndGet(weight);
+        this.queue.offer(item);
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.pool.schedule(this);
+        }
+    }
+
+    @Override
+    public long depth() {
+        return this.submitted.get() - this.completed.get();
+    }
+
+    @Override
+    public long busyNanos() {
+        return this.busyNanos.get();
+    }
+
+    @Override
+    public long rejected() {
+        // never rejects an item, producers always back off, or hand off past the capacity from a pool thread
+        return 0L;
+    }
+
+    @Override
+    public void awaitIdle() {
+        final long target = this.submitted.get();
+        while (this.completed.get() < target && this.pool.isRunning()) {
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * Stop accepting work and wait until the pool has run the items that are already queued.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        this.awaitIdle();
+    }
+
+    /**
+     * Run up to the worker's quantum of items (a batch task counting as its weight), on a pool thread.
+     *
+     * @return true if the worker still has queued items, and must be scheduled again
+     */
+    @SuppressWarnings("unchecked")
+    boolean run() {
+        final long start = System.nanoTime();
+        int ran = 0;
+        while (ran < this.quantum) {
+            final Object item = this.queue.poll();
+            if (item == null) {
+                break;
+            }
+            final int weight = item instanceof Task ? ((Task) item).weight : 1;
+            try {
+                if (item instanceof Task) {
+                    ((Task) item).runnable.run();
+                } else {
+                    this.handler.accept((T) item);
+                }
+            } catch (final RuntimeException e) {
+                // never let a single bad item stop the worker
+                log.error(String.format("%s failed to handle %s", this.name, item), e);
+            }
+            this.completed.lazySet(this.completed.get() + weight);
+            ran += weight;
+        }
+        this.busyNanos.lazySet(this.busyNanos.get() + System.nanoTime() - start);
+        if (!this.queue.isEmpty()) {
+            return true;
+        }
+        this.scheduled.set(false);
+        // an item offered after the queue was found empty, but before the flag was cleared, did not schedule the worker
+        return !this.queue.isEmpty() && this.scheduled.compareAndSet(false, true);
+    }
+
+    private static final class Task {
+        private final Runnable runnable;
+        // the number of items that the task counts as in the queue depth
+        private final int weight;
+
+        private Task(final Runnable runnable, final int weight) {
+            this.runnable = runnable;
+            this.weight = weight;
+        }
+    }
+}
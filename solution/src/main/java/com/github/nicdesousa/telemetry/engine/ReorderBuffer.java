@@ -0,0 +1,186 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded per-Car reorder window that holds CarCoordinates briefly and releases them in timestamp order.
+ * <br/>
+ * A CarCoordinate is released once the newest timestamp seen is at least windowInMs ahead of it, or when more than
+ * <br/>
+ * maxSamples CarCoordinates are held (oldest first), so a window of 0 ms releases every CarCoordinate immediately.
+ * <br/>
+ * The window is driven by the CarCoordinate timestamps (event time), so it behaves the same for live and replayed
+ * <br/>
+ * streams, and any CarCoordinates still held when a stream ends are released with {@link #pollAny()}.
+ * <br/>
+ * Not thread-safe, a ReorderBuffer must only be accessed by the shard worker that owns its Car.
+ */
+public final class ReorderBuffer {
+
+    /**
+     * The outcome of offering a CarCoordinate to the buffer.
+     */
+    public enum Offer {
+        // held in timestamp order
+        ACCEPTED,
+        // held, and older than a CarCoordinate that has already been offered
+        REORDERED,
+        // dropped, older than a CarCoordinate that has already been released
+        LATE,
+        // dropped, has the same timestamp as a CarCoordinate that has been held or released
+        DUPLICATE
+    }
+
+    private final long windowInMs;
+    private final int maxSamples;
+    // binary min-heap ordered by timestamp
+    private CarCoordinate[] heap = new CarCoordinate[4];
+    private int size = 0;
+    // the newest timestamp offered
+    private long newestTimestamp = Long.MIN_VALUE;
+    // the timestamp of the last CarCoordinate released
+    private long releasedTimestamp = Long.MIN_VALUE;
+
+    /**
+     * @param windowInMs how far (in ms) the newest timestamp must be ahead of a CarCoordinate to release it
+     * @param maxSamples the maximum number of CarCoordinates held
+     */
+    public ReorderBuffer(final long windowInMs, final int maxSamples) {
+        if (windowInMs < 0L || maxSamples < 0) {
+            throw new IllegalArgumentException("windowInMs and maxSamples must be greater than or equal to 0");
+        }
+        this.windowInMs = windowInMs;
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Offer a CarCoordinate to the buffer, call {@link #poll()} afterwards to release any CarCoordinates that are due.
+     *
+     * @param carCoordinate to be held, must not be modified while held
+     * @return the outcome
+     */
+    public Offer offer(final CarCoordinate carCoordinate) {
+        final long timestamp = carCoordinate.getTimestamp();
+        if (timestamp < this.releasedTimestamp) {
+            return Offer.LATE;
+        }
+        if (timestamp == this.releasedTimestamp || this.holds(timestamp)) {
+            return Offer.DUPLICATE;
+        }
+        if (this.size == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, this.size * 2);
+        }
+        this.siftUp(this.size++, carCoordinate);
+        if (timestamp < this.newestTimestamp) {
+            return Offer.REORDERED;
+        }
+        this.newestTimestamp = timestamp;
+        return Offer.ACCEPTED;
+    }
+
+    /**
+     * @return the oldest CarCoordinate if it is due for release, otherwise null
+     */
+    public CarCoordinate poll() {
+        if (this.size == 0) {
+            return null;
+        }
+        if (this.size <= this.maxSamples && this.heap[0].getTimestamp() > this.newestTimestamp - this.windowInMs) {
+            return null;
+        }
+        return this.pollAny();
+    }
+
+    /**
+     * @return the oldest CarCoordinate regardless of the window, or null if the buffer is empty
+     */
+    public CarCoordinate pollAny() {
+        if (this.size == 0) {
+            return null;
+        }
+        final CarCoordinate oldest = this.heap[0];
+        final CarCoordinate last = this.heap[--this.size];
+        this.heap[this.size] = null;
+        if (this.size > 0) {
+            this.siftDown(0, last);
+        }
+        this.releasedTimestamp = oldest.getTimestamp();
+        return oldest;
+    }
+
+    /**
+     * Restore the state of a buffer, e.g. from a snapshot.
+     *
+     * @param releasedTimestamp the timestamp of the last CarCoordinate released
+     * @param held              the CarCoordinates that were held
+     */
+    public void restore(final long releasedTimestamp, final List<CarCoordinate> held) {
+        this.releasedTimestamp = releasedTimestamp;
+        for (final CarCoordinate carCoordinate : held) {
+            this.offer(carCoordinate);
+        }
+    }
+
+    /**
+     * @return the timestamp of the last CarCoordinate released, Long.MIN_VALUE if none have been released
+     */
+    public long releasedTimestamp() {
+        return this.releasedTimestamp;
+    }
+
+    /**
+     * @return a copy of the CarCoordinates held, in no particular order
+     */
+    public List<CarCoordinate> held() {
+        return new ArrayList<>(Arrays.asList(this.heap).subList(0, this.size));
+    }
+
+    /**
+     * @return the number of CarCoordinates held
+     */
+    public int size() {
+        return this.size;
+    }
+
+    // a linear scan, since maxSamples is small
+    private boolean holds(final long timestamp) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.heap[i].getTimestamp() == timestamp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void siftUp(int index, final CarCoordinate carCoordinate) {
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (this.heap[parent].getTimestamp() <= carCoordinate.getTimestamp()) {
+                break;
+            }
+            this.heap[index] = this.heap[parent];
+            index = parent;
+        }
+        this.heap[index] = carCoordinate;
+    }
+
+    private void siftDown(int index, final CarCoordinate carCoordinate) {
+        final int half = this.size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < this.size && this.heap[child + 1].getTimestamp() < this.heap[child].getTimestamp()) {
+                child++;
+            }
+            if (carCoordinate.getTimestamp() <= this.heap[child].getTimestamp()) {
+                break;
+            }
+            this.heap[index] = this.heap[child];
+            index = child;
+        }
+        this.heap[index] = carCoordinate;
+    }
+}
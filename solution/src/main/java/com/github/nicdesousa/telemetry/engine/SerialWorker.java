@@ -0,0 +1,201 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A single-threaded worker that drains a lock-free handoff queue and applies a handler to every item in FIFO order.
+ * <br/>
+ * Any number of producer threads may {@link #offer} items, but only the worker thread ever invokes the handler, <br/>
+ * which makes the handler the single writer of any state that it owns.
+ * <br/>
+ * Control tasks can be queued in between the items with {@link #execute}, e.g. to access that state safely.
+ *
+ * @param <T> the type of item handed off to the worker
+ */
+@Slf4j
+public final class SerialWorker<T> implements Worker<T>, Runnable {
+
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int BUSY_FLUSH_ITEMS = 1024;
+
+    // items of type T, and control Tasks
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final Consumer<T> handler;
+    private final int capacity;
+    private final Thread thread;
+    // the number of items offered to, and completed by, the worker (the difference is the queue depth)
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    // only written by the worker thread, the time from waking up to parking again
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile boolean parked = false;
+
+    /**
+     * @param name     the worker thread name
+     * @param capacity soft bound on the number of queued items, producers back off when it is reached
+     * @param handler  invoked on the worker thread for every item
+     */
+    public SerialWorker(final String name, final int capacity, final Consumer<T> handler) {
+        this.handler = handler;
+        this.capacity = capacity;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hand an item off to the worker, backing off while the queue is at capacity.
+     *
+     * @param item to be handled on the worker thread
+     */
+    @Override
+    public void offer(final T item) {
+        this.offerItem(item, 1);
+    }
+
+    private void offerItem(final Object item, final int weight) {
+        while (this.running && this.depth() >= this.capacity) {
+            LockSupport.unpark(this.thread);
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+        this.submitted.addAndGet(weight);
+        this.queue.offer(item);
+        if (this.parked) {
+            LockSupport.unpark(this.thread);
+        }
+    }
+
+    /**
+     * Run a task on the worker thread, after the items that have already been offered.
+     *
+     * @param task to be run on the worker thread
+     */
+    @Override
+    public void execute(final Runnable task) {
+        this.execute(task, 1);
+    }
+
+    /**
+     * Run a task that handles a batch of items on the worker thread, after the items that have already been offered.
+     *
+     * @param task   to be run on the worker thread
+     * @param weight the number of items that the task handles
+     */
+    @Override
+    public void execute(final Runnable task, final int weight) {
+        this.offerItem(new Task(task, weight), weight);
+    }
+
+    /**
+     * @return the number of items that have been offered but not yet handled
+     */
+    @Override
+    public long depth() {
+        return this.submitted.get() - this.completed.get();
+    }
+
+    /**
+     * @return the total time that the worker thread has spent handling items, in nanoseconds
+     */
+    @Override
+    public long busyNanos() {
+        return this.busyNanos.get();
+    }
+
+    @Override
+    public long rejected() {
+        // never rejects an item, producers always back off
+        return 0L;
+    }
+
+    /**
+     * Wait until every item offered before this call has been handled.
+     */
+    @Override
+    public void awaitIdle() {
+        final long target = this.submitted.get();
+        while (this.completed.get() < target && this.thread.isAlive()) {
+            LockSupport.unpark(this.thread);
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * Stop accepting work, drain the items that are already queued and wait for the worker thread to exit.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+        long busySince = System.nanoTime();
+        int handled = 0;
+        while (this.running || !this.queue.isEmpty()) {
+            final Object item = this.queue.poll();
+            if (item == null) {
+                this.addBusyNanos(busySince);
+                handled = 0;
+                this.parked = true;
+                if (this.running && this.queue.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                this.parked = false;
+                busySince = System.nanoTime();
+                continue;
+            }
+            final int weight = item instanceof Task ? ((Task) item).weight : 1;
+            try {
+                if (item instanceof Task) {
+                    ((Task) item).runnable.run();
+                } else {
+                    this.handler.accept((T) item);
+                }
+            } catch (final RuntimeException e) {
+                // never let a single bad item stop the worker
+                log.error(String.format("%s failed to handle %s", this.thread.getName(), item), e);
+            }
+            this.completed.lazySet(this.completed.get() + weight);
+            // a worker that never runs out of items still reports its busy time
+            if (++handled == BUSY_FLUSH_ITEMS) {
+                busySince = this.addBusyNanos(busySince);
+                handled = 0;
+            }
+        }
+        this.addBusyNanos(busySince);
+    }
+
+    // add the time since busySince to the busy time, and return the current time
+    private long addBusyNanos(final long busySince) {
+        final long now = System.nanoTime();
+        this.busyNanos.lazySet(this.busyNanos.get() + now - busySince);
+        return now;
+    }
+
+    private static final class Task {
+        private final Runnable runnable;
+        // the number of items that the task counts as in the queue depth
+        private final int weight;
+
+        private Task(final Runnable runnable, final int weight) {
+            this.runnable = runnable;
+            this.weight = weight;
+        }
+    }
+}
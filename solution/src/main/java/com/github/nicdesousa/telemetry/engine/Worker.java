@@ -0,0 +1,68 @@
+package com.github.nicdesousa.telemetry.engine;
+
+/**
+ * Applies a handler to the items handed off to it in FIFO order, one item at a time, so that the handler is the
+ * <br/>
+ * single writer of any state that it owns. Implemented by the {@link SerialWorker} (a dedicated thread) and the
+ * <br/>
+ * {@link PooledWorker} (scheduled on a shared {@link WorkerPool}) and the {@link ExecutorWorker} (run by the execution
+ * <br/>
+ * model of a {@link WorkerExecutor}).
+ *
+ * @param <T> the type of item handed off to the worker
+ */
+public interface Worker<T> {
+
+    /**
+     * Hand an item off to the worker, backing off while the worker is at capacity.
+     *
+     * @param item to be handled by the worker
+     */
+    void offer(T item);
+
+    /**
+     * Run a task on the worker, after the items that have already been offered.
+     *
+     * @param task to be run by the worker
+     */
+    void execute(Runnable task);
+
+    /**
+     * Run a task that handles a batch of items on the worker, after the items that have already been offered, and
+     * <br/>
+     * count it as that many items in the queue depth (and against the capacity).
+     *
+     * @param task   to be run by the worker
+     * @param weight the number of items that the task handles
+     */
+    void execute(Runnable task, int weight);
+
+    /**
+     * @return the number of items that have been offered but not yet handled
+     */
+    long depth();
+
+    /**
+     * @return the total time that the worker has spent handling items, in nanoseconds (divided by the elapsed time,
+     * <br/>
+     * the utilisation of the worker)
+     */
+    long busyNanos();
+
+    /**
+     * @return the number of items (and batch task weights) rejected because the worker was at capacity and the
+     * <br/>
+     * producer could not back off, the other items are never dropped
+     */
+    long rejected();
+
+    /**
+     * Wait until every item offered before this call has been handled.
+     */
+    void awaitIdle();
+
+    /**
+     * Stop accepting work, and drain the items that are already queued.
+     */
+    void close();
+}
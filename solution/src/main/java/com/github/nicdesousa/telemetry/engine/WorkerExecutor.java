@@ -0,0 +1,174 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The execution model of the {@link ExecutorWorker}s of one or more {@link PartitionedEngine}s, as an alternative
+ * <br/>
+ * to a thread per worker ({@link SerialWorker}):
+ * <br/>
+ * FIXED runs the workers on a fixed pool of platform threads, EVENT_LOOP pins every worker to a Vert.x event loop
+ * <br/>
+ * (a context of its own, so the workers are spread over the event loops), and VIRTUAL runs every turn of a worker on
+ * <br/>
+ * a virtual thread (Java 21 or later, a FIXED pool on older runtimes).
+ * <br/>
+ * A worker is only ever run by one thread at a time, and yields its thread after a quantum of items, so a busy worker
+ * <br/>
+ * cannot hold an event loop (or pool thread) for long.
+ */
+@Slf4j
+public final class WorkerExecutor {
+
+    // the WorkerExecutor whose worker the current thread is running, if any
+    private static final ThreadLocal<WorkerExecutor> RUNNING = new ThreadLocal<>();
+
+    private final ModeEnum mode;
+    private final int quantum;
+    // the pool of the FIXED and VIRTUAL modes, null for EVENT_LOOP
+    private final ExecutorService pool;
+    private final Vertx vertx;
+    private volatile boolean running = true;
+
+    private WorkerExecutor(final ModeEnum mode, final int quantum, final ExecutorService pool, final Vertx vertx) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("quantum must be greater than 0");
+        }
+        this.mode = mode;
+        this.quantum = quantum;
+        this.pool = pool;
+        this.vertx = vertx;
+    }
+
+    /**
+     * @param name    prefix for the thread names
+     * @param threads the number of platform threads
+     * @param quantum the maximum number of items run each time a worker is run
+     * @return a WorkerExecutor that runs the workers on a fixed pool of threads
+     */
+    public static WorkerExecutor fixed(final String name, final int threads, final int quantum) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than 0");
+        }
+        final AtomicInteger thread = new AtomicInteger();
+        return new WorkerExecutor(ModeEnum.FIXED, quantum, Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread t = new Thread(runnable, String.format("%s-%d", name, thread.getAndIncrement()));
+            t.setDaemon(true);
+            return t;
+        }), null);
+    }
+
+    /**
+     * @param name    prefix for the thread names, of the FIXED pool that is used before Java 21
+     * @param threads the number of platform threads of the FIXED pool that is used before Java 21
+     * @param quantum the maximum number of items run each time a worker is run
+     * @return a WorkerExecutor that runs every turn of a worker on a virtual thread
+     */
+    public static WorkerExecutor virtual(final String name, final int threads, final int quantum) {
+        try {
+            // by reflection, since the code is compiled for Java 8
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new WorkerExecutor(ModeEnum.VIRTUAL, quantum, (ExecutorService) method.invoke(null), null);
+        } catch (final ReflectiveOperationException e) {
+            log.warn("Virtual threads require Java 21 or later, running {} on {} platform threads", name, threads);
+            return fixed(name, threads, quantum);
+        }
+    }
+
+    /**
+     * @param vertx   whose event loops run the workers
+     * @param quantum the maximum number of items run each time a worker is run
+     * @return a WorkerExecutor that pins every worker to a Vert.x event loop
+     */
+    public static WorkerExecutor eventLoop(final Vertx vertx, final int quantum) {
+        if (vertx == null) {
+            throw new IllegalArgumentException("EVENT_LOOP requires Vert.x");
+        }
+        return new WorkerExecutor(ModeEnum.EVENT_LOOP, quantum, null, vertx);
+    }
+
+    /**
+     * @return the execution model
+     */
+    public ModeEnum mode() {
+        return this.mode;
+    }
+
+    /**
+     * @return the maximum number of items run each time a worker is run
+     */
+    public int quantum() {
+        return this.quantum;
+    }
+
+    /**
+     * @return true until the executor is closed
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Stop the threads of the FIXED and VIRTUAL modes, once the workers have been closed.
+     */
+    public void close() {
+        this.running = false;
+        if (this.pool != null) {
+            this.pool.shutdown();
+            try {
+                this.pool.awaitTermination(1L, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // the Executor that runs a new worker, the event loop of a new Vert.x context with EVENT_LOOP (a new context is
+    // assigned the next event loop, unless it is created on a Vert.x thread)
+    Executor newExecutor() {
+        if (this.mode != ModeEnum.EVENT_LOOP) {
+            return this.pool;
+        }
+        final Context context = this.vertx.getOrCreateContext();
+        return task -> context.runOnContext(ignored -> task.run());
+    }
+
+    // true if the current thread is running a worker of this executor (e.g. a shard handing off to the standings),
+    // which must never back off since it could be the only thread left to run the worker that it is handing off to,
+    // the queue is still bounded by the workers that feed it
+    boolean isRunningWorker() {
+        return RUNNING.get() == this;
+    }
+
+    // true if the current thread is any other event loop with EVENT_LOOP (e.g. the MQTT consumer), which must never
+    // back off (or block) since it could be running the worker that it is handing off to, nor grow its queue without
+    // bound, so its items are rejected while the worker is at capacity
+    boolean mustNotBlock() {
+        return this.mode == ModeEnum.EVENT_LOOP && Context.isOnEventLoopThread();
+    }
+
+    void enter() {
+        RUNNING.set(this);
+    }
+
+    void exit() {
+        RUNNING.remove();
+    }
+
+    public enum ModeEnum {
+        // a thread per worker, see SerialWorker
+        DEDICATED,
+        FIXED,
+        EVENT_LOOP,
+        VIRTUAL
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed number of threads shared by many {@link PooledWorker}s, e.g. the shards of every race session.
+ * <br/>
+ * Workers with queued items wait in a single FIFO run queue, and a thread runs at most a quantum of a worker's
+ * <br/>
+ * items before moving the worker to the back of the run queue, so a busy worker cannot starve the others: every
+ * <br/>
+ * worker with queued items is run at least once per round of the run queue. The quantum is split between the workers
+ * <br/>
+ * of a {@link PartitionedEngine}, so an engine (e.g. a race session) gets the same share of a round however many
+ * <br/>
+ * shards it has.
+ */
+@Slf4j
+public final class WorkerPool {
+
+    private final int quantum;
+    private final Thread[] threads;
+    // workers with queued items, each worker is in the run queue (or being run) at most once
+    private final Queue<PooledWorker<?>> runQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Thread> idleThreads = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param name    prefix for the thread names
+     * @param threads the number of threads
+     * @param quantum the number of items run per round of the run queue, shared by the workers of an engine
+     */
+    public WorkerPool(final String name, final int threads, final int quantum) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than 0");
+        }
+        if (quantum < 1) {
+            throw new IllegalArgumentException("quantum must be greater than 0");
+        }
+        this.quantum = quantum;
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.threads[i] = new Thread(this::run, String.format("%s-%d", name, i));
+            this.threads[i].setDaemon(true);
+            this.threads[i].start();
+        }
+    }
+
+    /**
+     * @return the number of items run per round of the run queue, shared by the workers of an engine
+     */
+    public int quantum() {
+        return this.quantum;
+    }
+
+    /**
+     * @return the number of threads
+     */
+    public int threads() {
+        return this.threads.length;
+    }
+
+    /**
+     * @return true until the pool is closed
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Stop the threads, the items that are still queued by the workers are not run.
+     */
+    public void close() {
+        this.running = false;
+        for (final Thread thread : this.threads) {
+            LockSupport.unpark(thread);
+        }
+        for (final Thread thread : this.threads) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // true if the current thread is one of the pool's threads
+    boolean isPoolThread() {
+        final Thread current = Thread.currentThread();
+        for (final Thread thread : this.threads) {
+            if (thread == current) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // called by a worker that has queued items and is not already in the run queue
+    void schedule(final PooledWorker<?> worker) {
+        this.runQueue.offer(worker);
+        final Thread idle = this.idleThreads.poll();
+        if (idle != null) {
+            LockSupport.unpark(idle);
+        }
+    }
+
+    private void run() {
+        final Thread self = Thread.currentThread();
+        while (this.running) {
+            final PooledWorker<?> worker = this.runQueue.poll();
+            if (worker == null) {
+                this.idleThreads.offer(self);
+                // a worker scheduled before this thread became idle would not have woken it, one scheduled after it
+                // became idle unparks it (or another idle thread), so an idle thread parks until it is woken
+                if (this.runQueue.isEmpty() && this.running) {
+                    LockSupport.park(this);
+                }
+                this.idleThreads.remove(self);
+                continue;
+            }
+            boolean more;
+            try {
+                more = worker.run();
+            } catch (final RuntimeException e) {
+                // the worker already isolates its handler, never let a worker stop the thread
+                log.error(String.format("%s failed to run a worker", self.getName()), e);
+                more = true;
+            }
+            if (more) {
+                // to the back of the run queue, behind the other workers with queued items
+                this.schedule(worker);
+            }
+        }
+    }
+}
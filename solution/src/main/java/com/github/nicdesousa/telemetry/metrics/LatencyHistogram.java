@@ -0,0 +1,105 @@
+package com.github.nicdesousa.telemetry.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, log-linear (HDR-style) histogram of non-negative long values, e.g. latencies in nanoseconds.
+ * <br/>
+ * Values below 64 are counted exactly, larger values in 32 linear sub-buckets per power of two, so any recorded <br/>
+ * value is reported with a relative error of at most 1/32 (~3%) across the whole long range.
+ * <br/>
+ * Recording is lock-free and allocation-free, and can be done concurrently by any number of threads.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_VALUES = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value, negative values are recorded as 0.
+     *
+     * @param value to be recorded
+     */
+    public void record(final long value) {
+        final long v = Math.max(0L, value);
+        this.counts.incrementAndGet(indexOf(v));
+        this.count.increment();
+        this.sum.add(v);
+        long current = this.max.get();
+        while (v > current && !this.max.compareAndSet(current, v)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long count() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return the sum of the recorded values
+     */
+    public long sum() {
+        return this.sum.sum();
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    public long max() {
+        return this.max.get();
+    }
+
+    /**
+     * @param quantile within [0, 1], e.g. 0.99
+     * @return the (upper bound of the bucket of the) value at the quantile, or 0 if no values have been recorded
+     */
+    public long valueAt(final double quantile) {
+        long total = 0L;
+        final long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long cumulative = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return Math.min(upperBoundOf(i), this.max());
+            }
+        }
+        return this.max();
+    }
+
+    static int indexOf(final long value) {
+        if (value < LINEAR_VALUES) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * shift + (int) (value >>> shift);
+    }
+
+    static long upperBoundOf(final int index) {
+        if (index < LINEAR_VALUES) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long top = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1L) << shift) - 1L;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.nicdesousa.telemetry.metrics;
+
+import com.github.nicdesousa.telemetry.service.CarStatusService;
+import com.github.nicdesousa.telemetry.service.EventsService;
+import com.github.nicdesousa.telemetry.service.KafkaBridgeService;
+import com.github.nicdesousa.telemetry.service.RaceSessionService;
+import com.github.nicdesousa.telemetry.service.TelemetryService;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exposes the {@link TelemetryMetrics} and the queue depths and drop counts of the services in the Prometheus text
+ * <br/>
+ * exposition format, histograms as summaries with the 50th, 90th, 99th and 99.9th percentiles.
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    private static final double[] QUANTILES = {0.5D, 0.9D, 0.99D, 0.999D};
+
+    @Inject
+    public TelemetryMetrics metrics;
+    @Inject
+    public TelemetryService telemetryService;
+    @Inject
+    public RaceSessionService raceSessionService;
+    @Inject
+    public CarStatusService carStatusService;
+    @Inject
+    public EventsService eventsService;
+    @Inject
+    public KafkaBridgeService kafkaBridgeService;
+
+    @GET
+    @Produces("text/plain; version=0.0.4")
+    public String scrape() {
+        final StringBuilder sb = new StringBuilder(4096);
+        for (final Map.Entry<String, LongAdder> counter : this.metrics.counters().entrySet()) {
+            metric(sb, counter.getKey(), "counter", counter.getValue().sum());
+        }
+        metric(sb, "telemetry_kafka_bridge_in_flight", "gauge", this.kafkaBridgeService.getInFlight());
+        metric(sb, "telemetry_reordered_carcoordinates_total", "counter", this.telemetryService.getReorderedSamples());
+        metric(sb, "telemetry_late_carcoordinates_total", "counter", this.telemetryService.getLateSamples());
+        metric(sb, "telemetry_duplicate_carcoordinates_total", "counter", this.telemetryService.getDuplicateSamples());
+        metric(sb, "telemetry_shard_rejected_carcoordinates_total", "counter",
+                this.telemetryService.getRejectedSamples());
+        metric(sb, "telemetry_shard_queue_depth", "gauge", this.telemetryService.getShardQueueDepth());
+        metric(sb, "telemetry_standings_queue_depth", "gauge", this.telemetryService.getStandingsQueueDepth());
+        // the utilisation of the workers is rate(busy nanoseconds) / 1e9, per worker
+        metric(sb, "telemetry_shard_workers", "gauge", this.telemetryService.getShards());
+        metric(sb, "telemetry_shard_busy_nanoseconds_total", "counter", this.telemetryService.getShardBusyNanos());
+        metric(sb, "telemetry_standings_busy_nanoseconds_total", "counter",
+                this.telemetryService.getStandingsBusyNanos());
+        metric(sb, "telemetry_session_rejected_carcoordinates_total", "counter",
+                this.raceSessionService.getRejectedSamples());
+        final Map<String, TelemetryService> sessions = this.raceSessionService.sessions();
+        sessionMetric(sb, "telemetry_session_cars", sessions, TelemetryService::getCarCount);
+        sessionMetric(sb, "telemetry_session_memory_bytes", sessions, TelemetryService::getEstimatedMemoryBytes);
+        sessionMetric(sb, "telemetry_session_queue_depth", sessions,
+                session -> session.getShardQueueDepth() + session.getStandingsQueueDepth());
+        metric(sb, "telemetry_carstatus_queue_depth", "gauge", this.carStatusService.getQueueDepth());
+        metric(sb, "telemetry_carstatus_dropped_total", "counter", this.carStatusService.getDroppedMessages());
+        metric(sb, "telemetry_carstatus_conflated_total", "counter", this.carStatusService.getConflatedMessages());
+        metric(sb, "telemetry_events_queue_depth", "gauge", this.eventsService.getQueueDepth());
+        metric(sb, "telemetry_events_dropped_total", "counter", this.eventsService.getDroppedMessages());
+        for (final Map.Entry<String, LatencyHistogram> histogram : this.metrics.histograms().entrySet()) {
+            summary(sb, histogram.getKey(), histogram.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static void metric(final StringBuilder sb, final String name, final String type, final long value) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    // a gauge per race session
+    private static void sessionMetric(final StringBuilder sb, final String name,
+                                      final Map<String, TelemetryService> sessions,
+                                      final ToLongFunction<TelemetryService> value) {
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        for (final Map.Entry<String, TelemetryService> session : sessions.entrySet()) {
+            sb.append(name).append("{session=\"").append(session.getKey()).append("\"} ")
+                    .append(value.applyAsLong(session.getValue())).append('\n');
+        }
+    }
+
+    private static void summary(final StringBuilder sb, final String name, final LatencyHistogram histogram) {
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for (final double quantile : QUANTILES) {
+            sb.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.valueAt(quantile)).append('\n');
+        }
+        sb.append(name).append("_sum ").append(histogram.sum()).append('\n');
+        sb.append(name).append("_count ").append(histogram.count()).append('\n');
+        metric(sb, name + "_max", "gauge", histogram.max());
+    }
+}
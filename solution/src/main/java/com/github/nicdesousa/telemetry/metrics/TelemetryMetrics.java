@@ -0,0 +1,87 @@
+package com.github.nicdesousa.telemetry.metrics;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput counters and latency histograms for the CarCoordinate pipeline, all of which are allocation-free to
+ * <br/>
+ * record so that they can stay on in production, and are exposed by the {@link MetricsResource}.
+ */
+@ApplicationScoped
+public class TelemetryMetrics {
+
+    // CarCoordinates decoded from MQTT and handed to the Kafka publisher
+    public final LongAdder mqttCarCoordinates = new LongAdder();
+    // CarCoordinates consumed from Kafka
+    public final LongAdder kafkaCarCoordinates = new LongAdder();
+    // batches of Kafka CarCoordinates handed off to the TelemetryService, with carCoordinateService.batch.maxSize > 1
+    public final LongAdder kafkaCarCoordinateBatches = new LongAdder();
+    // CarCoordinates published to Kafka by the pipelined KafkaBridgeService, and acknowledged by the broker or failed
+    public final LongAdder kafkaBridgeCarCoordinates = new LongAdder();
+    public final LongAdder kafkaBridgeFailures = new LongAdder();
+    // CarCoordinates applied to a Car by the TelemetryService
+    public final LongAdder processedCarCoordinates = new LongAdder();
+    // CarStatus and Event messages sent to MQTT
+    public final LongAdder publishedCarStatuses = new LongAdder();
+    public final LongAdder publishedEvents = new LongAdder();
+
+    // time to decode an MQTT CarCoordinate
+    public final LatencyHistogram mqttDecodeNanos = new LatencyHistogram();
+    // time to hand a consumed Kafka CarCoordinate (or batch) off to its TelemetryService shard (including back off when
+    // full)
+    public final LatencyHistogram kafkaHandoffNanos = new LatencyHistogram();
+    // from an MQTT CarCoordinate being received until it is handed off to its TelemetryService shard: directly with
+    // carCoordinateService.direct, otherwise through the Kafka topic (at the millisecond resolution of the Kafka record
+    // timestamp), so that the same load can be compared in both modes
+    public final LatencyHistogram ingestNanos = new LatencyHistogram();
+    // from a CarCoordinate being sent by the KafkaBridgeService until the broker acknowledged its batch
+    public final LatencyHistogram kafkaBridgeWriteNanos = new LatencyHistogram();
+    // TelemetryService stages: distance and speed, lap detection and standings
+    public final LatencyHistogram distanceNanos = new LatencyHistogram();
+    public final LatencyHistogram lapNanos = new LatencyHistogram();
+    public final LatencyHistogram standingsNanos = new LatencyHistogram();
+    // from the CarCoordinate timestamp until the resulting CarStatus or Event is sent to MQTT
+    public final LatencyHistogram carStatusEndToEndMillis = new LatencyHistogram();
+    public final LatencyHistogram eventEndToEndMillis = new LatencyHistogram();
+
+    private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    public TelemetryMetrics() {
+        this.counters.put("telemetry_mqtt_carcoordinates_total", this.mqttCarCoordinates);
+        this.counters.put("telemetry_kafka_carcoordinates_total", this.kafkaCarCoordinates);
+        this.counters.put("telemetry_kafka_carcoordinate_batches_total", this.kafkaCarCoordinateBatches);
+        this.counters.put("telemetry_kafka_bridge_carcoordinates_total", this.kafkaBridgeCarCoordinates);
+        this.counters.put("telemetry_kafka_bridge_failures_total", this.kafkaBridgeFailures);
+        this.counters.put("telemetry_processed_carcoordinates_total", this.processedCarCoordinates);
+        this.counters.put("telemetry_published_carstatus_total", this.publishedCarStatuses);
+        this.counters.put("telemetry_published_events_total", this.publishedEvents);
+        this.histograms.put("telemetry_mqtt_decode_nanoseconds", this.mqttDecodeNanos);
+        this.histograms.put("telemetry_kafka_handoff_nanoseconds", this.kafkaHandoffNanos);
+        this.histograms.put("telemetry_ingest_nanoseconds", this.ingestNanos);
+        this.histograms.put("telemetry_kafka_bridge_write_nanoseconds", this.kafkaBridgeWriteNanos);
+        this.histograms.put("telemetry_distance_nanoseconds", this.distanceNanos);
+        this.histograms.put("telemetry_lap_nanoseconds", this.lapNanos);
+        this.histograms.put("telemetry_standings_nanoseconds", this.standingsNanos);
+        this.histograms.put("telemetry_carstatus_end_to_end_milliseconds", this.carStatusEndToEndMillis);
+        this.histograms.put("telemetry_event_end_to_end_milliseconds", this.eventEndToEndMillis);
+    }
+
+    /**
+     * @return the counters by metric name
+     */
+    public Map<String, LongAdder> counters() {
+        return Collections.unmodifiableMap(this.counters);
+    }
+
+    /**
+     * @return the histograms by metric name
+     */
+    public Map<String, LatencyHistogram> histograms() {
+        return Collections.unmodifiableMap(this.histograms);
+    }
+}
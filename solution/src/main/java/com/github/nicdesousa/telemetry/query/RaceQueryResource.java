@@ -0,0 +1,103 @@
+package com.github.nicdesousa.telemetry.query;
+
+import com.github.nicdesousa.telemetry.domain.LapHistory;
+import com.github.nicdesousa.telemetry.domain.RaceStandings;
+import com.github.nicdesousa.telemetry.service.RaceSessionService;
+import com.github.nicdesousa.telemetry.service.TelemetryService;
+import io.vertx.core.json.Json;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Read-only query API for the live standings, the fastest lap and each Car's lap history of a race session.
+ * <br/>
+ * Every request reads an immutable snapshot that the workers publish with a single volatile write, so readers never
+ * <br/>
+ * take a lock or contend with the workers, however many there are. The standings are versioned, a client that
+ * <br/>
+ * polls with If-None-Match gets a 304 Not Modified (and nothing is encoded) until a newer version is published.
+ */
+@Path("/race")
+@Produces(MediaType.APPLICATION_JSON)
+public class RaceQueryResource {
+
+    @Inject
+    public RaceSessionService raceSessionService;
+
+    /**
+     * @param session     the race session, or none for the default session
+     * @param ifNoneMatch the ETag of the standings that the client already has
+     * @return the standings, in order of position
+     */
+    @GET
+    @Path("/standings")
+    public Response standings(@QueryParam("session") final String session,
+                              @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch) {
+        final RaceStandings standings = this.standingsOf(session);
+        final EntityTag tag = new EntityTag(Long.toString(standings.getVersion()));
+        if (ifNoneMatch != null && ifNoneMatch.equals(tag.toString())) {
+            return Response.notModified(tag).build();
+        }
+        return json(standings).tag(tag).build();
+    }
+
+    /**
+     * @param session the race session, or none for the default session
+     * @return the fastest lap, or 404 Not Found until the first lap is completed
+     */
+    @GET
+    @Path("/fastestLap")
+    public Response fastestLap(@QueryParam("session") final String session) {
+        final RaceStandings standings = this.standingsOf(session);
+        if (standings.getFastestLap() == null) {
+            throw new NotFoundException("No lap has been completed");
+        }
+        return json(standings.getFastestLap()).build();
+    }
+
+    /**
+     * @param session  the race session, or none for the default session
+     * @param carIndex of the Car
+     * @return the Car's lap count and most recent laps, or 404 Not Found until the Car completes a lap
+     */
+    @GET
+    @Path("/cars/{carIndex}/laps")
+    public Response laps(@QueryParam("session") final String session, @PathParam("carIndex") final int carIndex) {
+        final LapHistory lapHistory = this.telemetryServiceOf(session).getLapHistory(carIndex);
+        if (lapHistory == null) {
+            throw new NotFoundException(String.format("Car %d has not completed a lap", carIndex));
+        }
+        return json(lapHistory).build();
+    }
+
+    private RaceStandings standingsOf(final String session) {
+        final RaceStandings standings = this.telemetryServiceOf(session).getStandings();
+        if (standings == null) {
+            throw new NotFoundException("The query snapshots are disabled");
+        }
+        return standings;
+    }
+
+    private TelemetryService telemetryServiceOf(final String session) {
+        final TelemetryService telemetryService = this.raceSessionService.existingSession(session);
+        if (telemetryService == null) {
+            throw new NotFoundException(String.format("Unknown race session %s", session));
+        }
+        return telemetryService;
+    }
+
+    private static Response.ResponseBuilder json(final Object entity) {
+        return Response.ok(Json.encodeToBuffer(entity).getBytes(), MediaType.APPLICATION_JSON_TYPE);
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.nicdesousa.telemetry.replay;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinaryCodec;
+import com.github.nicdesousa.telemetry.codec.CarCoordinateJsonDecoder;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import io.vertx.core.json.DecodeException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reads a recorded carCoordinates file through memory-mapped regions, without copying the file onto the heap.
+ * <br/>
+ * A file whose first byte after an optional UTF-8 byte order mark and any whitespace (e.g. blank lines) is '{' is
+ * <br/>
+ * read as JSON lines (one carCoordinates message per line), anything else as consecutive 28 byte
+ * <br/>
+ * {@link CarCoordinateBinaryCodec} records (whose first byte, the high byte of the carIndex, is 0 for any fleet).
+ * <br/>
+ * Malformed JSON lines are logged and skipped.
+ * <br/>
+ * Not thread-safe, a reader holds its decoder and scratch buffer and must be confined to a single thread.
+ */
+@Slf4j
+public final class CarCoordinateFileReader {
+
+    // the largest region that is mapped at a time
+    private static final long DEFAULT_REGION_SIZE = 1L << 30;
+    private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final long regionSize;
+    private final CarCoordinateJsonDecoder decoder = new CarCoordinateJsonDecoder();
+    private byte[] scratch = new byte[256];
+    private long count;
+    private long lineNumber;
+    private long skippedLines;
+
+    public CarCoordinateFileReader() {
+        this(DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param regionSize the largest region (in bytes) that is mapped at a time
+     */
+    CarCoordinateFileReader(final long regionSize) {
+        if (regionSize < CarCoordinateBinaryCodec.SIZE) {
+            throw new IllegalArgumentException("regionSize must be at least 28 bytes");
+        }
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Read every CarCoordinate in a file, in file order.
+     *
+     * @param path     of the recorded carCoordinates file
+     * @param consumer of each CarCoordinate (a new CarCoordinate per record)
+     * @return the number of CarCoordinates read
+     * @throws IOException if the file could not be read, or a binary file is truncated
+     */
+    public long read(final Path path, final Consumer<CarCoordinate> consumer) throws IOException {
+        this.count = 0L;
+        this.lineNumber = 0L;
+        this.skippedLines = 0L;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            boolean json = false;
+            long position = 0L;
+            int start = 0;
+            while (position < size) {
+                final long length = Math.min(this.regionSize, size - position);
+                // regions are unmapped when they are garbage collected
+                final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                final boolean last = position + length == size;
+                if (position == 0L) {
+                    start = hasByteOrderMark(region) ? BYTE_ORDER_MARK.length : 0;
+                    json = isJson(region, start);
+                }
+                final long consumed;
+                if (json) {
+                    // the byte order mark is only skipped in the first region
+                    consumed = this.readLines(region, position == 0L ? start : 0, last, consumer);
+                } else {
+                    if (last && length % CarCoordinateBinaryCodec.SIZE != 0) {
+                        throw new IOException(String.format("%s is not a multiple of %d byte CarCoordinates", path,
+                                CarCoordinateBinaryCodec.SIZE));
+                    }
+                    consumed = this.readRecords(region, consumer);
+                }
+                if (consumed == 0L) {
+                    throw new IOException(String.format("%s has a line longer than %d bytes", path, this.regionSize));
+                }
+                position += consumed;
+            }
+        }
+        return this.count;
+    }
+
+    /**
+     * @return the number of malformed JSON lines skipped by the last read
+     */
+    public long getSkippedLines() {
+        return this.skippedLines;
+    }
+
+    private static boolean hasByteOrderMark(final MappedByteBuffer region) {
+        if (region.limit() < BYTE_ORDER_MARK.length) {
+            return false;
+        }
+        for (int i = 0; i < BYTE_ORDER_MARK.length; i++) {
+            if (region.get(i) != BYTE_ORDER_MARK[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // whether the first byte after any whitespace is '{', or the region is only whitespace (a file without lines)
+    private static boolean isJson(final MappedByteBuffer region, final int start) {
+        for (int i = start; i < region.limit(); i++) {
+            final byte b = region.get(i);
+            if (b != ' ' && b != '\r' && b != '\t' && b != '\n') {
+                return b == '{';
+            }
+        }
+        return true;
+    }
+
+    // the bytes consumed: every complete line, and the trailing line of the last region
+    private long readLines(final MappedByteBuffer region, final int offset, final boolean last,
+                           final Consumer<CarCoordinate> consumer) {
+        final int limit = region.limit();
+        int start = offset;
+        for (int i = offset; i < limit; i++) {
+            if (region.get(i) == '\n') {
+                this.readLine(region, start, i - start, consumer);
+                start = i + 1;
+            }
+        }
+        if (last && start < limit) {
+            this.readLine(region, start, limit - start, consumer);
+            start = limit;
+        }
+        return start;
+    }
+
+    private void readLine(final MappedByteBuffer region, final int start, final int length,
+                          final Consumer<CarCoordinate> consumer) {
+        this.lineNumber++;
+        if (this.isBlank(region, start, length)) {
+            return;
+        }
+        if (this.scratch.length < length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+        region.position(start);
+        region.get(this.scratch, 0, length);
+        CarCoordinate carCoordinate = new CarCoordinate();
+        if (!this.decoder.decode(this.scratch, 0, length, carCoordinate)) {
+            try {
+                // fall back to Jackson databind for anything the scanner does not handle
+                carCoordinate = this.decoder.decode(Arrays.copyOf(this.scratch, length));
+            } catch (final DecodeException e) {
+                this.skippedLines++;
+                log.error(String.format("Skipped malformed line %d: %s", this.lineNumber,
+                        new String(this.scratch, 0, length, StandardCharsets.UTF_8)), e);
+                return;
+            }
+        }
+        this.count++;
+        consumer.accept(carCoordinate);
+    }
+
+    private boolean isBlank(final MappedByteBuffer region, final int start, final int length) {
+        for (int i = start; i < start + length; i++) {
+            final byte b = region.get(i);
+            if (b != ' ' && b != '\r' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the bytes consumed: every complete record
+    private long readRecords(final MappedByteBuffer region, final Consumer<CarCoordinate> consumer) {
+        final int records = region.limit() / CarCoordinateBinaryCodec.SIZE;
+        for (int i = 0; i < records; i++) {
+            region.get(this.scratch, 0, CarCoordinateBinaryCodec.SIZE);
+            this.count++;
+            consumer.accept(CarCoordinateBinaryCodec.decode(this.scratch, 0, new CarCoordinate()));
+        }
+        return (long) records * CarCoordinateBinaryCodec.SIZE;
+    }
+}
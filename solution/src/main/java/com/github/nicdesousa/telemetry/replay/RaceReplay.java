@@ -0,0 +1,232 @@
+package com.github.nicdesousa.telemetry.replay;
+
+import com.github.nicdesousa.telemetry.codec.TelemetryJsonEncoder;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import com.github.nicdesousa.telemetry.service.CarStatusService;
+import com.github.nicdesousa.telemetry.service.EventsService;
+import com.github.nicdesousa.telemetry.service.TelemetryService;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a recorded carCoordinates file (JSON lines or 28 byte binary records) through the TelemetryService as
+ * <br/>
+ * fast as it can be processed, e.g. to recalculate the lap times and events of a race after a configuration change,
+ * <br/>
+ * and writes the resulting CarStatus and Event MQTT payloads to a JSON lines file.
+ * <br/>
+ * The TelemetryService is configured from application.properties, overridden by system properties and then by
+ * <br/>
+ * key=value arguments, e.g. telemetryService.circuitLengthInKM=5.2,telemetryService.shards=0 (0 shards replays on
+ * <br/>
+ * a single thread, so the output is in the same order on every replay).
+ */
+public final class RaceReplay {
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
+    private final Properties config;
+
+    /**
+     * @param config the TelemetryService configuration properties
+     */
+    public RaceReplay(final Properties config) {
+        this.config = config;
+    }
+
+    /**
+     * Usage: RaceReplay input output [key=value[,key=value...]]
+     *
+     * @param args the recorded carCoordinates file, the output file, and optional configuration overrides
+     * @throws IOException if a file could not be read or written
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RaceReplay input output [key=value[,key=value...]]");
+            System.exit(1);
+        }
+        final Properties config = config(args.length > 2 ? args[2] : null);
+        final ReplayReport report = new RaceReplay(config).replay(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println(report.summary());
+    }
+
+    /**
+     * Load the configuration from application.properties, overridden by system properties and then by key=value
+     * <br/>
+     * overrides.
+     *
+     * @param overrides key=value[,key=value...], or null
+     * @return the configuration properties
+     * @throws IOException if application.properties could not be read
+     */
+    public static Properties config(final String overrides) throws IOException {
+        final Properties config = new Properties();
+        try (InputStream in = RaceReplay.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (in != null) {
+                config.load(in);
+            }
+        }
+        config.putAll(System.getProperties());
+        if (overrides != null) {
+            for (final String override : overrides.split(",")) {
+                final int separator = override.indexOf('=');
+                if (separator > 0) {
+                    config.setProperty(override.substring(0, separator).trim(), override.substring(separator + 1).trim());
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Replay a recorded carCoordinates file.
+     *
+     * @param input  the recorded carCoordinates file
+     * @param output the CarStatus and Event JSON lines file, replaced if it exists
+     * @return the outcome of the replay
+     * @throws IOException if a file could not be read or written
+     */
+    public ReplayReport replay(final Path input, final Path output) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), OUTPUT_BUFFER_SIZE)) {
+            final ReplayWriter writer = new ReplayWriter(out);
+            final TelemetryService telemetryService = this.telemetryService(writer);
+            final CarCoordinateFileReader reader = new CarCoordinateFileReader();
+            final long start = System.nanoTime();
+            final long carCoordinates;
+            try {
+                carCoordinates = reader.read(input, telemetryService::processCarCoordinate);
+            } finally {
+                // releases the CarCoordinates that are still held in the reorder windows
+                telemetryService.dispose();
+            }
+            final long elapsedNanos = System.nanoTime() - start;
+            return ReplayReport.builder().carCoordinates(carCoordinates).skippedLines(reader.getSkippedLines())
+                    .lateSamples(telemetryService.getLateSamples())
+                    .duplicateSamples(telemetryService.getDuplicateSamples())
+                    .carStatuses(writer.carStatuses.get()).events(writer.events.get()).elapsedNanos(elapsedNanos)
+                    .build();
+        }
+    }
+
+    private TelemetryService telemetryService(final ReplayWriter writer) {
+        return this.telemetryService(new ReplayCarStatusService(writer), new ReplayEventsService(writer));
+    }
+
+    /**
+     * Create a TelemetryService from the configuration properties, that publishes to the given services (e.g. for a
+     * <br/>
+     * load test).
+     *
+     * @param carStatusService publishes the CarStatus messages
+     * @param eventsService    publishes the Events
+     * @return the initialised TelemetryService, to be disposed by the caller
+     */
+    public TelemetryService telemetryService(final CarStatusService carStatusService,
+                                             final EventsService eventsService) {
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.carStatusService = carStatusService;
+        telemetryService.eventsService = eventsService;
+        telemetryService.metrics = new TelemetryMetrics();
+        telemetryService.circuitLengthInKM = Double.valueOf(this.property("telemetryService.circuitLengthInKM",
+                "5.119771376289225"));
+        telemetryService.flatEarthThresholdInKM = Double.valueOf(this.property("telemetryService.flatEarthThresholdInKM",
+                "0"));
+        telemetryService.shards = Integer.valueOf(this.property("telemetryService.shards", "4"));
+        telemetryService.queueCapacity = Integer.valueOf(this.property("telemetryService.queueCapacity", "65536"));
+        telemetryService.reorderWindowInMs = Long.valueOf(this.property("telemetryService.reorder.windowInMs", "250"));
+        telemetryService.reorderMaxSamples = Integer.valueOf(this.property("telemetryService.reorder.maxSamples",
+                "8"));
+        telemetryService.maxCars = Integer.valueOf(this.property("telemetryService.maxCars", "65536"));
+        telemetryService.lapHistory = Integer.valueOf(this.property("telemetryService.lapHistory", "512"));
+        telemetryService.lapDetection = this.property("telemetryService.lapDetection", "DISTANCE");
+        telemetryService.trackPath = this.property("telemetryService.trackPath", "silverstone_closed.geojson");
+        telemetryService.analyticsWindowSamples = Integer.valueOf(this.property(
+                "telemetryService.analytics.windowSamples", "10"));
+        telemetryService.analyticsEwmaTimeConstantInMs = Long.valueOf(this.property(
+                "telemetryService.analytics.ewmaTimeConstantInMs", "1000"));
+        telemetryService.analyticsSectorSplits = this.property("telemetryService.analytics.sectorSplits",
+                "0.33,0.66");
+        telemetryService.gapsMarkerSpacingInKM = Double.valueOf(this.property(
+                "telemetryService.gaps.markerSpacingInKM", "0.1"));
+        telemetryService.gapsMarkers = Integer.valueOf(this.property("telemetryService.gaps.markers", "64"));
+        // a replay never restores or writes the live race snapshot
+        telemetryService.snapshotPath = null;
+        telemetryService.snapshotIntervalInMs = 0L;
+        telemetryService.init();
+        return telemetryService;
+    }
+
+    private String property(final String name, final String defaultValue) {
+        return this.config.getProperty(name, defaultValue).trim();
+    }
+
+    // writes the MQTT payloads, as JSON lines, for every shard worker
+    private static final class ReplayWriter {
+        private final OutputStream out;
+        private final AtomicLong carStatuses = new AtomicLong();
+        private final AtomicLong events = new AtomicLong();
+        // guarded by the writer, like the output stream
+        private final TelemetryJsonEncoder encoder = new TelemetryJsonEncoder();
+
+        private ReplayWriter(final OutputStream out) {
+            this.out = out;
+        }
+
+        private synchronized void write(final CarStatus carStatus) {
+            this.write(this.encoder.encode(carStatus));
+        }
+
+        private synchronized void write(final Event event) {
+            this.write(this.encoder.encode(event));
+        }
+
+        private void write(final TelemetryJsonEncoder encoded) {
+            try {
+                this.out.write(encoded.buffer(), 0, encoded.length());
+                this.out.write('\n');
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // every CarStatus is written, rather than conflated to the latest at a fixed (wall clock) rate
+    private static final class ReplayCarStatusService extends CarStatusService {
+        private final ReplayWriter writer;
+
+        private ReplayCarStatusService(final ReplayWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void publish(final CarStatus carStatus) {
+            this.writer.write(carStatus);
+            this.writer.carStatuses.incrementAndGet();
+        }
+    }
+
+    private static final class ReplayEventsService extends EventsService {
+        private final ReplayWriter writer;
+
+        private ReplayEventsService(final ReplayWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void publish(final Event event) {
+            this.writer.write(event);
+            this.writer.events.incrementAndGet();
+        }
+    }
+}
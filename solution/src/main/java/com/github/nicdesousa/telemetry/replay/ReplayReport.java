@@ -0,0 +1,36 @@
+package com.github.nicdesousa.telemetry.replay;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The outcome of a {@link RaceReplay}.
+ */
+@Data
+@Builder
+public class ReplayReport {
+    private long carCoordinates;
+    private long skippedLines;
+    private long lateSamples;
+    private long duplicateSamples;
+    private long carStatuses;
+    private long events;
+    private long elapsedNanos;
+
+    /**
+     * @return the number of CarCoordinates replayed per second
+     */
+    public long getSamplesPerSecond() {
+        return this.elapsedNanos == 0L ? 0L : (long) (this.carCoordinates * 1e9D / this.elapsedNanos);
+    }
+
+    /**
+     * @return a one line summary of the replay
+     */
+    public String summary() {
+        return String.format("Replayed %d CarCoordinates in %d ms (%d per second), published %d CarStatus messages "
+                        + "and %d Events, skipped %d malformed lines, dropped %d late and %d duplicate CarCoordinates",
+                this.carCoordinates, this.elapsedNanos / 1_000_000L, this.getSamplesPerSecond(), this.carStatuses,
+                this.events, this.skippedLines, this.lateSamples, this.duplicateSamples);
+    }
+}
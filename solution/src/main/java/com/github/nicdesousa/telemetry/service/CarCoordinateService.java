@@ -1,43 +1,262 @@
 package com.github.nicdesousa.telemetry.service;
 
+import com.github.nicdesousa.telemetry.codec.CarCoordinateJsonDecoder;
 import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.engine.BatchingSubscriber;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
 import io.smallrye.reactive.messaging.annotations.Broadcast;
 import io.smallrye.reactive.messaging.kafka.KafkaMessage;
-import io.vertx.core.json.Json;
-import io.vertx.core.json.JsonObject;
+import io.smallrye.reactive.messaging.kafka.ReceivedKafkaMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.eclipse.microprofile.reactive.messaging.Outgoing;
+import org.eclipse.microprofile.reactive.streams.operators.PublisherBuilder;
+import org.eclipse.microprofile.reactive.streams.operators.ReactiveStreams;
+import org.eclipse.microprofile.reactive.streams.operators.SubscriberBuilder;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @ApplicationScoped
 public class CarCoordinateService {
 
+    // the Kafka header that carries the race session of a CarCoordinate, since the binary encoding has no session
+    public static final String SESSION_HEADER = "session";
+    // decoders hold their scan state, so each consumer thread has its own
+    private static final ThreadLocal<CarCoordinateJsonDecoder> DECODER =
+            ThreadLocal.withInitial(CarCoordinateJsonDecoder::new);
+
     @Inject
     public TelemetryService telemetryService;
+    @Inject
+    public RaceSessionService raceSessionService;
+    @Inject
+    public TelemetryMetrics metrics;
+    @Inject
+    public KafkaBridgeService kafkaBridgeService;
+    // seeks the Kafka consumer past the race snapshot that the TelemetryService was restored from, null to skip the
+    // restored CarCoordinates one by one
+    @Inject
+    public KafkaOffsetService kafkaOffsetService;
+    // process Kafka CarCoordinates in partition order, with every partition owned by one TelemetryService shard
+    @ConfigProperty(name = "carCoordinateService.orderByPartition", defaultValue = "false")
+    public Boolean orderByPartition;
+    // hand Kafka CarCoordinates off to the TelemetryService in batches of up to maxSize, 1 hands off every
+    // CarCoordinate as it is consumed
+    @ConfigProperty(name = "carCoordinateService.batch.maxSize", defaultValue = "1")
+    public Integer batchMaxSize;
+    // how long the first CarCoordinate of a batch waits for the batch to fill up
+    @ConfigProperty(name = "carCoordinateService.batch.lingerInMs", defaultValue = "5")
+    public Long batchLingerInMs;
+    // hand MQTT CarCoordinates straight off to the TelemetryService, and only publish them to Kafka as a tee for
+    // durability, instead of processing them from Kafka (the direct profile has no kafka-carCoordinates-sub channel)
+    @ConfigProperty(name = "carCoordinateService.direct", defaultValue = "false")
+    public Boolean direct;
+    // the connector of the kafka-carCoordinates-sub channel, empty when the channel is not configured
+    @ConfigProperty(name = "mp.messaging.incoming.kafka-carCoordinates-sub.connector")
+    public Optional<String> kafkaConnector;
+
+    @PostConstruct
+    public void init() {
+        if (Boolean.TRUE.equals(this.direct) && this.kafkaConnector != null && this.kafkaConnector.isPresent()) {
+            // every CarCoordinate would be processed twice, from MQTT and again from Kafka
+            throw new IllegalStateException("Direct mode requires the direct profile, without the "
+                    + "kafka-carCoordinates-sub channel");
+        }
+    }
 
     @Incoming("mqtt-carCoordinates-sub")
     @Outgoing("kafka-carCoordinates-pub")
     @Broadcast
-    public KafkaMessage<Long, JsonObject> consumeMqttCarCoordinate(final byte[] rawMessage) {
-        final CarCoordinate carCoordinate = Json.decodeValue(new String(rawMessage), CarCoordinate.class);
-        log.debug("Received MQTT CarCoordinate: {}", carCoordinate.toString());
-        // publish carCoordinate to Kafka
-        return KafkaMessage.of(carCoordinate.getTimestamp(), JsonObject.mapFrom(carCoordinate));
+    public PublisherBuilder<Message<CarCoordinate>> bridgeMqttCarCoordinate(final Message<byte[]> mqttMessage) {
+        final KafkaMessage<Integer, CarCoordinate> message = this.consumeMqttCarCoordinate(mqttMessage.getPayload());
+        if (this.kafkaBridgeService == null || !this.kafkaBridgeService.isPipelined()) {
+            // published by the kafka-carCoordinates-pub channel, one write at a time with waitForWriteCompletion, which
+            // acknowledges the MQTT message once the broker has acknowledged the write, and fails the stream if the
+            // write fails
+            return ReactiveStreams.of(message.withAck(mqttMessage::ack));
+        }
+        // the next MQTT CarCoordinate is taken without waiting for the broker, and the MQTT message is only
+        // acknowledged once the CarCoordinate's batch has been persisted (a CarCoordinate that could not be persisted
+        // is never acknowledged, so the MQTT broker redelivers it)
+        this.kafkaBridgeService.publish(message.getPayload()).thenCompose(persisted -> mqttMessage.ack());
+        // the MQTT stream takes the next CarCoordinate once the returned stream completes, so it backs off without
+        // blocking its event loop while the window is full, and fails once a CarCoordinate could not be persisted
+        // (the bridge fails, which fails the window, and every later publish), rather than dropping it and going on
+        return ReactiveStreams.fromCompletionStageNullable(this.kafkaBridgeService.windowOpen()
+                .thenApply(opened -> null));
+    }
+
+    /**
+     * Decode an MQTT CarCoordinate, hand it off to the TelemetryService in direct mode, and map it to the Kafka
+     * <br/>
+     * message that publishes it to the "carCoordinates" topic.
+     *
+     * @param rawMessage received from the "carCoordinates" MQTT topic
+     * @return the Kafka message, keyed by carIndex and tagged with the race session
+     */
+    public KafkaMessage<Integer, CarCoordinate> consumeMqttCarCoordinate(final byte[] rawMessage) {
+        final long start = System.nanoTime();
+        final CarCoordinate carCoordinate = DECODER.get().decode(rawMessage);
+        metrics.mqttDecodeNanos.record(System.nanoTime() - start);
+        metrics.mqttCarCoordinates.increment();
+        log.debug("Received MQTT CarCoordinate: {}", carCoordinate);
+        if (Boolean.TRUE.equals(this.direct)) {
+            // the shard workers' handoff queues buffer the CarCoordinate, and back off this consumer when they are full
+            if (RaceSessionService.isDefaultSession(carCoordinate.getSession())) {
+                telemetryService.processCarCoordinate(carCoordinate);
+            } else {
+                raceSessionService.processCarCoordinate(carCoordinate);
+            }
+            metrics.ingestNanos.record(System.nanoTime() - start);
+        }
+        // publish carCoordinate to Kafka, keyed by the Car so that each Car's CarCoordinates stay in one partition
+        // (the value serializer, binary or JSON, is selected in application.properties)
+        final KafkaMessage<Integer, CarCoordinate> message = KafkaMessage.of(carCoordinate.getCarIndex(), carCoordinate);
+        return RaceSessionService.isDefaultSession(carCoordinate.getSession()) ? message
+                : message.withHeader(SESSION_HEADER, carCoordinate.getSession(), StandardCharsets.UTF_8);
     }
 
     @Incoming("kafka-carCoordinates-sub")
-    public CompletionStage<Void> consumeKafkaCarCoordinateAsync(final KafkaMessage<Long, JsonObject> message) {
-        return CompletableFuture.runAsync(() -> {
-            final CarCoordinate carCoordinate = message.getPayload().mapTo(CarCoordinate.class);
-            log.debug("Received Kafka CarCoordinate: {}", carCoordinate.toString());
-            // process the carCoordinate
+    public SubscriberBuilder<KafkaMessage<?, CarCoordinate>, Void> consumeKafkaCarCoordinates() {
+        if (this.batchMaxSize == null || this.batchMaxSize <= 1) {
+            return ReactiveStreams.<KafkaMessage<?, CarCoordinate>>builder().forEach(this::consumeKafkaCarCoordinate);
+        }
+        // the subscriber requests up to a batch of CarCoordinates at a time, so a slow TelemetryService backs off the
+        // Kafka consumer
+        return ReactiveStreams.fromSubscriber(new BatchingSubscriber<>("kafka-carCoordinates-batch",
+                this.batchMaxSize, this.batchLingerInMs, this::consumeKafkaCarCoordinates));
+    }
+
+    /**
+     * Hand a Kafka CarCoordinate off to the TelemetryService (or the RaceSessionService) as it is consumed.
+     *
+     * @param message consumed from the "carCoordinates" topic
+     */
+    public void consumeKafkaCarCoordinate(final KafkaMessage<?, CarCoordinate> message) {
+        final CarCoordinate carCoordinate = session(message);
+        log.debug("Received Kafka CarCoordinate: {}", carCoordinate);
+        if (!RaceSessionService.isDefaultSession(carCoordinate.getSession())) {
+            // race sessions are not snapshotted, they are rebuilt from the beginning of the topic at startup
+            telemetryService.sessionConsumed();
+            final long start = System.nanoTime();
+            raceSessionService.processCarCoordinate(carCoordinate);
+            metrics.kafkaHandoffNanos.record(System.nanoTime() - start);
+            recordIngest(message);
+            metrics.kafkaCarCoordinates.increment();
+            return;
+        }
+        final long offset = offset(message);
+        if (offset >= 0L && message.getPartition() != null
+                && telemetryService.isRestored(message.getPartition(), offset)) {
+            // already reflected in the race snapshot that the TelemetryService was restored from
+            this.seekPastRestored(message, offset);
+            return;
+        }
+        // hand the carCoordinate off to the TelemetryService shard that owns the Car (or partition), in the order it
+        // was consumed
+        final long start = System.nanoTime();
+        if (this.orderByPartition && message.getPartition() != null) {
+            telemetryService.processCarCoordinate(message.getPartition(), carCoordinate);
+        } else {
             telemetryService.processCarCoordinate(carCoordinate);
-        });
+        }
+        metrics.kafkaHandoffNanos.record(System.nanoTime() - start);
+        recordIngest(message);
+        if (offset >= 0L && message.getPartition() != null) {
+            telemetryService.consumedOffset(message.getPartition(), offset);
+        }
+        metrics.kafkaCarCoordinates.increment();
+    }
+
+    /**
+     * Hand a batch of Kafka CarCoordinates off to the TelemetryService as one task per shard worker (by Car, or by
+     * <br/>
+     * partition), which updates the standings once per batch rather than once per CarCoordinate.
+     *
+     * @param messages consumed from the "carCoordinates" topic, in the order they were consumed
+     */
+    public void consumeKafkaCarCoordinates(final List<KafkaMessage<?, CarCoordinate>> messages) {
+        final long start = System.nanoTime();
+        final List<CarCoordinate> carCoordinates = new ArrayList<>(messages.size());
+        // by partition with orderByPartition, and the last offset consumed per partition
+        final Map<Integer, List<CarCoordinate>> partitions = new LinkedHashMap<>();
+        final Map<Integer, Long> offsets = new LinkedHashMap<>();
+        for (final KafkaMessage<?, CarCoordinate> message : messages) {
+            final CarCoordinate carCoordinate = session(message);
+            if (!RaceSessionService.isDefaultSession(carCoordinate.getSession())) {
+                telemetryService.sessionConsumed();
+                raceSessionService.processCarCoordinate(carCoordinate);
+                continue;
+            }
+            final Integer partition = message.getPartition();
+            final long offset = offset(message);
+            if (offset >= 0L && partition != null) {
+                if (telemetryService.isRestored(partition, offset)) {
+                    this.seekPastRestored(message, offset);
+                    continue;
+                }
+                offsets.put(partition, offset);
+            }
+            if (this.orderByPartition && partition != null) {
+                partitions.computeIfAbsent(partition, key -> new ArrayList<>()).add(carCoordinate);
+            } else {
+                carCoordinates.add(carCoordinate);
+            }
+        }
+        telemetryService.processCarCoordinates(carCoordinates);
+        partitions.forEach(telemetryService::processCarCoordinates);
+        metrics.kafkaHandoffNanos.record(System.nanoTime() - start);
+        for (final KafkaMessage<?, CarCoordinate> message : messages) {
+            recordIngest(message);
+        }
+        // the offsets are recorded after the hand-off, see TelemetryService.snapshot()
+        offsets.forEach(telemetryService::consumedOffset);
+        metrics.kafkaCarCoordinates.add(messages.size());
+        metrics.kafkaCarCoordinateBatches.increment();
+    }
+
+    // skip fetching the rest of the restored CarCoordinates of the partition, unless race sessions are among them
+    private void seekPastRestored(final KafkaMessage<?, CarCoordinate> message, final long offset) {
+        final long resumeOffset = telemetryService.resumeOffset(message.getPartition());
+        if (resumeOffset >= 0L && this.kafkaOffsetService != null) {
+            this.kafkaOffsetService.seek(message, offset, resumeOffset);
+        }
+    }
+
+    // the consumed CarCoordinate, with the race session from its Kafka header
+    private static CarCoordinate session(final KafkaMessage<?, CarCoordinate> message) {
+        // already decoded by the CarCoordinateDeserializer
+        final CarCoordinate carCoordinate = message.getPayload();
+        if (carCoordinate.getSession() == null && message.getHeaders() != null) {
+            message.getHeaders().getOneAsString(SESSION_HEADER, StandardCharsets.UTF_8)
+                    .ifPresent(carCoordinate::setSession);
+        }
+        return carCoordinate;
+    }
+
+    // from when the CarCoordinate was published to Kafka (after it was decoded from MQTT) until it was handed off to the
+    // TelemetryService, at the millisecond resolution of the Kafka record timestamp
+    private void recordIngest(final KafkaMessage<?, CarCoordinate> message) {
+        final Long publishedAt = message.getTimestamp();
+        if (publishedAt != null) {
+            metrics.ingestNanos.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0L,
+                    System.currentTimeMillis() - publishedAt)));
+        }
+    }
+
+    private static long offset(final KafkaMessage<?, CarCoordinate> message) {
+        return message instanceof ReceivedKafkaMessage ? ((ReceivedKafkaMessage<?, ?>) message).unwrap().offset() : -1L;
     }
 }
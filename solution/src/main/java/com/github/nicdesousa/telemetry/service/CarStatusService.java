@@ -1,11 +1,11 @@
 package com.github.nicdesousa.telemetry.service;
 
+import com.github.nicdesousa.telemetry.codec.TelemetryJsonEncoder;
 import com.github.nicdesousa.telemetry.domain.CarStatus;
-import io.reactivex.BackpressureStrategy;
-import io.reactivex.Flowable;
-import io.reactivex.FlowableEmitter;
-import io.vertx.core.json.JsonObject;
+import com.github.nicdesousa.telemetry.engine.BoundedPublisher;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.eclipse.microprofile.reactive.messaging.Message;
 import org.eclipse.microprofile.reactive.messaging.Outgoing;
@@ -14,37 +14,191 @@ import org.reactivestreams.Publisher;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @ApplicationScoped
 public class CarStatusService {
-    private FlowableEmitter<Message<JsonObject>> emitter;
-    private Flowable<Message<JsonObject>> outgoingStream;
+    // the conflation keys have 24 bits for the race session number
+    static final int MAX_SESSION_NUMBERS = 0xFFFFFF;
+    // the carKey of a CarStatus whose race session has no number, which is published without conflation
+    private static final long NO_CAR_KEY = -1L;
+
+    @Inject
+    public TelemetryMetrics metrics;
+    // the maximum number of CarStatus messages buffered for the MQTT publisher
+    @ConfigProperty(name = "carStatusService.buffer.capacity", defaultValue = "8192")
+    public Integer bufferCapacity;
+    // DROP_OLDEST, CONFLATE (the latest CarStatus per Car and type) or BLOCK, when the buffer is full
+    @ConfigProperty(name = "carStatusService.buffer.policy", defaultValue = "CONFLATE")
+    public String bufferPolicy;
+    // BLOCK would block the event loops that run the TelemetryService workers with EVENT_LOOP, so DROP_OLDEST is used
+    @ConfigProperty(name = "telemetryService.executor.mode", defaultValue = "DEDICATED")
+    public String executorMode;
+    // publish only the latest CarStatus per Car and type once per interval, 0 publishes every CarStatus immediately
+    @ConfigProperty(name = "carStatusService.publishIntervalInMs", defaultValue = "100")
+    public Long publishIntervalInMs;
+
+    private BoundedPublisher<CarStatus, Message<byte[]>> outgoingStream;
+    // only used by the drain loop of the outgoingStream, which never maps two messages at once
+    private final TelemetryJsonEncoder encoder = new TelemetryJsonEncoder();
+    // the latest unpublished CarStatus per Car (and race session), indexed by type
+    private final Map<Long, AtomicReferenceArray<CarStatus>> latest = new ConcurrentHashMap<>();
+    // a small number per race session for the conflation keys, the default session is 0
+    private final Map<String, Integer> sessionNumbers = new ConcurrentHashMap<>();
+    // the number of race sessions that can be numbered, up to MAX_SESSION_NUMBERS
+    int maxSessionNumbers = MAX_SESSION_NUMBERS;
+    private boolean sessionNumbersExhausted = false;
+    // CarStatus messages replaced by a newer CarStatus before they were published
+    private final LongAdder conflated = new LongAdder();
+    private ScheduledExecutorService ticker;
 
     public void publish(final CarStatus carStatus) {
-        log.debug("Publishing MQTT CarStatus: {}", carStatus.toString());
-        emitter.onNext(Message.of(JsonObject.mapFrom(carStatus)));
+        log.debug("Publishing MQTT CarStatus: {}", carStatus);
+        final long carKey = carKey(carStatus);
+        if (carKey == NO_CAR_KEY) {
+            outgoingStream.offer(BoundedPublisher.NO_KEY, carStatus);
+            return;
+        }
+        if (ticker == null) {
+            outgoingStream.offer(conflationKey(carKey, carStatus), carStatus);
+            return;
+        }
+        AtomicReferenceArray<CarStatus> carStatuses = latest.get(carKey);
+        if (carStatuses == null) {
+            carStatuses = latest.computeIfAbsent(carKey,
+                    key -> new AtomicReferenceArray<>(CarStatus.TypeEnum.values().length));
+        }
+        if (carStatuses.getAndSet(carStatus.getType().ordinal(), carStatus) != null) {
+            conflated.increment();
+        }
+    }
+
+    /**
+     * Publish the latest CarStatus per Car and type that has been received since the previous flush.
+     */
+    public void flush() {
+        for (final Map.Entry<Long, AtomicReferenceArray<CarStatus>> entry : latest.entrySet()) {
+            final AtomicReferenceArray<CarStatus> carStatuses = entry.getValue();
+            for (int type = 0; type < carStatuses.length(); type++) {
+                final CarStatus carStatus = carStatuses.getAndSet(type, null);
+                if (carStatus != null) {
+                    outgoingStream.offer(conflationKey(entry.getKey(), carStatus), carStatus);
+                }
+            }
+        }
     }
 
     @PostConstruct
     public void init() {
-        outgoingStream = Flowable.create(e -> this.emitter = e, BackpressureStrategy.BUFFER);
+        // bounded, since messages are published concurrently by the TelemetryService workers faster than MQTT may
+        // accept them, and only encoded to JSON when they are actually sent
+        outgoingStream = new BoundedPublisher<>(bufferCapacity,
+                BoundedPublisher.overflowPolicy(bufferPolicy, "EVENT_LOOP".equalsIgnoreCase(executorMode)),
+                this::toMessage);
+        if (publishIntervalInMs > 0L) {
+            // dashboards only need the latest CarStatus at a fixed rate, rather than one per CarCoordinate
+            ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "carStatus-ticker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::flush, publishIntervalInMs, publishIntervalInMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
     public void dispose() {
-        emitter.onComplete();
+        if (ticker != null) {
+            ticker.shutdown();
+            try {
+                ticker.awaitTermination(publishIntervalInMs, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+        outgoingStream.close();
+    }
+
+    /**
+     * @return the number of CarStatus messages waiting to be published
+     */
+    public int getQueueDepth() {
+        return outgoingStream.depth();
+    }
+
+    /**
+     * @return the number of CarStatus messages dropped because the buffer was full
+     */
+    public long getDroppedMessages() {
+        return outgoingStream.dropped();
+    }
+
+    /**
+     * @return the number of CarStatus messages replaced by a newer CarStatus for the same Car and type, within a
+     * <br/>
+     * publish interval or while buffered
+     */
+    public long getConflatedMessages() {
+        return conflated.sum() + outgoingStream.conflated();
     }
 
     @Outgoing("CarStatusService")
-    public Publisher<Message<JsonObject>> produceMessage() {
+    public Publisher<Message<byte[]>> produceMessage() {
         return outgoingStream;
     }
 
     @Incoming("CarStatusService")
     @Outgoing("mqtt-carStatus-pub")
-    public Message<JsonObject> transform(final Message<JsonObject> msg) {
+    public Message<byte[]> transform(final Message<byte[]> msg) {
         return msg;
     }
 
+    private Message<byte[]> toMessage(final CarStatus carStatus) {
+        metrics.publishedCarStatuses.increment();
+        metrics.carStatusEndToEndMillis.record(System.currentTimeMillis() - carStatus.getTimestamp());
+        return Message.of(encoder.encode(carStatus).toByteArray());
+    }
+
+    // a CarStatus is conflated with the CarStatus of the same Car (and race session) and type
+    private static long conflationKey(final long carKey, final CarStatus carStatus) {
+        return (carKey << 8) | carStatus.getType().ordinal();
+    }
+
+    // the race session number (up to 24 bits) and the carIndex, or NO_CAR_KEY once every session number is taken
+    private long carKey(final CarStatus carStatus) {
+        final long carIndex = carStatus.getCarIndex() & 0xFFFFFFFFL;
+        if (carStatus.getSession() == null) {
+            return carIndex;
+        }
+        Integer sessionNumber = sessionNumbers.get(carStatus.getSession());
+        if (sessionNumber == null) {
+            synchronized (sessionNumbers) {
+                sessionNumber = sessionNumbers.get(carStatus.getSession());
+                if (sessionNumber == null) {
+                    if (sessionNumbers.size() >= Math.min(maxSessionNumbers, MAX_SESSION_NUMBERS)) {
+                        // a wrapped session number would conflate the CarStatus of different race sessions
+                        if (!sessionNumbersExhausted) {
+                            sessionNumbersExhausted = true;
+                            log.error("More than {} race sessions, the CarStatus of the race session {} and later "
+                                    + "race sessions is published without conflation", sessionNumbers.size(),
+                                    carStatus.getSession());
+                        }
+                        return NO_CAR_KEY;
+                    }
+                    sessionNumber = sessionNumbers.size() + 1;
+                    sessionNumbers.put(carStatus.getSession(), sessionNumber);
+                }
+            }
+        }
+        return ((long) sessionNumber << 32) | carIndex;
+    }
 }
@@ -1,11 +1,11 @@
 package com.github.nicdesousa.telemetry.service;
 
+import com.github.nicdesousa.telemetry.codec.TelemetryJsonEncoder;
 import com.github.nicdesousa.telemetry.domain.Event;
-import io.reactivex.BackpressureStrategy;
-import io.reactivex.Flowable;
-import io.reactivex.FlowableEmitter;
-import io.vertx.core.json.JsonObject;
+import com.github.nicdesousa.telemetry.engine.BoundedPublisher;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.eclipse.microprofile.reactive.messaging.Message;
 import org.eclipse.microprofile.reactive.messaging.Outgoing;
@@ -14,38 +14,76 @@ import org.reactivestreams.Publisher;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
 @Slf4j
 @ApplicationScoped
 public class EventsService {
 
-    private FlowableEmitter<Message<JsonObject>> emitter;
-    private Flowable<Message<JsonObject>> outgoingStream;
+    @Inject
+    public TelemetryMetrics metrics;
+    // the maximum number of Event messages buffered for the MQTT publisher
+    @ConfigProperty(name = "eventsService.buffer.capacity", defaultValue = "4096")
+    public Integer bufferCapacity;
+    // DROP_OLDEST or BLOCK when the buffer is full (Events are never conflated)
+    @ConfigProperty(name = "eventsService.buffer.policy", defaultValue = "BLOCK")
+    public String bufferPolicy;
+    // BLOCK would block the event loops that run the TelemetryService workers with EVENT_LOOP, so DROP_OLDEST is used
+    @ConfigProperty(name = "telemetryService.executor.mode", defaultValue = "DEDICATED")
+    public String executorMode;
+
+    private BoundedPublisher<Event, Message<byte[]>> outgoingStream;
+    // only used by the drain loop of the outgoingStream, which never maps two messages at once
+    private final TelemetryJsonEncoder encoder = new TelemetryJsonEncoder();
 
     public void publish(final Event event) {
-        log.debug("Publishing MQTT Event: {}", event.toString());
-        emitter.onNext(Message.of(JsonObject.mapFrom(event)));
+        log.debug("Publishing MQTT Event: {}", event);
+        outgoingStream.offer(BoundedPublisher.NO_KEY, event);
     }
 
     @PostConstruct
     public void init() {
-        outgoingStream = Flowable.create(e -> this.emitter = e, BackpressureStrategy.BUFFER);
+        // bounded, since messages are published concurrently by the TelemetryService workers faster than MQTT may
+        // accept them, and only encoded to JSON when they are actually sent
+        outgoingStream = new BoundedPublisher<>(bufferCapacity,
+                BoundedPublisher.overflowPolicy(bufferPolicy, "EVENT_LOOP".equalsIgnoreCase(executorMode)),
+                this::toMessage);
     }
 
     @PreDestroy
     public void dispose() {
-        emitter.onComplete();
+        outgoingStream.close();
+    }
+
+    /**
+     * @return the number of Event messages waiting to be published
+     */
+    public int getQueueDepth() {
+        return outgoingStream.depth();
+    }
+
+    /**
+     * @return the number of Event messages dropped because the buffer was full
+     */
+    public long getDroppedMessages() {
+        return outgoingStream.dropped();
     }
 
     @Outgoing("EventsService")
-    public Publisher<Message<JsonObject>> produceMessage() {
+    public Publisher<Message<byte[]>> produceMessage() {
         return outgoingStream;
     }
 
     @Incoming("EventsService")
     @Outgoing("mqtt-Events-pub")
-    public Message<JsonObject> transform(final Message<JsonObject> msg) {
+    public Message<byte[]> transform(final Message<byte[]> msg) {
         return msg;
     }
 
+    private Message<byte[]> toMessage(final Event event) {
+        metrics.publishedEvents.increment();
+        metrics.eventEndToEndMillis.record(System.currentTimeMillis() - event.getTimestamp());
+        return Message.of(encoder.encode(event).toByteArray());
+    }
+
 }
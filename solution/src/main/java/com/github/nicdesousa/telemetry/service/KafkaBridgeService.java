@@ -0,0 +1,242 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinarySerializer;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The pipelined MQTT to Kafka bridge: publishes the MQTT CarCoordinates with a producer of its own, with up to
+ * <br/>
+ * maxInFlight CarCoordinates sent but not yet acknowledged by the broker, instead of one write at a time through the
+ * <br/>
+ * kafka-carCoordinates-pub channel (which waits for every write with waitForWriteCompletion). The producer batches
+ * <br/>
+ * the CarCoordinates per partition (lingerInMs, batchSize) and compresses the batches, and with acks=all it is
+ * <br/>
+ * idempotent, so retries cannot reorder or duplicate the CarCoordinates of a Car.
+ * <br/>
+ * A CarCoordinate that the producer fails to send (once its own retries are exhausted) fails the bridge, rather than
+ * <br/>
+ * being dropped or re-sent out of order: every later publish, and the window, fail with the send's exception.
+ */
+@Slf4j
+@ApplicationScoped
+public class KafkaBridgeService {
+
+    @Inject
+    public TelemetryMetrics metrics;
+    // CONNECTOR publishes the MQTT CarCoordinates through the kafka-carCoordinates-pub channel, PIPELINED with the
+    // bridge's own producer
+    @ConfigProperty(name = "kafkaBridgeService.mode", defaultValue = "CONNECTOR")
+    public String mode;
+    @ConfigProperty(name = "kafkaBridgeService.bootstrap.servers", defaultValue = "kafka:9092")
+    public String bootstrapServers;
+    @ConfigProperty(name = "kafkaBridgeService.topic", defaultValue = "carCoordinates")
+    public String topic;
+    // the maximum number of CarCoordinates sent but not yet acknowledged, the MQTT consumer backs off (without
+    // blocking its event loop) when it is reached
+    @ConfigProperty(name = "kafkaBridgeService.maxInFlight", defaultValue = "4096")
+    public Integer maxInFlight;
+    // how long the producer waits for a batch to fill up
+    @ConfigProperty(name = "kafkaBridgeService.lingerInMs", defaultValue = "5")
+    public Integer lingerInMs;
+    // the maximum size of a batch per partition, in bytes
+    @ConfigProperty(name = "kafkaBridgeService.batchSize", defaultValue = "65536")
+    public Integer batchSize;
+    // none, gzip, snappy, lz4 or zstd
+    @ConfigProperty(name = "kafkaBridgeService.compression", defaultValue = "lz4")
+    public String compression;
+    // 0, 1 or all replicas acknowledge a batch before it is persisted
+    @ConfigProperty(name = "kafkaBridgeService.acks", defaultValue = "all")
+    public String acks;
+    // the producer of the PIPELINED mode, created at startup unless it is already set (e.g. a MockProducer)
+    public Producer<Integer, CarCoordinate> producer;
+
+    // the number of CarCoordinates sent but not yet acknowledged
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // completed when the window opens again, while the MQTT consumer waits for it
+    private final AtomicReference<CompletableFuture<Void>> windowOpened = new AtomicReference<>();
+    // the exception of the first CarCoordinate that could not be sent, which fails the bridge
+    private volatile Throwable failure;
+
+    @PostConstruct
+    public void init() {
+        if (!this.isPipelined()) {
+            return;
+        }
+        if (this.producer == null) {
+            this.producer = new KafkaProducer<>(this.producerConfig(), new IntegerSerializer(),
+                    new CarCoordinateBinarySerializer());
+        }
+        log.info("Bridging MQTT CarCoordinates to Kafka with up to {} in flight, acks={} and {} compression",
+                this.maxInFlight, this.acks, this.compression);
+    }
+
+    /**
+     * @return true if the MQTT CarCoordinates are published by the bridge, rather than the kafka-carCoordinates-pub
+     * <br/>
+     * channel
+     */
+    public boolean isPipelined() {
+        return "PIPELINED".equalsIgnoreCase(this.mode);
+    }
+
+    /**
+     * Send a CarCoordinate to the "carCoordinates" topic, keyed by its Car, without waiting for the broker (nor for
+     * <br/>
+     * the window, see {@link #windowOpen()}).
+     *
+     * @param carCoordinate to be published, tagged with its race session in the session header
+     * @return completed when the broker has acknowledged (persisted) the CarCoordinate's batch, or exceptionally if
+     * <br/>
+     * it could not be sent or the bridge has failed
+     */
+    public CompletionStage<Void> publish(final CarCoordinate carCoordinate) {
+        final CompletableFuture<Void> persisted = new CompletableFuture<>();
+        if (this.failure != null) {
+            persisted.completeExceptionally(this.failure);
+            return persisted;
+        }
+        final ProducerRecord<Integer, CarCoordinate> record = new ProducerRecord<>(this.topic,
+                carCoordinate.getCarIndex(), carCoordinate);
+        if (!RaceSessionService.isDefaultSession(carCoordinate.getSession())) {
+            record.headers().add(CarCoordinateService.SESSION_HEADER,
+                    carCoordinate.getSession().getBytes(StandardCharsets.UTF_8));
+        }
+        this.inFlight.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            this.producer.send(record, (metadata, exception) -> {
+                if (exception != null) {
+                    this.fail(exception);
+                    persisted.completeExceptionally(exception);
+                    return;
+                }
+                this.metrics.kafkaBridgeWriteNanos.record(System.nanoTime() - start);
+                this.metrics.kafkaBridgeCarCoordinates.increment();
+                this.release();
+                persisted.complete(null);
+            });
+        } catch (final RuntimeException e) {
+            // e.g. the producer is closed, the callback is not invoked
+            this.fail(e);
+            persisted.completeExceptionally(e);
+        }
+        return persisted;
+    }
+
+    /**
+     * The window of CarCoordinates in flight, which the MQTT consumer waits for before it takes the next
+     * <br/>
+     * CarCoordinate, instead of blocking its event loop.
+     *
+     * @return completed once fewer than maxInFlight CarCoordinates are in flight, or exceptionally once the bridge
+     * <br/>
+     * has failed
+     */
+    public CompletionStage<Void> windowOpen() {
+        final CompletableFuture<Void> opened = new CompletableFuture<>();
+        if (this.failure != null) {
+            opened.completeExceptionally(this.failure);
+            return opened;
+        }
+        if (this.inFlight.get() < this.maxInFlight) {
+            opened.complete(null);
+            return opened;
+        }
+        this.windowOpened.set(opened);
+        // a CarCoordinate acknowledged (or failed) before the waiter was set did not open the window
+        if ((this.inFlight.get() < this.maxInFlight || this.failure != null)
+                && this.windowOpened.compareAndSet(opened, null)) {
+            this.completeWindow(opened);
+        }
+        return opened;
+    }
+
+    /**
+     * @return the exception of the first CarCoordinate that could not be sent, null while the bridge has not failed
+     */
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * @return the number of CarCoordinates sent but not yet acknowledged by the broker
+     */
+    public long getInFlight() {
+        return this.inFlight.get();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (this.producer != null) {
+            // sends the batches that are still lingering
+            this.producer.close(Duration.ofSeconds(5L));
+        }
+    }
+
+    private void release() {
+        if (this.inFlight.decrementAndGet() < this.maxInFlight) {
+            final CompletableFuture<Void> opened = this.windowOpened.getAndSet(null);
+            if (opened != null) {
+                this.completeWindow(opened);
+            }
+        }
+    }
+
+    private void fail(final Throwable exception) {
+        this.metrics.kafkaBridgeFailures.increment();
+        if (this.failure == null) {
+            this.failure = exception;
+            log.error(String.format("Failed to publish a CarCoordinate to %s, failing the MQTT stream", this.topic),
+                    exception);
+        }
+        this.inFlight.decrementAndGet();
+        // fails the MQTT consumer if it is waiting for the window
+        final CompletableFuture<Void> opened = this.windowOpened.getAndSet(null);
+        if (opened != null) {
+            this.completeWindow(opened);
+        }
+    }
+
+    private void completeWindow(final CompletableFuture<Void> opened) {
+        if (this.failure != null) {
+            opened.completeExceptionally(this.failure);
+        } else {
+            opened.complete(null);
+        }
+    }
+
+    private Map<String, Object> producerConfig() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, this.bootstrapServers);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, this.lingerInMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, this.batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, this.compression);
+        config.put(ProducerConfig.ACKS_CONFIG, this.acks);
+        // idempotence keeps the CarCoordinates of a partition in order with several requests in flight, and requires
+        // acks=all
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "all".equalsIgnoreCase(this.acks));
+        return config;
+    }
+}
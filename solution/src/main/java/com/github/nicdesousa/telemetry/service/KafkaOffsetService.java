@@ -0,0 +1,219 @@
+package com.github.nicdesousa.telemetry.service;
+
+import io.smallrye.reactive.messaging.kafka.KafkaMessage;
+import io.smallrye.reactive.messaging.kafka.ReceivedKafkaMessage;
+import io.vertx.reactivex.kafka.client.consumer.KafkaConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.ClusterResource;
+import org.apache.kafka.common.ClusterResourceListener;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pairs the race snapshot that the TelemetryService is restored from with the carCoordinates topic of the
+ * <br/>
+ * kafka-carCoordinates-sub channel:
+ * <br/>
+ * - the snapshot records the identity of the topic (the Kafka cluster id and the topic name) that its offsets refer to,
+ * <br/>
+ * and a snapshot of another topic (e.g. a recreated cluster, or a recreated topic that is behind its offsets) is
+ * <br/>
+ * discarded at startup
+ * <br/>
+ * - the channel's consumer seeks past the restored snapshot lazily, on the first restored carCoordinate of every
+ * <br/>
+ * partition that it is assigned, so no offsets are committed on behalf of the consumer group and the TelemetryService
+ * <br/>
+ * never waits for the group at startup.
+ */
+@Slf4j
+@ApplicationScoped
+public class KafkaOffsetService {
+
+    // the channel's consumer, which smallrye-reactive-messaging-kafka only exposes to the messages it receives
+    private static final Field CONSUMER_FIELD = consumerField();
+
+    @ConfigProperty(name = "mp.messaging.incoming.kafka-carCoordinates-sub.bootstrap.servers",
+            defaultValue = "kafka:9092")
+    public String bootstrapServers;
+    @ConfigProperty(name = "mp.messaging.incoming.kafka-carCoordinates-sub.topic", defaultValue = "carCoordinates")
+    public String topic;
+    // how long the identity of the topic is looked up for, a snapshot whose topic cannot be verified is discarded
+    @ConfigProperty(name = "kafkaOffsetService.timeoutInMs", defaultValue = "5000")
+    public Long timeoutInMs;
+    // the consumer that looks the topic up, created for each lookup unless it is already set (e.g. a MockConsumer)
+    public Consumer<byte[], byte[]> consumer;
+    // the Kafka cluster id, discovered by each lookup unless it is already set (a MockConsumer has no cluster)
+    public String clusterId;
+
+    // the offset of the restored carCoordinate that the channel's consumer last sought past, per partition
+    private final Map<Integer, Long> seeks = new ConcurrentHashMap<>();
+
+    /**
+     * @return the identity of the topic ("cluster id/topic"), or null if it could not be looked up in timeoutInMs
+     */
+    public String topicIdentity() {
+        final Topic topic = this.lookup();
+        return topic == null ? null : topic.identity;
+    }
+
+    /**
+     * Verify that the offsets of a race snapshot refer to the topic: the topic has the identity recorded in the
+     * <br/>
+     * snapshot, and every partition has at least as many carCoordinates as the snapshot reflects.
+     *
+     * @param identity of the topic that the snapshot was taken from, null if the snapshot does not record it
+     * @param offsets  the last offset per partition reflected in the snapshot
+     * @return true if the snapshot can be restored, false if it must be discarded
+     */
+    public boolean matches(final String identity, final Map<Integer, Long> offsets) {
+        if (identity == null) {
+            return false;
+        }
+        final Topic topic = this.lookup();
+        if (topic == null || !identity.equals(topic.identity)) {
+            log.warn("The race snapshot was taken from the topic {}, not {}", identity,
+                    topic == null ? "an unavailable topic" : topic.identity);
+            return false;
+        }
+        for (final Map.Entry<Integer, Long> offset : offsets.entrySet()) {
+            final Long endOffset = topic.endOffsets.get(offset.getKey());
+            if (endOffset == null || offset.getValue() >= endOffset) {
+                // e.g. the topic was deleted and recreated since the snapshot
+                log.warn("The race snapshot is ahead of partition {} of the topic {} (offset {}, end offset {})",
+                        offset.getKey(), identity, offset.getValue(), endOffset);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Seek the channel's consumer past the restored snapshot, when it consumes a restored carCoordinate of a
+     * <br/>
+     * partition for the first time since it was assigned the partition (or since it was rewound), so that it skips
+     * <br/>
+     * fetching the rest of the restored carCoordinates.
+     *
+     * @param message      a restored carCoordinate, received from the kafka-carCoordinates-sub channel
+     * @param offset       of the restored carCoordinate
+     * @param resumeOffset the offset after the last offset of the partition reflected in the snapshot
+     */
+    public void seek(final KafkaMessage<?, ?> message, final long offset, final long resumeOffset) {
+        final Integer partition = message.getPartition();
+        final KafkaConsumer<?, ?> channelConsumer = consumerOf(message);
+        if (partition == null || channelConsumer == null) {
+            return;
+        }
+        final Long sought = this.seeks.get(partition);
+        // the carCoordinates fetched before the seek are still consumed, and have greater offsets
+        if (sought != null && offset > sought) {
+            return;
+        }
+        this.seeks.put(partition, offset);
+        channelConsumer.seek(new io.vertx.kafka.client.common.TopicPartition(message.getTopic(), partition),
+                resumeOffset);
+        log.info("Seeking partition {} of {} past the race snapshot, from offset {} to {}", partition,
+                message.getTopic(), offset, resumeOffset);
+    }
+
+    // the cluster id and end offsets of the topic, null if the topic could not be looked up in timeoutInMs
+    private Topic lookup() {
+        final ClusterIdDeserializer deserializer = new ClusterIdDeserializer();
+        final Consumer<byte[], byte[]> lookup = this.consumer != null ? this.consumer
+                : new org.apache.kafka.clients.consumer.KafkaConsumer<>(this.consumerConfig(), deserializer,
+                deserializer);
+        final Duration timeout = Duration.ofMillis(this.timeoutInMs == null ? 5000L : this.timeoutInMs);
+        try {
+            final List<PartitionInfo> partitionInfos = lookup.partitionsFor(this.topic, timeout);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                log.warn("The topic {} does not exist", this.topic);
+                return null;
+            }
+            final List<TopicPartition> partitions = new ArrayList<>();
+            for (final PartitionInfo partitionInfo : partitionInfos) {
+                partitions.add(new TopicPartition(this.topic, partitionInfo.partition()));
+            }
+            final Map<Integer, Long> endOffsets = new HashMap<>();
+            lookup.endOffsets(partitions, timeout).forEach((partition, endOffset) ->
+                    endOffsets.put(partition.partition(), endOffset));
+            // the deserializer is told the cluster id by the metadata that partitionsFor fetched
+            final String cluster = this.clusterId != null ? this.clusterId : deserializer.clusterId;
+            return cluster == null ? null : new Topic(cluster + "/" + this.topic, endOffsets);
+        } catch (final KafkaException e) {
+            // e.g. the broker is not available in timeoutInMs
+            log.error(String.format("Failed to look up the topic %s", this.topic), e);
+            return null;
+        } finally {
+            if (lookup != this.consumer) {
+                lookup.close(Duration.ZERO);
+            }
+        }
+    }
+
+    private Map<String, Object> consumerConfig() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, this.bootstrapServers);
+        // the consumer is never subscribed, and has no group
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return config;
+    }
+
+    private static KafkaConsumer<?, ?> consumerOf(final KafkaMessage<?, ?> message) {
+        if (CONSUMER_FIELD == null || !(message instanceof ReceivedKafkaMessage)) {
+            return null;
+        }
+        try {
+            return (KafkaConsumer<?, ?>) CONSUMER_FIELD.get(message);
+        } catch (final IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static Field consumerField() {
+        try {
+            final Field field = ReceivedKafkaMessage.class.getDeclaredField("consumer");
+            field.setAccessible(true);
+            return field;
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            // the restored carCoordinates are still skipped, they are just fetched
+            log.warn("The Kafka consumer cannot seek past the race snapshot: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static final class Topic {
+        private final String identity;
+        // the offset after the last carCoordinate, per partition
+        private final Map<Integer, Long> endOffsets;
+
+        private Topic(final String identity, final Map<Integer, Long> endOffsets) {
+            this.identity = identity;
+            this.endOffsets = endOffsets;
+        }
+    }
+
+    // told the cluster id by the consumer whenever it fetches the cluster metadata
+    private static final class ClusterIdDeserializer extends ByteArrayDeserializer implements ClusterResourceListener {
+        private volatile String clusterId;
+
+        @Override
+        public void onUpdate(final ClusterResource clusterResource) {
+            this.clusterId = clusterResource.clusterId();
+        }
+    }
+}
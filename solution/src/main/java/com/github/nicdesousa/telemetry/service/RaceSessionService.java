@@ -0,0 +1,233 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.engine.WorkerPool;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Hosts many concurrent race (or test) sessions in one instance, keyed by the session of each CarCoordinate.
+ * <br/>
+ * CarCoordinates without a session (or with the "default" session) go to the default TelemetryService, unchanged.
+ * <br/>
+ * Every other session has its own TelemetryService, created on its first CarCoordinate, with isolated Cars, laps,
+ * <br/>
+ * standings and fastest lap, and its own configuration: raceSessions.&lt;session&gt;.&lt;property&gt; overrides
+ * <br/>
+ * telemetryService.&lt;property&gt;, e.g. raceSessions.fp1.circuitLengthInKM=5.891.
+ * <br/>
+ * The sessions' shard and standings workers share the threads of one {@link WorkerPool}, which runs every session
+ * <br/>
+ * with queued CarCoordinates in turn, so one busy session cannot starve the others. The sessions are not
+ * <br/>
+ * snapshotted, since the Kafka carCoordinates are consumed from the beginning at startup they are rebuilt instead.
+ */
+@Slf4j
+@ApplicationScoped
+public class RaceSessionService {
+
+    public static final String DEFAULT_SESSION = "default";
+    public static final String ERROR_SESSION = "Invalid race session %s";
+    // session names end up in thread names, configuration keys and metric labels
+    private static final Pattern SESSION_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    @Inject
+    public TelemetryService telemetryService;
+    @Inject
+    public CarStatusService carStatusService;
+    @Inject
+    public EventsService eventsService;
+    @Inject
+    public TelemetryMetrics metrics;
+    @Inject
+    public Config config;
+    // the number of threads shared by the sessions' workers
+    @ConfigProperty(name = "raceSessions.workers", defaultValue = "4")
+    public Integer workers;
+    // the number of CarCoordinates that a session's workers process before the next session's turn
+    @ConfigProperty(name = "raceSessions.quantum", defaultValue = "64")
+    public Integer quantum;
+    // the maximum number of sessions (besides the default session), CarCoordinates for more sessions are dropped
+    @ConfigProperty(name = "raceSessions.maxSessions", defaultValue = "16")
+    public Integer maxSessions;
+
+    private final Map<String, TelemetryService> sessions = new ConcurrentHashMap<>();
+    // CarCoordinates dropped because their session is invalid, or there are already maxSessions sessions
+    private final LongAdder rejectedSamples = new LongAdder();
+    private WorkerPool workerPool;
+
+    @PostConstruct
+    public void init() {
+        this.workerPool = new WorkerPool("race-session", this.workers, this.quantum);
+    }
+
+    @PreDestroy
+    public void dispose() {
+        for (final String session : this.sessions.keySet()) {
+            this.closeSession(session);
+        }
+        this.workerPool.close();
+    }
+
+    /**
+     * Hand a CarCoordinate off to the TelemetryService of its race session.
+     *
+     * @param carCoordinate message received from the "carCoordinates" topic
+     * @return false if the CarCoordinate was dropped
+     */
+    public boolean processCarCoordinate(final CarCoordinate carCoordinate) {
+        final TelemetryService session = this.session(carCoordinate.getSession());
+        if (session == null) {
+            this.rejectedSamples.increment();
+            log.debug("Dropped CarCoordinate for race session {}: {}", carCoordinate.getSession(), carCoordinate);
+            return false;
+        }
+        session.processCarCoordinate(carCoordinate);
+        return true;
+    }
+
+    /**
+     * @param session the race session, or null for the default session
+     * @return true if the session is the default session
+     */
+    public static boolean isDefaultSession(final String session) {
+        return session == null || session.isEmpty() || DEFAULT_SESSION.equals(session);
+    }
+
+    /**
+     * Get the TelemetryService of a race session, creating it if it does not exist yet.
+     *
+     * @param session the race session, or null for the default session
+     * @return the TelemetryService, or null if the session is invalid or there are already maxSessions sessions
+     */
+    public TelemetryService session(final String session) {
+        if (isDefaultSession(session)) {
+            return this.telemetryService;
+        }
+        final TelemetryService telemetryService = this.sessions.get(session);
+        if (telemetryService != null) {
+            return telemetryService;
+        }
+        if (!SESSION_PATTERN.matcher(session).matches()) {
+            log.warn(String.format(ERROR_SESSION, session));
+            return null;
+        }
+        synchronized (this.sessions) {
+            if (this.sessions.containsKey(session)) {
+                return this.sessions.get(session);
+            }
+            if (this.sessions.size() >= this.maxSessions) {
+                log.warn("Rejected race session {}, there are already {} sessions", session, this.maxSessions);
+                return null;
+            }
+            final TelemetryService created = this.newTelemetryService(session);
+            this.sessions.put(session, created);
+            log.info("Started race session {} on a {} km circuit", session, created.circuitLengthInKM);
+            return created;
+        }
+    }
+
+    /**
+     * Get the TelemetryService of a race session, without creating it.
+     *
+     * @param session the race session, or null for the default session
+     * @return the TelemetryService, or null if the session does not exist
+     */
+    public TelemetryService existingSession(final String session) {
+        return isDefaultSession(session) ? this.telemetryService : this.sessions.get(session);
+    }
+
+    /**
+     * End a race session: process its queued CarCoordinates, then release its state.
+     *
+     * @param session the race session
+     * @return true if the session existed
+     */
+    public boolean closeSession(final String session) {
+        final TelemetryService telemetryService;
+        synchronized (this.sessions) {
+            telemetryService = session == null ? null : this.sessions.remove(session);
+        }
+        if (telemetryService == null) {
+            return false;
+        }
+        telemetryService.dispose();
+        log.info("Closed race session {}", session);
+        return true;
+    }
+
+    /**
+     * @return the TelemetryService of every race session, including the default session, by session
+     */
+    public Map<String, TelemetryService> sessions() {
+        final Map<String, TelemetryService> sessions = new TreeMap<>(this.sessions);
+        sessions.put(DEFAULT_SESSION, this.telemetryService);
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    /**
+     * @return the number of CarCoordinates dropped because their session is invalid, or there were too many sessions
+     */
+    public long getRejectedSamples() {
+        return this.rejectedSamples.sum();
+    }
+
+    private TelemetryService newTelemetryService(final String session) {
+        // the defaults are copied through a method, the injected TelemetryService is a client proxy
+        final TelemetryService telemetryService = this.telemetryService.copyConfiguration();
+        telemetryService.carStatusService = this.carStatusService;
+        telemetryService.eventsService = this.eventsService;
+        telemetryService.metrics = this.metrics;
+        telemetryService.session = session;
+        telemetryService.workerPool = this.workerPool;
+        telemetryService.circuitLengthInKM = this.property(session, "circuitLengthInKM", Double.class,
+                telemetryService.circuitLengthInKM);
+        telemetryService.flatEarthThresholdInKM = this.property(session, "flatEarthThresholdInKM", Double.class,
+                telemetryService.flatEarthThresholdInKM);
+        telemetryService.shards = this.property(session, "shards", Integer.class, telemetryService.shards);
+        telemetryService.queueCapacity = this.property(session, "queueCapacity", Integer.class,
+                telemetryService.queueCapacity);
+        telemetryService.reorderWindowInMs = this.property(session, "reorder.windowInMs", Long.class,
+                telemetryService.reorderWindowInMs);
+        telemetryService.reorderMaxSamples = this.property(session, "reorder.maxSamples", Integer.class,
+                telemetryService.reorderMaxSamples);
+        telemetryService.maxCars = this.property(session, "maxCars", Integer.class, telemetryService.maxCars);
+        telemetryService.lapHistory = this.property(session, "lapHistory", Integer.class, telemetryService.lapHistory);
+        telemetryService.lapDetection = this.property(session, "lapDetection", String.class,
+                telemetryService.lapDetection);
+        telemetryService.trackPath = this.property(session, "trackPath", String.class, telemetryService.trackPath);
+        telemetryService.analyticsWindowSamples = this.property(session, "analytics.windowSamples", Integer.class,
+                telemetryService.analyticsWindowSamples);
+        telemetryService.analyticsEwmaTimeConstantInMs = this.property(session, "analytics.ewmaTimeConstantInMs",
+                Long.class, telemetryService.analyticsEwmaTimeConstantInMs);
+        telemetryService.analyticsSectorSplits = this.property(session, "analytics.sectorSplits", String.class,
+                telemetryService.analyticsSectorSplits);
+        telemetryService.gapsMarkerSpacingInKM = this.property(session, "gaps.markerSpacingInKM", Double.class,
+                telemetryService.gapsMarkerSpacingInKM);
+        telemetryService.gapsMarkers = this.property(session, "gaps.markers", Integer.class,
+                telemetryService.gapsMarkers);
+        telemetryService.queryPublishIntervalInMs = this.property(session, "query.publishIntervalInMs", Long.class,
+                telemetryService.queryPublishIntervalInMs);
+        telemetryService.snapshotPath = null;
+        telemetryService.snapshotIntervalInMs = 0L;
+        telemetryService.init();
+        return telemetryService;
+    }
+
+    private <T> T property(final String session, final String name, final Class<T> type, final T defaultValue) {
+        return this.config.getOptionalValue("raceSessions." + session + "." + name, type).orElse(defaultValue);
+    }
+}
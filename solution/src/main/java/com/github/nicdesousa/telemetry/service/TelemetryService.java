@@ -1,26 +1,64 @@
 package com.github.nicdesousa.telemetry.service;
 
+import com.github.nicdesousa.telemetry.codec.RaceSnapshotCodec;
 import com.github.nicdesousa.telemetry.domain.*;
+import com.github.nicdesousa.telemetry.engine.CarAnalytics;
+import com.github.nicdesousa.telemetry.engine.CarStateStore;
+import com.github.nicdesousa.telemetry.engine.GapTimer;
+import com.github.nicdesousa.telemetry.engine.Leaderboard;
+import com.github.nicdesousa.telemetry.engine.PartitionedEngine;
+import com.github.nicdesousa.telemetry.engine.ReorderBuffer;
+import com.github.nicdesousa.telemetry.engine.WorkerExecutor;
+import com.github.nicdesousa.telemetry.engine.WorkerPool;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import com.github.nicdesousa.telemetry.track.Track;
 import com.github.nicdesousa.telemetry.util.Haversine;
 import com.github.nicdesousa.telemetry.util.InputValidationException;
 import com.github.nicdesousa.telemetry.util.Speed;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Priority;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @ApplicationScoped
 public class TelemetryService {
 
-    public static final String LAP_TIME_FORMAT = "Car %d completed lap %02d in %d:%02d.%03d with an average speed of %03.02f MPH";
-    public static final String FASTEST_LAP_TIME_FORMAT = "Car %d has set the new fastest lap time at %d:%02d.%03d with an average speed of %03.02f MPH";
-    public static final String EVENT_OVERTAKE_FORMAT = "Car %d races ahead of Car %d in a dramatic overtake, faster than... %s!";
+    public static final String LAP_TIME_FORMAT = Event.LAP_TIME_FORMAT;
+    public static final String FASTEST_LAP_TIME_FORMAT = Event.FASTEST_LAP_TIME_FORMAT;
+    public static final String ERROR_TRACK = "Failed to load the track %s";
+    public static final String EVENT_OVERTAKE_FORMAT = Event.EVENT_OVERTAKE_FORMAT;
+    // a Car that starts this close past the start/finish line is on its first lap, rather than an out lap
+    private static final double TRACK_START_TOLERANCE_IN_KM = 0.05D;
+    // approximate retained sizes (with compressed oops) for the memory accounting: a standings Car with its lap
+    // list, a queued or held CarCoordinate with its Location, and a query snapshot Standing and CarLap with their
+    // list slots
+    private static final long STANDINGS_CAR_BYTES = 160L;
+    private static final long CAR_COORDINATE_BYTES = 88L;
+    private static final long STANDING_BYTES = 48L;
+    private static final long LAP_HISTORY_LAP_BYTES = 56L;
     // add some comic relief for the fans
     private final Random rand = new Random();
     private final String[] FASTER_THAN = {"the Stig can buy the newest McLaren",
@@ -36,153 +74,1420 @@ public class TelemetryService {
     public CarStatusService carStatusService;
     @Inject
     public EventsService eventsService;
+    @Inject
+    public TelemetryMetrics metrics;
+    // runs the shard and standings workers with the EVENT_LOOP executor mode
+    @Inject
+    public Vertx vertx;
+    // verifies that the restored race snapshot was taken from the carCoordinates topic, and records the topic in the
+    // snapshots, null to restore any snapshot
+    @Inject
+    public KafkaOffsetService kafkaOffsetService;
     // please see: geojson/README.md for an explanation of the circuit length
     @ConfigProperty(name = "telemetryService.circuitLengthInKM", defaultValue = "5.119771376289225")
     public Double circuitLengthInKM;
+    // use the flat-earth approximation for distances up to this threshold, 0 always uses the haversine formula
+    @ConfigProperty(name = "telemetryService.flatEarthThresholdInKM", defaultValue = "0")
+    public Double flatEarthThresholdInKM;
+    // the number of car shard workers, 0 processes CarCoordinates inline on the calling thread
+    @ConfigProperty(name = "telemetryService.shards", defaultValue = "4")
+    public Integer shards;
+    // soft bound on the number of CarCoordinates queued per shard worker
+    @ConfigProperty(name = "telemetryService.queueCapacity", defaultValue = "65536")
+    public Integer queueCapacity;
+    // how far (in ms of CarCoordinate time) CarCoordinates are held to put them in timestamp order, 0 to not hold them
+    @ConfigProperty(name = "telemetryService.reorder.windowInMs", defaultValue = "250")
+    public Long reorderWindowInMs;
+    // the maximum number of CarCoordinates held per Car to put them in timestamp order
+    @ConfigProperty(name = "telemetryService.reorder.maxSamples", defaultValue = "8")
+    public Integer reorderMaxSamples;
+    // carIndexes must be within 0 and maxCars - 1, CarCoordinates for other carIndexes are dropped
+    @ConfigProperty(name = "telemetryService.maxCars", defaultValue = "65536")
+    public Integer maxCars;
+    // the number of laps kept per Car, older laps are dropped (but still counted in the lap numbers)
+    @ConfigProperty(name = "telemetryService.lapHistory", defaultValue = "512")
+    public Integer lapHistory;
+    // DISTANCE counts laps by dividing each Car's total distance by the circuit length, TRACK projects every
+    // CarCoordinate onto the track and counts laps at each start/finish line crossing
+    @ConfigProperty(name = "telemetryService.lapDetection", defaultValue = "DISTANCE")
+    public String lapDetection;
+    // the track GeoJSON (a file, or a classpath resource) for TRACK lap detection
+    @ConfigProperty(name = "telemetryService.trackPath", defaultValue = "silverstone_closed.geojson")
+    public String trackPath;
+    // the number of samples per Car in the windowed average speed, 0 disables the rolling analytics (the smoothed,
+    // average and top speeds, and the sector times)
+    @ConfigProperty(name = "telemetryService.analytics.windowSamples", defaultValue = "10")
+    public Integer analyticsWindowSamples;
+    // the time constant of the exponentially weighted moving average (smoothed) speed
+    @ConfigProperty(name = "telemetryService.analytics.ewmaTimeConstantInMs", defaultValue = "1000")
+    public Long analyticsEwmaTimeConstantInMs;
+    // the ends of every sector but the last, as ascending fractions of a lap, or none for a single sector
+    @ConfigProperty(name = "telemetryService.analytics.sectorSplits", defaultValue = "0.33,0.66")
+    public String analyticsSectorSplits;
+    // the distance between the timing lines of the live gaps (INTERVAL to the Car ahead and GAP_TO_LEADER), null or 0
+    // disables the gaps
+    @ConfigProperty(name = "telemetryService.gaps.markerSpacingInKM", defaultValue = "0.1")
+    public Double gapsMarkerSpacingInKM;
+    // the number of timing lines kept per Car, a gap is only known while the Car ahead is less than this many timing
+    // lines ahead
+    @ConfigProperty(name = "telemetryService.gaps.markers", defaultValue = "64")
+    public Integer gapsMarkers;
+    // how often the standings snapshot of the query API is published while the standings change, 0 publishes it after
+    // every standings update, null disables the query snapshots (the standings and lap histories)
+    @ConfigProperty(name = "telemetryService.query.publishIntervalInMs", defaultValue = "100")
+    public Long queryPublishIntervalInMs;
+    // how the shard and standings workers are run: DEDICATED (a thread per worker), FIXED (a fixed pool of threads),
+    // EVENT_LOOP (pinned to the Vert.x event loops) or VIRTUAL (virtual threads on Java 21, else FIXED), null for
+    // DEDICATED, ignored when the workers share the workerPool of the race sessions
+    @ConfigProperty(name = "telemetryService.executor.mode", defaultValue = "DEDICATED")
+    public String executorMode;
+    // the number of threads of the FIXED executor mode
+    @ConfigProperty(name = "telemetryService.executor.threads", defaultValue = "4")
+    public Integer executorThreads;
+    // the maximum number of items that a worker runs before yielding its executor thread (or event loop)
+    @ConfigProperty(name = "telemetryService.executor.quantum", defaultValue = "64")
+    public Integer executorQuantum;
+    // the race session, tagged on every published CarStatus and Event, null for the default session (not injected,
+    // set by the RaceSessionService)
+    public String session;
+    // the shared pool that runs the shard and standings workers, null for a thread per worker (not injected, set by
+    // the RaceSessionService)
+    public WorkerPool workerPool;
+    // snapshot the race state, which requires a single instance in the Kafka consumer group (the snapshot holds every
+    // Car), so it is opt-in, and must stay disabled to scale the instances horizontally
+    @ConfigProperty(name = "telemetryService.snapshot.enabled", defaultValue = "false")
+    public Boolean snapshotEnabled;
+    // the race state snapshot file, restored at startup and written periodically and at shutdown
+    @ConfigProperty(name = "telemetryService.snapshot.path", defaultValue = "/tmp/telemetry-race.snapshot")
+    public String snapshotPath;
+    // how often the race state snapshot is written, 0 only writes it at shutdown
+    @ConfigProperty(name = "telemetryService.snapshot.intervalInMs", defaultValue = "5000")
+    public Long snapshotIntervalInMs;
+
+    // the state of the Car's for which CarCoordinate messages have been received, and their reorder windows,
+    // each Car is only ever written by the shard worker that owns its carIndex
+    private CarStateStore carStates;
+    // the rolling analytics of every Car, null when they are disabled, written by the shard workers like carStates
+    private CarAnalytics analytics;
+    // the ordering key (e.g. Kafka partition) that each Car was first submitted with, see processCarCoordinate(int, ...)
+    private final Map<Integer, Integer> carOrderingKeys = new ConcurrentHashMap<>();
+    // CarCoordinates that arrived out of timestamp order and were put back in order
+    private final LongAdder reorderedSamples = new LongAdder();
+    // CarCoordinates dropped because they arrived after a newer CarCoordinate had been processed
+    private final LongAdder lateSamples = new LongAdder();
+    // CarCoordinates dropped because a CarCoordinate with the same timestamp had been received
+    private final LongAdder duplicateSamples = new LongAdder();
+    // standings aggregator state by carIndex, only accessed by the standings worker
+    private Car[] standings = new Car[16];
+    // Car positions by total distance travelled in descending order
+    private final Leaderboard leaderboard = new Leaderboard();
+    // the timing lines of the live gaps, null when they are disabled, only accessed by the standings worker
+    private GapTimer gapTimer;
+    // the fastest lap, null until the first lap is completed
+    private final AtomicReference<FastestLap> fastestLap = new AtomicReference<>();
+    // the latest standings snapshot of the query API, published by the standings worker, null when it is disabled
+    private volatile RaceStandings raceStandings;
+    // whether the standings changed since the snapshot was published, and when it was published, only accessed by
+    // the standings worker
+    private boolean standingsChanged = false;
+    private long standingsPublishedNanos = 0L;
+    // the lap history of every Car that completed a lap, replaced (copy-on-write) by the shard worker that owns the Car
+    private final Map<Integer, LapHistory> lapHistories = new ConcurrentHashMap<>();
+    // the track for TRACK lap detection, null for DISTANCE lap detection
+    private Track track;
+    // the last Kafka offset handed off per partition
+    private final Map<Integer, AtomicLong> consumedOffsets = new ConcurrentHashMap<>();
+    // the last Kafka offset per partition that is reflected in the restored snapshot
+    private final Map<Integer, Long> restoredOffsets = new HashMap<>();
+    // whether CarCoordinates of race sessions had been consumed up to the restored offsets
+    private boolean restoredSessions;
+    // whether CarCoordinates of race sessions have been consumed, since the beginning of the topic
+    private volatile boolean sessionsConsumed;
+    // the identity of the Kafka topic that the offsets refer to, looked up when a snapshot first records offsets
+    private volatile String topicIdentity;
+    // writes the race snapshot and publishes the standings snapshot periodically
+    private ScheduledExecutorService scheduler;
+    // per-Car processing, partitioned by carIndex
+    private PartitionedEngine<CarCoordinate> carEngine;
+    // single-threaded standings aggregator, fed with the CarCoordinates applied by the car shards
+    private PartitionedEngine<CarCoordinate> standingsEngine;
+    // runs the shard and standings workers, null for a thread per worker (or the shared workerPool)
+    private WorkerExecutor workerExecutor;
+
+    @PostConstruct
+    public void init() {
+        if ("TRACK".equalsIgnoreCase(this.lapDetection)) {
+            try {
+                this.track = Track.load(this.trackPath);
+            } catch (final IOException e) {
+                throw new IllegalStateException(String.format(ERROR_TRACK, this.trackPath), e);
+            }
+            log.info("Detecting laps on the {} km track {}", this.track.length(), this.trackPath);
+        }
+        this.carStates = new CarStateStore(this.maxCars, this.lapHistory);
+        if (this.analyticsWindowSamples != null && this.analyticsWindowSamples > 0) {
+            this.analytics = new CarAnalytics(this.maxCars, this.analyticsWindowSamples,
+                    this.analyticsEwmaTimeConstantInMs, CarAnalytics.sectorSplits(this.analyticsSectorSplits));
+        }
+        if (this.gapsMarkerSpacingInKM != null && this.gapsMarkerSpacingInKM > 0D) {
+            this.gapTimer = new GapTimer(this.gapsMarkerSpacingInKM, this.gapsMarkers);
+        }
+        if (Boolean.FALSE.equals(this.snapshotEnabled)) {
+            this.snapshotPath = null;
+        }
+        this.restoreSnapshot();
+        final String name = this.session == null ? "telemetry" : "telemetry-" + this.session;
+        this.workerExecutor = this.workerPool == null && this.shards > 0 ? this.newWorkerExecutor(name) : null;
+        if (this.workerExecutor == null) {
+            this.carEngine = new PartitionedEngine<>(name + "-shard", this.shards, this.queueCapacity,
+                    this::updateCar, this.workerPool);
+            this.standingsEngine = new PartitionedEngine<>(name + "-standings", this.shards == 0 ? 0 : 1,
+                    this.queueCapacity, carCoordinate -> this.updateStandings(carCoordinate.getCarIndex()),
+                    this.workerPool);
+        } else {
+            this.carEngine = new PartitionedEngine<>(name + "-shard", this.shards, this.queueCapacity,
+                    this::updateCar, this.workerExecutor);
+            this.standingsEngine = new PartitionedEngine<>(name + "-standings", 1, this.queueCapacity,
+                    carCoordinate -> this.updateStandings(carCoordinate.getCarIndex()), this.workerExecutor);
+        }
+        if (this.queryPublishIntervalInMs != null) {
+            this.publishStandings(System.nanoTime());
+        }
+        // with 0 shards the CarCoordinates are processed on the consumer thread, so the snapshot is only written at
+        // shutdown, and the standings snapshot is only published by standings updates
+        if (this.snapshotPath != null && this.snapshotIntervalInMs > 0L && this.shards > 0) {
+            this.scheduler().scheduleWithFixedDelay(this::writeSnapshot, this.snapshotIntervalInMs,
+                    this.snapshotIntervalInMs, TimeUnit.MILLISECONDS);
+        }
+        if (this.queryPublishIntervalInMs != null && this.queryPublishIntervalInMs > 0L && this.shards > 0) {
+            // publish the last changes once the standings stop changing
+            this.scheduler().scheduleWithFixedDelay(
+                    () -> this.standingsEngine.executeOnShard(0, 1, this::publishChangedStandings),
+                    this.queryPublishIntervalInMs, this.queryPublishIntervalInMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private ScheduledExecutorService scheduler() {
+        if (this.scheduler == null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "telemetry-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.scheduler;
+    }
+
+    // the execution model of the executor mode, null for DEDICATED
+    private WorkerExecutor newWorkerExecutor(final String name) {
+        final WorkerExecutor.ModeEnum mode = this.executorMode == null ? WorkerExecutor.ModeEnum.DEDICATED
+                : WorkerExecutor.ModeEnum.valueOf(this.executorMode.trim().toUpperCase(Locale.ROOT));
+        final int threads = this.executorThreads == null ? 4 : this.executorThreads;
+        final int quantum = this.executorQuantum == null ? 64 : this.executorQuantum;
+        switch (mode) {
+            case FIXED:
+                return WorkerExecutor.fixed(name + "-executor", threads, quantum);
+            case VIRTUAL:
+                return WorkerExecutor.virtual(name + "-executor", threads, quantum);
+            case EVENT_LOOP:
+                if (this.vertx == null) {
+                    throw new IllegalStateException("The EVENT_LOOP executor mode requires Vert.x");
+                }
+                return WorkerExecutor.eventLoop(this.vertx, quantum);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Create the TelemetryService at startup, so that the race snapshot is restored (and its topic verified) before
+     * <br/>
+     * the reactive messaging channels start (at priority LIBRARY_BEFORE), rather than on the thread of the first
+     * <br/>
+     * CarCoordinate.
+     *
+     * @param event fired when the application starts
+     */
+    void onStart(@Observes @Priority(Interceptor.Priority.PLATFORM_BEFORE) final StartupEvent event) {
+        log.debug("Started the TelemetryService with {} restored Cars", this.carStates.size());
+    }
 
-    // identity key lookup map of Car's for which CarCoordinate messages have been received
-    private final Map<Integer, Car> cars = new ConcurrentHashMap<>();
-    // sorted list of Car positions by total distance travelled in descending order
-    private final List<Car> sortedCarPositions = new ArrayList<>();
-    // fastest lap Car
-    private int fastestLapCar = -1;
-    // fastest lap time in milliseconds
-    private long fastestLapTimeInMs = Long.MAX_VALUE;
+    /**
+     * Create a TelemetryService with the configuration of this one, e.g. as the defaults of a race session.
+     * <br/>
+     * The configuration is copied by a method rather than read from the fields, since the injected TelemetryService is
+     * <br/>
+     * a client proxy whose fields are not those of the bean.
+     *
+     * @return a new TelemetryService with the configuration of this one, but no services, that is not initialized
+     */
+    public TelemetryService copyConfiguration() {
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.circuitLengthInKM = this.circuitLengthInKM;
+        telemetryService.flatEarthThresholdInKM = this.flatEarthThresholdInKM;
+        telemetryService.shards = this.shards;
+        telemetryService.queueCapacity = this.queueCapacity;
+        telemetryService.reorderWindowInMs = this.reorderWindowInMs;
+        telemetryService.reorderMaxSamples = this.reorderMaxSamples;
+        telemetryService.maxCars = this.maxCars;
+        telemetryService.lapHistory = this.lapHistory;
+        telemetryService.lapDetection = this.lapDetection;
+        telemetryService.trackPath = this.trackPath;
+        telemetryService.analyticsWindowSamples = this.analyticsWindowSamples;
+        telemetryService.analyticsEwmaTimeConstantInMs = this.analyticsEwmaTimeConstantInMs;
+        telemetryService.analyticsSectorSplits = this.analyticsSectorSplits;
+        telemetryService.gapsMarkerSpacingInKM = this.gapsMarkerSpacingInKM;
+        telemetryService.gapsMarkers = this.gapsMarkers;
+        telemetryService.queryPublishIntervalInMs = this.queryPublishIntervalInMs;
+        return telemetryService;
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            try {
+                this.scheduler.awaitTermination(this.snapshotIntervalInMs == null ? 1000L
+                        : Math.max(this.snapshotIntervalInMs, 1000L), TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // drain the car shards before the standings aggregator, since the shards feed the aggregator
+        this.carEngine.close();
+        // the shard workers have stopped, release the CarCoordinates that are still held in the reorder windows
+        this.carStates.forEachReorderBuffer((reorderBuffer, carIndex) -> {
+            CarCoordinate carCoordinate;
+            CarCoordinate applied = null;
+            while ((carCoordinate = reorderBuffer.pollAny()) != null) {
+                if (this.applyCarCoordinate(carCoordinate)) {
+                    applied = carCoordinate;
+                }
+            }
+            if (applied != null) {
+                this.standingsEngine.submit(0, applied);
+            }
+        });
+        this.standingsEngine.close();
+        if (this.workerExecutor != null) {
+            this.workerExecutor.close();
+        }
+        if (this.queryPublishIntervalInMs != null) {
+            this.publishChangedStandings();
+        }
+        if (this.snapshotPath != null) {
+            // the workers have stopped, so the final snapshot is captured directly
+            this.writeSnapshot(RaceSnapshotCodec.encode(this.captureSnapshot()));
+        }
+    }
 
     /**
      * Process CarCoordinate telemetry messages and publish aggregated and enriched data for each Car's position, <br/>
      * speed, and overtake events.
+     * <br/>
+     * The CarCoordinate is handed off to the shard worker that owns its carIndex, so CarCoordinates for the same <br/>
+     * Car must be submitted in order from a single thread at a time.
      *
      * @param carCoordinate message received from the "carCoordinates" topic
      */
     public void processCarCoordinate(final CarCoordinate carCoordinate) {
-        if (!this.cars.containsKey(carCoordinate.getCarIndex())) {
-            // create a new Car from a carCoordinate
-            final Car car = Car.from(carCoordinate);
-            this.cars.put(car.getCarIndex(), car);
-            car.setPosition(this.cars.size() + 1);
-            this.sortedCarPositions.add(car);
+        this.carEngine.submit(carCoordinate.getCarIndex(), carCoordinate);
+    }
+
+    /**
+     * Process a CarCoordinate on the shard worker that owns the ordering key (e.g. the Kafka partition it was <br/>
+     * consumed from) instead of its carIndex, so CarCoordinates are processed in the order of their ordering key.
+     * <br/>
+     * A Car is pinned to the first ordering key it is submitted with and is never processed by two shards, <br/>
+     * CarCoordinates for the Car with a different ordering key (e.g. from a topic that is not keyed by carIndex) <br/>
+     * are routed to the pinned ordering key. Must not be mixed with {@link #processCarCoordinate(CarCoordinate)}.
+     *
+     * @param orderingKey   of the CarCoordinate, CarCoordinates with the same ordering key are processed in order
+     * @param carCoordinate message received from the "carCoordinates" topic
+     */
+    public void processCarCoordinate(final int orderingKey, final CarCoordinate carCoordinate) {
+        final Integer pinnedKey = this.carOrderingKeys.putIfAbsent(carCoordinate.getCarIndex(), orderingKey);
+        if (pinnedKey != null && pinnedKey != orderingKey) {
+            log.debug("Car {} is pinned to ordering key {}, not {}", carCoordinate.getCarIndex(), pinnedKey,
+                    orderingKey);
+            this.carEngine.submit(pinnedKey, carCoordinate);
+            return;
+        }
+        this.carEngine.submit(orderingKey, carCoordinate);
+    }
+
+    /**
+     * Process a batch of CarCoordinates (e.g. a Kafka poll) as one task per shard worker instead of one hand-off per
+     * <br/>
+     * CarCoordinate. Each shard applies its CarCoordinates in batch order, and then hands every Car that it updated
+     * <br/>
+     * off to the standings once per batch, so the standings and overtakes are calculated from each Car's latest
+     * <br/>
+     * progress in the batch. Like {@link #processCarCoordinate(CarCoordinate)}, batches must be submitted in order,
+     * <br/>
+     * and the list is not kept so it can be reused once this returns.
+     *
+     * @param carCoordinates messages received from the "carCoordinates" topic, in the order they were received
+     */
+    public void processCarCoordinates(final List<CarCoordinate> carCoordinates) {
+        this.processCarCoordinates(carCoordinates, null);
+    }
+
+    /**
+     * Process a batch of CarCoordinates with the same ordering key (e.g. a Kafka partition's records of a poll) on
+     * <br/>
+     * the shard worker that owns the ordering key, see {@link #processCarCoordinate(int, CarCoordinate)}.
+     *
+     * @param orderingKey    of the CarCoordinates
+     * @param carCoordinates messages received from the "carCoordinates" topic, in the order they were received
+     */
+    public void processCarCoordinates(final int orderingKey, final List<CarCoordinate> carCoordinates) {
+        this.processCarCoordinates(carCoordinates, orderingKey);
+    }
+
+    private void processCarCoordinates(final List<CarCoordinate> carCoordinates, final Integer orderingKey) {
+        if (carCoordinates.isEmpty()) {
+            return;
+        }
+        final int shards = Math.max(1, this.carEngine.shards());
+        // group the CarCoordinates by the shard that owns their Car (or pinned ordering key), keeping their order
+        final List<List<CarCoordinate>> byShard = new ArrayList<>(Collections.nCopies(shards, null));
+        for (final CarCoordinate carCoordinate : carCoordinates) {
+            final int key;
+            if (orderingKey == null) {
+                key = carCoordinate.getCarIndex();
+            } else {
+                final Integer pinnedKey = this.carOrderingKeys.putIfAbsent(carCoordinate.getCarIndex(), orderingKey);
+                key = pinnedKey == null ? orderingKey : pinnedKey;
+            }
+            final int shard = this.carEngine.shardFor(key);
+            List<CarCoordinate> batch = byShard.get(shard);
+            if (batch == null) {
+                batch = new ArrayList<>(carCoordinates.size() / shards + 1);
+                byShard.set(shard, batch);
+            }
+            batch.add(carCoordinate);
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            final List<CarCoordinate> batch = byShard.get(shard);
+            if (batch != null) {
+                this.carEngine.executeOnShard(shard, batch.size(), () -> this.updateCars(batch));
+            }
+        }
+    }
+
+    /**
+     * Record the Kafka offset of a CarCoordinate that has been handed off with processCarCoordinate, so that a
+     * <br/>
+     * snapshot records where to resume consuming from.
+     *
+     * @param partition of the CarCoordinate
+     * @param offset    of the CarCoordinate
+     */
+    public void consumedOffset(final int partition, final long offset) {
+        AtomicLong consumed = this.consumedOffsets.get(partition);
+        if (consumed == null) {
+            consumed = this.consumedOffsets.computeIfAbsent(partition, key -> new AtomicLong(-1L));
+        }
+        // only the consumer of the partition updates it, so a plain max is enough
+        if (offset > consumed.get()) {
+            consumed.set(offset);
+        }
+    }
+
+    /**
+     * Record that a CarCoordinate of a race session has been consumed from Kafka, since the race sessions are not
+     * <br/>
+     * snapshotted the consumer must not seek past their CarCoordinates at the next restart.
+     */
+    public void sessionConsumed() {
+        if (!this.sessionsConsumed) {
+            this.sessionsConsumed = true;
+        }
+    }
+
+    /**
+     * @param partition of the restored CarCoordinates
+     * @return the offset after the last offset of the partition reflected in the restored snapshot, or -1 if the
+     * <br/>
+     * consumer must not seek past the snapshot (there is none, or race sessions were consumed before its offsets and
+     * <br/>
+     * are rebuilt from the beginning of the topic)
+     */
+    public long resumeOffset(final int partition) {
+        final Long restored = this.restoredOffsets.get(partition);
+        return restored == null || this.restoredSessions ? -1L : restored + 1L;
+    }
+
+    /**
+     * @param partition of a CarCoordinate
+     * @param offset    of the CarCoordinate
+     * @return true if the CarCoordinate is already reflected in the snapshot that was restored at startup
+     */
+    public boolean isRestored(final int partition, final long offset) {
+        final Long restored = this.restoredOffsets.get(partition);
+        return restored != null && offset <= restored;
+    }
+
+    /**
+     * Capture a consistent snapshot of the race state: every car shard worker copies its own Cars in a task queued
+     * <br/>
+     * after the CarCoordinates already handed off to it, and the copies are combined on the calling thread, so the
+     * <br/>
+     * shard workers (and the threads or event loops that run them) are never blocked, whatever the executor mode.
+     * <br/>
+     * The snapshot reflects at least the CarCoordinates up to its recorded Kafka offsets, any later CarCoordinates
+     * <br/>
+     * that it also reflects are dropped as duplicates (by timestamp) by the reorder windows when they are replayed.
+     *
+     * @return the encoded snapshot, or null if the shard workers did not copy their Cars in time
+     */
+    public byte[] snapshot() {
+        // the offsets are recorded after the hand-off, so every CarCoordinate up to them is queued before the copies
+        final Map<Integer, Long> offsets = new HashMap<>();
+        this.consumedOffsets.forEach((partition, offset) -> offsets.put(partition, offset.get()));
+        final int shards = this.carEngine.shards();
+        if (shards == 0) {
+            // with 0 shards the CarCoordinates are processed inline, so the caller must be the processing thread
+            final RaceSnapshot snapshot = this.captureSnapshot();
+            snapshot.setOffsets(offsets);
+            return RaceSnapshotCodec.encode(snapshot);
+        }
+        final RaceSnapshot[] copies = new RaceSnapshot[shards];
+        final CountDownLatch copied = new CountDownLatch(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            final int owner = shard;
+            this.carEngine.executeOnShard(shard, 1, () -> {
+                copies[owner] = this.copyCars(owner);
+                copied.countDown();
+            });
+        }
+        try {
+            if (!copied.await(Math.max(this.snapshotIntervalInMs, 1000L), TimeUnit.MILLISECONDS)) {
+                log.warn("Skipped the race snapshot, the shard workers did not copy their Cars in time");
+                return null;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        final RaceSnapshot snapshot = this.newSnapshot();
+        for (int shard = 0; shard < shards; shard++) {
+            // a shard can see a Car that another shard is adding before its pinned ordering key, only the copy of
+            // the shard that owns the Car is kept
+            final int owner = shard;
+            copies[shard].getCars().stream().filter(car -> this.shardOf(car.getCarIndex()) == owner)
+                    .forEach(snapshot.getCars()::add);
+            copies[shard].getReleasedTimestamps().forEach((carIndex, releasedTimestamp) -> {
+                if (this.shardOf(carIndex) == owner) {
+                    snapshot.getReleasedTimestamps().put(carIndex, releasedTimestamp);
+                    snapshot.getHeldCarCoordinates().put(carIndex, copies[owner].getHeldCarCoordinates().get(carIndex));
+                }
+            });
+        }
+        snapshot.setOffsets(offsets);
+        return RaceSnapshotCodec.encode(snapshot);
+    }
+
+    /**
+     * Write a snapshot of the race state to the snapshot file, runs periodically on the snapshot thread.
+     */
+    public void writeSnapshot() {
+        this.writeSnapshot(this.snapshot());
+    }
+
+    /**
+     * Wait until every CarCoordinate submitted before this call has been processed and its standings published, <br/>
+     * apart from the CarCoordinates that are still held in the Car's reorder windows.
+     */
+    public void awaitIdle() {
+        this.carEngine.awaitIdle();
+        this.standingsEngine.awaitIdle();
+        if (this.queryPublishIntervalInMs != null) {
+            this.standingsEngine.executeOnShard(0, 1, this::publishChangedStandings);
+            this.standingsEngine.awaitIdle();
+        }
+    }
+
+    /**
+     * @param carIndex of the Car
+     * @return a copy of the Car's state, or null if no CarCoordinate has been received for the carIndex
+     */
+    public Car getCar(final int carIndex) {
+        return this.carStates.toCar(carIndex);
+    }
+
+    /**
+     * @return the latest standings snapshot, published at most queryPublishIntervalInMs after the standings changed,
+     * <br/>
+     * or null if the query snapshots are disabled
+     */
+    public RaceStandings getStandings() {
+        return this.raceStandings;
+    }
+
+    /**
+     * @param carIndex of the Car
+     * @return the Car's lap history, or null if the Car has not completed a lap or the query snapshots are disabled
+     */
+    public LapHistory getLapHistory(final int carIndex) {
+        return this.lapHistories.get(carIndex);
+    }
+
+    /**
+     * @return the number of Cars for which CarCoordinates have been received
+     */
+    public int getCarCount() {
+        return this.carStates.size();
+    }
+
+    /**
+     * Estimate the heap retained by the race state: the Car state store, the CarCoordinates held in the reorder
+     * <br/>
+     * windows and queued for the workers, the standings and the query snapshots. An approximation from fixed
+     * <br/>
+     * per-object sizes, which is cheap enough to be scraped, rather than a measurement.
+     *
+     * @return the estimated retained heap in bytes
+     */
+    public long getEstimatedMemoryBytes() {
+        final long[] held = new long[1];
+        this.carStates.forEachReorderBuffer((reorderBuffer, carIndex) -> held[0] += reorderBuffer.size());
+        long querySnapshots = 0L;
+        if (this.queryPublishIntervalInMs != null) {
+            querySnapshots = this.carStates.size() * STANDING_BYTES;
+            for (final LapHistory lapHistory : this.lapHistories.values()) {
+                querySnapshots += lapHistory.getLaps().size() * LAP_HISTORY_LAP_BYTES;
+            }
+        }
+        return this.carStates.estimatedBytes() + (this.analytics == null ? 0L : this.analytics.estimatedBytes())
+                + (this.gapTimer == null ? 0L : this.gapTimer.estimatedBytes())
+                + this.carStates.size() * STANDINGS_CAR_BYTES + querySnapshots
+                + (held[0] + this.carEngine.depth() + this.standingsEngine.depth()) * CAR_COORDINATE_BYTES;
+    }
+
+    /**
+     * @return the number of CarCoordinates that arrived out of timestamp order and were put back in order
+     */
+    public long getReorderedSamples() {
+        return this.reorderedSamples.sum();
+    }
+
+    /**
+     * @return the number of CarCoordinates dropped because they arrived too late to be put back in order
+     */
+    public long getLateSamples() {
+        return this.lateSamples.sum();
+    }
+
+    /**
+     * @return the number of CarCoordinates dropped because a CarCoordinate with the same timestamp was received
+     */
+    public long getDuplicateSamples() {
+        return this.duplicateSamples.sum();
+    }
+
+    /**
+     * @return the number of CarCoordinates dropped because their car shard worker was at capacity, and they were
+     * <br/>
+     * handed off on an event loop that must not block (the EVENT_LOOP executor mode)
+     */
+    public long getRejectedSamples() {
+        return this.carEngine.rejected();
+    }
+
+    /**
+     * @return the number of CarCoordinates queued across the car shard workers
+     */
+    public long getShardQueueDepth() {
+        return this.carEngine.depth();
+    }
+
+    /**
+     * @return the number of Car progress snapshots queued for the standings worker
+     */
+    public long getStandingsQueueDepth() {
+        return this.standingsEngine.depth();
+    }
+
+    /**
+     * @return the number of car shard workers
+     */
+    public int getShards() {
+        return this.carEngine.shards();
+    }
+
+    /**
+     * @return the total time that the car shard workers have spent handling CarCoordinates, in nanoseconds
+     */
+    public long getShardBusyNanos() {
+        return this.carEngine.busyNanos();
+    }
+
+    /**
+     * @return the total time that the standings worker has spent updating the standings, in nanoseconds
+     */
+    public long getStandingsBusyNanos() {
+        return this.standingsEngine.busyNanos();
+    }
+
+    // must only be called while the CarCoordinates are processed inline or the car shard workers are stopped
+    private RaceSnapshot captureSnapshot() {
+        final RaceSnapshot snapshot = this.newSnapshot();
+        final RaceSnapshot cars = this.copyCars(-1);
+        snapshot.setCars(cars.getCars());
+        snapshot.setReleasedTimestamps(cars.getReleasedTimestamps());
+        snapshot.setHeldCarCoordinates(cars.getHeldCarCoordinates());
+        this.consumedOffsets.forEach((partition, offset) -> snapshot.getOffsets().put(partition, offset.get()));
+        return snapshot;
+    }
+
+    // the race state that is not owned by a car shard
+    private RaceSnapshot newSnapshot() {
+        final FastestLap fastestLap = this.fastestLap.get();
+        // read before the identity, which is looked up when the first offsets are recorded
+        final boolean sessionsConsumed = this.sessionsConsumed;
+        final RaceSnapshot snapshot = RaceSnapshot.builder().carOrderingKeys(new HashMap<>(this.carOrderingKeys))
+                .topicIdentity(this.topicIdentity()).sessionsConsumed(sessionsConsumed).build();
+        if (fastestLap != null) {
+            snapshot.setFastestLapTimeInMs(fastestLap.getLapTimeInMs());
+            snapshot.setFastestLapCar(fastestLap.getCarIndex());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copy the Cars (and their reorder windows) that a car shard owns, runs on the shard worker.
+     *
+     * @param shard that owns the Cars, or -1 for every Car
+     * @return a snapshot of the Cars only
+     */
+    private RaceSnapshot copyCars(final int shard) {
+        final RaceSnapshot snapshot = RaceSnapshot.builder().build();
+        this.carStates.forEachCar(carIndex -> {
+            if (shard < 0 || this.shardOf(carIndex) == shard) {
+                snapshot.getCars().add(this.carStates.toCar(carIndex));
+            }
+        });
+        this.carStates.forEachReorderBuffer((reorderBuffer, carIndex) -> {
+            if (shard < 0 || this.shardOf(carIndex) == shard) {
+                snapshot.getReleasedTimestamps().put(carIndex, reorderBuffer.releasedTimestamp());
+                snapshot.getHeldCarCoordinates().put(carIndex, reorderBuffer.held());
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @return the car shard that owns the Car, by its pinned ordering key (if it has one) or its carIndex
+     */
+    private int shardOf(final int carIndex) {
+        final Integer orderingKey = this.carOrderingKeys.get(carIndex);
+        return this.carEngine.shardFor(orderingKey == null ? carIndex : orderingKey);
+    }
+
+    // the identity of the Kafka topic that the offsets refer to, null without offsets (or without a topic)
+    private String topicIdentity() {
+        if (this.topicIdentity == null && !this.consumedOffsets.isEmpty() && this.kafkaOffsetService != null) {
+            this.topicIdentity = this.kafkaOffsetService.topicIdentity();
+        }
+        return this.topicIdentity;
+    }
+
+    private void writeSnapshot(final byte[] snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            RaceSnapshotCodec.write(snapshot, Paths.get(this.snapshotPath));
+        } catch (final IOException | RuntimeException e) {
+            log.error(String.format("Failed to write the race snapshot to %s", this.snapshotPath), e);
+        }
+    }
+
+    /**
+     * Restore the race state from the snapshot file (if there is one), before the workers are started.
+     */
+    private void restoreSnapshot() {
+        if (this.snapshotPath == null) {
+            return;
+        }
+        final Path path = Paths.get(this.snapshotPath);
+        if (!Files.exists(path)) {
+            return;
+        }
+        final RaceSnapshot snapshot;
+        try {
+            snapshot = RaceSnapshotCodec.read(path);
+        } catch (final IOException e) {
+            // start from the beginning of the race rather than from a corrupt snapshot
+            log.error(String.format("Ignored the race snapshot %s", this.snapshotPath), e);
+            return;
+        }
+        if (!snapshot.getOffsets().isEmpty() && this.kafkaOffsetService != null
+                && !this.kafkaOffsetService.matches(snapshot.getTopicIdentity(), snapshot.getOffsets())) {
+            // skipping the topic's carCoordinates up to the snapshot's offsets would lose them
+            log.warn("Ignored the race snapshot {}, it was not taken from the carCoordinates topic", this.snapshotPath);
+            return;
+        }
+        this.topicIdentity = snapshot.getTopicIdentity();
+        this.restoredSessions = snapshot.isSessionsConsumed();
+        this.sessionsConsumed = snapshot.isSessionsConsumed();
+        for (final Car car : snapshot.getCars()) {
+            this.carStates.put(car);
+            if (this.queryPublishIntervalInMs != null && car.getLapCount() > 0) {
+                this.lapHistories.put(car.getCarIndex(), new LapHistory(car.getCarIndex(), car.getLapCount(),
+                        Collections.unmodifiableList(new ArrayList<>(car.getLaps()))));
+            }
+        }
+        snapshot.getReleasedTimestamps().forEach((carIndex, releasedTimestamp) -> {
+            final ReorderBuffer reorderBuffer = new ReorderBuffer(this.reorderWindowInMs, this.reorderMaxSamples);
+            reorderBuffer.restore(releasedTimestamp,
+                    snapshot.getHeldCarCoordinates().getOrDefault(carIndex, Collections.emptyList()));
+            this.carStates.setReorderBuffer(carIndex, reorderBuffer);
+        });
+        this.carOrderingKeys.putAll(snapshot.getCarOrderingKeys());
+        if (snapshot.getFastestLapCar() >= 0) {
+            this.fastestLap.set(new FastestLap(snapshot.getFastestLapCar(), snapshot.getFastestLapTimeInMs()));
+        }
+        // rebuild the standings in order of total distance travelled
+        final List<Car> progress = new ArrayList<>(snapshot.getCars());
+        progress.sort(Comparator.comparingDouble(Car::getTotalDistance).reversed());
+        for (final Car car : progress) {
+            final Car standingsCar = Car.builder().carIndex(car.getCarIndex()).totalDistance(car.getTotalDistance())
+                    .lastUpdateTimestamp(car.getLastUpdateTimestamp()).build();
+            this.setStandingsCar(standingsCar);
+            this.leaderboard.add(standingsCar);
+        }
+        snapshot.getOffsets().forEach((partition, offset) -> {
+            this.restoredOffsets.put(partition, offset);
+            this.consumedOffsets.put(partition, new AtomicLong(offset));
+        });
+        log.info("Restored {} Cars from the race snapshot {}, at offsets {}", snapshot.getCars().size(),
+                this.snapshotPath, snapshot.getOffsets());
+    }
+
+    /**
+     * Update a Car with a CarCoordinate, and hand the Car off to the standings if it was updated, runs on the shard
+     * <br/>
+     * worker that owns the Car.
+     *
+     * @param carCoordinate message received from the "carCoordinates" topic
+     */
+    private void updateCar(final CarCoordinate carCoordinate) {
+        if (this.releaseCarCoordinates(carCoordinate)) {
+            // the standings aggregator reads the Car's latest progress from the Car state store rather than from a
+            // per sample copy
+            this.standingsEngine.submit(0, carCoordinate);
+        }
+    }
+
+    /**
+     * Update the Cars with a batch of CarCoordinates, and hand every Car that was updated off to the standings once,
+     * <br/>
+     * as a single standings task, runs on the shard worker that owns the Cars.
+     *
+     * @param carCoordinates messages received from the "carCoordinates" topic, in the order they were received
+     */
+    private void updateCars(final List<CarCoordinate> carCoordinates) {
+        // the Cars updated by the batch, in the order of their first update
+        final BitSet updated = new BitSet();
+        final int[] cars = new int[carCoordinates.size()];
+        int count = 0;
+        for (final CarCoordinate carCoordinate : carCoordinates) {
+            final int carIndex = carCoordinate.getCarIndex();
+            if (this.releaseCarCoordinates(carCoordinate) && !updated.get(carIndex)) {
+                updated.set(carIndex);
+                cars[count++] = carIndex;
+            }
+        }
+        if (count == 0) {
             return;
         }
-        // process a CarCoordinate update for an existing Car
-        this.updateCarTotalDistanceAndSpeed(carCoordinate);
-        this.updateCarPositionsAndOvertakes();
+        final int[] updatedCars = count == cars.length ? cars : Arrays.copyOf(cars, count);
+        this.standingsEngine.executeOnShard(0, count, () -> {
+            for (final int carIndex : updatedCars) {
+                this.updateStandings(carIndex);
+            }
+        });
+    }
+
+    /**
+     * Pass a CarCoordinate through its Car's reorder window and apply the CarCoordinates that are released, in
+     * <br/>
+     * timestamp order, runs on the shard worker that owns the Car.
+     *
+     * @param carCoordinate message received from the "carCoordinates" topic
+     * @return true if the Car was updated by at least one released CarCoordinate
+     */
+    private boolean releaseCarCoordinates(final CarCoordinate carCoordinate) {
+        final int carIndex = carCoordinate.getCarIndex();
+        ReorderBuffer reorderBuffer = this.carStates.reorderBuffer(carIndex);
+        if (reorderBuffer == null) {
+            if (!this.carStates.accepts(carIndex)) {
+                log.error("Dropped CarCoordinate, carIndex is not within 0 and {}: {}", this.maxCars - 1,
+                        carCoordinate);
+                return false;
+            }
+            reorderBuffer = new ReorderBuffer(this.reorderWindowInMs, this.reorderMaxSamples);
+            this.carStates.setReorderBuffer(carIndex, reorderBuffer);
+        }
+        switch (reorderBuffer.offer(carCoordinate)) {
+            case LATE:
+                this.lateSamples.increment();
+                log.debug("Dropped late CarCoordinate: {}", carCoordinate);
+                return false;
+            case DUPLICATE:
+                this.duplicateSamples.increment();
+                log.debug("Dropped duplicate CarCoordinate: {}", carCoordinate);
+                return false;
+            case REORDERED:
+                this.reorderedSamples.increment();
+                break;
+            default:
+                break;
+        }
+        boolean applied = false;
+        CarCoordinate released;
+        while ((released = reorderBuffer.poll()) != null) {
+            applied |= this.applyCarCoordinate(released);
+        }
+        return applied;
+    }
+
+    /**
+     * Apply a CarCoordinate to the Car that it references, runs on the shard worker that owns the Car.
+     *
+     * @param carCoordinate message received from the "carCoordinates" topic
+     * @return true if the Car was updated
+     */
+    private boolean applyCarCoordinate(final CarCoordinate carCoordinate) {
+        final int carIndex = carCoordinate.getCarIndex();
+        if (!this.carStates.contains(carIndex)) {
+            final Location location = carCoordinate.getLocation();
+            try {
+                Haversine.validateCoordinate(location.getLatitude(), location.getLongitude());
+            } catch (final InputValidationException e) {
+                log.error(carCoordinate.toString(), e);
+                return false;
+            }
+            // add a new Car from a carCoordinate
+            this.carStates.add(carIndex, location.getLatitude(), location.getLongitude(),
+                    carCoordinate.getTimestamp());
+            if (this.track != null) {
+                this.startOnTrack(carIndex);
+            }
+            if (this.analytics != null && !Double.isNaN(this.lapDistance(carIndex))) {
+                // the Car starts its first lap, rather than an out lap
+                this.analytics.startLap(carIndex, carCoordinate.getTimestamp());
+            }
+        } else if (!this.updateCarTotalDistanceAndSpeed(carIndex, carCoordinate)) {
+            return false;
+        }
+        this.metrics.processedCarCoordinates.increment();
+        return true;
     }
 
     /**
      * Update the referenced Car's total distance travelled and publish its speed
      *
+     * @param carIndex      of the Car referenced by the carCoordinate
      * @param carCoordinate message received from the "carCoordinates" topic
+     * @return true if the Car was updated
      */
-    private void updateCarTotalDistanceAndSpeed(final CarCoordinate carCoordinate) {
+    private boolean updateCarTotalDistanceAndSpeed(final int carIndex, final CarCoordinate carCoordinate) {
         try {
-            final Car car = this.cars.get(carCoordinate.getCarIndex());
-
-            if (carCoordinate.getTimestamp() <= car.getLastUpdateTimestamp()) {
+            final long prevTimestamp = this.carStates.lastUpdateTimestamp(carIndex);
+            if (carCoordinate.getTimestamp() <= prevTimestamp) {
                 // only process messages that are newer than the car's last update time
                 // log an error since this should not happen
-                log.error("Received carCoordinate.getTimestamp %d <= car.getLastUpdateTimestamp %d",
-                        carCoordinate.getTimestamp(), car.getLastUpdateTimestamp());
-                return;
+                log.error("Received carCoordinate.getTimestamp {} <= car.getLastUpdateTimestamp {}",
+                        carCoordinate.getTimestamp(), prevTimestamp);
+                return false;
             }
 
-            // calculate the distance (in kilometres) between the Car's current Location and the carCoordinate Location
-            final double distance = Haversine.distance(car.getCurLocation(), carCoordinate.getLocation());
+            // calculate the distance (in kilometres) between the Car's current location and the carCoordinate
+            // Location, and move the Car (the Location itself is not kept)
+            final long start = System.nanoTime();
+            final Location location = carCoordinate.getLocation();
+            Haversine.validateCoordinate(location.getLatitude(), location.getLongitude());
+            final double distance = this.carStates.moveTo(carIndex, location.getLatitude(), location.getLongitude(),
+                    this.flatEarthThresholdInKM);
             // calculate the speed (in MPH)
-            final double speed = Speed.speedInMPH(distance, carCoordinate.getTimestamp() - car.getLastUpdateTimestamp());
+            final double speed = Speed.speedInMPH(distance, carCoordinate.getTimestamp() - prevTimestamp);
 
             // update Car
-            car.setCurLocation(carCoordinate.getLocation());
-            car.addDistance(distance);
-            car.setLastUpdateTimestamp(carCoordinate.getTimestamp());
-            car.setCurSpeedMPH(speed);
+            final double prevTrackProgress = this.carStates.trackProgress(carIndex);
+            final double prevLapDistance = this.analytics == null ? Double.NaN : this.lapDistance(carIndex);
+            if (this.track != null) {
+                // the along-track progress, which is not affected by GPS jitter across the track, and only beyond
+                // the Car's furthest progress, which is not affected by GPS jitter along the track
+                this.carStates.addDistance(carIndex, this.beyondTrackDeficit(carIndex,
+                        this.advanceOnTrack(carIndex) - prevTrackProgress));
+            } else {
+                this.carStates.addDistance(carIndex, distance);
+            }
+            this.carStates.setLastUpdateTimestamp(carIndex, carCoordinate.getTimestamp());
+            this.carStates.setSpeedMPH(carIndex, speed);
 
             // publish a CarStatus speed message
-            this.carStatusService.publish(new CarStatus(car, CarStatus.TypeEnum.SPEED));
+            this.publish(new CarStatus(carCoordinate.getTimestamp(), carIndex, CarStatus.TypeEnum.SPEED, speed));
+            if (this.analytics != null) {
+                this.updateCarAnalytics(carIndex, prevTimestamp, distance, speed, prevLapDistance);
+            }
+            final long lapStart = System.nanoTime();
+            this.metrics.distanceNanos.record(lapStart - start);
 
             // calculate Car lap(s)
-            final double circuitLengthLaps = car.getTotalDistance() / this.circuitLengthInKM;
-            final int completedLaps = (int) (circuitLengthLaps);
-            if (car.getLaps().size() < completedLaps) {
-                // perform lap calculations using offsets, i.e. correct for distance "overshoots"
-                final double offsetDistance = car.getTotalDistance() - (completedLaps * this.circuitLengthInKM);
-                final double offsetPercentage = offsetDistance / this.circuitLengthInKM;
-                final long offsetTime = BigDecimal.valueOf(car.getLastUpdateTimestamp() - car.getLapStartTime())
-                        .multiply(BigDecimal.valueOf(offsetPercentage)).longValue();
-                final long endTime = car.getLastUpdateTimestamp() - (offsetTime);
-
-                // create a new CarLap for a Car
-                final CarLap carLap = new CarLap();
-                car.getLaps().add(carLap);
-                carLap.setStartTime(car.getLapStartTime());
-                carLap.setEndTime(endTime);
-                carLap.setDistance(this.circuitLengthInKM);
-                final long lapTimeInMs = carLap.getEndTime() - carLap.getStartTime();
-                carLap.setAverageSpeed(Speed.speedInMPH(this.circuitLengthInKM, lapTimeInMs));
-
-                // convert lapTimeInMS into lapMinutes:lapSeconds.lapMillis
-                final long lapMinutes = lapTimeInMs / TimeUnit.MINUTES.toMillis(1);
-                final long lapSeconds = (lapTimeInMs - TimeUnit.MINUTES.toMillis(lapMinutes)) / TimeUnit.SECONDS.toMillis(1);
-                final long lapMillis = lapTimeInMs - TimeUnit.MINUTES.toMillis(lapMinutes) - TimeUnit.SECONDS.toMillis(lapSeconds);
-                final String lapTimeEvent = String.format(LAP_TIME_FORMAT, car.getCarIndex(),
-                        car.getLaps().size(), lapMinutes, lapSeconds, lapMillis, carLap.getAverageSpeed());
-                log.debug(lapTimeEvent);
-                car.setLapStartTime(carLap.getEndTime());
-
-                // publish an Event message for lap time
-                // use car.getLastUpdateTimestamp() to keep emitted events synchronized to source timestamps
-                this.eventsService.publish(new Event(car.getLastUpdateTimestamp(), lapTimeEvent));
-
-                if (lapTimeInMs < this.fastestLapTimeInMs) {
-                    this.fastestLapTimeInMs = lapTimeInMs;
-                    this.fastestLapCar = car.getCarIndex();
-                    final String newFastestLapEvent = String.format(FASTEST_LAP_TIME_FORMAT, car.getCarIndex(),
-                            lapMinutes, lapSeconds, lapMillis, carLap.getAverageSpeed());
-                    log.debug(newFastestLapEvent);
-                    // publish an Event message for new fastest lap time
-                    // use car.getLastUpdateTimestamp() to keep emitted events synchronized to source timestamps
-                    this.eventsService.publish(new Event(car.getLastUpdateTimestamp(), newFastestLapEvent));
-                }
+            if (this.track != null) {
+                this.updateCarLapsOnTrack(carIndex, prevTimestamp, prevTrackProgress);
+            } else {
+                this.updateCarLapsByDistance(carIndex);
             }
+            this.metrics.lapNanos.record(System.nanoTime() - lapStart);
+            return true;
         } catch (final InputValidationException e) {
             log.error(carCoordinate.toString(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Count the laps that a Car has completed by dividing its total distance by the circuit length, runs on the
+     * <br/>
+     * shard worker that owns the Car.
+     *
+     * @param carIndex of the Car referenced by the carCoordinate
+     */
+    private void updateCarLapsByDistance(final int carIndex) throws InputValidationException {
+        final double totalDistance = this.carStates.totalDistance(carIndex);
+        final double circuitLengthLaps = totalDistance / this.circuitLengthInKM;
+        final int completedLaps = (int) (circuitLengthLaps);
+        if (this.carStates.lapCount(carIndex) < completedLaps) {
+            // perform lap calculations using offsets, i.e. correct for distance "overshoots"
+            final long lastUpdateTimestamp = this.carStates.lastUpdateTimestamp(carIndex);
+            final double offsetDistance = totalDistance - (completedLaps * this.circuitLengthInKM);
+            final double offsetPercentage = offsetDistance / this.circuitLengthInKM;
+            final long offsetTime = BigDecimal.valueOf(lastUpdateTimestamp - this.carStates.lapStartTime(carIndex))
+                    .multiply(BigDecimal.valueOf(offsetPercentage)).longValue();
+            this.completeLap(carIndex, lastUpdateTimestamp - (offsetTime), this.circuitLengthInKM);
+        }
+    }
+
+    /**
+     * Add a speed sample to a Car's rolling analytics, and publish its smoothed and average speed, its top speed
+     * <br/>
+     * when the sample raised it, and the time of every sector it completed (but the last sector of a lap, which is
+     * <br/>
+     * completed with the lap), runs on the shard worker that owns the Car.
+     *
+     * @param carIndex        of the Car, after its progress has been updated
+     * @param prevTimestamp   the timestamp of the Car's previous location
+     * @param distance        from the Car's previous location, in kilometres
+     * @param speed           from the Car's previous location, in MPH
+     * @param prevLapDistance the distance into its current lap of the Car's previous location
+     */
+    private void updateCarAnalytics(final int carIndex, final long prevTimestamp, final double distance,
+                                    final double speed, final double prevLapDistance)
+            throws InputValidationException {
+        final long timestamp = this.carStates.lastUpdateTimestamp(carIndex);
+        final boolean topSpeed = this.analytics.addSample(carIndex, distance, timestamp - prevTimestamp, speed);
+        this.publish(new CarStatus(timestamp, carIndex, CarStatus.TypeEnum.SMOOTHED_SPEED,
+                this.analytics.smoothedSpeed(carIndex)));
+        this.publish(new CarStatus(timestamp, carIndex, CarStatus.TypeEnum.AVERAGE_SPEED,
+                Speed.speedInMPH(this.analytics.windowDistance(carIndex), this.analytics.windowTime(carIndex))));
+        if (topSpeed) {
+            this.publish(new CarStatus(timestamp, carIndex, CarStatus.TypeEnum.TOP_SPEED,
+                    this.analytics.topSpeed(carIndex)));
+        }
+
+        // complete every sector split that the Car passed, at the time that it passed the split (interpolated
+        // between the two locations)
+        final double lapDistance = this.lapDistance(carIndex);
+        if (Double.isNaN(prevLapDistance) || !(lapDistance > prevLapDistance)) {
+            return;
+        }
+        final double lapLength = this.track != null ? this.track.length() : this.circuitLengthInKM;
+        double split;
+        while ((split = this.analytics.nextSplit(carIndex) * lapLength) <= lapDistance) {
+            final double fraction = (split - prevLapDistance) / (lapDistance - prevLapDistance);
+            this.completeSector(carIndex, prevTimestamp
+                    + Math.round(Math.max(0D, Math.min(1D, fraction)) * (timestamp - prevTimestamp)));
+        }
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @return the distance (in kilometres) that the Car has travelled into its current lap, which exceeds the lap
+     * <br/>
+     * length until the lap is completed, or NaN if the Car is on its out lap
+     */
+    private double lapDistance(final int carIndex) {
+        if (this.track != null) {
+            final int line = this.carStates.trackLine(carIndex);
+            return line < 0 ? Double.NaN : this.carStates.trackProgress(carIndex) - line * this.track.length();
+        }
+        return this.carStates.totalDistance(carIndex) - this.carStates.lapCount(carIndex) * this.circuitLengthInKM;
+    }
+
+    /**
+     * Complete a Car's current sector, and publish its sector time.
+     *
+     * @param carIndex of the Car
+     * @param endTime  of the sector
+     */
+    private void completeSector(final int carIndex, final long endTime) {
+        final int sector = this.analytics.sector(carIndex) + 1;
+        final long sectorTimeInMs = this.analytics.completeSector(carIndex, endTime);
+        this.publish(new CarStatus(this.carStates.lastUpdateTimestamp(carIndex), carIndex,
+                CarStatus.TypeEnum.SECTOR_TIME, sectorTimeInMs, null, sector));
+    }
+
+    /**
+     * Place a new Car on the track. A Car that starts away from the start/finish line is on an out lap until it
+     * <br/>
+     * first crosses the line, which is when its first lap starts.
+     *
+     * @param carIndex of a new Car
+     */
+    private void startOnTrack(final int carIndex) {
+        final double latitudeInRadians = this.carStates.latitudeInRadians(carIndex);
+        final double longitudeInRadians = this.carStates.longitudeInRadians(carIndex);
+        final int segment = this.track.nearestSegment(latitudeInRadians, longitudeInRadians, -1);
+        final double distance = this.track.distanceAlong(segment, latitudeInRadians, longitudeInRadians);
+        this.carStates.setTrackSegment(carIndex, segment);
+        if (distance <= TRACK_START_TOLERANCE_IN_KM) {
+            // on (or just past) the line, the first lap has started
+            this.carStates.setTrackProgress(carIndex, distance);
+            this.carStates.setTrackLine(carIndex, 0);
+        } else {
+            this.carStates.setTrackProgress(carIndex, distance - this.track.length());
+            this.carStates.setTrackLine(carIndex, -1);
         }
     }
 
     /**
-     * Sort, update and publish Car positions based on the total distance travelled and then publish events for any overtakes
+     * Project a Car's current location onto the track, and advance its along-track progress by the shortest way
+     * <br/>
+     * around the track from its previous location.
+     *
+     * @param carIndex of the Car, after its current location has been updated
+     * @return the Car's new along-track progress
      */
-    private void updateCarPositionsAndOvertakes() {
-        // store the current sortedCarPositions index
-        final int[] prevPositions = new int[this.sortedCarPositions.size()];
-        for (int i = 0; i < prevPositions.length; i++) {
-            prevPositions[i] = this.sortedCarPositions.get(i).getCarIndex();
+    private double advanceOnTrack(final int carIndex) {
+        final double latitudeInRadians = this.carStates.latitudeInRadians(carIndex);
+        final double longitudeInRadians = this.carStates.longitudeInRadians(carIndex);
+        final int segment = this.track.nearestSegment(latitudeInRadians, longitudeInRadians,
+                this.carStates.trackSegment(carIndex));
+        final double length = this.track.length();
+        final double distance = this.track.distanceAlong(segment, latitudeInRadians, longitudeInRadians);
+        final double progress = this.carStates.trackProgress(carIndex);
+        double delta = distance - (progress - Math.floor(progress / length) * length);
+        if (delta < -length / 2D) {
+            delta += length;
+        } else if (delta > length / 2D) {
+            delta -= length;
         }
+        this.carStates.setTrackSegment(carIndex, segment);
+        this.carStates.setTrackProgress(carIndex, progress + delta);
+        return progress + delta;
+    }
 
-        // sort the Car positions by total distance in descending order
-        Collections.sort(this.sortedCarPositions, (o1, o2) -> o1.getTotalDistance() > o2.getTotalDistance() ? -1 :
-                (o1.getTotalDistance() < o2.getTotalDistance() ? 1 : 0));
+    /**
+     * Keep the standings distance of a Car monotonic: a Car whose progress goes back along the track (e.g. GPS jitter
+     * <br/>
+     * behind a Car that it leads) builds up a deficit, which its next progress makes up before its standings distance
+     * <br/>
+     * advances again, so it neither drops down the order nor adds the jitter to its distance. The track progress
+     * <br/>
+     * itself, which the laps are detected from, is not affected.
+     *
+     * @param carIndex of the Car
+     * @param progress the change of the Car's along-track progress, negative if it went back along the track
+     * @return the distance that the Car advanced beyond its furthest progress
+     */
+    private double beyondTrackDeficit(final int carIndex, final double progress) {
+        final double deficit = this.carStates.trackDeficit(carIndex) - progress;
+        this.carStates.setTrackDeficit(carIndex, Math.max(0D, deficit));
+        return Math.max(0D, -deficit);
+    }
+
+    /**
+     * Complete a lap for every start/finish line that a Car crossed since its previous location, at the time that
+     * <br/>
+     * it crossed the line (interpolated between the two locations). Lines are only counted once, so a Car that
+     * <br/>
+     * jitters back and forth over the line does not complete extra laps.
+     *
+     * @param carIndex         of the Car, after its along-track progress has been advanced
+     * @param prevTimestamp    the timestamp of the Car's previous location
+     * @param prevProgress     the along-track progress of the Car's previous location
+     */
+    private void updateCarLapsOnTrack(final int carIndex, final long prevTimestamp, final double prevProgress)
+            throws InputValidationException {
+        final double length = this.track.length();
+        final double progress = this.carStates.trackProgress(carIndex);
+        final int line = (int) Math.floor(progress / length);
+        final int prevLine = this.carStates.trackLine(carIndex);
+        if (line <= prevLine) {
+            return;
+        }
+        final long elapsed = this.carStates.lastUpdateTimestamp(carIndex) - prevTimestamp;
+        for (int crossed = prevLine + 1; crossed <= line; crossed++) {
+            final double fraction = progress == prevProgress ? 1D : (crossed * length - prevProgress) / (progress - prevProgress);
+            final long crossingTime = prevTimestamp + Math.round(Math.max(0D, Math.min(1D, fraction)) * elapsed);
+            if (crossed == 0) {
+                // the end of the out lap
+                this.carStates.setLapStartTime(carIndex, crossingTime);
+                if (this.analytics != null) {
+                    this.analytics.startLap(carIndex, crossingTime);
+                }
+            } else {
+                this.completeLap(carIndex, crossingTime, length);
+            }
+        }
+        this.carStates.setTrackLine(carIndex, line);
+    }
 
-        // store the new sortedCarPositions index and publish position updates
-        final int[] updatedPositions = new int[this.sortedCarPositions.size()];
-        for (int i = 0; i < updatedPositions.length; i++) {
-            updatedPositions[i] = this.sortedCarPositions.get(i).getCarIndex();
-            this.sortedCarPositions.get(i).setPosition(i + 1);
-            // publish the Car's position
-            this.carStatusService.publish(new CarStatus(this.sortedCarPositions.get(i), CarStatus.TypeEnum.POSITION));
+    /**
+     * Complete a Car's current lap, and publish its lap time and any new fastest lap.
+     *
+     * @param carIndex of the Car that completed the lap
+     * @param endTime  of the lap
+     * @param distance of the lap in kilometres
+     */
+    private void completeLap(final int carIndex, final long endTime, final double distance)
+            throws InputValidationException {
+        // add a lap to the Car's lap history
+        final long startTime = this.carStates.lapStartTime(carIndex);
+        final long lapTimeInMs = endTime - startTime;
+        final double averageSpeed = Speed.speedInMPH(distance, lapTimeInMs);
+        final int lap = this.carStates.addLap(carIndex, startTime, endTime, distance, averageSpeed);
+        if (this.queryPublishIntervalInMs != null) {
+            this.publishLapHistory(carIndex, lap, startTime, endTime, distance, averageSpeed);
         }
 
-        // compare the previous and updated sortedCarPositions indexes for position changes and overtakes
-        for (int i = 0; i < updatedPositions.length; i++) {
-            final Car curCar = this.cars.get(updatedPositions[i]);
-            final Car prevCar = this.cars.get(prevPositions[i]);
-            if (curCar.getCarIndex() != prevCar.getCarIndex() && curCar.getPosition() < prevCar.getPosition()) {
-                // curCar overtakes prevCar
-                this.eventsService.publish(new Event(curCar.getLastUpdateTimestamp(), String.format(EVENT_OVERTAKE_FORMAT
-                        , curCar.getCarIndex(), prevCar.getCarIndex(), this.FASTER_THAN[this.rand.nextInt(this.FASTER_THAN.length)])));
+        this.carStates.setLapStartTime(carIndex, endTime);
+        if (this.analytics != null) {
+            // the last sector ends with the lap, unless the Car's sectors were not known from the start of the lap
+            if (this.analytics.sector(carIndex) == this.analytics.sectors() - 1) {
+                this.completeSector(carIndex, endTime);
             }
+            this.analytics.startLap(carIndex, endTime);
+        }
+
+        // publish an Event message for lap time, its text is formatted from its template when it is read
+        // use the Car's last update timestamp to keep emitted events synchronized to source timestamps
+        final long lastUpdateTimestamp = this.carStates.lastUpdateTimestamp(carIndex);
+        final Event lapTimeEvent = Event.lapTime(lastUpdateTimestamp, carIndex, lap, lapTimeInMs, averageSpeed);
+        log.debug("{}", lapTimeEvent);
+        this.publish(lapTimeEvent);
+
+        if (this.setFastestLap(carIndex, lapTimeInMs)) {
+            // publish an Event message for new fastest lap time
+            // use the Car's last update timestamp to keep emitted events synchronized to source timestamps
+            final Event newFastestLapEvent = Event.fastestLap(lastUpdateTimestamp, carIndex, lapTimeInMs,
+                    averageSpeed);
+            log.debug("{}", newFastestLapEvent);
+            this.publish(newFastestLapEvent);
         }
     }
-}
 
+    /**
+     * Replace a Car's lap history with a copy that includes its new lap, runs on the shard worker that owns the Car.
+     * <br/>
+     * Copy-on-write, so the query API reads a Car's lap history without a lock: O(lapHistory) per lap, and laps are
+     * <br/>
+     * rare compared to CarCoordinates.
+     *
+     * @param carIndex     of the Car that completed the lap
+     * @param lap          the lap number
+     * @param startTime    of the lap
+     * @param endTime      of the lap
+     * @param distance     of the lap in kilometres
+     * @param averageSpeed of the lap in MPH
+     */
+    private void publishLapHistory(final int carIndex, final int lap, final long startTime, final long endTime,
+                                   final double distance, final double averageSpeed) {
+        final CarLap carLap = new CarLap();
+        carLap.setStartTime(startTime);
+        carLap.setEndTime(endTime);
+        carLap.setDistance(distance);
+        carLap.setAverageSpeed(averageSpeed);
+        final LapHistory lapHistory = this.lapHistories.get(carIndex);
+        final List<CarLap> previous = lapHistory == null ? Collections.emptyList() : lapHistory.getLaps();
+        // keep the last lapHistory laps, like the Car state store
+        final int from = Math.max(0, previous.size() + 1 - this.lapHistory);
+        final List<CarLap> laps = new ArrayList<>(previous.size() + 1 - from);
+        laps.addAll(previous.subList(from, previous.size()));
+        laps.add(carLap);
+        this.lapHistories.put(carIndex, new LapHistory(carIndex, lap, Collections.unmodifiableList(laps)));
+    }
 
+    /**
+     * Record a lap time as the fastest lap if it beats the current fastest lap, lock-free since every car shard <br/>
+     * may complete laps concurrently.
+     *
+     * @param carIndex    of the Car that completed the lap
+     * @param lapTimeInMs lap time in milliseconds
+     * @return true if the lap time is the new fastest lap
+     */
+    private boolean setFastestLap(final int carIndex, final long lapTimeInMs) {
+        FastestLap fastest = this.fastestLap.get();
+        while (fastest == null || lapTimeInMs < fastest.getLapTimeInMs()) {
+            if (this.fastestLap.compareAndSet(fastest, new FastestLap(carIndex, lapTimeInMs))) {
+                return true;
+            }
+            fastest = this.fastestLap.get();
+        }
+        return false;
+    }
+
+    /**
+     * Apply a Car's latest progress to the standings, runs on the single standings worker.
+     *
+     * @param carIndex of a Car that a car shard has updated
+     */
+    private void updateStandings(final int carIndex) {
+        final double totalDistance = this.carStates.totalDistance(carIndex);
+        final long lastUpdateTimestamp = this.carStates.lastUpdateTimestamp(carIndex);
+        Car car = carIndex < this.standings.length ? this.standings[carIndex] : null;
+        if (car == null) {
+            // the first progress for a Car adds it to the back of the standings
+            car = Car.builder().carIndex(carIndex).lastUpdateTimestamp(lastUpdateTimestamp).build();
+            this.setStandingsCar(car);
+            this.leaderboard.add(car);
+        }
+        final long start = System.nanoTime();
+        car.setLastUpdateTimestamp(lastUpdateTimestamp);
+        this.updateCarPositionsAndOvertakes(car, totalDistance);
+        if (this.gapTimer != null) {
+            this.gapTimer.advance(carIndex, totalDistance, lastUpdateTimestamp);
+            this.publishGaps(car);
+        }
+        if (this.queryPublishIntervalInMs != null) {
+            this.standingsChanged = true;
+            if (start - this.standingsPublishedNanos >= TimeUnit.MILLISECONDS.toNanos(this.queryPublishIntervalInMs)) {
+                this.publishStandings(start);
+            }
+        }
+        this.metrics.standingsNanos.record(System.nanoTime() - start);
+    }
+
+    // runs on the standings worker
+    private void publishChangedStandings() {
+        if (this.standingsChanged) {
+            this.publishStandings(System.nanoTime());
+        }
+    }
+
+    /**
+     * Publish an immutable snapshot of the standings for the query API, runs on the standings worker (or before it
+     * <br/>
+     * is started, or after it is stopped). O(cars), so it is published at most every queryPublishIntervalInMs.
+     *
+     * @param now the System.nanoTime() of the publication
+     */
+    private void publishStandings(final long now) {
+        final List<RaceStandings.Standing> standings = new ArrayList<>(this.leaderboard.size());
+        long timestamp = 0L;
+        for (int position = 1; position <= this.leaderboard.size(); position++) {
+            final Car car = this.leaderboard.carAt(position);
+            final LapHistory lapHistory = this.lapHistories.get(car.getCarIndex());
+            standings.add(new RaceStandings.Standing(position, car.getCarIndex(), car.getTotalDistance(),
+                    car.getLastUpdateTimestamp(), lapHistory == null ? 0 : lapHistory.getLapCount()));
+            timestamp = Math.max(timestamp, car.getLastUpdateTimestamp());
+        }
+        final RaceStandings previous = this.raceStandings;
+        this.raceStandings = RaceStandings.builder().version(previous == null ? 1L : previous.getVersion() + 1L)
+                .session(this.session).timestamp(timestamp).standings(Collections.unmodifiableList(standings))
+                .fastestLap(this.fastestLap.get()).build();
+        this.standingsChanged = false;
+        this.standingsPublishedNanos = now;
+    }
+
+    /**
+     * Publish a Car's time gap to the Car ahead (INTERVAL) and to the leader (GAP_TO_LEADER) at its latest progress,
+     * <br/>
+     * O(1) from the timing lines of the Cars ahead, so every Car's gaps are refreshed as often as it reports.
+     *
+     * @param car the standings Car, not published for the leader
+     */
+    private void publishGaps(final Car car) {
+        final int position = car.getPosition();
+        if (position == 1) {
+            return;
+        }
+        final long interval = this.gapTimer.gap(car.getCarIndex(), this.leaderboard.carAt(position - 1).getCarIndex());
+        if (interval >= 0L) {
+            this.publish(new CarStatus(car.getLastUpdateTimestamp(), car.getCarIndex(), CarStatus.TypeEnum.INTERVAL,
+                    interval));
+        }
+        final long gapToLeader = position == 2 ? interval
+                : this.gapTimer.gap(car.getCarIndex(), this.leaderboard.carAt(1).getCarIndex());
+        if (gapToLeader >= 0L) {
+            this.publish(new CarStatus(car.getLastUpdateTimestamp(), car.getCarIndex(),
+                    CarStatus.TypeEnum.GAP_TO_LEADER, gapToLeader));
+        }
+    }
+
+    // only accessed by the standings worker, or before it is started
+    private void setStandingsCar(final Car car) {
+        if (car.getCarIndex() >= this.standings.length) {
+            this.standings = Arrays.copyOf(this.standings, Math.max(car.getCarIndex() + 1, this.standings.length * 2));
+        }
+        this.standings[car.getCarIndex()] = car;
+    }
+
+    /**
+     * Move a Car to its new position based on the total distance travelled, then publish the positions of the Car's
+     * <br/>
+     * whose position changed and events for any overtakes
+     *
+     * @param car           the standings Car
+     * @param totalDistance the Car's new total distance
+     */
+    private void updateCarPositionsAndOvertakes(final Car car, final double totalDistance) {
+        final int prevPosition = car.getPosition();
+        this.leaderboard.update(car, totalDistance);
+        final int curPosition = car.getPosition();
+        if (curPosition == prevPosition) {
+            return;
+        }
+
+        // publish the positions of every Car between the Car's previous and current position
+        for (int position = Math.min(prevPosition, curPosition); position <= Math.max(prevPosition, curPosition); position++) {
+            this.publish(new CarStatus(this.leaderboard.carAt(position), CarStatus.TypeEnum.POSITION));
+        }
+
+        // publish an overtake event for every Car that was passed
+        if (curPosition < prevPosition) {
+            // the Car overtakes every Car between its current and previous position
+            for (int position = curPosition + 1; position <= prevPosition; position++) {
+                this.publishOvertake(car, this.leaderboard.carAt(position));
+            }
+        } else {
+            // every Car between the Car's previous and current position overtakes the Car
+            for (int position = prevPosition; position < curPosition; position++) {
+                this.publishOvertake(this.leaderboard.carAt(position), car);
+            }
+        }
+    }
+
+    private void publish(final CarStatus carStatus) {
+        carStatus.setSession(this.session);
+        this.carStatusService.publish(carStatus);
+    }
+
+    private void publish(final Event event) {
+        event.setSession(this.session);
+        this.eventsService.publish(event);
+    }
+
+    private void publishOvertake(final Car curCar, final Car prevCar) {
+        // curCar overtakes prevCar
+        this.publish(Event.overtake(curCar.getLastUpdateTimestamp(), curCar.getCarIndex(), prevCar.getCarIndex(),
+                this.FASTER_THAN[this.rand.nextInt(this.FASTER_THAN.length)]));
+    }
+}
@@ -0,0 +1,386 @@
+package com.github.nicdesousa.telemetry.track;
+
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+import com.github.nicdesousa.telemetry.util.Haversine;
+import com.github.nicdesousa.telemetry.util.InputValidationException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A closed circuit polyline (e.g. from a GeoJSON LineString) onto which coordinates are projected to find their
+ * <br/>
+ * along-track distance from the start/finish line, i.e. the first coordinate of the polyline.
+ * <br/>
+ * Segments are projected in a local equirectangular (flat-earth) plane around the circuit, which is accurate to
+ * <br/>
+ * well within GPS precision for a circuit a few kilometres across, while the along-track distances are measured
+ * <br/>
+ * with the {@link Haversine} formula, so the track length is the same as the haversine circuit length.
+ * <br/>
+ * A uniform grid indexes the segments near each cell, and a projection first searches the segments next to the
+ * <br/>
+ * segment of the previous projection (the car rarely moves more than a segment per sample), so the cost of a
+ * <br/>
+ * projection is O(1) amortized. A Track is immutable and thread-safe.
+ */
+public final class Track {
+
+    // the grid cell size, and how far from a segment a coordinate is still indexed by the segment
+    private static final double CELL_SIZE_IN_KM = 0.05D;
+    private static final double INDEX_MARGIN_IN_KM = 0.1D;
+    // a projection onto a segment next to the previous segment that is within this distance is not searched further
+    private static final double NEARBY_TOLERANCE_IN_KM = 0.025D;
+    // the segments either side of the previous segment that are searched first
+    private static final int NEARBY_SEGMENTS = 2;
+
+    // the polyline vertices in the local plane (in km), with the first vertex repeated at the end
+    private final double[] x;
+    private final double[] y;
+    // the along-track distance of each vertex
+    private final double[] distances;
+    private final int segments;
+    private final double length;
+    // the local plane origin
+    private final double originLatitudeInRadians;
+    private final double originLongitudeInRadians;
+    private final double cosOriginLatitude;
+    // the segments within INDEX_MARGIN_IN_KM of each grid cell
+    private final double minX;
+    private final double minY;
+    private final int columns;
+    private final int rows;
+    private final int[][] cells;
+
+    /**
+     * @param latitudes  of the polyline vertices, closed with the first vertex if it is not closed already
+     * @param longitudes of the polyline vertices
+     * @throws InputValidationException for invalid coordinates
+     */
+    public Track(final double[] latitudes, final double[] longitudes) throws InputValidationException {
+        if (latitudes.length != longitudes.length || latitudes.length < 3) {
+            throw new IllegalArgumentException("A track needs at least 3 coordinates");
+        }
+        for (int i = 0; i < latitudes.length; i++) {
+            Haversine.validateCoordinate(latitudes[i], longitudes[i]);
+        }
+        final int last = latitudes.length - 1;
+        final boolean closed = latitudes[0] == latitudes[last] && longitudes[0] == longitudes[last];
+        final int vertices = closed ? latitudes.length : latitudes.length + 1;
+        this.segments = vertices - 1;
+        this.x = new double[vertices];
+        this.y = new double[vertices];
+        this.distances = new double[vertices];
+
+        double sumLatitude = 0D;
+        double sumLongitude = 0D;
+        for (int i = 0; i < this.segments; i++) {
+            sumLatitude += latitudes[i];
+            sumLongitude += longitudes[i];
+        }
+        this.originLatitudeInRadians = Math.toRadians(sumLatitude / this.segments);
+        this.originLongitudeInRadians = Math.toRadians(sumLongitude / this.segments);
+        this.cosOriginLatitude = Math.cos(this.originLatitudeInRadians);
+
+        final GeoPoint previous = new GeoPoint();
+        final GeoPoint point = new GeoPoint();
+        for (int i = 0; i < vertices; i++) {
+            final int vertex = i == this.segments ? 0 : i;
+            point.set(latitudes[vertex], longitudes[vertex]);
+            this.x[i] = this.planeX(point.getLongitudeInRadians());
+            this.y[i] = this.planeY(point.getLatitudeInRadians());
+            this.distances[i] = i == 0 ? 0D : this.distances[i - 1] + Haversine.distance(previous, point);
+            previous.set(point);
+        }
+        this.length = this.distances[this.segments];
+
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < vertices; i++) {
+            minX = Math.min(minX, this.x[i]);
+            minY = Math.min(minY, this.y[i]);
+            maxX = Math.max(maxX, this.x[i]);
+            maxY = Math.max(maxY, this.y[i]);
+        }
+        this.minX = minX - INDEX_MARGIN_IN_KM;
+        this.minY = minY - INDEX_MARGIN_IN_KM;
+        this.columns = (int) ((maxX + INDEX_MARGIN_IN_KM - this.minX) / CELL_SIZE_IN_KM) + 1;
+        this.rows = (int) ((maxY + INDEX_MARGIN_IN_KM - this.minY) / CELL_SIZE_IN_KM) + 1;
+        this.cells = this.index();
+    }
+
+    /**
+     * Load a track from a GeoJSON LineString, or the first LineString of a Feature or FeatureCollection.
+     *
+     * @param path of a GeoJSON file, or of a classpath resource if there is no such file
+     * @return the track
+     * @throws IOException if the track could not be read
+     */
+    public static Track load(final String path) throws IOException {
+        final Path file = Paths.get(path);
+        final byte[] bytes;
+        if (Files.exists(file)) {
+            bytes = Files.readAllBytes(file);
+        } else {
+            try (InputStream in = Track.class.getClassLoader().getResourceAsStream(path.startsWith("/")
+                    ? path.substring(1) : path)) {
+                if (in == null) {
+                    throw new IOException(String.format("Track %s not found", path));
+                }
+                bytes = readAll(in);
+            }
+        }
+        try {
+            final JsonArray coordinates = lineString(new JsonObject(new String(bytes, StandardCharsets.UTF_8)));
+            if (coordinates == null) {
+                throw new IOException(String.format("Track %s has no LineString", path));
+            }
+            final double[] latitudes = new double[coordinates.size()];
+            final double[] longitudes = new double[coordinates.size()];
+            for (int i = 0; i < coordinates.size(); i++) {
+                // GeoJSON positions are [longitude, latitude(, altitude)]
+                final JsonArray position = coordinates.getJsonArray(i);
+                longitudes[i] = position.getDouble(0);
+                latitudes[i] = position.getDouble(1);
+            }
+            return new Track(latitudes, longitudes);
+        } catch (final InputValidationException | RuntimeException e) {
+            throw new IOException(String.format("Track %s is not a valid GeoJSON LineString", path), e);
+        }
+    }
+
+    /**
+     * @return the length of the track in kilometres
+     */
+    public double length() {
+        return this.length;
+    }
+
+    /**
+     * @return the number of segments in the track
+     */
+    public int segments() {
+        return this.segments;
+    }
+
+    /**
+     * Find the segment nearest to a coordinate, preferring the segments next to the previous segment.
+     *
+     * @param point   the coordinate
+     * @param segment the previous segment of the coordinate's car, or -1 if there is none
+     * @return the nearest segment
+     */
+    public int nearestSegment(final GeoPoint point, final int segment) {
+        return this.nearestSegment(point.getLatitudeInRadians(), point.getLongitudeInRadians(), segment);
+    }
+
+    /**
+     * Find the segment nearest to a coordinate in radians, see {@link #nearestSegment(GeoPoint, int)}.
+     *
+     * @param latitudeInRadians  of the coordinate
+     * @param longitudeInRadians of the coordinate
+     * @param segment            the previous segment of the coordinate's car, or -1 if there is none
+     * @return the nearest segment
+     */
+    public int nearestSegment(final double latitudeInRadians, final double longitudeInRadians, final int segment) {
+        final double px = this.planeX(longitudeInRadians);
+        final double py = this.planeY(latitudeInRadians);
+        int nearest = -1;
+        double nearestDistance = Double.MAX_VALUE;
+        if (segment >= 0) {
+            for (int i = -NEARBY_SEGMENTS; i <= NEARBY_SEGMENTS; i++) {
+                final int candidate = Math.floorMod(segment + i, this.segments);
+                final double distance = this.squaredDistance(candidate, px, py);
+                if (distance < nearestDistance) {
+                    nearest = candidate;
+                    nearestDistance = distance;
+                }
+            }
+            if (nearestDistance <= NEARBY_TOLERANCE_IN_KM * NEARBY_TOLERANCE_IN_KM) {
+                return nearest;
+            }
+        }
+        final int column = (int) Math.floor((px - this.minX) / CELL_SIZE_IN_KM);
+        final int row = (int) Math.floor((py - this.minY) / CELL_SIZE_IN_KM);
+        final int[] candidates = column >= 0 && column < this.columns && row >= 0 && row < this.rows
+                ? this.cells[row * this.columns + column] : null;
+        if (candidates == null || candidates.length == 0) {
+            // off the indexed area, search every segment
+            for (int candidate = 0; candidate < this.segments; candidate++) {
+                final double distance = this.squaredDistance(candidate, px, py);
+                if (distance < nearestDistance) {
+                    nearest = candidate;
+                    nearestDistance = distance;
+                }
+            }
+            return nearest;
+        }
+        for (final int candidate : candidates) {
+            final double distance = this.squaredDistance(candidate, px, py);
+            if (distance < nearestDistance) {
+                nearest = candidate;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @param segment of the track
+     * @param point   the coordinate
+     * @return the along-track distance (in km, within 0 and the track length) of the coordinate projected onto
+     * the segment
+     */
+    public double distanceAlong(final int segment, final GeoPoint point) {
+        return this.distanceAlong(segment, point.getLatitudeInRadians(), point.getLongitudeInRadians());
+    }
+
+    /**
+     * @param segment            of the track
+     * @param latitudeInRadians  of the coordinate
+     * @param longitudeInRadians of the coordinate
+     * @return the along-track distance (in km, within 0 and the track length) of the coordinate projected onto
+     * the segment
+     */
+    public double distanceAlong(final int segment, final double latitudeInRadians, final double longitudeInRadians) {
+        return this.distances[segment]
+                + this.fraction(segment, this.planeX(longitudeInRadians), this.planeY(latitudeInRadians))
+                * (this.distances[segment + 1] - this.distances[segment]);
+    }
+
+    /**
+     * Find the coordinate at an along-track distance, the inverse of {@link #distanceAlong(int, GeoPoint)} (e.g. to
+     * <br/>
+     * drive synthetic Cars around the track).
+     *
+     * @param distance the along-track distance in kilometres, wrapped around the track length
+     * @param point    set to the coordinate
+     * @return the point
+     */
+    public GeoPoint pointAt(final double distance, final GeoPoint point) {
+        final double wrapped = distance - Math.floor(distance / this.length) * this.length;
+        int segment = Arrays.binarySearch(this.distances, wrapped);
+        segment = segment >= 0 ? Math.min(segment, this.segments - 1) : Math.min(-segment - 2, this.segments - 1);
+        final double segmentLength = this.distances[segment + 1] - this.distances[segment];
+        final double fraction = segmentLength > 0D ? (wrapped - this.distances[segment]) / segmentLength : 0D;
+        final double px = this.x[segment] + fraction * (this.x[segment + 1] - this.x[segment]);
+        final double py = this.y[segment] + fraction * (this.y[segment + 1] - this.y[segment]);
+        return point.set(Math.toDegrees(py / Haversine.EARTH_RADIUS_IN_KM + this.originLatitudeInRadians),
+                Math.toDegrees(px / (Haversine.EARTH_RADIUS_IN_KM * this.cosOriginLatitude)
+                        + this.originLongitudeInRadians));
+    }
+
+    // the fraction (within 0 and 1) of the segment at which the coordinate is projected
+    private double fraction(final int segment, final double px, final double py) {
+        final double dx = this.x[segment + 1] - this.x[segment];
+        final double dy = this.y[segment + 1] - this.y[segment];
+        final double squaredLength = dx * dx + dy * dy;
+        if (squaredLength == 0D) {
+            return 0D;
+        }
+        final double t = ((px - this.x[segment]) * dx + (py - this.y[segment]) * dy) / squaredLength;
+        return t < 0D ? 0D : t > 1D ? 1D : t;
+    }
+
+    private double squaredDistance(final int segment, final double px, final double py) {
+        final double t = this.fraction(segment, px, py);
+        final double dx = this.x[segment] + t * (this.x[segment + 1] - this.x[segment]) - px;
+        final double dy = this.y[segment] + t * (this.y[segment + 1] - this.y[segment]) - py;
+        return dx * dx + dy * dy;
+    }
+
+    private double planeX(final double longitudeInRadians) {
+        return Haversine.EARTH_RADIUS_IN_KM * (longitudeInRadians - this.originLongitudeInRadians)
+                * this.cosOriginLatitude;
+    }
+
+    private double planeY(final double latitudeInRadians) {
+        return Haversine.EARTH_RADIUS_IN_KM * (latitudeInRadians - this.originLatitudeInRadians);
+    }
+
+    // index every segment in the cells that its bounding box (plus the margin) overlaps
+    private int[][] index() {
+        final List<List<Integer>> cellSegments = new ArrayList<>();
+        for (int i = 0; i < this.columns * this.rows; i++) {
+            cellSegments.add(new ArrayList<>());
+        }
+        for (int segment = 0; segment < this.segments; segment++) {
+            final int fromColumn = this.column(Math.min(this.x[segment], this.x[segment + 1]) - INDEX_MARGIN_IN_KM);
+            final int toColumn = this.column(Math.max(this.x[segment], this.x[segment + 1]) + INDEX_MARGIN_IN_KM);
+            final int fromRow = this.row(Math.min(this.y[segment], this.y[segment + 1]) - INDEX_MARGIN_IN_KM);
+            final int toRow = this.row(Math.max(this.y[segment], this.y[segment + 1]) + INDEX_MARGIN_IN_KM);
+            for (int row = fromRow; row <= toRow; row++) {
+                for (int column = fromColumn; column <= toColumn; column++) {
+                    // only the cells that are within the margin of the segment itself
+                    if (this.cellDistance(segment, column, row) <= INDEX_MARGIN_IN_KM) {
+                        cellSegments.get(row * this.columns + column).add(segment);
+                    }
+                }
+            }
+        }
+        final int[][] cells = new int[cellSegments.size()][];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = cellSegments.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return cells;
+    }
+
+    // the distance from the centre of a cell to a segment, less half the cell diagonal
+    private double cellDistance(final int segment, final int column, final int row) {
+        final double cx = this.minX + (column + 0.5D) * CELL_SIZE_IN_KM;
+        final double cy = this.minY + (row + 0.5D) * CELL_SIZE_IN_KM;
+        return Math.sqrt(this.squaredDistance(segment, cx, cy)) - CELL_SIZE_IN_KM * Math.sqrt(0.5D);
+    }
+
+    private int column(final double px) {
+        return Math.max(0, Math.min(this.columns - 1, (int) Math.floor((px - this.minX) / CELL_SIZE_IN_KM)));
+    }
+
+    private int row(final double py) {
+        return Math.max(0, Math.min(this.rows - 1, (int) Math.floor((py - this.minY) / CELL_SIZE_IN_KM)));
+    }
+
+    private static JsonArray lineString(final JsonObject geoJson) {
+        switch (geoJson.getString("type", "")) {
+            case "LineString":
+                return geoJson.getJsonArray("coordinates");
+            case "Feature":
+                return geoJson.getJsonObject("geometry") == null ? null : lineString(geoJson.getJsonObject("geometry"));
+            case "FeatureCollection":
+                for (final Object feature : geoJson.getJsonArray("features", new JsonArray())) {
+                    final JsonArray coordinates = feature instanceof JsonObject ? lineString((JsonObject) feature)
+                            : null;
+                    if (coordinates != null) {
+                        return coordinates;
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        byte[] bytes = new byte[8192];
+        int length = 0;
+        int read;
+        while ((read = in.read(bytes, length, bytes.length - length)) != -1) {
+            length += read;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+}
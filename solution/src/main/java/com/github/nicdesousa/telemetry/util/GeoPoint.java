@@ -0,0 +1,76 @@
+package com.github.nicdesousa.telemetry.util;
+
+/**
+ * A mutable latitude and longitude coordinate that caches the values the {@link Haversine} formula needs (the
+ * <br/>
+ * coordinate in radians and the cosine of its latitude), so that they are only computed once per coordinate <br/>
+ * rather than once per distance calculation.
+ * <br/>
+ * A GeoPoint is intended to be reused, e.g. a Car keeps its last point and overwrites the point before it with
+ * <br/>
+ * the next coordinate, which makes the per sample distance calculation allocation-free.
+ */
+public final class GeoPoint {
+
+    private double latitude = 0D;
+    private double longitude = 0D;
+    private double latitudeInRadians = 0D;
+    private double longitudeInRadians = 0D;
+    private double cosLatitude = 1D;
+
+    /**
+     * Set the coordinate, see {@link Haversine#validateCoordinate} for validating it beforehand.
+     *
+     * @param latitude  within -90D and +90D
+     * @param longitude within -180D and +180D
+     * @return this GeoPoint
+     */
+    public GeoPoint set(final double latitude, final double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.latitudeInRadians = Math.toRadians(latitude);
+        this.longitudeInRadians = Math.toRadians(longitude);
+        this.cosLatitude = Math.cos(this.latitudeInRadians);
+        return this;
+    }
+
+    /**
+     * Copy another GeoPoint's coordinate and cached values.
+     *
+     * @param other GeoPoint
+     * @return this GeoPoint
+     */
+    public GeoPoint set(final GeoPoint other) {
+        this.latitude = other.latitude;
+        this.longitude = other.longitude;
+        this.latitudeInRadians = other.latitudeInRadians;
+        this.longitudeInRadians = other.longitudeInRadians;
+        this.cosLatitude = other.cosLatitude;
+        return this;
+    }
+
+    public double getLatitude() {
+        return this.latitude;
+    }
+
+    public double getLongitude() {
+        return this.longitude;
+    }
+
+    public double getLatitudeInRadians() {
+        return this.latitudeInRadians;
+    }
+
+    public double getLongitudeInRadians() {
+        return this.longitudeInRadians;
+    }
+
+    public double getCosLatitude() {
+        return this.cosLatitude;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GeoPoint(latitude=%s, longitude=%s)", this.latitude, this.longitude);
+    }
+}
@@ -1,7 +1,6 @@
 package com.github.nicdesousa.telemetry.util;
 
 import com.github.nicdesousa.telemetry.domain.Location;
-import org.apache.commons.validator.routines.DoubleValidator;
 
 public final class Haversine {
 
@@ -9,7 +8,6 @@ public final class Haversine {
         throw new IllegalStateException("This is a static utility class");
     }
 
-    private static final DoubleValidator DOUBLE_VALIDATOR = DoubleValidator.getInstance();
     // the volumetric mean radius of the Earth is 6371 kilometres
     public static final double EARTH_RADIUS_IN_KM = 6371D;
     public static final String ERROR_LATITUDE = "Latitude is not within -90 and 90";
@@ -40,10 +38,86 @@ public final class Haversine {
         validateCoordinate(startLat, startLong);
         validateCoordinate(endLat, endLong);
 
-        final double dLat = Math.toRadians((endLat - startLat));
-        final double dLong = Math.toRadians((endLong - startLong));
-        final double a = Math.pow(Math.sin(dLat / 2), 2) + Math.cos(Math.toRadians(startLat)) *
-                Math.cos(Math.toRadians(endLat)) * Math.pow(Math.sin(dLong / 2), 2);
+        return haversine(Math.toRadians(endLat - startLat), Math.toRadians(endLong - startLong),
+                Math.cos(Math.toRadians(startLat)), Math.cos(Math.toRadians(endLat)));
+    }
+
+    /**
+     * Calculates the distance between two {@see GeoPoint}'s with the haversine formula, using the cached radians and
+     * <br/>
+     * cosines of the GeoPoint's rather than recalculating them.
+     * <br/>
+     * The coordinates are not validated, since a GeoPoint is expected to be validated when it is set.
+     *
+     * @param start {@see GeoPoint}
+     * @param end   {@see GeoPoint}
+     * @return Distance in kilometres
+     */
+    public static double distance(final GeoPoint start, final GeoPoint end) {
+        return haversine(end.getLatitudeInRadians() - start.getLatitudeInRadians(),
+                end.getLongitudeInRadians() - start.getLongitudeInRadians(), start.getCosLatitude(),
+                end.getCosLatitude());
+    }
+
+    /**
+     * Calculates the distance between two {@see GeoPoint}'s, using the equirectangular (flat-earth) approximation
+     * <br/>
+     * when the approximated distance is within a threshold and the haversine formula otherwise.
+     * <br/>
+     * The relative error of the approximation grows with the square of the distance, and is in the order of 1e-8
+     * <br/>
+     * for the 0.5 kilometre distance between two GeoJSON points of the Silverstone circuit.
+     *
+     * @param start                 {@see GeoPoint}
+     * @param end                   {@see GeoPoint}
+     * @param flatEarthThresholdInKM the maximum distance for the approximation, 0 to always use the haversine formula
+     * @return Distance in kilometres
+     * @see <a href="https://en.wikipedia.org/wiki/Equirectangular_projection">Equirectangular projection</a>
+     */
+    public static double distance(final GeoPoint start, final GeoPoint end, final double flatEarthThresholdInKM) {
+        return distance(start.getLatitudeInRadians(), start.getLongitudeInRadians(), start.getCosLatitude(),
+                end.getLatitudeInRadians(), end.getLongitudeInRadians(), end.getCosLatitude(), flatEarthThresholdInKM);
+    }
+
+    /**
+     * Calculates the distance between two coordinates from their cached radians and cosines of their latitudes,
+     * <br/>
+     * e.g. as kept by the {@see com.github.nicdesousa.telemetry.engine.CarStateStore}, see
+     * <br/>
+     * {@link #distance(GeoPoint, GeoPoint, double)}.
+     *
+     * @param startLatitudeInRadians  starting latitude in radians
+     * @param startLongitudeInRadians starting longitude in radians
+     * @param startCosLatitude        cosine of the starting latitude
+     * @param endLatitudeInRadians    ending latitude in radians
+     * @param endLongitudeInRadians   ending longitude in radians
+     * @param endCosLatitude          cosine of the ending latitude
+     * @param flatEarthThresholdInKM  the maximum distance for the approximation, 0 to always use the haversine formula
+     * @return Distance in kilometres
+     */
+    public static double distance(final double startLatitudeInRadians, final double startLongitudeInRadians,
+                                  final double startCosLatitude, final double endLatitudeInRadians,
+                                  final double endLongitudeInRadians, final double endCosLatitude,
+                                  final double flatEarthThresholdInKM) {
+        if (flatEarthThresholdInKM > 0D) {
+            final double x = (endLongitudeInRadians - startLongitudeInRadians)
+                    * (startCosLatitude + endCosLatitude) * 0.5D;
+            final double y = endLatitudeInRadians - startLatitudeInRadians;
+            final double flatDistance = Haversine.EARTH_RADIUS_IN_KM * Math.sqrt(x * x + y * y);
+            if (flatDistance <= flatEarthThresholdInKM) {
+                return flatDistance;
+            }
+        }
+        return haversine(endLatitudeInRadians - startLatitudeInRadians,
+                endLongitudeInRadians - startLongitudeInRadians, startCosLatitude, endCosLatitude);
+    }
+
+    // the haversine formula for latitude and longitude deltas in radians and the cosines of both latitudes
+    private static double haversine(final double dLat, final double dLong, final double cosStartLat,
+                                    final double cosEndLat) {
+        final double sinHalfDLat = Math.sin(dLat / 2);
+        final double sinHalfDLong = Math.sin(dLong / 2);
+        final double a = sinHalfDLat * sinHalfDLat + cosStartLat * cosEndLat * sinHalfDLong * sinHalfDLong;
         final double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
 
         return Haversine.EARTH_RADIUS_IN_KM * c;
@@ -72,10 +146,11 @@ public final class Haversine {
      */
     public static void validateCoordinate(final double latitude, final double longitude)
             throws InputValidationException {
-        if (!Haversine.DOUBLE_VALIDATOR.isInRange(latitude, MIN_LATITUDE, MAX_LATITUDE)) {
+        // primitive comparisons, written so that NaN is rejected as well
+        if (!(latitude >= MIN_LATITUDE && latitude <= MAX_LATITUDE)) {
             throw new InputValidationException(Haversine.ERROR_LATITUDE);
         }
-        if (!Haversine.DOUBLE_VALIDATOR.isInRange(longitude, MIN_LONGITUDE, MAX_LONGITUDE)) {
+        if (!(longitude >= MIN_LONGITUDE && longitude <= MAX_LONGITUDE)) {
             throw new InputValidationException(ERROR_LONGITUDE);
         }
     }
@@ -0,0 +1,60 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.Location;
+import io.vertx.core.json.JsonObject;
+import io.vertx.kafka.client.serialization.JsonObjectDeserializer;
+import io.vertx.kafka.client.serialization.JsonObjectSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Kafka carCoordinates round-trip (serialize on the MQTT side, deserialize on the Kafka side) of the
+ * <br/>
+ * previous JsonObject mapping with the JSON and the binary CarCoordinate serializers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarCoordinateCodecBenchmark {
+
+    private static final String TOPIC = "carCoordinates";
+
+    private final JsonObjectSerializer jsonObjectSerializer = new JsonObjectSerializer();
+    private final JsonObjectDeserializer jsonObjectDeserializer = new JsonObjectDeserializer();
+    private final CarCoordinateJsonSerializer jsonSerializer = new CarCoordinateJsonSerializer();
+    private final CarCoordinateBinarySerializer binarySerializer = new CarCoordinateBinarySerializer();
+    private final CarCoordinateDeserializer deserializer = new CarCoordinateDeserializer();
+    private CarCoordinate carCoordinate;
+
+    @Setup
+    public void setup() {
+        final Location location = new Location();
+        location.setLatitude(52.069342797764405D);
+        location.setLongitude(-1.0222223819238275D);
+        this.carCoordinate = new CarCoordinate();
+        this.carCoordinate.setCarIndex(3);
+        this.carCoordinate.setLocation(location);
+        this.carCoordinate.setTimestamp(1541693114862L);
+    }
+
+    @Benchmark
+    public CarCoordinate jsonObject() {
+        final byte[] bytes = this.jsonObjectSerializer.serialize(TOPIC, JsonObject.mapFrom(this.carCoordinate));
+        return this.jsonObjectDeserializer.deserialize(TOPIC, bytes).mapTo(CarCoordinate.class);
+    }
+
+    @Benchmark
+    public CarCoordinate json() {
+        return this.deserializer.deserialize(TOPIC, this.jsonSerializer.serialize(TOPIC, this.carCoordinate));
+    }
+
+    @Benchmark
+    public CarCoordinate binary() {
+        return this.deserializer.deserialize(TOPIC, this.binarySerializer.serialize(TOPIC, this.carCoordinate));
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the decoding of carCoordinates MQTT payloads by the {@link CarCoordinateJsonDecoder} with Jackson databind.
+ * <br/>
+ * The decoded bytes are reported as a secondary "bytes" (per second) result, and the allocation rate per operation
+ * <br/>
+ * as the "gc.alloc.rate.norm" result of the gc profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarCoordinateJsonDecoderBenchmark {
+
+    // a carCoordinates message as published by the MAT stream generator
+    private final byte[] payload = ("{\"carIndex\":3,\"location\":{\"lat\":52.069342797764405,"
+            + "\"long\":-1.0222223819238275},\"timestamp\":1541693114862}").getBytes(StandardCharsets.UTF_8);
+    private final CarCoordinateJsonDecoder decoder = new CarCoordinateJsonDecoder();
+    private final CarCoordinate reusable = new CarCoordinate();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Benchmark
+    public CarCoordinate jackson(final Bytes bytes) {
+        bytes.bytes += this.payload.length;
+        return Json.decodeValue(new String(this.payload), CarCoordinate.class);
+    }
+
+    @Benchmark
+    public CarCoordinate decode(final Bytes bytes) {
+        bytes.bytes += this.payload.length;
+        return this.decoder.decode(this.payload);
+    }
+
+    @Benchmark
+    public boolean decodeInto(final Bytes bytes) {
+        bytes.bytes += this.payload.length;
+        return this.decoder.decode(this.payload, 0, this.payload.length, this.reusable);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Location;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the heap retained by the state of 10k Cars (with 60 laps each) in the {@link CarStateStore}, and in the
+ * <br/>
+ * previous per-Car objects looked up in a ConcurrentHashMap, e.g.:
+ * <br/>
+ * java -cp target/perf-classes:target/test-classes:target/classes:... com.github.nicdesousa.telemetry.engine.CarStateFootprint
+ */
+public final class CarStateFootprint {
+
+    private static final int CARS = 10_000;
+    private static final int LAPS = 60;
+
+    private CarStateFootprint() {
+        throw new IllegalStateException("This is a static utility class");
+    }
+
+    public static void main(final String[] args) {
+        final long baseline = usedHeap();
+        final Map<Integer, PreviousCar> previousCars = new ConcurrentHashMap<>();
+        for (int carIndex = 0; carIndex < CARS; carIndex++) {
+            final PreviousCar car = new PreviousCar();
+            car.carIndex = carIndex;
+            car.curLocation = location(carIndex);
+            car.curPoint.set(car.curLocation.getLatitude(), car.curLocation.getLongitude());
+            for (int lap = 1; lap <= LAPS; lap++) {
+                car.addLap(lap * 90_000L, 5.9D, 140D);
+            }
+            previousCars.put(carIndex, car);
+        }
+        final long previousBytes = usedHeap() - baseline;
+        print("Car objects", previousBytes, previousCars.size());
+        previousCars.clear();
+
+        final long storeBaseline = usedHeap();
+        final CarStateStore carStates = new CarStateStore(CARS, 512);
+        for (int carIndex = 0; carIndex < CARS; carIndex++) {
+            final Location location = location(carIndex);
+            carStates.add(carIndex, location.getLatitude(), location.getLongitude(), 0L);
+            for (int lap = 1; lap <= LAPS; lap++) {
+                carStates.addLap(carIndex, (lap - 1) * 90_000L, lap * 90_000L, 5.9D, 140D);
+            }
+        }
+        final long storeBytes = usedHeap() - storeBaseline;
+        print("CarStateStore", storeBytes, carStates.size());
+        System.out.printf("CarStateStore estimatedBytes: %,d bytes%n", carStates.estimatedBytes());
+    }
+
+    private static Location location(final int carIndex) {
+        final Location location = new Location();
+        location.setLatitude(52.069D + carIndex * 1e-6D);
+        location.setLongitude(-1.022D);
+        return location;
+    }
+
+    private static void print(final String name, final long bytes, final int cars) {
+        System.out.printf("%s: %,d Cars with %d laps retain %,d bytes (%,d bytes per Car)%n", name, cars, LAPS, bytes,
+                bytes / cars);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
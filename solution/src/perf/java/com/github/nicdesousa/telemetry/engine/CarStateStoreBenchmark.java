@@ -0,0 +1,106 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+import com.github.nicdesousa.telemetry.util.Haversine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a Car update (move to the next coordinate, add the distance, update the timestamp and speed, and complete
+ * <br/>
+ * a lap every {@value #LAP_SAMPLES} samples) on the {@link CarStateStore} with the previous per-Car objects looked up
+ * <br/>
+ * in a ConcurrentHashMap, see the gc.alloc.rate.norm (with -prof gc) for the allocations per update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarStateStoreBenchmark {
+
+    private static final int SAMPLES = 1 << 12;
+    private static final int LAP_SAMPLES = 256;
+
+    @Param({"10", "10000"})
+    public int cars;
+
+    private final Random random = new Random(42L);
+    private double[] latitudes;
+    private double[] longitudes;
+    // the Location of every sample, allocated by the decoder in both cases
+    private Location[] locations;
+    private Map<Integer, PreviousCar> previousCars;
+    private CarStateStore carStates;
+    private long next = 0L;
+
+    @Setup
+    public void setup() {
+        this.latitudes = new double[SAMPLES];
+        this.longitudes = new double[SAMPLES];
+        this.locations = new Location[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            // around Silverstone
+            this.latitudes[i] = 52.069D + this.random.nextDouble() * 0.01D;
+            this.longitudes[i] = -1.022D + this.random.nextDouble() * 0.01D;
+            this.locations[i] = new Location();
+            this.locations[i].setLatitude(this.latitudes[i]);
+            this.locations[i].setLongitude(this.longitudes[i]);
+        }
+        this.previousCars = new ConcurrentHashMap<>();
+        this.carStates = new CarStateStore(this.cars, 512);
+        for (int carIndex = 0; carIndex < this.cars; carIndex++) {
+            final PreviousCar car = new PreviousCar();
+            car.carIndex = carIndex;
+            car.curLocation = this.locations[0];
+            car.curPoint.set(this.latitudes[0], this.longitudes[0]);
+            this.previousCars.put(carIndex, car);
+            this.carStates.add(carIndex, this.latitudes[0], this.longitudes[0], 0L);
+        }
+    }
+
+    @Benchmark
+    public double previousCars() {
+        final int carIndex = (int) (this.next % this.cars);
+        final long round = this.next++ / this.cars;
+        final int sample = (int) (round & (SAMPLES - 1));
+        final PreviousCar car = this.previousCars.get(carIndex);
+        final Location location = this.locations[sample];
+        final GeoPoint nextPoint = car.nextPoint.set(location.getLatitude(), location.getLongitude());
+        final double distance = Haversine.distance(car.curPoint, nextPoint, 0D);
+        car.curLocation = location;
+        car.advancePoint();
+        car.totalDistance += distance;
+        car.lastUpdateTimestamp += 200L;
+        car.curSpeedMPH = distance * 1000D;
+        if (round % LAP_SAMPLES == 0L) {
+            car.addLap(car.lastUpdateTimestamp, car.totalDistance, car.curSpeedMPH);
+        }
+        return car.totalDistance;
+    }
+
+    @Benchmark
+    public double carStateStore() {
+        final int carIndex = (int) (this.next % this.cars);
+        final long round = this.next++ / this.cars;
+        final int sample = (int) (round & (SAMPLES - 1));
+        final CarStateStore carStates = this.carStates;
+        final double distance = carStates.moveTo(carIndex, this.latitudes[sample], this.longitudes[sample], 0D);
+        carStates.addDistance(carIndex, distance);
+        final long timestamp = carStates.lastUpdateTimestamp(carIndex) + 200L;
+        carStates.setLastUpdateTimestamp(carIndex, timestamp);
+        carStates.setSpeedMPH(carIndex, distance * 1000D);
+        if (round % LAP_SAMPLES == 0L) {
+            carStates.addLap(carIndex, carStates.lapStartTime(carIndex), timestamp, carStates.totalDistance(carIndex),
+                    distance * 1000D);
+            carStates.setLapStartTime(carIndex, timestamp);
+        }
+        return carStates.totalDistance(carIndex);
+    }
+}
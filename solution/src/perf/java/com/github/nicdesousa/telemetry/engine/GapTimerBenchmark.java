@@ -0,0 +1,94 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the live gaps of the {@link GapTimer} at large grid sizes, where each operation advances one Car (every
+ * <br/>
+ * Car in turn, a 200ms sample each) and computes its gap to the Car ahead and to the leader, as the standings worker
+ * <br/>
+ * does, compared with recomputing the gaps of every Car on every update (O(n) per update, O(n^2) per round).
+ * <br/>
+ * The baseline only advances the Car in the Leaderboard and the GapTimer, which the gaps are measured on top of.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GapTimerBenchmark {
+
+    private static final long SAMPLE_INTERVAL_IN_MS = 200L;
+
+    @Param({"20", "1000", "100000"})
+    public int cars;
+
+    private final Random random = new Random(42L);
+    private Car[] leaderboardCars;
+    private Leaderboard leaderboard;
+    private GapTimer gapTimer;
+    private double[] increments;
+    private long sample = 0L;
+
+    @Setup
+    public void setup() {
+        this.leaderboardCars = new Car[this.cars];
+        this.leaderboard = new Leaderboard();
+        this.gapTimer = new GapTimer(0.1D, 64);
+        for (int carIndex = 0; carIndex < this.cars; carIndex++) {
+            this.leaderboardCars[carIndex] = Car.builder().carIndex(carIndex).build();
+            this.leaderboard.add(this.leaderboardCars[carIndex]);
+            this.gapTimer.advance(carIndex, 0D, 0L);
+        }
+        // a 200ms sample moves a Car 5 to 20 metres
+        this.increments = new double[1 << 16];
+        for (int i = 0; i < this.increments.length; i++) {
+            this.increments[i] = 0.005D + this.random.nextDouble() * 0.015D;
+        }
+    }
+
+    @Benchmark
+    public Car baseline() {
+        return this.advance();
+    }
+
+    @Benchmark
+    public void incremental(final Blackhole blackhole) {
+        final Car car = this.advance();
+        final int position = car.getPosition();
+        if (position > 1) {
+            blackhole.consume(this.gapTimer.gap(car.getCarIndex(),
+                    this.leaderboard.carAt(position - 1).getCarIndex()));
+            blackhole.consume(this.gapTimer.gap(car.getCarIndex(), this.leaderboard.carAt(1).getCarIndex()));
+        }
+    }
+
+    @Benchmark
+    public void recomputeAll(final Blackhole blackhole) {
+        this.advance();
+        final int leader = this.leaderboard.carAt(1).getCarIndex();
+        for (int position = 2; position <= this.leaderboard.size(); position++) {
+            final int carIndex = this.leaderboard.carAt(position).getCarIndex();
+            blackhole.consume(this.gapTimer.gap(carIndex, this.leaderboard.carAt(position - 1).getCarIndex()));
+            blackhole.consume(this.gapTimer.gap(carIndex, leader));
+        }
+    }
+
+    // the next sample of the next Car
+    private Car advance() {
+        final int carIndex = (int) (this.sample % this.cars);
+        final long timestamp = (this.sample / this.cars + 1L) * SAMPLE_INTERVAL_IN_MS;
+        final double increment = this.increments[(int) (this.sample++ & (this.increments.length - 1))];
+        final Car car = this.leaderboardCars[carIndex];
+        final double totalDistance = car.getTotalDistance() + increment;
+        this.leaderboard.update(car, totalDistance);
+        this.gapTimer.advance(carIndex, totalDistance, timestamp);
+        return car;
+    }
+}
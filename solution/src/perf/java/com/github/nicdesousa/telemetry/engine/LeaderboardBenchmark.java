@@ -0,0 +1,99 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the incremental {@link Leaderboard} with the previous full re-sort of every Car on every update, where
+ * <br/>
+ * each operation advances one Car and publishes (consumes) a POSITION CarStatus for every Car that needs one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+    @Param({"6", "100", "10000"})
+    public int cars;
+
+    private final Random random = new Random(42L);
+    private Car[] leaderboardCars;
+    private Leaderboard leaderboard;
+    private Car[] sortedCars;
+    private List<Car> sortedCarPositions;
+    private int[] updates;
+    private double[] increments;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        this.leaderboardCars = new Car[this.cars];
+        this.sortedCars = new Car[this.cars];
+        this.leaderboard = new Leaderboard();
+        this.sortedCarPositions = new ArrayList<>();
+        for (int carIndex = 0; carIndex < this.cars; carIndex++) {
+            this.leaderboardCars[carIndex] = Car.builder().carIndex(carIndex).build();
+            this.leaderboard.add(this.leaderboardCars[carIndex]);
+            this.sortedCars[carIndex] = Car.builder().carIndex(carIndex).build();
+            this.sortedCarPositions.add(this.sortedCars[carIndex]);
+        }
+        // a 200ms sample moves a Car 5 to 20 metres
+        this.updates = new int[1 << 16];
+        this.increments = new double[this.updates.length];
+        for (int i = 0; i < this.updates.length; i++) {
+            this.updates[i] = this.random.nextInt(this.cars);
+            this.increments[i] = 0.005D + this.random.nextDouble() * 0.015D;
+        }
+    }
+
+    @Benchmark
+    public void incremental(final Blackhole blackhole) {
+        final int i = this.next++ & (this.updates.length - 1);
+        final Car car = this.leaderboardCars[this.updates[i]];
+        final int prevPosition = car.getPosition();
+        this.leaderboard.update(car, car.getTotalDistance() + this.increments[i]);
+        final int curPosition = car.getPosition();
+        if (curPosition != prevPosition) {
+            for (int position = Math.min(prevPosition, curPosition); position <= Math.max(prevPosition, curPosition); position++) {
+                blackhole.consume(new CarStatus(this.leaderboard.carAt(position), CarStatus.TypeEnum.POSITION));
+            }
+        }
+    }
+
+    @Benchmark
+    public void fullSort(final Blackhole blackhole) {
+        final int i = this.next++ & (this.updates.length - 1);
+        final Car car = this.sortedCars[this.updates[i]];
+        car.addDistance(this.increments[i]);
+
+        // the previous TelemetryService.updateCarPositionsAndOvertakes implementation
+        final int[] prevPositions = new int[this.sortedCarPositions.size()];
+        for (int j = 0; j < prevPositions.length; j++) {
+            prevPositions[j] = this.sortedCarPositions.get(j).getCarIndex();
+        }
+        Collections.sort(this.sortedCarPositions, (o1, o2) -> o1.getTotalDistance() > o2.getTotalDistance() ? -1 :
+                (o1.getTotalDistance() < o2.getTotalDistance() ? 1 : 0));
+        final int[] updatedPositions = new int[this.sortedCarPositions.size()];
+        for (int j = 0; j < updatedPositions.length; j++) {
+            updatedPositions[j] = this.sortedCarPositions.get(j).getCarIndex();
+            this.sortedCarPositions.get(j).setPosition(j + 1);
+            blackhole.consume(new CarStatus(this.sortedCarPositions.get(j), CarStatus.TypeEnum.POSITION));
+        }
+        for (int j = 0; j < updatedPositions.length; j++) {
+            if (updatedPositions[j] != prevPositions[j]) {
+                blackhole.consume(this.sortedCars[updatedPositions[j]]);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.CarLap;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The per-Car object state that the {@link CarStateStore} replaced: a Car with the Location of its last
+ * <br/>
+ * CarCoordinate, two GeoPoints and a list of CarLaps, looked up by a boxed carIndex. For the comparisons in
+ * <br/>
+ * {@link CarStateStoreBenchmark} and {@link CarStateFootprint}.
+ */
+final class PreviousCar {
+    int carIndex = -1;
+    Location curLocation;
+    int position = 0;
+    double totalDistance = 0D;
+    long lastUpdateTimestamp = 0L;
+    double curSpeedMPH = 0D;
+    List<CarLap> laps = new ArrayList<>();
+    long lapStartTime = 0L;
+    GeoPoint curPoint = new GeoPoint();
+    GeoPoint nextPoint = new GeoPoint();
+    int trackSegment = -1;
+    double trackProgress = 0D;
+    int trackLine = -1;
+
+    void advancePoint() {
+        final GeoPoint point = this.curPoint;
+        this.curPoint = this.nextPoint;
+        this.nextPoint = point;
+    }
+
+    void addLap(final long endTime, final double distance, final double averageSpeed) {
+        final CarLap carLap = new CarLap();
+        carLap.setStartTime(this.lapStartTime);
+        carLap.setEndTime(endTime);
+        carLap.setDistance(distance);
+        carLap.setAverageSpeed(averageSpeed);
+        this.laps.add(carLap);
+        this.lapStartTime = endTime;
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.nicdesousa.telemetry.load;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinarySerializer;
+import com.github.nicdesousa.telemetry.codec.CarCoordinateDeserializer;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.service.CarCoordinateService;
+import io.smallrye.reactive.messaging.kafka.KafkaMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-JVM stand-ins for the MQTT and Kafka brokers, so that a load test exercises the same CarCoordinateService paths
+ * <br/>
+ * as a deployment without the containers:
+ * <br/>
+ * - the "carCoordinates" MQTT topic is a bounded queue with a delivery thread, which drops the messages that do not
+ * <br/>
+ * fit (like QoS 0 to a slow subscriber), and hands the rest to consumeMqttCarCoordinate
+ * <br/>
+ * - with Kafka, the delivery thread serializes the CarCoordinates onto a bounded "carCoordinates" topic queue (and
+ * <br/>
+ * blocks while it is full, like waitForWriteCompletion), and a consumer thread deserializes them and hands them off
+ * <br/>
+ * in batches of up to batchMaxSize, like the kafka-carCoordinates-sub channel
+ * <br/>
+ * The broker's network, persistence and acknowledgement costs are not modelled, so the latencies are a lower bound.
+ */
+@Slf4j
+final class InMemoryBroker implements AutoCloseable {
+
+    private static final String TOPIC = "carCoordinates";
+    private static final long POLL_TIMEOUT_IN_MS = 100L;
+
+    private final CarCoordinateService carCoordinateService;
+    private final BlockingQueue<byte[]> mqttTopic;
+    private final BlockingQueue<byte[]> kafkaTopic;
+    private final int batchMaxSize;
+    private final CarCoordinateBinarySerializer serializer = new CarCoordinateBinarySerializer();
+    private final CarCoordinateDeserializer deserializer = new CarCoordinateDeserializer();
+    private final LongAdder mqttDrops = new LongAdder();
+    // the messages published (and not dropped), and handed off to the CarCoordinateService
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param carCoordinateService consumes the MQTT (and Kafka) CarCoordinates
+     * @param mqttCapacity         of the MQTT topic queue
+     * @param kafkaCapacity        of the Kafka topic queue, or 0 to only stand in for MQTT (direct mode)
+     * @param batchMaxSize         of the Kafka CarCoordinates handed off at a time
+     */
+    InMemoryBroker(final CarCoordinateService carCoordinateService, final int mqttCapacity, final int kafkaCapacity,
+                   final int batchMaxSize) {
+        this.carCoordinateService = carCoordinateService;
+        this.mqttTopic = new ArrayBlockingQueue<>(mqttCapacity);
+        this.kafkaTopic = kafkaCapacity > 0 ? new ArrayBlockingQueue<>(kafkaCapacity) : null;
+        this.batchMaxSize = Math.max(1, batchMaxSize);
+        this.start("mqtt-carCoordinates-sub", this::deliverMqtt);
+        if (this.kafkaTopic != null) {
+            this.start("kafka-carCoordinates-sub", this::consumeKafka);
+        }
+    }
+
+    /**
+     * Publish an MQTT carCoordinates message, or drop it if the MQTT topic queue is full.
+     *
+     * @param payload of the message
+     */
+    void publish(final byte[] payload) {
+        if (this.mqttTopic.offer(payload)) {
+            this.published.increment();
+        } else {
+            this.mqttDrops.increment();
+        }
+    }
+
+    /**
+     * @return the number of MQTT messages dropped because the MQTT topic queue was full
+     */
+    long getMqttDrops() {
+        return this.mqttDrops.sum();
+    }
+
+    /**
+     * @return the number of messages that have not been handed off yet
+     */
+    long getQueueDepth() {
+        return this.published.sum() - this.delivered.sum();
+    }
+
+    /**
+     * Wait until every message that has been published has been handed off (but not necessarily processed).
+     *
+     * @param timeoutInMs how long to wait at most
+     * @return true if every message has been handed off
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean drain(final long timeoutInMs) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+        while (this.getQueueDepth() > 0) {
+            if (System.nanoTime() - deadline > 0L) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(1L);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        this.running = false;
+        for (final Thread thread : this.threads) {
+            thread.join();
+        }
+    }
+
+    private void start(final String name, final Runnable delivery) {
+        final Thread thread = new Thread(delivery, name);
+        thread.setDaemon(true);
+        thread.start();
+        this.threads.add(thread);
+    }
+
+    private void deliverMqtt() {
+        try {
+            while (this.running) {
+                final byte[] payload = this.mqttTopic.poll(POLL_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+                if (payload == null) {
+                    continue;
+                }
+                final KafkaMessage<Integer, CarCoordinate> message =
+                        this.carCoordinateService.consumeMqttCarCoordinate(payload);
+                if (this.kafkaTopic != null) {
+                    this.kafkaTopic.put(this.serializer.serialize(TOPIC, message.getPayload()));
+                } else {
+                    this.delivered.increment();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final RuntimeException e) {
+            log.error("The MQTT delivery thread failed", e);
+        }
+    }
+
+    private void consumeKafka() {
+        final List<byte[]> records = new ArrayList<>(this.batchMaxSize);
+        final List<KafkaMessage<?, CarCoordinate>> batch = new ArrayList<>(this.batchMaxSize);
+        try {
+            while (this.running) {
+                final byte[] first = this.kafkaTopic.poll(POLL_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                records.add(first);
+                this.kafkaTopic.drainTo(records, this.batchMaxSize - 1);
+                for (final byte[] record : records) {
+                    final CarCoordinate carCoordinate = this.deserializer.deserialize(TOPIC, record);
+                    batch.add(KafkaMessage.of(TOPIC, carCoordinate.getCarIndex(), carCoordinate));
+                }
+                if (this.batchMaxSize == 1) {
+                    this.carCoordinateService.consumeKafkaCarCoordinate(batch.get(0));
+                } else {
+                    this.carCoordinateService.consumeKafkaCarCoordinates(batch);
+                }
+                this.delivered.add(batch.size());
+                records.clear();
+                batch.clear();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final RuntimeException e) {
+            log.error("The Kafka consumer thread failed", e);
+        }
+    }
+}
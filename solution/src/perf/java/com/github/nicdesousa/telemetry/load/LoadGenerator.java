@@ -0,0 +1,367 @@
+package com.github.nicdesousa.telemetry.load;
+
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.metrics.LatencyHistogram;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import com.github.nicdesousa.telemetry.replay.RaceReplay;
+import com.github.nicdesousa.telemetry.service.CarCoordinateService;
+import com.github.nicdesousa.telemetry.service.CarStatusService;
+import com.github.nicdesousa.telemetry.service.EventsService;
+import com.github.nicdesousa.telemetry.service.TelemetryService;
+import com.github.nicdesousa.telemetry.track.Track;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A capacity test: drives a synthetic fleet of Cars around the track and publishes their carCoordinates at a fixed
+ * <br/>
+ * (open-loop) rate, with optional network jitter, reordering and dropouts, into a TelemetryService configured like
+ * <br/>
+ * the replay, and reports the throughput, the end-to-end latency percentiles and the heap and GC every second, e.g.:
+ * <br/>
+ * ./load.sh load.cars=1000,load.rateInHz=10,load.target=KAFKA,telemetryService.shards=2
+ * <br/>
+ * The latency of a sample is measured from the time at which it was due to be sent until its SPEED CarStatus is
+ * <br/>
+ * published, so a generator (or a consumer) that falls behind shows up in the latencies rather than hiding them.
+ * <br/>
+ * The target is DIRECT (handed to the CarCoordinateService on the generator thread, in direct mode), MQTT (through
+ * <br/>
+ * the MQTT stand-in, in direct mode) or KAFKA (through the MQTT and Kafka stand-ins), see {@link InMemoryBroker}.
+ */
+public final class LoadGenerator {
+
+    private static final long NANOS_PER_MS = 1_000_000L;
+    // how far ahead of a due sample the generator parks rather than spins
+    private static final long PARK_THRESHOLD_IN_NANOS = 100_000L;
+    private static final long DRAIN_TIMEOUT_IN_MS = 30_000L;
+
+    private final Properties config;
+    private final int cars;
+    private final long intervalInMs;
+    private final long durationInMs;
+    private final int jitterInMs;
+    private final double reorderProbability;
+    private final double dropoutProbability;
+    private final String target;
+    private final long reportIntervalInMs;
+    private final Random random;
+
+    // the latencies of the current report interval, and of the whole run
+    private final AtomicReference<LatencyHistogram> latencies = new AtomicReference<>(new LatencyHistogram());
+    private final LatencyHistogram totalLatencies = new LatencyHistogram();
+    // how late the generator sent the samples, of the current report interval
+    private final AtomicReference<LatencyHistogram> sendLags = new AtomicReference<>(new LatencyHistogram());
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropouts = new LongAdder();
+    private final LongAdder carStatuses = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private volatile SyntheticFleet fleet;
+
+    public LoadGenerator(final Properties config) {
+        this.config = config;
+        this.cars = Integer.parseInt(this.property("load.cars", "20"));
+        final double rateInHz = Double.parseDouble(this.property("load.rateInHz", "5"));
+        if (this.cars < 1 || !(rateInHz > 0D) || rateInHz > 1000D) {
+            throw new IllegalArgumentException("load.cars must be at least 1 and load.rateInHz within 0 and 1000");
+        }
+        // the timestamps have a millisecond resolution
+        this.intervalInMs = Math.max(1L, Math.round(1000D / rateInHz));
+        this.durationInMs = TimeUnit.SECONDS.toMillis(Long.parseLong(this.property("load.durationInSeconds", "30")));
+        this.jitterInMs = Integer.parseInt(this.property("load.jitterInMs", "0"));
+        this.reorderProbability = Double.parseDouble(this.property("load.reorderProbability", "0"));
+        this.dropoutProbability = Double.parseDouble(this.property("load.dropoutProbability", "0"));
+        this.target = this.property("load.target", "DIRECT").toUpperCase();
+        this.reportIntervalInMs = Long.parseLong(this.property("load.reportIntervalInMs", "1000"));
+        this.random = new Random(Long.parseLong(this.property("load.seed", "42")));
+    }
+
+    /**
+     * @param args optional configuration overrides: key=value[,key=value...]
+     * @throws Exception if the track could not be read, or the run was interrupted
+     */
+    public static void main(final String[] args) throws Exception {
+        new LoadGenerator(RaceReplay.config(args.length > 0 ? args[0] : null)).run();
+    }
+
+    /**
+     * Run the load test for its duration, and print the reports and the summary.
+     *
+     * @throws IOException          if the track could not be read
+     * @throws InterruptedException if interrupted while waiting for the CarCoordinates to be processed
+     */
+    public void run() throws IOException, InterruptedException {
+        final Track track = Track.load(this.property("telemetryService.trackPath", "silverstone_closed.geojson"));
+        final TelemetryService telemetryService = new RaceReplay(this.config).telemetryService(
+                new LatencyCarStatusService(), new CountingEventsService());
+        final TelemetryMetrics metrics = telemetryService.metrics;
+        final CarCoordinateService carCoordinateService = new CarCoordinateService();
+        carCoordinateService.telemetryService = telemetryService;
+        carCoordinateService.metrics = metrics;
+        carCoordinateService.orderByPartition = false;
+        carCoordinateService.batchMaxSize = Integer.valueOf(this.property("carCoordinateService.batch.maxSize", "1"));
+        carCoordinateService.direct = !"KAFKA".equals(this.target);
+        final InMemoryBroker broker = "DIRECT".equals(this.target) ? null : new InMemoryBroker(carCoordinateService,
+                Integer.parseInt(this.property("load.mqtt.queueCapacity", "65536")),
+                "KAFKA".equals(this.target) ? Integer.parseInt(this.property("load.kafka.queueCapacity", "65536")) : 0,
+                carCoordinateService.batchMaxSize);
+
+        System.out.printf("%,d Cars every %d ms (%,.0f carCoordinates/s) for %d s to %s, jitter %d ms, reorder %.2f%%,"
+                        + " dropout %.2f%%%n", this.cars, this.intervalInMs, this.cars * 1000D / this.intervalInMs,
+                TimeUnit.MILLISECONDS.toSeconds(this.durationInMs), this.target, this.jitterInMs,
+                this.reorderProbability * 100D, this.dropoutProbability * 100D);
+        final Report report = new Report(telemetryService, broker);
+        final Thread reporter = new Thread(() -> report.run(this.reportIntervalInMs), "load-report");
+        reporter.setDaemon(true);
+        final long start = System.nanoTime();
+        this.fleet = new SyntheticFleet(track, this.cars, this.intervalInMs, System.currentTimeMillis(), start);
+        reporter.start();
+        this.generate(start, start + this.durationInMs * NANOS_PER_MS, carCoordinateService, broker);
+        final long generated = System.nanoTime();
+        if (broker != null && !broker.drain(DRAIN_TIMEOUT_IN_MS)) {
+            System.out.printf("%,d messages were not consumed within %d s%n", broker.getQueueDepth(),
+                    TimeUnit.MILLISECONDS.toSeconds(DRAIN_TIMEOUT_IN_MS));
+        }
+        // waits for the shard workers, and releases the CarCoordinates that are still held in the reorder windows
+        telemetryService.dispose();
+        final long elapsed = System.nanoTime() - start;
+        reporter.interrupt();
+        reporter.join();
+        if (broker != null) {
+            broker.close();
+        }
+        report.summary(generated - start, elapsed, metrics);
+    }
+
+    // send every Car's samples when they are due, until the end of the run
+    private void generate(final long start, final long end, final CarCoordinateService carCoordinateService,
+                          final InMemoryBroker broker) {
+        // the jittered samples, by the millisecond (since start) in which they are sent
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<byte[]>[] delayed = new ArrayDeque[Integer.highestOneBit(this.jitterInMs + 1) * 2];
+        for (int i = 0; i < delayed.length; i++) {
+            delayed[i] = new ArrayDeque<>();
+        }
+        final int mask = delayed.length - 1;
+        long releasedMs = 0L;
+        // the sample held back by each Car until its next sample has been sent
+        final byte[][] held = new byte[this.cars][];
+        for (long sample = 0L; ; sample++) {
+            for (int carIndex = 0; carIndex < this.cars; carIndex++) {
+                final long due = this.fleet.dueNanos(carIndex, sample);
+                if (due - end >= 0L) {
+                    this.flush(delayed, held, carCoordinateService, broker);
+                    return;
+                }
+                long now = System.nanoTime();
+                while (due - now > 0L) {
+                    if (due - now > PARK_THRESHOLD_IN_NANOS) {
+                        LockSupport.parkNanos(due - now - PARK_THRESHOLD_IN_NANOS / 2L);
+                    } else {
+                        Thread.yield();
+                    }
+                    now = System.nanoTime();
+                }
+                final long nowMs = (now - start) / NANOS_PER_MS;
+                for (; releasedMs <= nowMs; releasedMs++) {
+                    this.send(delayed[(int) (releasedMs & mask)], carCoordinateService, broker);
+                }
+                if (this.random.nextDouble() < this.dropoutProbability) {
+                    this.dropouts.increment();
+                    continue;
+                }
+                final byte[] payload = this.fleet.payload(carIndex, sample);
+                this.sendLags.get().record(System.nanoTime() - due);
+                if (this.reorderProbability > 0D && held[carIndex] == null
+                        && this.random.nextDouble() < this.reorderProbability) {
+                    held[carIndex] = payload;
+                    continue;
+                }
+                if (this.jitterInMs > 0) {
+                    final int jitter = this.random.nextInt(this.jitterInMs + 1);
+                    if (jitter > 0) {
+                        delayed[(int) ((nowMs + jitter) & mask)].add(payload);
+                        continue;
+                    }
+                }
+                this.send(payload, carCoordinateService, broker);
+                if (held[carIndex] != null) {
+                    this.send(held[carIndex], carCoordinateService, broker);
+                    held[carIndex] = null;
+                }
+            }
+        }
+    }
+
+    private void flush(final ArrayDeque<byte[]>[] delayed, final byte[][] held,
+                       final CarCoordinateService carCoordinateService, final InMemoryBroker broker) {
+        for (final ArrayDeque<byte[]> payloads : delayed) {
+            this.send(payloads, carCoordinateService, broker);
+        }
+        for (int carIndex = 0; carIndex < held.length; carIndex++) {
+            if (held[carIndex] != null) {
+                this.send(held[carIndex], carCoordinateService, broker);
+                held[carIndex] = null;
+            }
+        }
+    }
+
+    private void send(final ArrayDeque<byte[]> payloads, final CarCoordinateService carCoordinateService,
+                      final InMemoryBroker broker) {
+        byte[] payload;
+        while ((payload = payloads.poll()) != null) {
+            this.send(payload, carCoordinateService, broker);
+        }
+    }
+
+    private void send(final byte[] payload, final CarCoordinateService carCoordinateService,
+                      final InMemoryBroker broker) {
+        if (broker == null) {
+            carCoordinateService.consumeMqttCarCoordinate(payload);
+        } else {
+            broker.publish(payload);
+        }
+        this.sent.increment();
+    }
+
+    private String property(final String name, final String defaultValue) {
+        return this.config.getProperty(name, defaultValue).trim();
+    }
+
+    private static String millis(final long nanos) {
+        return String.format("%.3f ms", nanos / 1e6D);
+    }
+
+    // records the end-to-end latency of every sample when its SPEED CarStatus is published
+    private final class LatencyCarStatusService extends CarStatusService {
+        @Override
+        public void publish(final CarStatus carStatus) {
+            if (carStatus.getType() == CarStatus.TypeEnum.SPEED) {
+                final long latency = System.nanoTime()
+                        - LoadGenerator.this.fleet.dueNanosOf(carStatus.getCarIndex(), carStatus.getTimestamp());
+                LoadGenerator.this.latencies.get().record(latency);
+                LoadGenerator.this.totalLatencies.record(latency);
+            }
+            LoadGenerator.this.carStatuses.increment();
+        }
+    }
+
+    private final class CountingEventsService extends EventsService {
+        @Override
+        public void publish(final Event event) {
+            LoadGenerator.this.events.increment();
+        }
+    }
+
+    // the per interval and summary reports, of the throughput, latencies, heap and GC
+    private final class Report {
+        private final TelemetryService telemetryService;
+        private final InMemoryBroker broker;
+        private long maxUsedHeap = 0L;
+
+        private Report(final TelemetryService telemetryService, final InMemoryBroker broker) {
+            this.telemetryService = telemetryService;
+            this.broker = broker;
+        }
+
+        private void run(final long intervalInMs) {
+            long previousSent = 0L;
+            long previousProcessed = 0L;
+            long previousCarStatuses = 0L;
+            long previousEvents = 0L;
+            long previousGcCount = gcCount();
+            long previousGcTime = gcTime();
+            final long start = System.nanoTime();
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    TimeUnit.MILLISECONDS.sleep(intervalInMs);
+                    final LatencyHistogram latency = LoadGenerator.this.latencies.getAndSet(new LatencyHistogram());
+                    final LatencyHistogram sendLag = LoadGenerator.this.sendLags.getAndSet(new LatencyHistogram());
+                    final long sentNow = LoadGenerator.this.sent.sum();
+                    final long processed = this.telemetryService.metrics.processedCarCoordinates.sum();
+                    final long carStatuses = LoadGenerator.this.carStatuses.sum();
+                    final long events = LoadGenerator.this.events.sum();
+                    final long gcCount = gcCount();
+                    final long gcTime = gcTime();
+                    final double seconds = intervalInMs / 1000D;
+                    System.out.printf("%5.1f s: sent %,.0f/s processed %,.0f/s (%,.0f CarStatuses/s %,.0f Events/s)"
+                                    + " | latency p50 %s p99 %s p99.9 %s max %s | send lag p99 %s | queued %,d"
+                                    + " | heap %,d MB | gc %d (%d ms) | state %,d KB%n",
+                            (System.nanoTime() - start) / 1e9D, (sentNow - previousSent) / seconds,
+                            (processed - previousProcessed) / seconds, (carStatuses - previousCarStatuses) / seconds,
+                            (events - previousEvents) / seconds, millis(latency.valueAt(0.5D)),
+                            millis(latency.valueAt(0.99D)), millis(latency.valueAt(0.999D)), millis(latency.max()),
+                            millis(sendLag.valueAt(0.99D)), this.queued(), this.usedHeap() >> 20,
+                            gcCount - previousGcCount, gcTime - previousGcTime,
+                            this.telemetryService.getEstimatedMemoryBytes() >> 10);
+                    previousSent = sentNow;
+                    previousProcessed = processed;
+                    previousCarStatuses = carStatuses;
+                    previousEvents = events;
+                    previousGcCount = gcCount;
+                    previousGcTime = gcTime;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void summary(final long generatedNanos, final long elapsedNanos, final TelemetryMetrics metrics) {
+            final long processed = metrics.processedCarCoordinates.sum();
+            final LatencyHistogram latency = LoadGenerator.this.totalLatencies;
+            System.out.printf("Sent %,d carCoordinates in %.1f s (%,.0f/s), %,d dropouts, %,d MQTT drops%n",
+                    LoadGenerator.this.sent.sum(), generatedNanos / 1e9D,
+                    LoadGenerator.this.sent.sum() * 1e9D / generatedNanos, LoadGenerator.this.dropouts.sum(),
+                    this.broker == null ? 0L : this.broker.getMqttDrops());
+            System.out.printf("Processed %,d carCoordinates in %.1f s (%,.0f/s), %,d reordered, %,d late,"
+                            + " %,d duplicates, %,d CarStatuses, %,d Events%n", processed, elapsedNanos / 1e9D,
+                    processed * 1e9D / elapsedNanos, this.telemetryService.getReorderedSamples(),
+                    this.telemetryService.getLateSamples(), this.telemetryService.getDuplicateSamples(),
+                    LoadGenerator.this.carStatuses.sum(), LoadGenerator.this.events.sum());
+            System.out.printf("Latency of %,d samples: p50 %s p90 %s p99 %s p99.9 %s p99.99 %s max %s%n",
+                    latency.count(), millis(latency.valueAt(0.5D)), millis(latency.valueAt(0.9D)),
+                    millis(latency.valueAt(0.99D)), millis(latency.valueAt(0.999D)),
+                    millis(latency.valueAt(0.9999D)), millis(latency.max()));
+            System.out.printf("Heap: max used %,d MB of %,d MB, GC: %d collections (%d ms)%n",
+                    Math.max(this.maxUsedHeap, this.usedHeap()) >> 20,
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() >> 20, gcCount(), gcTime());
+        }
+
+        private long queued() {
+            return (this.broker == null ? 0L : this.broker.getQueueDepth())
+                    + this.telemetryService.getShardQueueDepth() + this.telemetryService.getStandingsQueueDepth();
+        }
+
+        private long usedHeap() {
+            final long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            this.maxUsedHeap = Math.max(this.maxUsedHeap, used);
+            return used;
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0L;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0L;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0L, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.nicdesousa.telemetry.load;
+
+import com.github.nicdesousa.telemetry.track.Track;
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fleet of synthetic Cars driven around a track at constant (per Car) speeds, spread out along the track, that
+ * <br/>
+ * sample their coordinate every interval. The samples of the Cars are staggered evenly across the interval, so the
+ * <br/>
+ * fleet produces a steady rather than a bursty load, and the time at which each sample is due is known from its Car
+ * <br/>
+ * and timestamp alone, which is what the end-to-end latency is measured from.
+ * <br/>
+ * Not thread-safe, the payloads must only be created by a single (generator) thread.
+ */
+final class SyntheticFleet {
+
+    // the speeds of the Cars, spread over a range by the golden ratio so that no two Cars have the same speed (Cars
+    // that are level on distance would swap positions on every sample)
+    private static final double MIN_SPEED_IN_KMH = 150D;
+    private static final double SPEED_RANGE_IN_KMH = 60D;
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949D;
+
+    private final Track track;
+    private final int cars;
+    private final long intervalInMs;
+    private final long intervalInNanos;
+    private final long startTimestamp;
+    private final long startNanos;
+    private final GeoPoint point = new GeoPoint();
+    private final StringBuilder json = new StringBuilder(128);
+
+    /**
+     * @param track          the Cars drive around
+     * @param cars           in the fleet
+     * @param intervalInMs   between the samples of a Car
+     * @param startTimestamp of the first sample of the first Car (epoch milliseconds)
+     * @param startNanos     the System.nanoTime() at which the first sample of the first Car is due
+     */
+    SyntheticFleet(final Track track, final int cars, final long intervalInMs, final long startTimestamp,
+                   final long startNanos) {
+        this.track = track;
+        this.cars = cars;
+        this.intervalInMs = intervalInMs;
+        this.intervalInNanos = intervalInMs * 1_000_000L;
+        this.startTimestamp = startTimestamp;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @param sample   the sequence number of the Car's sample
+     * @return the System.nanoTime() at which the sample is due to be sent
+     */
+    long dueNanos(final int carIndex, final long sample) {
+        return this.startNanos + sample * this.intervalInNanos + carIndex * this.intervalInNanos / this.cars;
+    }
+
+    /**
+     * @param carIndex  of a Car
+     * @param timestamp of one of the Car's samples
+     * @return the System.nanoTime() at which the sample was due to be sent
+     */
+    long dueNanosOf(final int carIndex, final long timestamp) {
+        return this.dueNanos(carIndex, (timestamp - this.startTimestamp) / this.intervalInMs);
+    }
+
+    /**
+     * @param carIndex of a Car
+     * @param sample   the sequence number of the Car's sample
+     * @return the MQTT carCoordinates payload of the sample
+     */
+    byte[] payload(final int carIndex, final long sample) {
+        final double spread = carIndex * GOLDEN_RATIO_FRACTION;
+        final double speedInKmh = MIN_SPEED_IN_KMH + (spread - Math.floor(spread)) * SPEED_RANGE_IN_KMH;
+        final double distance = carIndex * this.track.length() / this.cars
+                + speedInKmh * sample * this.intervalInMs / 3_600_000D;
+        this.track.pointAt(distance, this.point);
+        this.json.setLength(0);
+        this.json.append("{\"carIndex\":").append(carIndex).append(",\"location\":{\"lat\":")
+                .append(this.point.getLatitude()).append(",\"long\":").append(this.point.getLongitude())
+                .append("},\"timestamp\":").append(this.startTimestamp + sample * this.intervalInMs).append('}');
+        return this.json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import io.smallrye.reactive.messaging.kafka.KafkaMessage;
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the MQTT carCoordinates ingest path: JSON decoding of the raw MQTT payload and the wrapping of the
+ * <br/>
+ * CarCoordinate for Kafka (which is serialized by the Kafka producer, see CarCoordinateCodecBenchmark).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarCoordinateServiceBenchmark {
+
+    // a carCoordinates message as published by the MAT stream generator
+    private final byte[] rawMessage = ("{\"carIndex\":3,\"location\":{\"lat\":52.069342797764405,"
+            + "\"long\":-1.0222223819238275},\"timestamp\":1541693114862}").getBytes(StandardCharsets.UTF_8);
+    private final CarCoordinateService carCoordinateService = new CarCoordinateService();
+
+    @Setup
+    public void setup() {
+        this.carCoordinateService.metrics = new TelemetryMetrics();
+    }
+
+    @Benchmark
+    public CarCoordinate decode() {
+        return Json.decodeValue(new String(this.rawMessage), CarCoordinate.class);
+    }
+
+    @Benchmark
+    public KafkaMessage<Integer, CarCoordinate> consumeMqttCarCoordinate() {
+        return this.carCoordinateService.consumeMqttCarCoordinate(this.rawMessage);
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.codec.TelemetryJsonEncoder;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import io.vertx.core.json.JsonObject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON encoding of the outgoing CarStatus and Event messages, with the previous JsonObject mapping and
+ * <br/>
+ * with the TelemetryJsonEncoder, and publishing a CarStatus through the CarStatusService's bounded buffer to a
+ * <br/>
+ * subscriber that requests everything.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarStatusServiceBenchmark {
+
+    private final CarStatus speed = new CarStatus(1541693114862L, 2, CarStatus.TypeEnum.SPEED, 167.29461538461538D);
+    private final CarStatus position = new CarStatus(1541693114862L, 2, CarStatus.TypeEnum.POSITION, 1D);
+    private final Event event = new Event(1541693114862L,
+            "Car 2 races ahead of Car 4 in a dramatic overtake, faster than... a Porsche 918 loses to the McLaren P1!");
+    private final TelemetryJsonEncoder encoder = new TelemetryJsonEncoder();
+    private final CarStatusService carStatusService = new CarStatusService();
+
+    // a CarStatusService that publishes the latest CarStatus per Car and type at 10 Hz
+    @State(Scope.Thread)
+    public static class Ticked {
+        private final CarStatusService carStatusService = new CarStatusService();
+
+        @Setup
+        public void setup() {
+            this.carStatusService.metrics = new TelemetryMetrics();
+            this.carStatusService.bufferCapacity = 8192;
+            this.carStatusService.bufferPolicy = "CONFLATE";
+            this.carStatusService.publishIntervalInMs = 100L;
+            this.carStatusService.init();
+        }
+
+        @TearDown
+        public void tearDown() {
+            this.carStatusService.dispose();
+        }
+    }
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        this.carStatusService.metrics = new TelemetryMetrics();
+        this.carStatusService.bufferCapacity = 8192;
+        this.carStatusService.bufferPolicy = "CONFLATE";
+        this.carStatusService.publishIntervalInMs = 0L;
+        this.carStatusService.init();
+        this.carStatusService.produceMessage().subscribe(new Subscriber<Message<byte[]>>() {
+            @Override
+            public void onSubscribe(final Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final Message<byte[]> message) {
+                blackhole.consume(message);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                blackhole.consume(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                // the benchmark has finished
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.carStatusService.dispose();
+    }
+
+    @Benchmark
+    public JsonObject mapSpeed() {
+        return JsonObject.mapFrom(this.speed);
+    }
+
+    @Benchmark
+    public JsonObject mapPosition() {
+        return JsonObject.mapFrom(this.position);
+    }
+
+    @Benchmark
+    public String encodeSpeed() {
+        return JsonObject.mapFrom(this.speed).encode();
+    }
+
+    @Benchmark
+    public byte[] encodeSpeedBytes() {
+        return JsonObject.mapFrom(this.speed).toBuffer().getBytes();
+    }
+
+    @Benchmark
+    public byte[] encoderSpeed() {
+        return this.encoder.encode(this.speed).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encoderPosition() {
+        return this.encoder.encode(this.position).toByteArray();
+    }
+
+    // the encoded speed is copied into the reused buffer only, as when it is written to a stream
+    @Benchmark
+    public int encoderSpeedInPlace() {
+        return this.encoder.encode(this.speed).length();
+    }
+
+    @Benchmark
+    public void publishSpeed() {
+        this.carStatusService.publish(this.speed);
+    }
+
+    @Benchmark
+    public void publishSpeedConflated(final Ticked ticked) {
+        ticked.carStatusService.publish(this.speed);
+    }
+
+    @Benchmark
+    public JsonObject mapEvent() {
+        return JsonObject.mapFrom(this.event);
+    }
+
+    @Benchmark
+    public byte[] encodeEventBytes() {
+        return JsonObject.mapFrom(this.event).toBuffer().getBytes();
+    }
+
+    @Benchmark
+    public byte[] encoderEvent() {
+        return this.encoder.encode(this.event).toByteArray();
+    }
+
+    // formatting the text of a lap time Event with String.format, as before, and then mapping it
+    @Benchmark
+    public byte[] encodeLapTimeEventBytes() {
+        return JsonObject.mapFrom(lapTimeEvent()).toBuffer().getBytes();
+    }
+
+    // writing the text of a lap time Event straight from its template
+    @Benchmark
+    public byte[] encoderLapTimeEvent() {
+        return this.encoder.encode(lapTimeEvent()).toByteArray();
+    }
+
+    private static Event lapTimeEvent() {
+        return Event.lapTime(1541693114862L, 2, 7, 91_234L, 201.45678D);
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinarySerializer;
+import com.github.nicdesousa.telemetry.codec.CarCoordinateDeserializer;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import io.smallrye.reactive.messaging.kafka.KafkaMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency from an MQTT carCoordinates message being received until its CarCoordinate has been applied
+ * <br/>
+ * to its Car by a TelemetryService shard, in direct mode (carCoordinateService.direct) and through Kafka, under the
+ * <br/>
+ * same load. The Kafka hop is modelled in-process by the binary serialization, a handoff to a consumer thread and
+ * <br/>
+ * the deserialization, without the broker, so it is a lower bound: a real broker adds its (acknowledged) write and
+ * <br/>
+ * the consumer's poll, which the telemetry_ingest_nanoseconds histogram measures in a deployment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestLatencyBenchmark {
+
+    private static final long SAMPLE_INTERVAL_IN_MS = 200L;
+
+    @Param({"true", "false"})
+    public boolean direct;
+    @Param({"20"})
+    public int cars;
+
+    private final CarCoordinateService carCoordinateService = new CarCoordinateService();
+    private final CarCoordinateBinarySerializer serializer = new CarCoordinateBinarySerializer();
+    private final CarCoordinateDeserializer deserializer = new CarCoordinateDeserializer();
+    // stands in for the Kafka topic
+    private final BlockingQueue<byte[]> topic = new ArrayBlockingQueue<>(1024);
+    private final StringBuilder json = new StringBuilder(128);
+    private TelemetryMetrics metrics;
+    private TelemetryService telemetryService;
+    private double[][] track;
+    private Thread consumer;
+    private long sample = 0L;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        this.track = TelemetryServiceBenchmark.silverstone();
+        this.metrics = new TelemetryMetrics();
+        this.telemetryService = new TelemetryService();
+        this.telemetryService.carStatusService = new CarStatusService() {
+            @Override
+            public void publish(final CarStatus carStatus) {
+                blackhole.consume(carStatus);
+            }
+        };
+        this.telemetryService.eventsService = new EventsService() {
+            @Override
+            public void publish(final Event event) {
+                blackhole.consume(event);
+            }
+        };
+        this.telemetryService.metrics = this.metrics;
+        this.telemetryService.circuitLengthInKM = 5.119771376289225D;
+        this.telemetryService.flatEarthThresholdInKM = 0D;
+        this.telemetryService.shards = 4;
+        this.telemetryService.queueCapacity = 65536;
+        // release every CarCoordinate as soon as it arrives, so it is applied without waiting for the next one
+        this.telemetryService.reorderWindowInMs = 0L;
+        this.telemetryService.reorderMaxSamples = 8;
+        this.telemetryService.maxCars = 65536;
+        this.telemetryService.lapHistory = 512;
+        this.telemetryService.snapshotPath = null;
+        this.telemetryService.init();
+        this.carCoordinateService.telemetryService = this.telemetryService;
+        this.carCoordinateService.metrics = this.metrics;
+        this.carCoordinateService.orderByPartition = false;
+        this.carCoordinateService.direct = this.direct;
+        this.consumer = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    final CarCoordinate carCoordinate = this.deserializer.deserialize("carCoordinates",
+                            this.topic.take());
+                    this.carCoordinateService.consumeKafkaCarCoordinate(
+                            KafkaMessage.of(carCoordinate.getCarIndex(), carCoordinate));
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "kafka-consumer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        this.consumer.interrupt();
+        this.consumer.join();
+        this.telemetryService.dispose();
+    }
+
+    @Benchmark
+    public long ingest() throws InterruptedException {
+        final long processed = this.metrics.processedCarCoordinates.sum() + 1L;
+        final KafkaMessage<Integer, CarCoordinate> message =
+                this.carCoordinateService.consumeMqttCarCoordinate(this.next());
+        if (!this.direct) {
+            this.topic.put(this.serializer.serialize("carCoordinates", message.getPayload()));
+        }
+        // spin until the shard has applied the CarCoordinate (the sum reads the counter's volatile cells)
+        while (this.metrics.processedCarCoordinates.sum() < processed) {
+            Thread.yield();
+        }
+        return processed;
+    }
+
+    // the raw MQTT message of the next CarCoordinate for the next Car, as in TelemetryServiceBenchmark
+    private byte[] next() {
+        final int carIndex = (int) (this.sample % this.cars);
+        final long carSample = this.sample++ / this.cars;
+        final double[] point = this.track[(int) ((carSample * (8 + carIndex % 5) / 8 + carIndex) % this.track.length)];
+        this.json.setLength(0);
+        this.json.append("{\"carIndex\":").append(carIndex).append(",\"location\":{\"lat\":").append(point[1])
+                .append(",\"long\":").append(point[0]).append("},\"timestamp\":")
+                .append(1541693114862L + carSample * SAMPLE_INTERVAL_IN_MS).append('}');
+        return this.json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
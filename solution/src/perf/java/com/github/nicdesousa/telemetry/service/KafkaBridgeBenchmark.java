@@ -0,0 +1,84 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinarySerializer;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the throughput of the MQTT to Kafka bridge when every CarCoordinate waits for its broker write (as the
+ * <br/>
+ * kafka-carCoordinates-pub channel does with waitForWriteCompletion, a window of 1) with the pipelined
+ * <br/>
+ * {@link KafkaBridgeService} and windows of maxInFlight CarCoordinates. The broker is a local stand-in: a
+ * <br/>
+ * MockProducer whose sends are acknowledged in batches, every round trip, by a broker thread, so the throughput of a
+ * <br/>
+ * window of 1 is bound by the round trip, and a larger window acknowledges a batch per round trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaBridgeBenchmark {
+
+    @Param({"1", "64", "4096"})
+    public int maxInFlight;
+    // the broker's round trip (e.g. an acks=all write on a local network)
+    @Param({"500"})
+    public int roundTripInMicros;
+
+    private final MockProducer<Integer, CarCoordinate> producer = new MockProducer<>(false, new IntegerSerializer(),
+            new CarCoordinateBinarySerializer());
+    private final KafkaBridgeService kafkaBridgeService = new KafkaBridgeService();
+    private final CarCoordinate carCoordinate = new CarCoordinate();
+    private Thread broker;
+
+    @Setup
+    public void setup() {
+        this.kafkaBridgeService.metrics = new TelemetryMetrics();
+        this.kafkaBridgeService.mode = "PIPELINED";
+        this.kafkaBridgeService.topic = "carCoordinates";
+        this.kafkaBridgeService.maxInFlight = this.maxInFlight;
+        this.kafkaBridgeService.producer = this.producer;
+        this.kafkaBridgeService.init();
+        this.carCoordinate.setCarIndex(3);
+        this.broker = new Thread(() -> {
+            final long roundTripInNanos = TimeUnit.MICROSECONDS.toNanos(this.roundTripInMicros);
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(roundTripInNanos);
+                // acknowledge every CarCoordinate sent during the round trip, and forget them
+                synchronized (this.producer) {
+                    while (this.producer.completeNext()) {
+                        // the next CarCoordinate
+                    }
+                    this.producer.clear();
+                }
+            }
+        }, "kafka-broker");
+        this.broker.setDaemon(true);
+        this.broker.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        this.broker.interrupt();
+        this.broker.join();
+    }
+
+    @Benchmark
+    public Object publish() {
+        final Object persisted = this.kafkaBridgeService.publish(this.carCoordinate);
+        // like the MQTT consumer, wait for the window before the next CarCoordinate, the window of 1 waits for every
+        // write, like the kafka-carCoordinates-pub channel
+        this.kafkaBridgeService.windowOpen().toCompletableFuture().join();
+        return persisted;
+    }
+}
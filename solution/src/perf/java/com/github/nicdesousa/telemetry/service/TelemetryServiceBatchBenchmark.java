@@ -0,0 +1,114 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares handing {@value #CAR_COORDINATES} CarCoordinates off to the sharded {@link TelemetryService} one at a
+ * <br/>
+ * time (batchSize 1) with handing them off in batches, as with carCoordinateService.batch.maxSize, including the
+ * <br/>
+ * wait until the shards and the standings worker have processed them, per CarCoordinate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TelemetryServiceBatchBenchmark {
+
+    private static final int CAR_COORDINATES = 500;
+    private static final long SAMPLE_INTERVAL_IN_MS = 200L;
+
+    @Param({"20", "1000"})
+    public int cars;
+    @Param({"1", "100", "500"})
+    public int batchSize;
+
+    private TelemetryService telemetryService;
+    private double[][] track;
+    private final List<CarCoordinate> batch = new ArrayList<>();
+    private long sample = 0L;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        this.track = TelemetryServiceBenchmark.silverstone();
+        this.telemetryService = new TelemetryService();
+        this.telemetryService.carStatusService = new CarStatusService() {
+            @Override
+            public void publish(final CarStatus carStatus) {
+                blackhole.consume(carStatus);
+            }
+        };
+        this.telemetryService.eventsService = new EventsService() {
+            @Override
+            public void publish(final Event event) {
+                blackhole.consume(event);
+            }
+        };
+        this.telemetryService.metrics = new TelemetryMetrics();
+        this.telemetryService.circuitLengthInKM = 5.119771376289225D;
+        this.telemetryService.flatEarthThresholdInKM = 0D;
+        this.telemetryService.shards = 4;
+        this.telemetryService.queueCapacity = 65536;
+        this.telemetryService.reorderWindowInMs = 250L;
+        this.telemetryService.reorderMaxSamples = 8;
+        this.telemetryService.maxCars = 65536;
+        this.telemetryService.lapHistory = 512;
+        this.telemetryService.snapshotPath = null;
+        this.telemetryService.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.telemetryService.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CAR_COORDINATES)
+    public void processCarCoordinates() {
+        for (int i = 0; i < CAR_COORDINATES; i++) {
+            final CarCoordinate carCoordinate = this.next();
+            if (this.batchSize == 1) {
+                this.telemetryService.processCarCoordinate(carCoordinate);
+                continue;
+            }
+            this.batch.add(carCoordinate);
+            if (this.batch.size() == this.batchSize) {
+                this.telemetryService.processCarCoordinates(this.batch);
+                this.batch.clear();
+            }
+        }
+        if (!this.batch.isEmpty()) {
+            this.telemetryService.processCarCoordinates(this.batch);
+            this.batch.clear();
+        }
+        this.telemetryService.awaitIdle();
+    }
+
+    // the next CarCoordinate for the next Car, as in TelemetryServiceBenchmark
+    private CarCoordinate next() {
+        final int carIndex = (int) (this.sample % this.cars);
+        final long carSample = this.sample++ / this.cars;
+        final double[] point = this.track[(int) ((carSample * (8 + carIndex % 5) / 8 + carIndex) % this.track.length)];
+        final Location location = new Location();
+        location.setLongitude(point[0]);
+        location.setLatitude(point[1]);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(1541693114862L + carSample * SAMPLE_INTERVAL_IN_MS);
+        return carCoordinate;
+    }
+}
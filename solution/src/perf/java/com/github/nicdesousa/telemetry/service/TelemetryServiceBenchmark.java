@@ -0,0 +1,110 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TelemetryService#processCarCoordinate} end to end (distance, speed, laps and standings) with
+ * <br/>
+ * inline processing and stubbed CarStatusService and EventsService, where each operation is one CarCoordinate for
+ * <br/>
+ * the next Car as they are driven around the Silverstone circuit, without and with the rolling analytics (10
+ * <br/>
+ * sample windows and 3 sectors).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TelemetryServiceBenchmark {
+
+    private static final long SAMPLE_INTERVAL_IN_MS = 200L;
+
+    @Param({"6", "100"})
+    public int cars;
+    @Param({"0", "10"})
+    public int analyticsWindowSamples;
+
+    private TelemetryService telemetryService;
+    private double[][] track;
+    private long sample = 0L;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        this.track = silverstone();
+        this.telemetryService = new TelemetryService();
+        this.telemetryService.carStatusService = new CarStatusService() {
+            @Override
+            public void publish(final CarStatus carStatus) {
+                blackhole.consume(carStatus);
+            }
+        };
+        this.telemetryService.eventsService = new EventsService() {
+            @Override
+            public void publish(final Event event) {
+                blackhole.consume(event);
+            }
+        };
+        this.telemetryService.metrics = new TelemetryMetrics();
+        this.telemetryService.circuitLengthInKM = 5.119771376289225D;
+        this.telemetryService.flatEarthThresholdInKM = 0D;
+        this.telemetryService.shards = 0;
+        this.telemetryService.queueCapacity = 1;
+        this.telemetryService.reorderWindowInMs = 250L;
+        this.telemetryService.reorderMaxSamples = 8;
+        this.telemetryService.maxCars = 65536;
+        this.telemetryService.lapHistory = 512;
+        this.telemetryService.analyticsWindowSamples = this.analyticsWindowSamples;
+        this.telemetryService.analyticsEwmaTimeConstantInMs = 1000L;
+        this.telemetryService.analyticsSectorSplits = "0.33,0.66";
+        this.telemetryService.snapshotPath = null;
+        this.telemetryService.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.telemetryService.dispose();
+    }
+
+    @Benchmark
+    public void processCarCoordinate() {
+        final int carIndex = (int) (this.sample % this.cars);
+        final long carSample = this.sample++ / this.cars;
+        // each Car travels one track point per sample, with a staggered start and a pace that varies by carIndex
+        final double[] point = this.track[(int) ((carSample * (8 + carIndex % 5) / 8 + carIndex) % this.track.length)];
+        final Location location = new Location();
+        location.setLongitude(point[0]);
+        location.setLatitude(point[1]);
+        // a new CarCoordinate, as it may be held in the Car's reorder window
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(1541693114862L + carSample * SAMPLE_INTERVAL_IN_MS);
+        this.telemetryService.processCarCoordinate(carCoordinate);
+    }
+
+    // the [longitude, latitude] points of the Silverstone circuit
+    static double[][] silverstone() throws IOException {
+        try (InputStream is = TelemetryServiceBenchmark.class.getResourceAsStream("/silverstone.json")) {
+            final JsonNode coordinates = new ObjectMapper().readTree(is).get("coordinates");
+            final double[][] points = new double[coordinates.size()][];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = new double[]{coordinates.get(i).get(0).asDouble(), coordinates.get(i).get(1).asDouble()};
+            }
+            return points;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.nicdesousa.telemetry.track;
+
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackBenchmark {
+
+    private Track track;
+    // a 200ms sample just after the start/finish line, a few metres off the track
+    private final GeoPoint point = new GeoPoint().set(52.06773467D, -1.02411580D);
+    private int segment;
+
+    @Setup
+    public void setup() throws IOException {
+        this.track = Track.load("silverstone_closed.geojson");
+        this.segment = this.track.nearestSegment(this.point, -1);
+    }
+
+    // the per sample cost of TRACK lap detection, searching next to the previous segment first
+    @Benchmark
+    public double project() {
+        return this.track.distanceAlong(this.track.nearestSegment(this.point, this.segment), this.point);
+    }
+
+    // a new Car, or a Car that has jumped away from its previous segment, searches the grid index
+    @Benchmark
+    public double projectFromIndex() {
+        return this.track.distanceAlong(this.track.nearestSegment(this.point, -1), this.point);
+    }
+}
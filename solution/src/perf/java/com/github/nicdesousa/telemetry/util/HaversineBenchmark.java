@@ -0,0 +1,45 @@
+package com.github.nicdesousa.telemetry.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HaversineBenchmark {
+
+    // two consecutive 200ms samples on the Silverstone circuit
+    public double startLat = 52.067695316642116D;
+    public double startLong = -1.0241639614105225D;
+    public double endLat = 52.06773467D;
+    public double endLong = -1.02411580D;
+    private final GeoPoint start = new GeoPoint();
+    private final GeoPoint end = new GeoPoint();
+
+    @Setup
+    public void setup() {
+        this.start.set(this.startLat, this.startLong);
+    }
+
+    @Benchmark
+    public double distance() throws InputValidationException {
+        return Haversine.distance(this.startLat, this.startLong, this.endLat, this.endLong);
+    }
+
+    // per sample cost with a cached start GeoPoint: validate and set the end GeoPoint, then calculate the distance
+    @Benchmark
+    public double cachedDistance() throws InputValidationException {
+        Haversine.validateCoordinate(this.endLat, this.endLong);
+        return Haversine.distance(this.start, this.end.set(this.endLat, this.endLong));
+    }
+
+    @Benchmark
+    public double flatEarthDistance() throws InputValidationException {
+        Haversine.validateCoordinate(this.endLat, this.endLong);
+        return Haversine.distance(this.start, this.end.set(this.endLat, this.endLong), 0.1D);
+    }
+}
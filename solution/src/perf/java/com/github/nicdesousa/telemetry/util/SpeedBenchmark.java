@@ -0,0 +1,22 @@
+package com.github.nicdesousa.telemetry.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpeedBenchmark {
+
+    public double distanceInKilometres = 0.0149D;
+    public long timeInMilliseconds = 200L;
+
+    @Benchmark
+    public double speedInMPH() throws InputValidationException {
+        return Speed.speedInMPH(this.distanceInKilometres, this.timeInMilliseconds);
+    }
+}
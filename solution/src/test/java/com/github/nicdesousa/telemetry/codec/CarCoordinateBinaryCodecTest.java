@@ -0,0 +1,51 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.Location;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarCoordinateBinaryCodecTest {
+
+    private static final String TOPIC = "carCoordinates";
+
+    /**
+     * Test if a CarCoordinate survives the binary round-trip through the Kafka serializer and deserializer
+     */
+    @Test
+    void testBinaryRoundTrip() {
+        final CarCoordinate carCoordinate = carCoordinate(Integer.MAX_VALUE, 52.069342797764405D,
+                -1.0222223819238275D, Long.MIN_VALUE);
+        final byte[] bytes = new CarCoordinateBinarySerializer().serialize(TOPIC, carCoordinate);
+        assertEquals(CarCoordinateBinaryCodec.SIZE, bytes.length);
+        assertEquals(carCoordinate, new CarCoordinateDeserializer().deserialize(TOPIC, bytes));
+    }
+
+    /**
+     * Test if the deserializer still reads JSON CarCoordinates, and CarCoordinates without a Location
+     */
+    @Test
+    void testJsonAndMissingLocation() {
+        final CarCoordinateDeserializer deserializer = new CarCoordinateDeserializer();
+        final CarCoordinate carCoordinate = carCoordinate(3, 52.069342797764405D, -1.0222223819238275D,
+                1541693114862L);
+        assertEquals(carCoordinate, deserializer.deserialize(TOPIC,
+                new CarCoordinateJsonSerializer().serialize(TOPIC, carCoordinate)));
+        carCoordinate.setLocation(null);
+        assertEquals(carCoordinate, deserializer.deserialize(TOPIC, CarCoordinateBinaryCodec.encode(carCoordinate)));
+        assertThrows(IllegalArgumentException.class, () -> CarCoordinateBinaryCodec.decode(new byte[27]));
+    }
+
+    private static CarCoordinate carCoordinate(final int carIndex, final double latitude, final double longitude,
+                                               final long timestamp) {
+        final Location location = new Location();
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(timestamp);
+        return carCoordinate;
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarCoordinateJsonDecoderTest {
+
+    private static final String CAR_COORDINATE = "{\"carIndex\":3,\"location\":{\"lat\":52.069342797764405,"
+            + "\"long\":-1.0222223819238275},\"timestamp\":1541693114862}";
+
+    private final CarCoordinateJsonDecoder decoder = new CarCoordinateJsonDecoder();
+
+    /**
+     * Test if the {@link CarCoordinateJsonDecoder#decode} method decodes a carCoordinates message like Jackson
+     */
+    @Test
+    void testDecode() {
+        assertDecoded(CAR_COORDINATE);
+        assertDecoded("{\n  \"timestamp\" : 1541693114862,\n  \"location\" : {\n    \"long\" : -1.02,\n    \"lat\" : 52 },\n"
+                + "  \"carIndex\" : 0\n}\n");
+        assertDecoded("{\"carIndex\":5,\"location\":null,\"timestamp\":-1}");
+        assertDecoded("{\"carIndex\":5}");
+        assertDecoded("{}");
+        // the optional race session
+        assertDecoded("{\"carIndex\":5,\"session\":\"fp1-2019\",\"location\":{\"lat\":52.1,\"long\":-1},\"timestamp\":1}");
+        assertDecoded("{\"carIndex\":5,\"session\":null}");
+    }
+
+    /**
+     * Test if the {@link CarCoordinateJsonDecoder#decode} method decodes into an existing CarCoordinate and reuses its
+     * Location
+     */
+    @Test
+    void testDecodeInto() {
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        final byte[] payload = CAR_COORDINATE.getBytes(StandardCharsets.UTF_8);
+        assertTrue(this.decoder.decode(payload, 0, payload.length, carCoordinate));
+        final Object location = carCoordinate.getLocation();
+        assertTrue(this.decoder.decode(payload, 0, payload.length, carCoordinate));
+        assertSame(location, carCoordinate.getLocation());
+        assertEquals(Json.decodeValue(CAR_COORDINATE, CarCoordinate.class), carCoordinate);
+    }
+
+    /**
+     * Test if the {@link CarCoordinateJsonDecoder#decode} method falls back to Jackson for messages that it does not
+     * scan itself, which keeps Jackson's coercions and errors
+     */
+    @Test
+    void testFallback() {
+        // coerced by Jackson
+        assertDecoded("{\"carIndex\":\"3\",\"location\":{\"lat\":\"52.1\",\"long\":-1},\"timestamp\":1541693114862}");
+        assertDecoded("{\"carIndex\":3.0,\"location\":{\"lat\":52.1,\"long\":-1},\"timestamp\":1541693114862}");
+        assertDecoded("{\"car\\u0049ndex\":3}");
+        assertDecoded("{\"carIndex\":3,\"session\":\"fp\\u0031\"}");
+        // rejected by Jackson
+        assertThrows(DecodeException.class, () -> this.decoder.decode("{\"carIndex\":3".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(DecodeException.class, () -> this.decoder.decode("{\"unknown\":3}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(DecodeException.class, () -> this.decoder.decode("{\"carIndex\":99999999999}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(DecodeException.class, () -> this.decoder.decode("".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void assertDecoded(final String json) {
+        assertEquals(Json.decodeValue(json, CarCoordinate.class), this.decoder.decode(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DoubleParserTest {
+
+    /**
+     * Test if the {@link DoubleParser#parse} method parses coordinates exactly like {@link Double#parseDouble}
+     */
+    @Test
+    void testCoordinates() {
+        assertParsed("52.069342797764405");
+        assertParsed("-1.0222223819238275");
+        assertParsed("52.067695316642116");
+        assertParsed("-1.0241639614105225");
+        assertParsed("0");
+        assertParsed("-0.0");
+        assertParsed("90");
+        assertParsed("-180.0");
+        assertParsed("1.5e2");
+        assertParsed("1E-7");
+        assertParsed("0.000001234");
+    }
+
+    /**
+     * Test if the {@link DoubleParser#parse} method matches {@link Double#parseDouble} for random doubles and random
+     * decimal strings
+     */
+    @Test
+    void testRandomNumbers() {
+        final Random random = new Random(42L);
+        for (int i = 0; i < 1_000_000; i++) {
+            // the shortest representation of a random double
+            assertParsed(Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL)));
+            // random significands of up to 20 digits with random exponents
+            final StringBuilder number = new StringBuilder();
+            if (random.nextBoolean()) {
+                number.append('-');
+            }
+            final int digits = 1 + random.nextInt(20);
+            final int point = random.nextInt(digits + 1);
+            for (int d = 0; d < digits; d++) {
+                if (d == point && d > 0) {
+                    number.append('.');
+                }
+                number.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextInt(4) == 0) {
+                number.append('e').append(random.nextInt(640) - 330);
+            }
+            assertParsed(number.toString());
+        }
+    }
+
+    /**
+     * Test if the {@link DoubleParser#parse} method rejects invalid numbers
+     */
+    @Test
+    void testInvalidNumbers() {
+        assertThrows(NumberFormatException.class, () -> parse(""));
+        assertThrows(NumberFormatException.class, () -> parse("-"));
+        assertThrows(NumberFormatException.class, () -> parse("."));
+        assertThrows(NumberFormatException.class, () -> parse("1e"));
+        assertThrows(NumberFormatException.class, () -> parse("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> parse("52.0x"));
+    }
+
+    private static void assertParsed(final String number) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(number)), Double.doubleToRawLongBits(parse(number)),
+                number);
+    }
+
+    private static double parse(final String number) {
+        final byte[] bytes = (" " + number + " ").getBytes(StandardCharsets.US_ASCII);
+        return DoubleParser.parse(bytes, 1, bytes.length - 2);
+    }
+}
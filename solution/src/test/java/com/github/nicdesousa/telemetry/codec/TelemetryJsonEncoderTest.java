@@ -0,0 +1,140 @@
+package com.github.nicdesousa.telemetry.codec;
+
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryJsonEncoderTest {
+
+    private final TelemetryJsonEncoder encoder = new TelemetryJsonEncoder();
+
+    /**
+     * Test if the {@link TelemetryJsonEncoder} encodes the example CarStatus and Event messages exactly like the
+     * <br/>
+     * JsonObject mapping
+     */
+    @Test
+    void testExamples() throws IOException {
+        final CarStatus speed = carStatus(example("speed.json"));
+        assertEncoded(speed);
+        assertEquals("{\"timestamp\":1541693114862,\"carIndex\":2,\"type\":\"SPEED\",\"value\":100.0}",
+                new String(this.encoder.encode(speed).toByteArray(), StandardCharsets.UTF_8));
+        assertEncoded(carStatus(example("position.json")));
+        final JsonObject event = example("event.json");
+        assertEncoded(new Event(event.getLong("timestamp"), event.getString("text")));
+        assertEncoded(new Event(event.getLong("timestamp"), event.getString("text"), "fp1"));
+        assertEncoded(new Event(event.getLong("timestamp"), null));
+    }
+
+    /**
+     * Test if the {@link TelemetryJsonEncoder} encodes the values of CarStatus messages exactly like the JsonObject
+     * <br/>
+     * mapping, for random and edge case doubles, and sessions and texts that have to be escaped
+     */
+    @Test
+    void testValuesAndEscapes() {
+        final double[] values = {0D, -0D, 1D, -1D, 0.1D, 167.29461538461538D, 9_999_999D, 10_000_000D, 1e-3D, 1e-4D,
+                -123456789.125D, 1e21D, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY};
+        for (final double value : values) {
+            assertEncoded(new CarStatus(1541693114862L, 2, CarStatus.TypeEnum.SPEED, value));
+        }
+        final Random random = new Random(42L);
+        for (int i = 0; i < 100_000; i++) {
+            final double value = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+            assertEncoded(new CarStatus(random.nextLong(), random.nextInt(), CarStatus.TypeEnum.POSITION,
+                    random.nextBoolean() ? value : -value));
+            assertEncoded(new CarStatus(random.nextInt(1000), random.nextInt(20), CarStatus.TypeEnum.SPEED,
+                    random.nextDouble() * 250D));
+            assertEncoded(new CarStatus(random.nextInt(1000), random.nextInt(20), CarStatus.TypeEnum.POSITION,
+                    1 + random.nextInt(20)));
+        }
+        assertEncoded(new CarStatus(1L, 1, null, 1D));
+        assertEncoded(new CarStatus(1L, 1, CarStatus.TypeEnum.SPEED, 1D, "qualifying \"Q3\""));
+        assertEncoded(new CarStatus(1L, 1, CarStatus.TypeEnum.SECTOR_TIME, 29_876D, null, 2));
+        assertEncoded(new CarStatus(1L, 1, CarStatus.TypeEnum.SECTOR_TIME, 29_876D, "fp1", 3));
+        assertEncoded(new Event(1L, "quotes \" back\\slash / tab\t newline\n \b\f\r \u0001\u001f\u007f"
+                + " \u00e9 \u20ac \ud83d\ude00"));
+        // a text that outgrows the initial buffer
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("Car ").append(i).append(" \u00e9\u20ac\ud83d\ude00 ");
+        }
+        assertEncoded(new Event(1L, text.toString(), "race"));
+        // lone surrogates
+        assertEncoded(new Event(1L, "\ud83d \ude00 \ud7ff \ue000 \uffff"));
+    }
+
+    /**
+     * Test if the {@link TelemetryJsonEncoder} writes the text of templated Events exactly as their template formats
+     * <br/>
+     * it, including the rounding of the average speed to 2 decimals
+     */
+    @Test
+    void testTemplates() {
+        final double[] averageSpeeds = {0D, 0.005D, 0.015D, 1.005D, 2.675D, 9.995D, 99.995D, 99.994999D, 100D,
+                167.29461538461538D, 199.999D, 1234.5678D, 1e-10D, 1e7D, 1.2345e8D, 1e21D, -0D, -1.005D, -0.001D,
+                Double.NaN, Double.POSITIVE_INFINITY};
+        for (final double averageSpeed : averageSpeeds) {
+            assertTemplate(Event.lapTime(1L, 2, 7, 91_234L, averageSpeed));
+            assertTemplate(Event.fastestLap(1L, 2, 91_234L, averageSpeed));
+        }
+        final Random random = new Random(42L);
+        for (int i = 0; i < 100_000; i++) {
+            final long lapTimeInMs = random.nextInt(10_000_000);
+            // speeds with up to 3 decimals hit the rounding boundaries, as well as random doubles
+            final double averageSpeed = random.nextBoolean() ? random.nextInt(300_000) / 1000D
+                    : random.nextDouble() * 300D;
+            assertTemplate(Event.lapTime(random.nextLong(), random.nextInt(20), random.nextInt(120), lapTimeInMs,
+                    averageSpeed));
+            assertTemplate(Event.fastestLap(random.nextLong(), random.nextInt(20), lapTimeInMs, averageSpeed));
+        }
+        assertTemplate(Event.overtake(1L, 2, 4, "a Porsche 918 loses to the McLaren P1"));
+        final Event overtake = Event.overtake(1L, 2, 4, "a \"quoted\" rocket \ud83d\ude80");
+        overtake.setSession("fp1");
+        assertTemplate(overtake);
+
+        // a formatted templated Event is encoded from its text
+        final Event event = Event.lapTime(1L, 2, 7, 91_234L, 167.29461538461538D);
+        assertEquals("Car 2 completed lap 07 in 1:31.234 with an average speed of 167.29 MPH", event.getText());
+        assertTrue(event.isFormatted());
+        assertEncoded(event);
+    }
+
+    private void assertTemplate(final Event event) {
+        assertFalse(event.isFormatted());
+        final byte[] encoded = this.encoder.encode(event).toByteArray();
+        assertFalse(event.isFormatted());
+        // the same Event, with the text formatted by its template
+        assertArrayEquals(JsonObject.mapFrom(event).toBuffer().getBytes(), encoded, event.getText());
+    }
+
+    private void assertEncoded(final Object message) {
+        final byte[] expected = JsonObject.mapFrom(message).toBuffer().getBytes();
+        if (message instanceof CarStatus) {
+            this.encoder.encode((CarStatus) message);
+        } else {
+            this.encoder.encode((Event) message);
+        }
+        assertArrayEquals(expected, this.encoder.toByteArray(), String.valueOf(message));
+    }
+
+    private static CarStatus carStatus(final JsonObject json) {
+        return new CarStatus(json.getLong("timestamp"), json.getInteger("carIndex"),
+                CarStatus.TypeEnum.valueOf(json.getString("type")), json.getDouble("value"));
+    }
+
+    private static JsonObject example(final String name) throws IOException {
+        return new JsonObject(new String(Files.readAllBytes(Paths.get("..", "examples", name)),
+                StandardCharsets.UTF_8));
+    }
+}
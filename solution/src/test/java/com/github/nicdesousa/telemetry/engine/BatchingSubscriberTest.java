@@ -0,0 +1,80 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingSubscriberTest {
+
+    /**
+     * Test if {@link BatchingSubscriber} hands off full batches as soon as they are full, only requests a batch at a
+     * <br/>
+     * time, and hands off the rest of the items once the first of them has lingered.
+     */
+    @Test
+    void testBatches() throws Exception {
+        final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final BatchingSubscriber<Integer> subscriber = new BatchingSubscriber<>("test-batch", 10, 50L, batch -> {
+            threads.add(Thread.currentThread().getName());
+            batches.add(batch);
+        });
+        final BoundedPublisher<Integer, Integer> publisher = new BoundedPublisher<>(100,
+                BoundedPublisher.OverflowPolicy.BLOCK, Function.identity());
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 25; i++) {
+            publisher.offer(BoundedPublisher.NO_KEY, i);
+        }
+        // the full batches are handed off on the publisher's thread
+        assertEquals(2, batches.size());
+        assertEquals(range(0, 10), batches.get(0));
+        assertEquals(range(10, 20), batches.get(1));
+        assertEquals(0, publisher.depth());
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (batches.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(3, batches.size());
+        assertEquals(range(20, 25), batches.get(2));
+        assertEquals(Arrays.asList(Thread.currentThread().getName(), Thread.currentThread().getName(), "test-batch"),
+                threads);
+    }
+
+    /**
+     * Test if {@link BatchingSubscriber} hands off the items that it holds when the publisher completes
+     */
+    @Test
+    void testComplete() {
+        final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        final BatchingSubscriber<Integer> subscriber = new BatchingSubscriber<>("test-batch", 10, 60_000L,
+                batches::add);
+        final BoundedPublisher<Integer, Integer> publisher = new BoundedPublisher<>(100,
+                BoundedPublisher.OverflowPolicy.BLOCK, Function.identity());
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 13; i++) {
+            publisher.offer(BoundedPublisher.NO_KEY, i);
+        }
+        assertEquals(1, batches.size());
+        publisher.close();
+        assertEquals(2, batches.size());
+        assertEquals(range(10, 13), batches.get(1));
+        assertThrows(IllegalArgumentException.class, () -> new BatchingSubscriber<Integer>("test-batch", 0, 5L,
+                batches::add));
+    }
+
+    private static List<Integer> range(final int from, final int to) {
+        final List<Integer> range = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            range.add(i);
+        }
+        return range;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPublisherTest {
+
+    /**
+     * Test if {@link BoundedPublisher} keeps the newest items and counts the dropped items when nothing is requested
+     */
+    @Test
+    void testDropOldest() {
+        final BoundedPublisher<Integer, String> publisher = new BoundedPublisher<>(4,
+                BoundedPublisher.OverflowPolicy.DROP_OLDEST, String::valueOf);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 10; i++) {
+            publisher.offer(BoundedPublisher.NO_KEY, i);
+        }
+        assertEquals(4, publisher.depth());
+        assertEquals(6L, publisher.dropped());
+        subscriber.subscription.request(3L);
+        assertEquals(Arrays.asList("6", "7", "8"), subscriber.items);
+        publisher.close();
+        assertFalse(subscriber.completed);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(Arrays.asList("6", "7", "8", "9"), subscriber.items);
+        assertTrue(subscriber.completed);
+        assertFalse(publisher.offer(BoundedPublisher.NO_KEY, 10));
+    }
+
+    /**
+     * Test if {@link BoundedPublisher} replaces buffered items with the same key, keeping their place in the buffer
+     */
+    @Test
+    void testConflate() {
+        final BoundedPublisher<Integer, String> publisher = new BoundedPublisher<>(4,
+                BoundedPublisher.OverflowPolicy.CONFLATE, String::valueOf);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 30; i++) {
+            // keys 0, 1 and 2
+            publisher.offer(i % 3, i);
+        }
+        publisher.offer(BoundedPublisher.NO_KEY, 100);
+        assertEquals(4, publisher.depth());
+        assertEquals(27L, publisher.conflated());
+        assertEquals(0L, publisher.dropped());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(Arrays.asList("27", "28", "29", "100"), subscriber.items);
+    }
+
+    /**
+     * Test if {@link BoundedPublisher} blocks the producer until the subscriber requests more items
+     */
+    @Test
+    void testBlock() throws Exception {
+        final BoundedPublisher<Integer, String> publisher = new BoundedPublisher<>(2,
+                BoundedPublisher.OverflowPolicy.BLOCK, String::valueOf);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                publisher.offer(BoundedPublisher.NO_KEY, i);
+            }
+        });
+        producer.start();
+        producer.join(TimeUnit.MILLISECONDS.toMillis(200));
+        assertTrue(producer.isAlive());
+        assertEquals(2, publisher.depth());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        producer.join();
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4"), subscriber.items);
+        assertEquals(0L, publisher.dropped());
+    }
+
+    /**
+     * Test if BLOCK falls back to DROP_OLDEST when the items are offered on event loops, which must never block
+     */
+    @Test
+    void testOverflowPolicy() {
+        assertEquals(BoundedPublisher.OverflowPolicy.BLOCK, BoundedPublisher.overflowPolicy("block", false));
+        assertEquals(BoundedPublisher.OverflowPolicy.DROP_OLDEST, BoundedPublisher.overflowPolicy("BLOCK", true));
+        assertEquals(BoundedPublisher.OverflowPolicy.CONFLATE, BoundedPublisher.overflowPolicy("CONFLATE", true));
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<String> {
+        private final List<String> items = new CopyOnWriteArrayList<>();
+        private Subscription subscription;
+        private volatile boolean completed = false;
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(final String item) {
+            this.items.add(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+}
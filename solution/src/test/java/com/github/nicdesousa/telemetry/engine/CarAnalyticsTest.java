@@ -0,0 +1,81 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarAnalyticsTest {
+
+    /**
+     * Test if the {@link CarAnalytics} smoothed and windowed speeds follow a Car that changes speed, and only keep the
+     * <br/>
+     * last windowSamples samples in the window
+     */
+    @Test
+    void testSpeeds() {
+        final CarAnalytics analytics = new CarAnalytics(1024, 4, 1000L, new double[0]);
+        // 100 metres every 2 seconds, then 200 metres every second
+        for (int sample = 0; sample < 10; sample++) {
+            analytics.addSample(900, 0.1D, 2000L, 100D);
+        }
+        assertEquals(100D, analytics.smoothedSpeed(900), 1e-9D);
+        assertEquals(0.4D, analytics.windowDistance(900), 1e-9D);
+        assertEquals(8000L, analytics.windowTime(900));
+        analytics.addSample(900, 0.2D, 1000L, 200D);
+        // a sample a time constant later moves the moving average 63% of the way
+        assertEquals(100D + 100D * (1D - Math.exp(-1D)), analytics.smoothedSpeed(900), 1e-9D);
+        assertEquals(0.5D, analytics.windowDistance(900), 1e-9D);
+        assertEquals(7000L, analytics.windowTime(900));
+        for (int sample = 0; sample < 3; sample++) {
+            analytics.addSample(900, 0.2D, 1000L, 200D);
+        }
+        assertEquals(0.8D, analytics.windowDistance(900), 1e-9D);
+        assertEquals(4000L, analytics.windowTime(900));
+        // the other Cars of the chunk are not affected
+        assertEquals(0D, analytics.windowDistance(901), 0D);
+        assertTrue(analytics.estimatedBytes() > 64L * 4L * 16L);
+    }
+
+    /**
+     * Test if the {@link CarAnalytics} top speed is the top smoothed speed of the current lap
+     */
+    @Test
+    void testTopSpeed() {
+        final CarAnalytics analytics = new CarAnalytics(16, 4, 1000L, new double[0]);
+        analytics.startLap(1, 0L);
+        assertTrue(analytics.addSample(1, 0.01D, 200L, 100D));
+        // a single jittery sample only raises the top speed by a fraction of its speed
+        assertTrue(analytics.addSample(1, 0.02D, 200L, 200D));
+        assertEquals(100D + 100D * (1D - Math.exp(-0.2D)), analytics.topSpeed(1), 1e-9D);
+        assertFalse(analytics.addSample(1, 0.01D, 200L, 100D));
+        analytics.startLap(1, 600L);
+        assertEquals(0D, analytics.topSpeed(1), 0D);
+        assertTrue(analytics.addSample(1, 0.01D, 200L, 100D));
+    }
+
+    /**
+     * Test if the {@link CarAnalytics} sectors are only known from the start of a lap, and end at the sector splits
+     */
+    @Test
+    void testSectors() {
+        final CarAnalytics analytics = new CarAnalytics(16, 4, 1000L, CarAnalytics.sectorSplits(" 0.25, 0.5 "));
+        assertEquals(3, analytics.sectors());
+        assertEquals(-1, analytics.sector(3));
+        assertEquals(Double.POSITIVE_INFINITY, analytics.nextSplit(3), 0D);
+        analytics.addSample(3, 0.01D, 200L, 100D);
+        assertEquals(-1, analytics.sector(3));
+        analytics.startLap(3, 1000L);
+        assertEquals(0, analytics.sector(3));
+        assertEquals(0.25D, analytics.nextSplit(3), 0D);
+        assertEquals(500L, analytics.completeSector(3, 1500L));
+        assertEquals(0.5D, analytics.nextSplit(3), 0D);
+        assertEquals(700L, analytics.completeSector(3, 2200L));
+        assertEquals(2, analytics.sector(3));
+        assertEquals(Double.POSITIVE_INFINITY, analytics.nextSplit(3), 0D);
+
+        assertEquals(0, CarAnalytics.sectorSplits("none").length);
+        assertThrows(IllegalArgumentException.class, () -> CarAnalytics.sectorSplits("0.5,0.25"));
+        assertThrows(IllegalArgumentException.class, () -> CarAnalytics.sectorSplits("0.5,1"));
+        assertThrows(IllegalArgumentException.class, () -> new CarAnalytics(16, 0, 1000L, new double[0]));
+    }
+}
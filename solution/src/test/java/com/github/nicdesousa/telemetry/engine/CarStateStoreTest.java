@@ -0,0 +1,92 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import com.github.nicdesousa.telemetry.domain.CarLap;
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+import com.github.nicdesousa.telemetry.util.Haversine;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarStateStoreTest {
+
+    /**
+     * Test if {@link CarStateStore} keeps the state of Cars across chunks, and calculates the same distances as the
+     * <br/>
+     * {@link Haversine} formula on GeoPoints.
+     */
+    @Test
+    void testCarState() {
+        final CarStateStore carStates = new CarStateStore(1000, 8);
+        assertFalse(carStates.accepts(-1));
+        assertFalse(carStates.accepts(1000));
+        assertThrows(IndexOutOfBoundsException.class, () -> carStates.add(1000, 52D, -1D, 0L));
+        for (final int carIndex : new int[]{0, 63, 64, 999}) {
+            assertFalse(carStates.contains(carIndex));
+            carStates.add(carIndex, 52.069D, -1.022D, 1000L);
+            assertTrue(carStates.contains(carIndex));
+        }
+        assertFalse(carStates.contains(1));
+        assertThrows(IllegalStateException.class, () -> carStates.add(64, 52D, -1D, 0L));
+        assertEquals(4, carStates.size());
+
+        final GeoPoint start = new GeoPoint().set(52.069D, -1.022D);
+        final GeoPoint end = new GeoPoint().set(52.070D, -1.020D);
+        assertEquals(Haversine.distance(start, end, 0D), carStates.moveTo(64, 52.070D, -1.020D, 0D));
+        assertEquals(Haversine.distance(end, start, 1D), carStates.moveTo(64, 52.069D, -1.022D, 1D));
+        carStates.addDistance(64, 0.25D);
+        carStates.addDistance(64, 0.5D);
+        carStates.setLastUpdateTimestamp(64, 1200L);
+        assertEquals(0.75D, carStates.totalDistance(64));
+        assertEquals(1200L, carStates.lastUpdateTimestamp(64));
+        assertEquals(1000L, carStates.lapStartTime(64));
+        assertEquals(-1, carStates.trackSegment(64));
+        assertEquals(-1, carStates.trackLine(64));
+        // the other Cars are not affected
+        assertEquals(0D, carStates.totalDistance(63));
+        assertEquals(1000L, carStates.lastUpdateTimestamp(999));
+
+        final List<Integer> cars = new ArrayList<>();
+        carStates.forEachCar(cars::add);
+        assertEquals(4, cars.size());
+        assertEquals(999, (int) cars.get(3));
+        assertTrue(carStates.estimatedBytes() > 0L);
+    }
+
+    /**
+     * Test if {@link CarStateStore} keeps the most recent laps of a Car in its lap ring, and still counts the laps
+     * <br/>
+     * that were dropped, also when the Car is copied to and from a Car.
+     */
+    @Test
+    void testLapRing() {
+        final CarStateStore carStates = new CarStateStore(10, 6);
+        carStates.add(3, 52.069D, -1.022D, 0L);
+        for (int lap = 1; lap <= 20; lap++) {
+            assertEquals(lap, carStates.addLap(3, (lap - 1) * 1000L, lap * 1000L, 5D, lap));
+            final Car car = carStates.toCar(3);
+            assertEquals(lap, car.getLapCount());
+            assertEquals(Math.min(lap, 6), car.getLaps().size());
+            // the oldest lap that is kept, and the latest lap
+            assertEquals(Math.max(1, lap - 5), (int) car.getLaps().get(0).getAverageSpeed());
+            assertEquals(lap * 1000L, car.getLaps().get(car.getLaps().size() - 1).getEndTime());
+        }
+        carStates.setTrackProgress(3, 12.5D);
+        carStates.setTrackDeficit(3, 0.02D);
+        carStates.setReorderBuffer(7, new ReorderBuffer(250L, 8));
+        assertNotNull(carStates.reorderBuffer(7));
+        assertNull(carStates.toCar(7));
+
+        final Car car = carStates.toCar(3);
+        final CarStateStore restored = new CarStateStore(10, 6);
+        restored.put(car);
+        assertEquals(car, restored.toCar(3));
+        assertEquals(21, restored.addLap(3, 20_000L, 21_000L, 5D, 21D));
+        final List<CarLap> laps = restored.toCar(3).getLaps();
+        assertEquals(16D, laps.get(0).getAverageSpeed());
+        assertEquals(21D, laps.get(5).getAverageSpeed());
+    }
+}
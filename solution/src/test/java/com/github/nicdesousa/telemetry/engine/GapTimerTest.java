@@ -0,0 +1,60 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GapTimerTest {
+
+    /**
+     * Test if the {@link GapTimer} gap between two Cars is the time between them reaching the same distance,
+     * <br/>
+     * interpolated between the timing lines that the Car ahead crossed
+     */
+    @Test
+    void testGaps() {
+        final GapTimer gapTimer = new GapTimer(0.1D, 8);
+        assertEquals(-1L, gapTimer.gap(2, 1));
+        // Car 1 travels 50 metres a second from 0 ms, Car 2 travels as fast from 2000 ms
+        for (long time = 0L; time <= 5000L; time += 1000L) {
+            gapTimer.advance(1, time * 0.00005D, time);
+            if (time >= 2000L) {
+                gapTimer.advance(2, (time - 2000L) * 0.00005D, time);
+            }
+        }
+        assertEquals(2000L, gapTimer.gap(2, 1));
+        // Car 1 is not behind Car 2
+        assertEquals(-1L, gapTimer.gap(1, 2));
+        // Car 2 doubles its speed, and halves the gap to Car 1 over the next 2 seconds
+        gapTimer.advance(2, 0.25D, 6000L);
+        gapTimer.advance(1, 0.3D, 6000L);
+        gapTimer.advance(2, 0.35D, 7000L);
+        gapTimer.advance(1, 0.35D, 7000L);
+        assertEquals(0L, gapTimer.gap(2, 1));
+        // a Car that does not move does not cross a timing line
+        gapTimer.advance(1, 0.35D, 7500L);
+        assertEquals(0L, gapTimer.gap(2, 1));
+        assertTrue(gapTimer.estimatedBytes() > 64L * 8L * 16L);
+    }
+
+    /**
+     * Test if the {@link GapTimer} gap is only known while the Car ahead is within the timing lines of its ring
+     */
+    @Test
+    void testRing() {
+        final GapTimer gapTimer = new GapTimer(0.1D, 8);
+        gapTimer.advance(100, 0D, 0L);
+        gapTimer.advance(7, 0D, 0L);
+        // a sample that crosses more timing lines than the ring holds, 100 metres a second
+        gapTimer.advance(100, 1D, 10_000L);
+        gapTimer.advance(7, 0.05D, 1000L);
+        assertEquals(-1L, gapTimer.gap(7, 100));
+        // Car 100 crossed 0.7 km at 7000 ms, and 0.75 km at 7500 ms
+        gapTimer.advance(7, 0.7D, 14_000L);
+        assertEquals(7000L, gapTimer.gap(7, 100));
+        gapTimer.advance(7, 0.75D, 15_000L);
+        assertEquals(7500L, gapTimer.gap(7, 100));
+        assertThrows(IllegalArgumentException.class, () -> new GapTimer(0D, 8));
+        assertThrows(IllegalArgumentException.class, () -> new GapTimer(0.1D, 1));
+    }
+}
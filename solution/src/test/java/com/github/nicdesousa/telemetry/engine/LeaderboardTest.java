@@ -0,0 +1,89 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+
+    /**
+     * Test if {@link Leaderboard#update} moves a Car up and only shifts the Car's that it passed
+     */
+    @Test
+    void testMoveUp() {
+        final Leaderboard leaderboard = leaderboard(40D, 30D, 20D, 10D);
+        final Car car = leaderboard.carAt(4);
+        leaderboard.update(car, 35D);
+        assertPositions(leaderboard, 0, 3, 1, 2);
+        assertEquals(2, car.getPosition());
+    }
+
+    /**
+     * Test if {@link Leaderboard#update} moves a Car down when its total distance decreases
+     */
+    @Test
+    void testMoveDown() {
+        final Leaderboard leaderboard = leaderboard(40D, 30D, 20D, 10D);
+        leaderboard.update(leaderboard.carAt(1), 15D);
+        assertPositions(leaderboard, 1, 2, 0, 3);
+    }
+
+    /**
+     * Test if {@link Leaderboard#update} keeps the previous relative order of Car's with an equal total distance
+     */
+    @Test
+    void testEqualDistanceIsStable() {
+        final Leaderboard leaderboard = leaderboard(40D, 30D, 20D, 10D);
+        leaderboard.update(leaderboard.carAt(4), 30D);
+        assertPositions(leaderboard, 0, 1, 3, 2);
+        leaderboard.update(leaderboard.carAt(1), 30D);
+        assertPositions(leaderboard, 0, 1, 3, 2);
+    }
+
+    /**
+     * Test if {@link Leaderboard#update} produces the same order as a stable sort for random updates
+     */
+    @Test
+    void testMatchesStableSort() {
+        final Random random = new Random(42L);
+        final Leaderboard leaderboard = new Leaderboard();
+        final List<Car> sorted = new ArrayList<>();
+        for (int carIndex = 0; carIndex < 100; carIndex++) {
+            final Car car = Car.builder().carIndex(carIndex).build();
+            leaderboard.add(car);
+            sorted.add(car);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            final Car car = sorted.get(random.nextInt(sorted.size()));
+            // mostly small increments, with the odd rounding down to create equal distances
+            final double distance = Math.floor((car.getTotalDistance() + random.nextDouble() * 3D - 0.5D) * 2D) / 2D;
+            leaderboard.update(car, distance);
+            sorted.sort((o1, o2) -> Double.compare(o2.getTotalDistance(), o1.getTotalDistance()));
+            for (int position = 1; position <= sorted.size(); position++) {
+                assertSame(sorted.get(position - 1), leaderboard.carAt(position));
+                assertEquals(position, leaderboard.carAt(position).getPosition());
+            }
+        }
+    }
+
+    private static Leaderboard leaderboard(final double... distances) {
+        final Leaderboard leaderboard = new Leaderboard();
+        for (int carIndex = 0; carIndex < distances.length; carIndex++) {
+            leaderboard.add(Car.builder().carIndex(carIndex).totalDistance(distances[carIndex]).build());
+        }
+        return leaderboard;
+    }
+
+    private static void assertPositions(final Leaderboard leaderboard, final int... carIndexes) {
+        assertEquals(carIndexes.length, leaderboard.size());
+        for (int i = 0; i < carIndexes.length; i++) {
+            assertEquals(carIndexes[i], leaderboard.carAt(i + 1).getCarIndex());
+            assertEquals(i + 1, leaderboard.carAt(i + 1).getPosition());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReorderBufferTest {
+
+    /**
+     * Test if {@link ReorderBuffer} releases out of order CarCoordinates in timestamp order once the window has passed
+     */
+    @Test
+    void testReleasesInTimestampOrder() {
+        final ReorderBuffer reorderBuffer = new ReorderBuffer(250L, 8);
+        final List<Long> released = new ArrayList<>();
+        assertEquals(ReorderBuffer.Offer.ACCEPTED, offer(reorderBuffer, 1000L, released));
+        assertEquals(ReorderBuffer.Offer.ACCEPTED, offer(reorderBuffer, 1200L, released));
+        assertEquals(ReorderBuffer.Offer.REORDERED, offer(reorderBuffer, 1100L, released));
+        // nothing is 250 ms older than the newest timestamp yet
+        assertTrue(released.isEmpty());
+        assertEquals(ReorderBuffer.Offer.ACCEPTED, offer(reorderBuffer, 1400L, released));
+        assertEquals(Arrays.asList(1000L, 1100L), released);
+        assertEquals(ReorderBuffer.Offer.LATE, offer(reorderBuffer, 1050L, released));
+        assertEquals(ReorderBuffer.Offer.DUPLICATE, offer(reorderBuffer, 1100L, released));
+        assertEquals(ReorderBuffer.Offer.DUPLICATE, offer(reorderBuffer, 1200L, released));
+        assertEquals(2, reorderBuffer.size());
+        assertEquals(1200L, reorderBuffer.pollAny().getTimestamp());
+        assertEquals(1400L, reorderBuffer.pollAny().getTimestamp());
+        assertNull(reorderBuffer.pollAny());
+    }
+
+    /**
+     * Test if {@link ReorderBuffer} releases the oldest CarCoordinates when more than maxSamples are held, and
+     * <br/>
+     * releases every CarCoordinate immediately with a window of 0 ms
+     */
+    @Test
+    void testMaxSamplesAndZeroWindow() {
+        final ReorderBuffer bounded = new ReorderBuffer(10_000L, 2);
+        final List<Long> released = new ArrayList<>();
+        offer(bounded, 3L, released);
+        offer(bounded, 1L, released);
+        offer(bounded, 2L, released);
+        offer(bounded, 4L, released);
+        assertEquals(Arrays.asList(1L, 2L), released);
+
+        final ReorderBuffer passThrough = new ReorderBuffer(0L, 0);
+        released.clear();
+        offer(passThrough, 5L, released);
+        assertEquals(ReorderBuffer.Offer.LATE, offer(passThrough, 4L, released));
+        offer(passThrough, 6L, released);
+        assertEquals(Arrays.asList(5L, 6L), released);
+        assertEquals(0, passThrough.size());
+    }
+
+    private static ReorderBuffer.Offer offer(final ReorderBuffer reorderBuffer, final long timestamp,
+                                             final List<Long> released) {
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setTimestamp(timestamp);
+        final ReorderBuffer.Offer offer = reorderBuffer.offer(carCoordinate);
+        CarCoordinate next;
+        while ((next = reorderBuffer.poll()) != null) {
+            released.add(next.getTimestamp());
+        }
+        return offer;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkerExecutorTest {
+
+    /**
+     * Test if the items for a key are handled in order, by one thread at a time, with every {@link WorkerExecutor}
+     * <br/>
+     * execution model, and if the workers report their busy time.
+     */
+    @Test
+    void testItemsPerKeyInOrder() {
+        final Vertx vertx = Vertx.vertx();
+        try {
+            assertItemsPerKeyInOrder(WorkerExecutor.fixed("test-fixed", 2, 16));
+            assertItemsPerKeyInOrder(WorkerExecutor.virtual("test-virtual", 2, 16));
+            assertItemsPerKeyInOrder(WorkerExecutor.eventLoop(vertx, 16));
+        } finally {
+            vertx.close();
+        }
+    }
+
+    /**
+     * Test if a worker that hands off to a full worker of the same {@link WorkerExecutor} does not back off, since
+     * <br/>
+     * it holds the only thread that can run the full worker.
+     */
+    @Test
+    void testHandOffOnExecutorThread() {
+        final WorkerExecutor executor = WorkerExecutor.fixed("test-single", 1, 4);
+        final AtomicInteger aggregated = new AtomicInteger();
+        final PartitionedEngine<Integer> aggregator = new PartitionedEngine<>("aggregator", 1, 2,
+                item -> aggregated.incrementAndGet(), executor);
+        final PartitionedEngine<Integer> shards = new PartitionedEngine<>("shards", 2, 1_000,
+                item -> aggregator.submit(0, item), executor);
+        for (int i = 0; i < 1_000; i++) {
+            shards.submit(i, i);
+        }
+        shards.close();
+        aggregator.close();
+        assertEquals(1_000, aggregated.get());
+        executor.close();
+        assertFalse(executor.isRunning());
+    }
+
+    /**
+     * Test if a producer on an event loop, which can neither back off nor block, has its items rejected (and counted)
+     * <br/>
+     * while an EVENT_LOOP worker is at capacity, instead of growing the worker's queue without bound.
+     */
+    @Test
+    void testEventLoopProducerIsRejectedAtCapacity() throws Exception {
+        final Vertx vertx = Vertx.vertx();
+        try {
+            final WorkerExecutor executor = WorkerExecutor.eventLoop(vertx, 4);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicInteger handled = new AtomicInteger();
+            final PartitionedEngine<Integer> engine = new PartitionedEngine<>("engine", 1, 10, item -> {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.incrementAndGet();
+            }, executor);
+            final CountDownLatch produced = new CountDownLatch(1);
+            vertx.getOrCreateContext().runOnContext(ignored -> {
+                for (int i = 0; i < 100; i++) {
+                    engine.submit(i, i);
+                }
+                produced.countDown();
+            });
+            assertTrue(produced.await(5L, TimeUnit.SECONDS));
+            assertEquals(90L, engine.rejected());
+            release.countDown();
+            engine.close();
+            assertEquals(10, handled.get());
+            executor.close();
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private static void assertItemsPerKeyInOrder(final WorkerExecutor executor) {
+        final Map<Integer, Integer> last = new ConcurrentHashMap<>();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final AtomicInteger handled = new AtomicInteger();
+        final PartitionedEngine<int[]> engine = new PartitionedEngine<>("engine", 4, 100, item -> {
+            // item is {key, sequence}
+            final Integer previous = last.put(item[0], item[1]);
+            if (previous != null && previous != item[1] - 1) {
+                outOfOrder.incrementAndGet();
+            }
+            handled.incrementAndGet();
+        }, executor);
+        for (int sequence = 0; sequence < 2_000; sequence++) {
+            for (int key = 0; key < 10; key++) {
+                engine.submit(key, new int[]{key, sequence});
+            }
+        }
+        engine.awaitIdle();
+        assertEquals(10 * 2_000, handled.get(), executor.mode().name());
+        assertEquals(0, outOfOrder.get(), executor.mode().name());
+        assertTrue(engine.busyNanos() > 0L, executor.mode().name());
+        engine.close();
+        executor.close();
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.nicdesousa.telemetry.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkerPoolTest {
+
+    /**
+     * Test if a {@link WorkerPool} runs a lightly loaded engine in between the items of a busy engine, rather than
+     * <br/>
+     * after the busy engine's backlog.
+     */
+    @Test
+    void testBusyEngineDoesNotStarveOthers() throws InterruptedException {
+        final WorkerPool pool = new WorkerPool("test-pool", 1, 8);
+        // only the single pool thread handles items
+        final List<String> handled = new ArrayList<>();
+        final PartitionedEngine<Integer> busy = new PartitionedEngine<>("busy", 2, 100_000,
+                item -> handled.add("busy"), pool);
+        final PartitionedEngine<Integer> light = new PartitionedEngine<>("light", 1, 100_000,
+                item -> handled.add("light"), pool);
+        // hold the pool thread until both backlogs are queued
+        final CountDownLatch queued = new CountDownLatch(1);
+        busy.submit(0, -1);
+        light.executeOnEachShard(() -> {
+            try {
+                queued.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 10_000; i++) {
+            busy.submit(i, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            light.submit(i, i);
+        }
+        queued.countDown();
+        busy.awaitIdle();
+        light.awaitIdle();
+        assertEquals(10_011, handled.size());
+        // every round runs the light engine's quantum (8) after the busy engine's quantum (2 shards of 4)
+        assertTrue(handled.lastIndexOf("light") < 40, String.valueOf(handled.lastIndexOf("light")));
+        busy.close();
+        light.close();
+        pool.close();
+    }
+
+    /**
+     * Test if the items for a key are handled in order, by one pool thread at a time, across engines that share a
+     * <br/>
+     * {@link WorkerPool}.
+     */
+    @Test
+    void testItemsPerKeyInOrder() {
+        final WorkerPool pool = new WorkerPool("test-pool", 4, 16);
+        final List<PartitionedEngine<int[]>> engines = new ArrayList<>();
+        final Map<Integer, Integer> last = new ConcurrentHashMap<>();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final AtomicInteger handled = new AtomicInteger();
+        for (int engine = 0; engine < 3; engine++) {
+            engines.add(new PartitionedEngine<>("engine-" + engine, 4, 1_000, item -> {
+                // item is {engine, key, sequence}
+                final Integer previous = last.put(item[0] * 1_000 + item[1], item[2]);
+                if (previous != null && previous != item[2] - 1) {
+                    outOfOrder.incrementAndGet();
+                }
+                handled.incrementAndGet();
+            }, pool));
+        }
+        for (int sequence = 0; sequence < 2_000; sequence++) {
+            for (int engine = 0; engine < engines.size(); engine++) {
+                for (int key = 0; key < 10; key++) {
+                    engines.get(engine).submit(key, new int[]{engine, key, sequence});
+                }
+            }
+        }
+        for (final PartitionedEngine<int[]> engine : engines) {
+            engine.close();
+        }
+        assertEquals(3 * 10 * 2_000, handled.get());
+        assertEquals(0, outOfOrder.get());
+        pool.close();
+    }
+
+    /**
+     * Test if the idle threads park until a worker is scheduled, rather than waking up periodically, and are always
+     * <br/>
+     * woken up by a worker that is scheduled while they become idle.
+     */
+    @Test
+    void testIdleThreadsParkUntilScheduled() throws InterruptedException {
+        final WorkerPool pool = new WorkerPool("idle-pool", 2, 16);
+        final PartitionedEngine<CountDownLatch> engine = new PartitionedEngine<>("idle-engine", 2, 1_000,
+                CountDownLatch::countDown, pool);
+        awaitParked("idle-pool-");
+        for (int i = 0; i < 10_000; i++) {
+            final CountDownLatch handled = new CountDownLatch(1);
+            engine.submit(i, handled);
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+        }
+        awaitParked("idle-pool-");
+        engine.close();
+        pool.close();
+    }
+
+    // wait until every thread of the pool is parked without a timeout
+    private static void awaitParked(final String prefix) throws InterruptedException {
+        final List<Thread> threads = new ArrayList<>();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(prefix)) {
+                threads.add(thread);
+            }
+        }
+        assertEquals(2, threads.size());
+        for (final Thread thread : threads) {
+            for (int i = 0; i < 500 && thread.getState() != Thread.State.WAITING; i++) {
+                Thread.sleep(10L);
+            }
+            assertEquals(Thread.State.WAITING, thread.getState());
+        }
+    }
+}
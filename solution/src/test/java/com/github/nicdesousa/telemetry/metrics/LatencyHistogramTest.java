@@ -0,0 +1,51 @@
+package com.github.nicdesousa.telemetry.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    /**
+     * Test if every value maps to a bucket whose upper bound is within 1/32 of the value
+     */
+    @Test
+    void testBucketPrecision() {
+        final Random random = new Random(42L);
+        for (int i = 0; i < 1_000_000; i++) {
+            final long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            final int index = LatencyHistogram.indexOf(value);
+            assertTrue(index == 0 || LatencyHistogram.upperBoundOf(index - 1) < value);
+            assertTrue(LatencyHistogram.upperBoundOf(index) >= value);
+            assertTrue(LatencyHistogram.upperBoundOf(index) - value <= value / 32);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    /**
+     * Test if the reported quantiles are within 1/32 of the exact quantiles of the recorded values
+     */
+    @Test
+    void testQuantiles() {
+        final Random random = new Random(42L);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-normal latencies around 2 microseconds
+            values[i] = (long) Math.exp(7.6D + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (final double quantile : new double[]{0.5D, 0.9D, 0.99D, 0.999D, 1D}) {
+            final long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            final long reported = histogram.valueAt(quantile);
+            assertTrue(reported >= exact && reported - exact <= exact / 32, quantile + ": " + reported);
+        }
+        assertEquals(values.length, histogram.count());
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals(Arrays.stream(values).sum(), histogram.sum());
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.nicdesousa.telemetry.query;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarLap;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.domain.RaceStandings;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import com.github.nicdesousa.telemetry.service.CarStatusService;
+import com.github.nicdesousa.telemetry.service.EventsService;
+import com.github.nicdesousa.telemetry.service.RaceSessionService;
+import com.github.nicdesousa.telemetry.service.TelemetryService;
+import io.smallrye.config.PropertiesConfigSource;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RaceQueryResourceTest {
+
+    private static final int CARS = 3;
+    // enough samples for a few laps of the circuit
+    private static final int SAMPLES_PER_CAR = 2_000;
+
+    /**
+     * Read the standings snapshots while a race is running, and verify that every snapshot is consistent and newer
+     * <br/>
+     * than the previous one, and that the query API serves the final standings, fastest lap and lap histories.
+     */
+    @Test
+    void testQueries() throws InterruptedException {
+        final RaceSessionService raceSessionService = newRaceSessionService();
+        final TelemetryService telemetryService = raceSessionService.telemetryService;
+        final AtomicBoolean racing = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicLong reads = new AtomicLong();
+        final Thread reader = new Thread(() -> {
+            long version = 0L;
+            try {
+                while (racing.get()) {
+                    final RaceStandings standings = telemetryService.getStandings();
+                    assertTrue(standings.getVersion() >= version);
+                    version = standings.getVersion();
+                    assertStandings(standings);
+                    reads.incrementAndGet();
+                }
+            } catch (final Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        for (int sample = 0; sample < SAMPLES_PER_CAR; sample++) {
+            for (int carIndex = 0; carIndex < CARS; carIndex++) {
+                raceSessionService.processCarCoordinate(coordinate(null, carIndex, sample));
+            }
+        }
+        telemetryService.awaitIdle();
+        racing.set(false);
+        reader.join();
+        assertNull(failure.get());
+        assertTrue(reads.get() > 0L);
+
+        final RaceQueryResource resource = new RaceQueryResource();
+        resource.raceSessionService = raceSessionService;
+        final Response response = resource.standings(null, null);
+        assertEquals(200, response.getStatus());
+        final JsonArray standings = json(response).getJsonArray("standings");
+        assertEquals(CARS, standings.size());
+        for (int position = 1; position <= CARS; position++) {
+            final JsonObject standing = standings.getJsonObject(position - 1);
+            // the faster the Car, the higher its carIndex
+            final Car car = telemetryService.getCar(CARS - position);
+            assertEquals(position, standing.getInteger("position"));
+            assertEquals(car.getCarIndex(), standing.getInteger("carIndex"));
+            assertEquals(car.getTotalDistance(), standing.getDouble("totalDistance"), 1e-9D);
+            assertEquals(car.getLapCount(), standing.getInteger("lapCount"));
+        }
+        // polling with the ETag of the latest version is not modified
+        final String tag = response.getEntityTag().toString();
+        assertEquals(304, resource.standings(RaceSessionService.DEFAULT_SESSION, tag).getStatus());
+
+        final JsonObject fastestLap = json(resource.fastestLap(null));
+        assertEquals(CARS - 1, fastestLap.getInteger("carIndex"));
+        final List<CarLap> laps = telemetryService.getCar(CARS - 1).getLaps();
+        assertEquals(laps.stream().mapToLong(lap -> lap.getEndTime() - lap.getStartTime()).min().getAsLong(),
+                fastestLap.getLong("lapTimeInMs"));
+
+        for (int carIndex = 0; carIndex < CARS; carIndex++) {
+            final Car car = telemetryService.getCar(carIndex);
+            final JsonObject lapHistory = json(resource.laps(null, carIndex));
+            assertEquals(car.getLapCount(), lapHistory.getInteger("lapCount"));
+            final JsonArray carLaps = lapHistory.getJsonArray("laps");
+            assertEquals(car.getLaps().size(), carLaps.size());
+            for (int lap = 0; lap < carLaps.size(); lap++) {
+                assertEquals(car.getLaps().get(lap), carLaps.getJsonObject(lap).mapTo(CarLap.class));
+            }
+        }
+        assertThrows(NotFoundException.class, () -> resource.laps(null, CARS));
+        assertThrows(NotFoundException.class, () -> resource.standings("fp1", null));
+
+        // a race session has its own standings, and no laps yet
+        // enough samples to be released from the reorder window
+        for (int sample = 0; sample < 10; sample++) {
+            raceSessionService.processCarCoordinate(coordinate("fp1", 0, sample));
+        }
+        raceSessionService.session("fp1").awaitIdle();
+        final JsonObject session = json(resource.standings("fp1", null));
+        assertEquals("fp1", session.getString("session"));
+        assertEquals(1, session.getJsonArray("standings").size());
+        assertThrows(NotFoundException.class, () -> resource.fastestLap("fp1"));
+        telemetryService.dispose();
+        raceSessionService.dispose();
+    }
+
+    private static void assertStandings(final RaceStandings standings) {
+        double totalDistance = Double.POSITIVE_INFINITY;
+        for (int position = 1; position <= standings.getStandings().size(); position++) {
+            final RaceStandings.Standing standing = standings.getStandings().get(position - 1);
+            assertEquals(position, standing.getPosition());
+            assertTrue(standing.getTotalDistance() <= totalDistance);
+            totalDistance = standing.getTotalDistance();
+        }
+        assertThrows(UnsupportedOperationException.class, () -> standings.getStandings().clear());
+    }
+
+    private static JsonObject json(final Response response) {
+        assertEquals(200, response.getStatus());
+        return new JsonObject(Buffer.buffer((byte[]) response.getEntity()));
+    }
+
+    private static RaceSessionService newRaceSessionService() {
+        final RaceSessionService raceSessionService = new RaceSessionService();
+        raceSessionService.config = new SmallRyeConfigBuilder()
+                .withSources(new PropertiesConfigSource(new HashMap<>(), "test", 100)).build();
+        raceSessionService.carStatusService = new CarStatusService() {
+            @Override
+            public void publish(final CarStatus carStatus) {
+                // CarStatus messages are not verified by this test
+            }
+        };
+        raceSessionService.eventsService = new EventsService() {
+            @Override
+            public void publish(final Event event) {
+                // Events are not verified by this test
+            }
+        };
+        raceSessionService.metrics = new TelemetryMetrics();
+        raceSessionService.workers = 2;
+        raceSessionService.quantum = 16;
+        raceSessionService.maxSessions = 2;
+
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.carStatusService = raceSessionService.carStatusService;
+        telemetryService.eventsService = raceSessionService.eventsService;
+        telemetryService.metrics = raceSessionService.metrics;
+        telemetryService.circuitLengthInKM = 5.119771376289225D;
+        telemetryService.flatEarthThresholdInKM = 0D;
+        telemetryService.shards = 2;
+        telemetryService.queueCapacity = 1024;
+        telemetryService.reorderWindowInMs = 250L;
+        telemetryService.reorderMaxSamples = 8;
+        telemetryService.maxCars = 1024;
+        telemetryService.lapHistory = 512;
+        telemetryService.lapDetection = "DISTANCE";
+        telemetryService.trackPath = "silverstone_closed.geojson";
+        telemetryService.queryPublishIntervalInMs = 1L;
+        telemetryService.snapshotPath = null;
+        telemetryService.snapshotIntervalInMs = 0L;
+        telemetryService.init();
+        raceSessionService.telemetryService = telemetryService;
+        raceSessionService.init();
+        return raceSessionService;
+    }
+
+    // each Car drives east along a line of latitude at a constant speed that increases with the carIndex
+    private static CarCoordinate coordinate(final String session, final int carIndex, final int sample) {
+        final Location location = new Location();
+        location.setLatitude(52.0D + carIndex * 0.001D);
+        location.setLongitude(-1.0D + sample * (carIndex + 1) * 0.0001D);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(1541693114862L + sample * 200L);
+        carCoordinate.setSession(session);
+        return carCoordinate;
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.nicdesousa.telemetry.replay;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinaryCodec;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.Location;
+import io.vertx.core.json.Json;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarCoordinateFileReaderTest {
+
+    /**
+     * Read the same CarCoordinates from JSON lines and binary files, mapped in regions that do not line up with the
+     * <br/>
+     * lines or records.
+     */
+    @Test
+    void testJsonLinesAndBinaryFilesAcrossRegions(@TempDir final Path dir) throws IOException {
+        final List<CarCoordinate> expected = new ArrayList<>();
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        for (int i = 0; i < 100; i++) {
+            final CarCoordinate carCoordinate = coordinate(i % 10, 52.0D + i * 1e-5D, -1.0D - i * 1e-5D,
+                    1541693114862L + i * 200L);
+            expected.add(carCoordinate);
+            json.write(Json.encodeToBuffer(carCoordinate).getBytes());
+            // mixed line endings, and no line ending on the last line
+            if (i < 99) {
+                json.write((i % 2 == 0 ? "\n" : "\r\n").getBytes(StandardCharsets.US_ASCII));
+            }
+            binary.write(CarCoordinateBinaryCodec.encode(carCoordinate));
+        }
+        final Path jsonPath = Files.write(dir.resolve("race.jsonl"), json.toByteArray());
+        final Path binaryPath = Files.write(dir.resolve("race.bin"), binary.toByteArray());
+
+        for (final long regionSize : new long[]{200L, 1000L, 1L << 30}) {
+            assertEquals(expected, read(new CarCoordinateFileReader(regionSize), jsonPath));
+            assertEquals(expected, read(new CarCoordinateFileReader(regionSize), binaryPath));
+        }
+    }
+
+    @Test
+    void testMalformedLinesAreSkipped(@TempDir final Path dir) throws IOException {
+        final Path path = Files.write(dir.resolve("race.jsonl"), Arrays.asList(
+                "{\"carIndex\":1,\"location\":{\"lat\":52.1,\"long\":-1.1},\"timestamp\":1541693114862}",
+                "",
+                "{\"carIndex\":2,\"location\":",
+                // not in the plain form, decoded by the Jackson fallback
+                "{\"timestamp\":\"1541693114863\",\"carIndex\":3,\"location\":{\"lat\":52.3,\"long\":-1.3}}"),
+                StandardCharsets.UTF_8);
+        final CarCoordinateFileReader reader = new CarCoordinateFileReader();
+        assertEquals(Arrays.asList(coordinate(1, 52.1D, -1.1D, 1541693114862L),
+                coordinate(3, 52.3D, -1.3D, 1541693114863L)), read(reader, path));
+        assertEquals(1L, reader.getSkippedLines());
+    }
+
+    /**
+     * Test if a JSON lines file that starts with a UTF-8 byte order mark, blank lines or whitespace is not read as
+     * <br/>
+     * binary records
+     */
+    @Test
+    void testJsonLinesWithLeadingByteOrderMarkAndWhitespace(@TempDir final Path dir) throws IOException {
+        final String line = "{\"carIndex\":1,\"location\":{\"lat\":52.1,\"long\":-1.1},\"timestamp\":1541693114862}";
+        final List<CarCoordinate> expected = Arrays.asList(coordinate(1, 52.1D, -1.1D, 1541693114862L),
+                coordinate(1, 52.1D, -1.1D, 1541693114862L));
+        for (final String prefix : new String[]{"\uFEFF", "\n", "\r\n\n", "  \t", "\uFEFF\n  "}) {
+            final Path path = Files.write(dir.resolve("race.jsonl"), (prefix + line + "\n" + line)
+                    .getBytes(StandardCharsets.UTF_8));
+            // the second line is in a second region of 96 bytes
+            for (final long regionSize : new long[]{96L, 1L << 30}) {
+                final CarCoordinateFileReader reader = new CarCoordinateFileReader(regionSize);
+                assertEquals(expected, read(reader, path));
+                assertEquals(0L, reader.getSkippedLines());
+            }
+        }
+    }
+
+    @Test
+    void testTruncatedBinaryFileIsRejected(@TempDir final Path dir) throws IOException {
+        final Path path = Files.write(dir.resolve("race.bin"),
+                Arrays.copyOf(CarCoordinateBinaryCodec.encode(coordinate(1, 52.1D, -1.1D, 1541693114862L)), 27));
+        assertThrows(IOException.class, () -> read(new CarCoordinateFileReader(), path));
+    }
+
+    private static List<CarCoordinate> read(final CarCoordinateFileReader reader, final Path path) throws IOException {
+        final List<CarCoordinate> carCoordinates = new ArrayList<>();
+        assertEquals(reader.read(path, carCoordinates::add), carCoordinates.size());
+        return carCoordinates;
+    }
+
+    private static CarCoordinate coordinate(final int carIndex, final double latitude, final double longitude,
+                                            final long timestamp) {
+        final Location location = new Location();
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(timestamp);
+        return carCoordinate;
+    }
+}
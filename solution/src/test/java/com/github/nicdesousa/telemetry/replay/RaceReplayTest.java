@@ -0,0 +1,104 @@
+package com.github.nicdesousa.telemetry.replay;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinaryCodec;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.Location;
+import io.vertx.core.json.Json;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RaceReplayTest {
+
+    private static final int CARS = 4;
+    // enough samples for a few laps of the circuit
+    private static final int SAMPLES_PER_CAR = 2_000;
+
+    /**
+     * Replay the same race from JSON lines and binary files, and verify that both produce the same CarStatus and
+     * <br/>
+     * Event stream, and that a shorter circuit produces more laps.
+     */
+    @Test
+    void testReplayJsonLinesAndBinaryRace(@TempDir final Path dir) throws IOException {
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        for (int sample = 0; sample < SAMPLES_PER_CAR; sample++) {
+            for (int carIndex = 0; carIndex < CARS; carIndex++) {
+                final CarCoordinate carCoordinate = coordinate(carIndex, sample);
+                json.write(Json.encodeToBuffer(carCoordinate).getBytes());
+                json.write('\n');
+                binary.write(CarCoordinateBinaryCodec.encode(carCoordinate));
+            }
+        }
+        final Path jsonPath = Files.write(dir.resolve("race.jsonl"), json.toByteArray());
+        final Path binaryPath = Files.write(dir.resolve("race.bin"), binary.toByteArray());
+
+        final ReplayReport jsonReport = new RaceReplay(config("5.119771376289225", "0"))
+                .replay(jsonPath, dir.resolve("json.out"));
+        final ReplayReport binaryReport = new RaceReplay(config("5.119771376289225", "0"))
+                .replay(binaryPath, dir.resolve("binary.out"));
+        assertEquals(CARS * SAMPLES_PER_CAR, jsonReport.getCarCoordinates());
+        assertEquals(CARS * SAMPLES_PER_CAR, binaryReport.getCarCoordinates());
+        assertEquals(CARS * (SAMPLES_PER_CAR - 1), count(dir.resolve("json.out"), "\"type\":\"SPEED\""));
+        assertEquals(count(dir.resolve("json.out"), "\"carIndex\""), jsonReport.getCarStatuses());
+        // every lap is split into 3 sectors by the default sector splits, and the last lap of each Car is partial
+        final long sectorTimes = count(dir.resolve("json.out"), "SECTOR_TIME");
+        assertTrue(sectorTimes >= 3L * laps(dir.resolve("json.out")));
+        assertTrue(sectorTimes <= 3L * laps(dir.resolve("json.out")) + 2L * CARS);
+        assertTrue(jsonReport.getSamplesPerSecond() > 0L);
+        // overtake events are told with a random comparison, so only the rest of the stream is compared
+        assertEquals(withoutOvertakes(dir.resolve("json.out")), withoutOvertakes(dir.resolve("binary.out")));
+
+        // sharded, and on a circuit half as long
+        final ReplayReport shortCircuitReport = new RaceReplay(config("2.5598856881446125", "4"))
+                .replay(binaryPath, dir.resolve("short.out"));
+        // the positions published depend on how the shards interleave, the speeds do not
+        assertEquals(count(dir.resolve("binary.out"), "\"type\":\"SPEED\""),
+                count(dir.resolve("short.out"), "\"type\":\"SPEED\""));
+        assertTrue(laps(dir.resolve("short.out")) >= 2 * laps(dir.resolve("binary.out")));
+    }
+
+    private static Properties config(final String circuitLengthInKM, final String shards) {
+        final Properties config = new Properties();
+        config.setProperty("telemetryService.circuitLengthInKM", circuitLengthInKM);
+        config.setProperty("telemetryService.shards", shards);
+        return config;
+    }
+
+    private static List<String> withoutOvertakes(final Path path) throws IOException {
+        return Files.readAllLines(path, StandardCharsets.UTF_8).stream().filter(line -> !line.contains("overtake"))
+                .collect(Collectors.toList());
+    }
+
+    private static long count(final Path path, final String text) throws IOException {
+        return Files.readAllLines(path, StandardCharsets.UTF_8).stream().filter(line -> line.contains(text)).count();
+    }
+
+    private static long laps(final Path path) throws IOException {
+        return Files.readAllLines(path, StandardCharsets.UTF_8).stream().filter(line -> line.contains("completed lap"))
+                .count();
+    }
+
+    // each Car drives east along a line of latitude at a constant speed that increases with the carIndex
+    private static CarCoordinate coordinate(final int carIndex, final int sample) {
+        final Location location = new Location();
+        location.setLatitude(52.0D + carIndex * 0.001D);
+        location.setLongitude(-1.0D + sample * (carIndex + 1) * 0.0001D);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(1541693114862L + sample * 200L);
+        return carCoordinate;
+    }
+}
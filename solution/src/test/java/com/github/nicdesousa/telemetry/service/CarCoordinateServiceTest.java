@@ -0,0 +1,115 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import io.smallrye.reactive.messaging.kafka.KafkaMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarCoordinateServiceTest {
+
+    /**
+     * Test if direct mode processes MQTT CarCoordinates without the Kafka hop, while still publishing them to Kafka,
+     * <br/>
+     * and is rejected while the Kafka CarCoordinates would be consumed and processed again
+     */
+    @Test
+    void testDirect() {
+        final TelemetryService telemetryService = newTelemetryService();
+        final CarCoordinateService carCoordinateService = newCarCoordinateService(telemetryService, true);
+        final List<KafkaMessage<Integer, CarCoordinate>> messages = new ArrayList<>();
+        for (int sample = 0; sample < 10; sample++) {
+            messages.add(carCoordinateService.consumeMqttCarCoordinate(rawMessage(3, sample)));
+        }
+        telemetryService.awaitIdle();
+        assertEquals(1, telemetryService.getCarCount());
+        final long processed = carCoordinateService.metrics.processedCarCoordinates.sum();
+        assertTrue(processed > 0L);
+        assertEquals(10L, carCoordinateService.metrics.ingestNanos.count());
+        // the Kafka tee
+        for (final KafkaMessage<Integer, CarCoordinate> message : messages) {
+            assertEquals(3, message.getKey());
+        }
+        // the direct profile has no kafka-carCoordinates-sub channel, so the tee is not consumed again
+        carCoordinateService.kafkaConnector = Optional.empty();
+        carCoordinateService.init();
+        carCoordinateService.kafkaConnector = Optional.of("smallrye-kafka");
+        assertThrows(IllegalStateException.class, carCoordinateService::init);
+        telemetryService.dispose();
+    }
+
+    /**
+     * Test if MQTT CarCoordinates are only processed once they are consumed from Kafka, without direct mode
+     */
+    @Test
+    void testKafka() {
+        final TelemetryService telemetryService = newTelemetryService();
+        final CarCoordinateService carCoordinateService = newCarCoordinateService(telemetryService, false);
+        final List<KafkaMessage<Integer, CarCoordinate>> messages = new ArrayList<>();
+        for (int sample = 0; sample < 10; sample++) {
+            messages.add(carCoordinateService.consumeMqttCarCoordinate(rawMessage(3, sample)));
+        }
+        telemetryService.awaitIdle();
+        assertEquals(0, telemetryService.getCarCount());
+        messages.forEach(carCoordinateService::consumeKafkaCarCoordinate);
+        telemetryService.awaitIdle();
+        assertEquals(1, telemetryService.getCarCount());
+        assertEquals(10L, carCoordinateService.metrics.kafkaCarCoordinates.sum());
+        telemetryService.dispose();
+    }
+
+    private static CarCoordinateService newCarCoordinateService(final TelemetryService telemetryService,
+                                                                final boolean direct) {
+        final CarCoordinateService carCoordinateService = new CarCoordinateService();
+        carCoordinateService.telemetryService = telemetryService;
+        carCoordinateService.metrics = telemetryService.metrics;
+        carCoordinateService.orderByPartition = false;
+        carCoordinateService.direct = direct;
+        return carCoordinateService;
+    }
+
+    private static TelemetryService newTelemetryService() {
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.carStatusService = new CarStatusService() {
+            @Override
+            public void publish(final CarStatus carStatus) {
+                // CarStatus messages are not verified by this test
+            }
+        };
+        telemetryService.eventsService = new EventsService() {
+            @Override
+            public void publish(final Event event) {
+                // Events are not verified by this test
+            }
+        };
+        telemetryService.metrics = new TelemetryMetrics();
+        telemetryService.circuitLengthInKM = 5.119771376289225D;
+        telemetryService.flatEarthThresholdInKM = 0D;
+        telemetryService.shards = 2;
+        telemetryService.queueCapacity = 1024;
+        telemetryService.reorderWindowInMs = 250L;
+        telemetryService.reorderMaxSamples = 8;
+        telemetryService.maxCars = 1024;
+        telemetryService.lapHistory = 512;
+        telemetryService.lapDetection = "DISTANCE";
+        telemetryService.snapshotPath = null;
+        telemetryService.snapshotIntervalInMs = 0L;
+        telemetryService.init();
+        return telemetryService;
+    }
+
+    // a carCoordinates message as published by the MAT stream generator, a sample every 200 ms
+    private static byte[] rawMessage(final int carIndex, final int sample) {
+        return String.format("{\"carIndex\":%d,\"location\":{\"lat\":52.069342797764405,\"long\":%s},"
+                        + "\"timestamp\":%d}", carIndex, Double.toString(-1.0222223819238275D + sample * 0.0001D),
+                1541693114862L + sample * 200L).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarStatusServiceTest {
+
+    /**
+     * Test if {@link CarStatusService#flush} only publishes the latest CarStatus per Car, race session and type
+     */
+    @Test
+    void testConflatesPerCarAndType() {
+        final CarStatusService carStatusService = newCarStatusService();
+        carStatusService.init();
+        final List<JsonObject> published = subscribe(carStatusService);
+
+        for (long timestamp = 1L; timestamp <= 100L; timestamp++) {
+            carStatusService.publish(new CarStatus(timestamp, 1, CarStatus.TypeEnum.SPEED, timestamp));
+            carStatusService.publish(new CarStatus(timestamp, 2, CarStatus.TypeEnum.SPEED, timestamp * 2D));
+        }
+        carStatusService.publish(new CarStatus(100L, 2, CarStatus.TypeEnum.POSITION, 1D));
+        // the same Car in another race session
+        carStatusService.publish(new CarStatus(100L, 1, CarStatus.TypeEnum.SPEED, 7D, "fp1"));
+        assertTrue(published.isEmpty());
+        carStatusService.flush();
+        assertEquals(4, published.size());
+        assertEquals(4L, carStatusService.metrics.publishedCarStatuses.sum());
+        assertEquals(198L, carStatusService.getConflatedMessages());
+        for (final JsonObject carStatus : published) {
+            assertEquals(100L, carStatus.getLong("timestamp").longValue());
+        }
+        // the default session is not tagged
+        assertEquals(1L, published.stream().filter(carStatus -> carStatus.containsKey("session")).count());
+        assertEquals(1L, published.stream().filter(carStatus -> "fp1".equals(carStatus.getString("session"))
+                && carStatus.getDouble("value") == 7D).count());
+        carStatusService.flush();
+        assertEquals(4, published.size());
+        carStatusService.dispose();
+    }
+
+    /**
+     * Test if the CarStatus of the race sessions beyond the session numbers of the conflation keys is published
+     * <br/>
+     * without conflation, rather than conflated with the CarStatus of another race session
+     */
+    @Test
+    void testSessionNumbersExhausted() {
+        final CarStatusService carStatusService = newCarStatusService();
+        carStatusService.maxSessionNumbers = 2;
+        carStatusService.init();
+        final List<JsonObject> published = subscribe(carStatusService);
+
+        for (final String session : new String[]{"fp1", "fp2", "fp3"}) {
+            carStatusService.publish(new CarStatus(1L, 1, CarStatus.TypeEnum.SPEED, 1D, session));
+            carStatusService.publish(new CarStatus(2L, 1, CarStatus.TypeEnum.SPEED, 2D, session));
+        }
+        // fp3 has no session number
+        assertEquals(2, published.size());
+        assertTrue(published.stream().allMatch(carStatus -> "fp3".equals(carStatus.getString("session"))));
+        carStatusService.flush();
+        assertEquals(4, published.size());
+        assertEquals(2L, published.stream().filter(carStatus -> carStatus.getLong("timestamp") == 2L
+                && !"fp3".equals(carStatus.getString("session"))).count());
+        assertEquals(2L, carStatusService.getConflatedMessages());
+        carStatusService.dispose();
+    }
+
+    private static CarStatusService newCarStatusService() {
+        final CarStatusService carStatusService = new CarStatusService();
+        carStatusService.metrics = new TelemetryMetrics();
+        carStatusService.bufferCapacity = 16;
+        carStatusService.bufferPolicy = "CONFLATE";
+        // longer than the test, so that only the explicit flush publishes
+        carStatusService.publishIntervalInMs = 3_600_000L;
+        return carStatusService;
+    }
+
+    private static List<JsonObject> subscribe(final CarStatusService carStatusService) {
+        final List<JsonObject> published = new CopyOnWriteArrayList<>();
+        carStatusService.produceMessage().subscribe(new Subscriber<Message<byte[]>>() {
+            @Override
+            public void onSubscribe(final Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final Message<byte[]> message) {
+                published.add(new JsonObject(Buffer.buffer(message.getPayload())));
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                fail(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                // not verified
+            }
+        });
+        return published;
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.codec.CarCoordinateBinarySerializer;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaBridgeServiceTest {
+
+    /**
+     * Test if the pipelined bridge sends the MQTT CarCoordinates without waiting for the broker, and only
+     * <br/>
+     * acknowledges an MQTT message once its CarCoordinate has been acknowledged by the broker
+     */
+    @Test
+    void testPipelined() {
+        final MockProducer<Integer, CarCoordinate> producer = new MockProducer<>(false, new IntegerSerializer(),
+                new CarCoordinateBinarySerializer());
+        final CarCoordinateService carCoordinateService = newCarCoordinateService(newKafkaBridgeService(producer));
+        final AtomicInteger acknowledged = new AtomicInteger();
+        for (int sample = 0; sample < 4; sample++) {
+            // nothing is published through the kafka-carCoordinates-pub channel
+            assertTrue(carCoordinateService.bridgeMqttCarCoordinate(mqttMessage(sample, acknowledged))
+                    .toList().run().toCompletableFuture().join().isEmpty());
+        }
+        carCoordinateService.bridgeMqttCarCoordinate(mqttMessage(4, acknowledged, "fp1"));
+        assertEquals(5L, carCoordinateService.kafkaBridgeService.getInFlight());
+        assertEquals(0, acknowledged.get());
+        final List<ProducerRecord<Integer, CarCoordinate>> records = producer.history();
+        assertEquals(5, records.size());
+        assertEquals(Integer.valueOf(3), records.get(0).key());
+        assertEquals("carCoordinates", records.get(0).topic());
+        assertEquals("fp1", new String(records.get(4).headers().lastHeader(CarCoordinateService.SESSION_HEADER)
+                .value(), StandardCharsets.UTF_8));
+        assertEquals(records.stream().map(record -> record.value().getTimestamp()).sorted()
+                .collect(Collectors.toList()), records.stream().map(record -> record.value().getTimestamp())
+                .collect(Collectors.toList()));
+
+        // the broker acknowledges the first 2, and fails the third
+        assertTrue(producer.completeNext());
+        assertTrue(producer.completeNext());
+        assertEquals(2, acknowledged.get());
+        assertTrue(producer.errorNext(new RuntimeException("broker unavailable")));
+        assertEquals(2, acknowledged.get());
+        assertEquals(1L, carCoordinateService.metrics.kafkaBridgeFailures.sum());
+        while (producer.completeNext()) {
+            // the remaining CarCoordinates
+        }
+        assertEquals(4, acknowledged.get());
+        assertEquals(0L, carCoordinateService.kafkaBridgeService.getInFlight());
+        assertEquals(4L, carCoordinateService.metrics.kafkaBridgeCarCoordinates.sum());
+        assertEquals(4L, carCoordinateService.metrics.kafkaBridgeWriteNanos.count());
+        carCoordinateService.kafkaBridgeService.dispose();
+        assertTrue(producer.closed());
+    }
+
+    /**
+     * Test if the MQTT stream waits for the window, without blocking, while maxInFlight CarCoordinates are in flight,
+     * <br/>
+     * and if a CarCoordinate that could not be sent fails the stream instead of being dropped
+     */
+    @Test
+    void testWindowAndFailure() {
+        final MockProducer<Integer, CarCoordinate> producer = new MockProducer<>(false, new IntegerSerializer(),
+                new CarCoordinateBinarySerializer());
+        final KafkaBridgeService kafkaBridgeService = newKafkaBridgeService(producer);
+        kafkaBridgeService.maxInFlight = 2;
+        final CarCoordinateService carCoordinateService = newCarCoordinateService(kafkaBridgeService);
+        final AtomicInteger acknowledged = new AtomicInteger();
+        assertTrue(carCoordinateService.bridgeMqttCarCoordinate(mqttMessage(0, acknowledged)).toList().run()
+                .toCompletableFuture().isDone());
+        // the window is full, the stream completes once a CarCoordinate has been acknowledged
+        CompletableFuture<List<Message<CarCoordinate>>> window = carCoordinateService
+                .bridgeMqttCarCoordinate(mqttMessage(1, acknowledged)).toList().run().toCompletableFuture();
+        assertFalse(window.isDone());
+        assertTrue(producer.completeNext());
+        assertTrue(window.join().isEmpty());
+        assertEquals(1, acknowledged.get());
+
+        // the window is full again, and the broker fails the next CarCoordinate
+        window = carCoordinateService.bridgeMqttCarCoordinate(mqttMessage(2, acknowledged)).toList().run()
+                .toCompletableFuture();
+        assertFalse(window.isDone());
+        final RuntimeException failure = new RuntimeException("broker unavailable");
+        assertTrue(producer.errorNext(failure));
+        assertTrue(window.isCompletedExceptionally());
+        assertSame(failure, kafkaBridgeService.getFailure());
+        assertEquals(1L, carCoordinateService.metrics.kafkaBridgeFailures.sum());
+        // the stream fails, rather than the later CarCoordinates being sent after the failed one
+        assertTrue(carCoordinateService.bridgeMqttCarCoordinate(mqttMessage(3, acknowledged)).toList().run()
+                .toCompletableFuture().isCompletedExceptionally());
+        assertEquals(3, producer.history().size());
+        assertTrue(producer.completeNext());
+        assertEquals(2, acknowledged.get());
+        assertEquals(0L, kafkaBridgeService.getInFlight());
+    }
+
+    /**
+     * Test if the MQTT CarCoordinates are published through the kafka-carCoordinates-pub channel by default, and only
+     * <br/>
+     * acknowledged once the channel has written them
+     */
+    @Test
+    void testConnector() {
+        final KafkaBridgeService kafkaBridgeService = new KafkaBridgeService();
+        kafkaBridgeService.metrics = new TelemetryMetrics();
+        kafkaBridgeService.mode = "CONNECTOR";
+        kafkaBridgeService.init();
+        final CarCoordinateService carCoordinateService = newCarCoordinateService(kafkaBridgeService);
+        final AtomicInteger acknowledged = new AtomicInteger();
+        final List<Message<CarCoordinate>> messages = carCoordinateService
+                .bridgeMqttCarCoordinate(mqttMessage(0, acknowledged)).toList().run().toCompletableFuture().join();
+        assertEquals(1, messages.size());
+        assertEquals(3, messages.get(0).getPayload().getCarIndex());
+        // the MQTT message is only acknowledged once the channel has written the CarCoordinate
+        assertEquals(0, acknowledged.get());
+        messages.get(0).ack().toCompletableFuture().join();
+        assertEquals(1, acknowledged.get());
+        assertEquals(0L, kafkaBridgeService.getInFlight());
+    }
+
+    private static KafkaBridgeService newKafkaBridgeService(final MockProducer<Integer, CarCoordinate> producer) {
+        final KafkaBridgeService kafkaBridgeService = new KafkaBridgeService();
+        kafkaBridgeService.metrics = new TelemetryMetrics();
+        kafkaBridgeService.mode = "PIPELINED";
+        kafkaBridgeService.topic = "carCoordinates";
+        kafkaBridgeService.maxInFlight = 8;
+        kafkaBridgeService.producer = producer;
+        kafkaBridgeService.init();
+        return kafkaBridgeService;
+    }
+
+    private static CarCoordinateService newCarCoordinateService(final KafkaBridgeService kafkaBridgeService) {
+        final CarCoordinateService carCoordinateService = new CarCoordinateService();
+        carCoordinateService.metrics = kafkaBridgeService.metrics;
+        carCoordinateService.kafkaBridgeService = kafkaBridgeService;
+        carCoordinateService.orderByPartition = false;
+        carCoordinateService.direct = false;
+        return carCoordinateService;
+    }
+
+    private static Message<byte[]> mqttMessage(final int sample, final AtomicInteger acknowledged) {
+        return mqttMessage(sample, acknowledged, null);
+    }
+
+    // a carCoordinates message of Car 3 as published by the MAT stream generator, a sample every 200 ms
+    private static Message<byte[]> mqttMessage(final int sample, final AtomicInteger acknowledged,
+                                               final String session) {
+        final String json = String.format("{\"carIndex\":3,\"location\":{\"lat\":52.069342797764405,\"long\":%s},"
+                        + "\"timestamp\":%d%s}", Double.toString(-1.0222223819238275D + sample * 0.0001D),
+                1541693114862L + sample * 200L, session == null ? "" : ",\"session\":\"" + session + "\"");
+        return Message.of(json.getBytes(StandardCharsets.UTF_8), () -> {
+            acknowledged.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.nicdesousa.telemetry.service;
+
+import io.smallrye.reactive.messaging.kafka.ReceivedKafkaMessage;
+import io.vertx.kafka.client.consumer.impl.KafkaConsumerRecordImpl;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.kafka.client.consumer.KafkaConsumer;
+import io.vertx.reactivex.kafka.client.consumer.KafkaConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaOffsetServiceTest {
+
+    private static final String TOPIC = "carCoordinates";
+    private static final int PARTITIONS = 3;
+
+    /**
+     * Test if a race snapshot only matches the topic that it was taken from, and only while every partition has at
+     * <br/>
+     * least as many carCoordinates as the snapshot reflects
+     */
+    @Test
+    void testMatches() {
+        final KafkaOffsetService kafkaOffsetService = newKafkaOffsetService(newConsumer());
+        assertEquals("cluster/" + TOPIC, kafkaOffsetService.topicIdentity());
+        final Map<Integer, Long> offsets = new HashMap<>();
+        offsets.put(0, 41L);
+        offsets.put(2, 99L);
+        assertTrue(kafkaOffsetService.matches("cluster/" + TOPIC, offsets));
+        // a snapshot without an identity, of another cluster or of another topic
+        assertFalse(kafkaOffsetService.matches(null, offsets));
+        assertFalse(kafkaOffsetService.matches("recreated/" + TOPIC, offsets));
+        assertFalse(kafkaOffsetService.matches("cluster/laps", offsets));
+        // a recreated topic that is behind the snapshot
+        offsets.put(1, 100L);
+        assertFalse(kafkaOffsetService.matches("cluster/" + TOPIC, offsets));
+    }
+
+    /**
+     * Test if a topic that does not exist (for which partitionsFor returns null) has no identity
+     */
+    @Test
+    void testUnknownTopic() {
+        final KafkaOffsetService kafkaOffsetService = newKafkaOffsetService(
+                new MockConsumer<>(OffsetResetStrategy.EARLIEST));
+        assertNull(kafkaOffsetService.topicIdentity());
+        assertFalse(kafkaOffsetService.matches("cluster/" + TOPIC, Collections.singletonMap(0, 41L)));
+    }
+
+    /**
+     * Test if the channel's consumer seeks past the restored snapshot once per partition, and again when it is
+     * <br/>
+     * rewound to a restored carCoordinate (e.g. after a rebalance)
+     */
+    @Test
+    void testSeek() throws InterruptedException {
+        final MockConsumer<byte[], byte[]> channelConsumer = newConsumer();
+        final TopicPartition partition = new TopicPartition(TOPIC, 0);
+        channelConsumer.assign(Collections.singletonList(partition));
+        channelConsumer.seek(partition, 5L);
+        final Vertx vertx = Vertx.vertx();
+        try {
+            final KafkaConsumer<byte[], byte[]> consumer = KafkaConsumer.newInstance(
+                    io.vertx.kafka.client.consumer.KafkaConsumer.create(vertx.getDelegate(), channelConsumer));
+            final KafkaOffsetService kafkaOffsetService = newKafkaOffsetService(newConsumer());
+            kafkaOffsetService.seek(message(consumer, 5L), 5L, 42L);
+            awaitPosition(channelConsumer, partition, 42L);
+            // the carCoordinates fetched before the seek do not seek again
+            channelConsumer.seek(partition, 7L);
+            kafkaOffsetService.seek(message(consumer, 6L), 6L, 42L);
+            // a rewound consumer seeks again
+            kafkaOffsetService.seek(message(consumer, 5L), 5L, 42L);
+            awaitPosition(channelConsumer, partition, 42L);
+            consumer.close();
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private static void awaitPosition(final MockConsumer<byte[], byte[]> consumer, final TopicPartition partition,
+                                      final long position) throws InterruptedException {
+        // the vert.x consumer seeks on its worker thread
+        for (int i = 0; i < 500 && consumer.position(partition) != position; i++) {
+            Thread.sleep(10L);
+        }
+        assertEquals(position, consumer.position(partition));
+    }
+
+    private static ReceivedKafkaMessage<byte[], byte[]> message(final KafkaConsumer<byte[], byte[]> consumer,
+                                                                final long offset) {
+        return new ReceivedKafkaMessage<>(consumer, KafkaConsumerRecord.newInstance(new KafkaConsumerRecordImpl<>(
+                new ConsumerRecord<>(TOPIC, 0, offset, new byte[0], new byte[0]))));
+    }
+
+    private static KafkaOffsetService newKafkaOffsetService(final MockConsumer<byte[], byte[]> consumer) {
+        final KafkaOffsetService kafkaOffsetService = new KafkaOffsetService();
+        kafkaOffsetService.topic = TOPIC;
+        kafkaOffsetService.timeoutInMs = 5000L;
+        kafkaOffsetService.consumer = consumer;
+        kafkaOffsetService.clusterId = "cluster";
+        return kafkaOffsetService;
+    }
+
+    // every partition ends at offset 100
+    private static MockConsumer<byte[], byte[]> newConsumer() {
+        final MockConsumer<byte[], byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        final List<PartitionInfo> partitionInfos = new ArrayList<>();
+        final Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        final Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitionInfos.add(new PartitionInfo(TOPIC, partition, Node.noNode(), new Node[0], new Node[0]));
+            beginningOffsets.put(new TopicPartition(TOPIC, partition), 0L);
+            endOffsets.put(new TopicPartition(TOPIC, partition), 100L);
+        }
+        consumer.updatePartitions(TOPIC, partitionInfos);
+        consumer.updateBeginningOffsets(beginningOffsets);
+        consumer.updateEndOffsets(endOffsets);
+        return consumer;
+    }
+}
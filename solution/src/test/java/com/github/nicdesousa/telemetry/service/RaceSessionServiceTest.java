@@ -0,0 +1,184 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import io.smallrye.config.PropertiesConfigSource;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RaceSessionServiceTest {
+
+    private static final int CARS = 3;
+    // enough samples for a few laps of the circuit
+    private static final int SAMPLES_PER_CAR = 2_000;
+
+    /**
+     * Run the same race in the default session and two race sessions (one on a circuit half as long) at the same
+     * <br/>
+     * time, and verify that each session has its own Cars, laps and fastest lap, and tags its Events.
+     */
+    @Test
+    void testSessionsAreIsolated() {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final RaceSessionService raceSessionService = newRaceSessionService(events);
+        for (int sample = 0; sample < SAMPLES_PER_CAR; sample++) {
+            for (int carIndex = 0; carIndex < CARS; carIndex++) {
+                for (final String session : new String[]{null, "fp1", "short"}) {
+                    assertTrue(raceSessionService.processCarCoordinate(coordinate(session, carIndex, sample)));
+                }
+            }
+        }
+        final Map<String, TelemetryService> sessions = raceSessionService.sessions();
+        assertEquals(3, sessions.size());
+        for (final TelemetryService session : sessions.values()) {
+            session.awaitIdle();
+            assertEquals(CARS, session.getCarCount());
+            assertTrue(session.getEstimatedMemoryBytes() > 0L);
+        }
+        assertSame(raceSessionService.telemetryService, raceSessionService.session(null));
+        assertSame(raceSessionService.telemetryService, raceSessionService.session(RaceSessionService.DEFAULT_SESSION));
+        assertTrue(raceSessionService.closeSession("fp1"));
+        assertTrue(raceSessionService.closeSession("short"));
+        assertFalse(raceSessionService.closeSession("fp1"));
+        raceSessionService.telemetryService.dispose();
+
+        final TelemetryService defaultSession = sessions.get(RaceSessionService.DEFAULT_SESSION);
+        for (int carIndex = 0; carIndex < CARS; carIndex++) {
+            // the same race on the same circuit
+            assertEquals(defaultSession.getCar(carIndex).getLaps(), sessions.get("fp1").getCar(carIndex).getLaps());
+            assertTrue(sessions.get("short").getCar(carIndex).getLaps().size()
+                    >= 2 * defaultSession.getCar(carIndex).getLaps().size());
+        }
+        assertTrue(defaultSession.getCar(CARS - 1).getLaps().size() > 1);
+        assertEquals(events(events, null, "completed lap"), events(events, "fp1", "completed lap"));
+        // each session has its own fastest lap, the same laps in fp1 would never beat a shared fastest lap
+        for (final String session : new String[]{null, "fp1", "short"}) {
+            assertTrue(events(events, session, "fastest lap") > 0L);
+        }
+        raceSessionService.dispose();
+    }
+
+    @Test
+    void testSessionsAreLimited() {
+        final RaceSessionService raceSessionService = newRaceSessionService(new CopyOnWriteArrayList<>());
+        assertTrue(raceSessionService.processCarCoordinate(coordinate("fp1", 0, 0)));
+        assertTrue(raceSessionService.processCarCoordinate(coordinate("short", 0, 0)));
+        // maxSessions is 2, the default session does not count
+        assertFalse(raceSessionService.processCarCoordinate(coordinate("fp2", 0, 0)));
+        assertTrue(raceSessionService.processCarCoordinate(coordinate(null, 0, 0)));
+        assertFalse(raceSessionService.processCarCoordinate(coordinate("fp1/../fp2", 0, 0)));
+        assertEquals(2L, raceSessionService.getRejectedSamples());
+        assertNull(raceSessionService.session("fp2"));
+        // a closed session makes room for another session
+        assertTrue(raceSessionService.closeSession("fp1"));
+        assertTrue(raceSessionService.processCarCoordinate(coordinate("fp2", 0, 0)));
+        raceSessionService.telemetryService.dispose();
+        raceSessionService.dispose();
+    }
+
+    /**
+     * Test if a session without overrides gets the configuration of the default TelemetryService when it is injected
+     * <br/>
+     * as a client proxy, whose fields are not those of the bean
+     */
+    @Test
+    void testSessionDefaultsThroughClientProxy() {
+        final RaceSessionService raceSessionService = newRaceSessionService(new CopyOnWriteArrayList<>());
+        final TelemetryService bean = raceSessionService.telemetryService;
+        raceSessionService.telemetryService = new TelemetryService() {
+            // like a client proxy, every field is null and the methods are delegated to the bean
+            @Override
+            public TelemetryService copyConfiguration() {
+                return bean.copyConfiguration();
+            }
+        };
+        assertTrue(raceSessionService.processCarCoordinate(coordinate("fp1", 0, 0)));
+        assertTrue(raceSessionService.processCarCoordinate(coordinate("short", 0, 0)));
+        final TelemetryService fp1 = raceSessionService.session("fp1");
+        assertNotNull(fp1);
+        assertEquals(bean.circuitLengthInKM, fp1.circuitLengthInKM);
+        assertEquals(bean.shards, fp1.shards);
+        assertEquals(bean.maxCars, fp1.maxCars);
+        assertEquals(bean.lapDetection, fp1.lapDetection);
+        // the overrides still apply on top of the defaults
+        final TelemetryService shortSession = raceSessionService.session("short");
+        assertEquals(1, shortSession.shards);
+        assertEquals(bean.maxCars, shortSession.maxCars);
+        bean.dispose();
+        raceSessionService.dispose();
+    }
+
+    private static long events(final List<Event> events, final String session, final String text) {
+        return events.stream().filter(event -> event.getText().contains(text)
+                && (session == null ? event.getSession() == null : session.equals(event.getSession()))).count();
+    }
+
+    private static RaceSessionService newRaceSessionService(final List<Event> events) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("raceSessions.short.circuitLengthInKM", "2.5598856881446125");
+        config.put("raceSessions.short.shards", "1");
+        final RaceSessionService raceSessionService = new RaceSessionService();
+        raceSessionService.config = new SmallRyeConfigBuilder()
+                .withSources(new PropertiesConfigSource(config, "test", 100)).build();
+        raceSessionService.carStatusService = new CarStatusService() {
+            @Override
+            public void publish(final CarStatus carStatus) {
+                // CarStatus messages are not verified by this test
+            }
+        };
+        raceSessionService.eventsService = new EventsService() {
+            @Override
+            public void publish(final Event event) {
+                events.add(event);
+            }
+        };
+        raceSessionService.metrics = new TelemetryMetrics();
+        raceSessionService.workers = 2;
+        raceSessionService.quantum = 16;
+        raceSessionService.maxSessions = 2;
+
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.carStatusService = raceSessionService.carStatusService;
+        telemetryService.eventsService = raceSessionService.eventsService;
+        telemetryService.metrics = raceSessionService.metrics;
+        telemetryService.circuitLengthInKM = 5.119771376289225D;
+        telemetryService.flatEarthThresholdInKM = 0D;
+        telemetryService.shards = 2;
+        telemetryService.queueCapacity = 1024;
+        telemetryService.reorderWindowInMs = 250L;
+        telemetryService.reorderMaxSamples = 8;
+        telemetryService.maxCars = 1024;
+        telemetryService.lapHistory = 512;
+        telemetryService.lapDetection = "DISTANCE";
+        telemetryService.trackPath = "silverstone_closed.geojson";
+        telemetryService.snapshotPath = null;
+        telemetryService.snapshotIntervalInMs = 0L;
+        telemetryService.init();
+        raceSessionService.telemetryService = telemetryService;
+        raceSessionService.init();
+        return raceSessionService;
+    }
+
+    // each Car drives east along a line of latitude at a constant speed that increases with the carIndex
+    private static CarCoordinate coordinate(final String session, final int carIndex, final int sample) {
+        final Location location = new Location();
+        location.setLatitude(52.0D + carIndex * 0.001D);
+        location.setLongitude(-1.0D + sample * (carIndex + 1) * 0.0001D);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(1541693114862L + sample * 200L);
+        carCoordinate.setSession(session);
+        return carCoordinate;
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.codec.RaceSnapshotCodec;
+import com.github.nicdesousa.telemetry.domain.Car;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.domain.RaceSnapshot;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryServiceSnapshotTest {
+
+    private static final int CARS = 6;
+    // enough samples for a few laps of the circuit
+    private static final int SAMPLES_PER_CAR = 3_000;
+    private static final int SNAPSHOT_SAMPLE = 1_234;
+
+    /**
+     * Snapshot a race part way through, restore it into a new TelemetryService, replay the carCoordinates stream
+     * <br/>
+     * from the beginning (as Kafka does without committed offsets), and verify that the restored race ends in the
+     * <br/>
+     * same state as an uninterrupted race.
+     */
+    @Test
+    void testRestoredRaceMatchesUninterruptedRace(@TempDir final Path dir) throws Exception {
+        // the final snapshot is written at shutdown
+        final Path uninterruptedPath = dir.resolve("uninterrupted.snapshot");
+        final TelemetryService uninterrupted = newTelemetryService(uninterruptedPath);
+        this.consume(uninterrupted, 0, SAMPLES_PER_CAR);
+        uninterrupted.dispose();
+
+        final Path snapshotPath = dir.resolve("race.snapshot");
+        final TelemetryService interrupted = newTelemetryService(snapshotPath);
+        this.consume(interrupted, 0, SNAPSHOT_SAMPLE);
+        interrupted.writeSnapshot();
+        // records consumed after the snapshot are lost with the instance
+        this.consume(interrupted, SNAPSHOT_SAMPLE, SNAPSHOT_SAMPLE + 100);
+        interrupted.snapshotPath = null;
+        interrupted.dispose();
+
+        final TelemetryService restored = newTelemetryService(snapshotPath);
+        for (int carIndex = 0; carIndex < CARS; carIndex++) {
+            assertTrue(restored.getCar(carIndex).getLaps().size() > 0);
+        }
+        this.consume(restored, 0, SAMPLES_PER_CAR);
+        restored.dispose();
+
+        assertEquals(0L, restored.getLateSamples());
+        assertEquals(0L, restored.getDuplicateSamples());
+        for (int carIndex = 0; carIndex < CARS; carIndex++) {
+            final Car expected = uninterrupted.getCar(carIndex);
+            final Car actual = restored.getCar(carIndex);
+            assertEquals(expected.getTotalDistance(), actual.getTotalDistance());
+            assertEquals(expected.getLastUpdateTimestamp(), actual.getLastUpdateTimestamp());
+            assertEquals(expected.getLapStartTime(), actual.getLapStartTime());
+            assertEquals(expected.getLaps(), actual.getLaps());
+        }
+        final RaceSnapshot expected = RaceSnapshotCodec.read(uninterruptedPath);
+        final RaceSnapshot actual = RaceSnapshotCodec.read(snapshotPath);
+        assertEquals(expected.getFastestLapCar(), actual.getFastestLapCar());
+        assertEquals(expected.getFastestLapTimeInMs(), actual.getFastestLapTimeInMs());
+        assertEquals((long) CARS * SAMPLES_PER_CAR - 1, actual.getOffsets().get(0).longValue());
+    }
+
+    /**
+     * The shards copy their own Cars without waiting for each other, so a snapshot is captured even when the
+     * <br/>
+     * executor has fewer threads than shards.
+     */
+    @Test
+    void testSnapshotWithFewerExecutorThreadsThanShards() throws Exception {
+        final TelemetryService telemetryService = newTelemetryService(null, service -> {
+            service.shards = 4;
+            service.executorMode = "FIXED";
+            service.executorThreads = 1;
+        });
+        this.consume(telemetryService, 0, 100);
+        final byte[] snapshot = telemetryService.snapshot();
+        this.consume(telemetryService, 100, 110);
+        telemetryService.dispose();
+        assertNotNull(snapshot);
+        assertEquals(CARS, RaceSnapshotCodec.decode(snapshot).getCars().size());
+        assertEquals((long) CARS * 100 - 1, RaceSnapshotCodec.decode(snapshot).getOffsets().get(0).longValue());
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected(@TempDir final Path dir) throws Exception {
+        final TelemetryService telemetryService = newTelemetryService(null);
+        this.consume(telemetryService, 0, 100);
+        final byte[] snapshot = telemetryService.snapshot();
+        telemetryService.dispose();
+        assertEquals(CARS, RaceSnapshotCodec.decode(snapshot).getCars().size());
+
+        snapshot[snapshot.length / 2] ^= 1;
+        assertThrows(IOException.class, () -> RaceSnapshotCodec.decode(snapshot));
+        // a corrupt snapshot file is ignored, and the race starts from the beginning
+        final Path snapshotPath = dir.resolve("race.snapshot");
+        Files.write(snapshotPath, snapshot);
+        final TelemetryService restored = newTelemetryService(snapshotPath);
+        assertNull(restored.getCar(0));
+        assertFalse(restored.isRestored(0, 0L));
+        restored.snapshotPath = null;
+        restored.dispose();
+    }
+
+    /**
+     * Test if a snapshot is only restored from the topic that it was taken from, since skipping the carCoordinates of
+     * <br/>
+     * another (e.g. recreated) topic up to its offsets would lose them
+     */
+    @Test
+    void testSnapshotOfAnotherTopicIsDiscarded(@TempDir final Path dir) throws IOException {
+        final Path snapshotPath = dir.resolve("race.snapshot");
+        final TelemetryService interrupted = newTelemetryService(snapshotPath,
+                telemetryService -> telemetryService.kafkaOffsetService = new TopicOffsetService("a"));
+        this.consume(interrupted, 0, 100);
+        interrupted.dispose();
+        assertEquals("a/carCoordinates", RaceSnapshotCodec.read(snapshotPath).getTopicIdentity());
+
+        final TelemetryService restored = newTelemetryService(snapshotPath,
+                telemetryService -> telemetryService.kafkaOffsetService = new TopicOffsetService("a"));
+        assertNotNull(restored.getCar(0));
+        assertEquals((long) CARS * 100, restored.resumeOffset(0));
+        restored.snapshotPath = null;
+        restored.dispose();
+
+        final TelemetryService recreated = newTelemetryService(snapshotPath,
+                telemetryService -> telemetryService.kafkaOffsetService = new TopicOffsetService("b"));
+        assertNull(recreated.getCar(0));
+        assertFalse(recreated.isRestored(0, 0L));
+        assertEquals(-1L, recreated.resumeOffset(0));
+        recreated.snapshotPath = null;
+        recreated.dispose();
+    }
+
+    /**
+     * Test if the consumer does not seek past a snapshot taken after race sessions were consumed, since the race
+     * <br/>
+     * sessions are not snapshotted and are rebuilt from the beginning of the topic
+     */
+    @Test
+    void testNoSeekPastRaceSessions(@TempDir final Path dir) {
+        final Path snapshotPath = dir.resolve("race.snapshot");
+        final TelemetryService interrupted = newTelemetryService(snapshotPath);
+        this.consume(interrupted, 0, 100);
+        interrupted.sessionConsumed();
+        interrupted.dispose();
+
+        final TelemetryService restored = newTelemetryService(snapshotPath);
+        // the restored carCoordinates are still skipped one by one
+        assertTrue(restored.isRestored(0, 0L));
+        assertEquals(-1L, restored.resumeOffset(0));
+        restored.snapshotPath = null;
+        restored.dispose();
+    }
+
+    // a single partition with every Car's carCoordinates interleaved in timestamp order
+    private void consume(final TelemetryService telemetryService, final int fromSample, final int toSample) {
+        for (int sample = fromSample; sample < toSample; sample++) {
+            for (int carIndex = 0; carIndex < CARS; carIndex++) {
+                final long offset = (long) sample * CARS + carIndex;
+                if (!telemetryService.isRestored(0, offset)) {
+                    telemetryService.processCarCoordinate(coordinate(carIndex, sample));
+                    telemetryService.consumedOffset(0, offset);
+                }
+            }
+        }
+        telemetryService.awaitIdle();
+    }
+
+    private static TelemetryService newTelemetryService(final Path snapshotPath) {
+        return newTelemetryService(snapshotPath, telemetryService -> {
+        });
+    }
+
+    private static TelemetryService newTelemetryService(final Path snapshotPath,
+                                                        final Consumer<TelemetryService> configuration) {
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.carStatusService = new IgnoringCarStatusService();
+        telemetryService.eventsService = new IgnoringEventsService();
+        telemetryService.metrics = new TelemetryMetrics();
+        telemetryService.circuitLengthInKM = 5.119771376289225D;
+        telemetryService.flatEarthThresholdInKM = 0D;
+        telemetryService.shards = 2;
+        telemetryService.queueCapacity = 1024;
+        telemetryService.reorderWindowInMs = 250L;
+        telemetryService.reorderMaxSamples = 8;
+        telemetryService.maxCars = 1024;
+        telemetryService.lapHistory = 512;
+        telemetryService.snapshotPath = snapshotPath == null ? null : snapshotPath.toString();
+        // snapshots are only written when the test asks for them
+        telemetryService.snapshotIntervalInMs = 0L;
+        configuration.accept(telemetryService);
+        telemetryService.init();
+        return telemetryService;
+    }
+
+    // each Car drives east along a line of latitude at a constant speed that increases with the carIndex
+    private static CarCoordinate coordinate(final int carIndex, final int sample) {
+        final Location location = new Location();
+        location.setLatitude(52.0D + carIndex * 0.001D);
+        location.setLongitude(-1.0D + sample * (carIndex + 1) * 0.0001D);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(1541693114862L + sample * 200L);
+        return carCoordinate;
+    }
+
+    // the carCoordinates topic of a Kafka cluster
+    private static final class TopicOffsetService extends KafkaOffsetService {
+        private final String identity;
+
+        private TopicOffsetService(final String clusterId) {
+            this.identity = clusterId + "/carCoordinates";
+        }
+
+        @Override
+        public String topicIdentity() {
+            return this.identity;
+        }
+
+        @Override
+        public boolean matches(final String identity, final Map<Integer, Long> offsets) {
+            return this.identity.equals(identity);
+        }
+    }
+
+    private static final class IgnoringCarStatusService extends CarStatusService {
+        @Override
+        public void publish(final CarStatus carStatus) {
+            // CarStatus messages are not verified by this test
+        }
+    }
+
+    private static final class IgnoringEventsService extends EventsService {
+        @Override
+        public void publish(final Event event) {
+            // events are not verified by this test
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+import com.github.nicdesousa.telemetry.util.Haversine;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class TelemetryServiceStressTest {
+
+    private static final int CARS = 24;
+    private static final int SAMPLES_PER_CAR = 100_000;
+    private static final int PRODUCERS = 4;
+    private static final long SAMPLE_INTERVAL_IN_MS = 200L;
+
+    /**
+     * Replay millions of CarCoordinates for many Cars from several producer threads, with every tenth pair of
+     * <br/>
+     * CarCoordinates swapped, and verify that per-Car ordering, total distances and the final standings match a
+     * <br/>
+     * sequential replay.
+     */
+    @Test
+    void testShardedProcessingPreservesPerCarOrdering() throws Exception {
+        this.replay(false, 1);
+    }
+
+    /**
+     * Replay as above, but ordered by partition as with carCoordinateService.orderByPartition, where every producer
+     * <br/>
+     * is the consumer of one (carIndex keyed) partition.
+     */
+    @Test
+    void testPartitionOrderedProcessingPreservesPerCarOrdering() throws Exception {
+        this.replay(true, 1);
+    }
+
+    /**
+     * Replay as above, but handed off in batches as with carCoordinateService.batch.maxSize, by carIndex and by
+     * <br/>
+     * partition.
+     */
+    @Test
+    void testBatchedProcessingPreservesPerCarOrdering() throws Exception {
+        this.replay(false, 500);
+        this.replay(true, 500);
+    }
+
+    private void replay(final boolean orderByPartition, final int batchSize) throws Exception {
+        final RecordingCarStatusService carStatusService = new RecordingCarStatusService();
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.carStatusService = carStatusService;
+        telemetryService.eventsService = new RecordingEventsService();
+        telemetryService.metrics = new TelemetryMetrics();
+        telemetryService.circuitLengthInKM = 5.119771376289225D;
+        telemetryService.flatEarthThresholdInKM = 0D;
+        telemetryService.shards = 4;
+        telemetryService.queueCapacity = 4096;
+        telemetryService.reorderWindowInMs = 250L;
+        telemetryService.reorderMaxSamples = 8;
+        telemetryService.maxCars = 1024;
+        telemetryService.lapHistory = 512;
+        telemetryService.snapshotPath = null;
+        telemetryService.init();
+
+        // every producer owns a disjoint set of Cars, like the consumer of a Kafka partition
+        final long start = System.nanoTime();
+        final List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            producers.add(new Thread(() -> {
+                final List<CarCoordinate> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < SAMPLES_PER_CAR; i++) {
+                    // swap samples 4 and 5 of every 10, within the reorder window
+                    final int sample = i % 10 == 4 ? i + 1 : i % 10 == 5 ? i - 1 : i;
+                    for (int carIndex = producer; carIndex < CARS; carIndex += PRODUCERS) {
+                        if (batchSize > 1) {
+                            batch.add(coordinate(carIndex, sample));
+                            if (batch.size() == batchSize) {
+                                processCarCoordinates(telemetryService, orderByPartition, producer, batch);
+                            }
+                        } else if (orderByPartition) {
+                            telemetryService.processCarCoordinate(producer, coordinate(carIndex, sample));
+                        } else {
+                            telemetryService.processCarCoordinate(coordinate(carIndex, sample));
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    processCarCoordinates(telemetryService, orderByPartition, producer, batch);
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+        telemetryService.awaitIdle();
+        final long elapsedInMs = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+        log.info(String.format("Processed %d CarCoordinates in %d ms (%d per second)", CARS * SAMPLES_PER_CAR,
+                elapsedInMs, CARS * SAMPLES_PER_CAR * 1000L / elapsedInMs));
+        telemetryService.dispose();
+
+        assertEquals(0L, carStatusService.outOfOrder.get());
+        assertEquals((long) CARS * SAMPLES_PER_CAR / 10, telemetryService.getReorderedSamples());
+        assertEquals(0L, telemetryService.getLateSamples());
+        assertEquals(0L, telemetryService.getDuplicateSamples());
+        assertEquals((long) CARS * SAMPLES_PER_CAR, telemetryService.metrics.processedCarCoordinates.sum());
+        assertEquals((long) CARS * (SAMPLES_PER_CAR - 1), telemetryService.metrics.distanceNanos.count());
+        assertEquals((long) CARS * (SAMPLES_PER_CAR - 1), carStatusService.speeds.get());
+        for (int carIndex = 0; carIndex < CARS; carIndex++) {
+            double expectedDistance = 0D;
+            for (int sample = 1; sample < SAMPLES_PER_CAR; sample++) {
+                expectedDistance += Haversine.distance(point(carIndex, sample - 1), point(carIndex, sample));
+            }
+            assertEquals(expectedDistance, telemetryService.getCar(carIndex).getTotalDistance());
+            // faster Cars (with a higher carIndex) lead the standings
+            assertEquals(CARS - carIndex, carStatusService.positions.get(carIndex).intValue());
+        }
+    }
+
+    private static void processCarCoordinates(final TelemetryService telemetryService, final boolean orderByPartition,
+                                              final int producer, final List<CarCoordinate> batch) {
+        if (orderByPartition) {
+            telemetryService.processCarCoordinates(producer, batch);
+        } else {
+            telemetryService.processCarCoordinates(batch);
+        }
+        batch.clear();
+    }
+
+    // each Car drives east along a line of latitude at a constant speed that increases with the carIndex
+    private static CarCoordinate coordinate(final int carIndex, final int sample) {
+        final Location location = new Location();
+        location.setLatitude(52.0D + carIndex * 0.001D);
+        location.setLongitude(-1.0D + sample * (carIndex + 1) * 0.00001D);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(1541693114862L + sample * SAMPLE_INTERVAL_IN_MS);
+        return carCoordinate;
+    }
+
+    private static GeoPoint point(final int carIndex, final int sample) {
+        final Location location = coordinate(carIndex, sample).getLocation();
+        return new GeoPoint().set(location.getLatitude(), location.getLongitude());
+    }
+
+    private static final class RecordingCarStatusService extends CarStatusService {
+        private final AtomicLong speeds = new AtomicLong();
+        private final AtomicLong outOfOrder = new AtomicLong();
+        private final ConcurrentHashMap<Integer, Long> lastSpeedTimestamps = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Integer> positions = new ConcurrentHashMap<>();
+
+        @Override
+        public void publish(final CarStatus carStatus) {
+            if (carStatus.getType() == CarStatus.TypeEnum.SPEED) {
+                this.speeds.incrementAndGet();
+                final Long last = this.lastSpeedTimestamps.put(carStatus.getCarIndex(), carStatus.getTimestamp());
+                if (last != null && last >= carStatus.getTimestamp()) {
+                    this.outOfOrder.incrementAndGet();
+                }
+            } else {
+                this.positions.put(carStatus.getCarIndex(), (int) carStatus.getValue());
+            }
+        }
+    }
+
+    private static final class RecordingEventsService extends EventsService {
+        @Override
+        public void publish(final Event event) {
+            // events are not verified by this test
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.github.nicdesousa.telemetry.service;
+
+import com.github.nicdesousa.telemetry.domain.Car;
+import com.github.nicdesousa.telemetry.domain.CarCoordinate;
+import com.github.nicdesousa.telemetry.domain.CarLap;
+import com.github.nicdesousa.telemetry.domain.CarStatus;
+import com.github.nicdesousa.telemetry.domain.Event;
+import com.github.nicdesousa.telemetry.domain.Location;
+import com.github.nicdesousa.telemetry.metrics.TelemetryMetrics;
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+import com.github.nicdesousa.telemetry.util.Haversine;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryServiceTrackTest {
+
+    private static final long START_TIMESTAMP = 1541693114862L;
+    private static final long SAMPLE_INTERVAL_IN_MS = 200L;
+    // ~250 km/h
+    private static final double STEP_IN_KM = 0.014D;
+
+    private static double[] latitudes;
+    private static double[] longitudes;
+    private static double[] distances;
+
+    @BeforeAll
+    static void loadTrack() throws IOException {
+        final JsonArray coordinates = new JsonObject(new String(Files.readAllBytes(Paths.get(
+                TelemetryServiceTrackTest.class.getResource("/silverstone.json").getPath())), StandardCharsets.UTF_8))
+                .getJsonArray("coordinates");
+        latitudes = new double[coordinates.size() + 1];
+        longitudes = new double[coordinates.size() + 1];
+        distances = new double[coordinates.size() + 1];
+        for (int i = 0; i <= coordinates.size(); i++) {
+            latitudes[i] = coordinates.getJsonArray(i % coordinates.size()).getDouble(1);
+            longitudes[i] = coordinates.getJsonArray(i % coordinates.size()).getDouble(0);
+            distances[i] = i == 0 ? 0D : distances[i - 1] + Haversine.distance(new GeoPoint().set(latitudes[i - 1],
+                    longitudes[i - 1]), new GeoPoint().set(latitudes[i], longitudes[i]));
+        }
+    }
+
+    /**
+     * Drive a Car, with GPS noise, around the track from part way round the circuit, and verify that its out lap is
+     * <br/>
+     * not counted, and that its laps are timed from the start/finish line crossings.
+     */
+    @Test
+    void testLapsAreCountedAtTheStartFinishLine() throws Exception {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final TelemetryService telemetryService = newTelemetryService(events, null);
+        final double length = distances[distances.length - 1];
+        final double start = 1.0D;
+        final Random random = new Random(42L);
+        final int samples = (int) ((2.5D * length) / STEP_IN_KM);
+        for (int sample = 0; sample < samples; sample++) {
+            telemetryService.processCarCoordinate(coordinate(0, start + sample * STEP_IN_KM, random,
+                    START_TIMESTAMP + sample * SAMPLE_INTERVAL_IN_MS));
+        }
+        telemetryService.dispose();
+
+        // the out lap ends at the first crossing, and the Car then completes 1 more lap
+        final Car car = telemetryService.getCar(0);
+        assertEquals(1, car.getLaps().size());
+        final long lapTimeInMs = (long) (length / STEP_IN_KM * SAMPLE_INTERVAL_IN_MS);
+        final long firstCrossing = START_TIMESTAMP + (long) ((length - start) / STEP_IN_KM * SAMPLE_INTERVAL_IN_MS);
+        final CarLap carLap = car.getLaps().get(0);
+        assertEquals(firstCrossing, carLap.getStartTime(), SAMPLE_INTERVAL_IN_MS);
+        assertEquals(lapTimeInMs, carLap.getEndTime() - carLap.getStartTime(), SAMPLE_INTERVAL_IN_MS);
+        assertEquals(length, carLap.getDistance(), 1e-9D);
+        assertEquals(2.5D * length - STEP_IN_KM, car.getTotalDistance(), 0.05D);
+        assertEquals(1L, events.stream().filter(event -> event.getText().contains("completed lap 01")).count());
+    }
+
+    /**
+     * A Car that jitters back and forth across the start/finish line only starts its first lap once.
+     */
+    @Test
+    void testJitterAcrossTheLineIsNotALap() throws Exception {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final TelemetryService telemetryService = newTelemetryService(events, null);
+        final Random random = new Random(42L);
+        for (int sample = 0; sample < 100; sample++) {
+            telemetryService.processCarCoordinate(coordinate(0, sample % 2 == 0 ? -0.004D : 0.004D, random,
+                    START_TIMESTAMP + sample * SAMPLE_INTERVAL_IN_MS));
+        }
+        telemetryService.dispose();
+        assertTrue(telemetryService.getCar(0).getLaps().isEmpty());
+        assertTrue(events.stream().noneMatch(event -> event.getText().contains("completed lap")));
+    }
+
+    /**
+     * A Car whose GPS jitters back along the track, behind a Car that it leads, does not lose its position to the Car
+     * <br/>
+     * and retake it on the next sample: its standings distance only advances beyond its furthest progress.
+     */
+    @Test
+    void testJitterBackAlongTheTrackIsNotAnOvertake() throws Exception {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final List<CarStatus> carStatuses = new CopyOnWriteArrayList<>();
+        final TelemetryService telemetryService = newTelemetryService(events, carStatuses);
+        final double start = 1.0D;
+        final Random random = new Random(42L);
+        // Car 1 starts 4 samples (56 metres) ahead of Car 0, and every other sample of Car 1 is 70 metres behind where
+        // it is, 14 metres behind Car 0
+        for (int sample = -4; sample < 200; sample++) {
+            final long timestamp = START_TIMESTAMP + (sample + 4) * SAMPLE_INTERVAL_IN_MS;
+            telemetryService.processCarCoordinate(coordinate(1, start + (sample + 4) * STEP_IN_KM
+                    - (sample % 2 != 0 ? 0.07D : 0D), random, timestamp));
+            if (sample >= 0) {
+                telemetryService.processCarCoordinate(coordinate(0, start + sample * STEP_IN_KM, random, timestamp));
+            }
+            // the standings read the Cars' latest progress, so compare the Cars at the same timestamp
+            telemetryService.awaitIdle();
+        }
+        telemetryService.dispose();
+
+        assertTrue(events.stream().noneMatch(event -> event.getText().startsWith("Car 0 races ahead of Car 1")));
+        assertTrue(carStatuses.stream().noneMatch(carStatus -> carStatus.getType() == CarStatus.TypeEnum.POSITION
+                && carStatus.getCarIndex() == 0 && carStatus.getValue() == 1D));
+        // the jitter does not add to the standings distance either, which is Car 1's furthest progress (sample 198)
+        assertEquals(202 * STEP_IN_KM, telemetryService.getCar(1).getTotalDistance(), 0.01D);
+    }
+
+    /**
+     * Drive a Car, with GPS noise, around the track at a constant speed, and verify that its smoothed and average
+     * <br/>
+     * speeds are steadier than its speed, and that its sector times add up to its lap time.
+     */
+    @Test
+    void testAnalytics() throws Exception {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final List<CarStatus> carStatuses = new CopyOnWriteArrayList<>();
+        final TelemetryService telemetryService = newTelemetryService(events, carStatuses);
+        final double length = distances[distances.length - 1];
+        final double start = 1.0D;
+        final Random random = new Random(42L);
+        final int samples = (int) ((2.5D * length) / STEP_IN_KM);
+        for (int sample = 0; sample < samples; sample++) {
+            telemetryService.processCarCoordinate(coordinate(0, start + sample * STEP_IN_KM, random,
+                    START_TIMESTAMP + sample * SAMPLE_INTERVAL_IN_MS));
+        }
+        telemetryService.dispose();
+
+        // ~156.6 MPH
+        final double speed = STEP_IN_KM / SAMPLE_INTERVAL_IN_MS * 3_600_000D / 1.609344D;
+        final double[] speedError = new double[CarStatus.TypeEnum.values().length];
+        final int[] count = new int[CarStatus.TypeEnum.values().length];
+        for (final CarStatus carStatus : carStatuses) {
+            final int type = carStatus.getType().ordinal();
+            // after the first few samples
+            if (carStatus.getType() != CarStatus.TypeEnum.SECTOR_TIME && count[type]++ >= 20) {
+                speedError[type] = Math.max(speedError[type], Math.abs(carStatus.getValue() - speed));
+            }
+        }
+        assertEquals(samples - 1, count[CarStatus.TypeEnum.SPEED.ordinal()]);
+        assertEquals(samples - 1, count[CarStatus.TypeEnum.SMOOTHED_SPEED.ordinal()]);
+        assertEquals(samples - 1, count[CarStatus.TypeEnum.AVERAGE_SPEED.ordinal()]);
+        assertTrue(speedError[CarStatus.TypeEnum.SMOOTHED_SPEED.ordinal()]
+                < speedError[CarStatus.TypeEnum.SPEED.ordinal()] / 2D);
+        assertTrue(speedError[CarStatus.TypeEnum.AVERAGE_SPEED.ordinal()]
+                < speedError[CarStatus.TypeEnum.SPEED.ordinal()] / 2D);
+        assertTrue(count[CarStatus.TypeEnum.TOP_SPEED.ordinal()] > 0);
+
+        // the out lap has no sectors, the one lap that the Car completes has 3, and the Car is in the third sector
+        // of its last lap
+        final List<CarStatus> sectorTimes = carStatuses.stream()
+                .filter(carStatus -> carStatus.getType() == CarStatus.TypeEnum.SECTOR_TIME)
+                .collect(Collectors.toList());
+        assertEquals(5, sectorTimes.size());
+        assertEquals(2, sectorTimes.get(4).getSector().intValue());
+        final CarLap carLap = telemetryService.getCar(0).getLaps().get(0);
+        double lapTime = 0D;
+        for (int sector = 1; sector <= 3; sector++) {
+            final CarStatus sectorTime = sectorTimes.get(sector - 1);
+            assertEquals(sector, sectorTime.getSector().intValue());
+            lapTime += sectorTime.getValue();
+        }
+        assertEquals(carLap.getEndTime() - carLap.getStartTime(), lapTime, 0D);
+        final double lapTimeInMs = length / STEP_IN_KM * SAMPLE_INTERVAL_IN_MS;
+        assertEquals(0.33D * lapTimeInMs, sectorTimes.get(0).getValue(), SAMPLE_INTERVAL_IN_MS);
+        assertEquals(0.34D * lapTimeInMs, sectorTimes.get(2).getValue(), SAMPLE_INTERVAL_IN_MS);
+    }
+
+    private static TelemetryService newTelemetryService(final List<Event> events,
+                                                        final List<CarStatus> carStatuses) {
+        final TelemetryService telemetryService = new TelemetryService();
+        telemetryService.carStatusService = new CarStatusService() {
+            @Override
+            public void publish(final CarStatus carStatus) {
+                if (carStatuses != null) {
+                    carStatuses.add(carStatus);
+                }
+            }
+        };
+        telemetryService.eventsService = new EventsService() {
+            @Override
+            public void publish(final Event event) {
+                events.add(event);
+            }
+        };
+        telemetryService.metrics = new TelemetryMetrics();
+        telemetryService.circuitLengthInKM = 5.119771376289225D;
+        telemetryService.flatEarthThresholdInKM = 0D;
+        telemetryService.shards = 1;
+        telemetryService.queueCapacity = 1024;
+        telemetryService.reorderWindowInMs = 250L;
+        telemetryService.reorderMaxSamples = 8;
+        telemetryService.maxCars = 1024;
+        telemetryService.lapHistory = 512;
+        telemetryService.lapDetection = "TRACK";
+        telemetryService.trackPath = "silverstone_closed.geojson";
+        if (carStatuses != null) {
+            telemetryService.analyticsWindowSamples = 10;
+            telemetryService.analyticsEwmaTimeConstantInMs = 1000L;
+            telemetryService.analyticsSectorSplits = "0.33,0.66";
+        }
+        telemetryService.snapshotPath = null;
+        telemetryService.snapshotIntervalInMs = 0L;
+        telemetryService.init();
+        return telemetryService;
+    }
+
+    // the coordinate at an along-track distance, with up to ~3 metres of GPS noise
+    private static CarCoordinate coordinate(final int carIndex, final double distance, final Random random,
+                                            final long timestamp) {
+        final double length = distances[distances.length - 1];
+        final double along = distance - Math.floor(distance / length) * length;
+        int segment = 0;
+        while (distances[segment + 1] < along) {
+            segment++;
+        }
+        final double fraction = (along - distances[segment]) / (distances[segment + 1] - distances[segment]);
+        final Location location = new Location();
+        location.setLatitude(latitudes[segment] + fraction * (latitudes[segment + 1] - latitudes[segment])
+                + (random.nextDouble() - 0.5D) * 5e-5D);
+        location.setLongitude(longitudes[segment] + fraction * (longitudes[segment + 1] - longitudes[segment])
+                + (random.nextDouble() - 0.5D) * 5e-5D);
+        final CarCoordinate carCoordinate = new CarCoordinate();
+        carCoordinate.setCarIndex(carIndex);
+        carCoordinate.setLocation(location);
+        carCoordinate.setTimestamp(timestamp);
+        return carCoordinate;
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.nicdesousa.telemetry.track;
+
+import com.github.nicdesousa.telemetry.util.GeoPoint;
+import com.github.nicdesousa.telemetry.util.Haversine;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackTest {
+
+    private static final double CIRCUIT_LENGTH_IN_KM = 5.119771376289225D;
+
+    /**
+     * Test that the track length is the haversine circuit length, and that every vertex projects onto its own
+     * <br/>
+     * along-track distance.
+     */
+    @Test
+    void testLengthAndVertices() throws Exception {
+        final Track track = Track.load("silverstone.json");
+        final JsonArray coordinates = coordinates();
+        assertEquals(coordinates.size(), track.segments());
+        assertEquals(CIRCUIT_LENGTH_IN_KM, track.length(), 1e-9D);
+
+        double distance = 0D;
+        final GeoPoint previous = new GeoPoint();
+        final GeoPoint point = new GeoPoint();
+        for (int i = 0; i < coordinates.size(); i++) {
+            point.set(coordinates.getJsonArray(i).getDouble(1), coordinates.getJsonArray(i).getDouble(0));
+            distance += i == 0 ? 0D : Haversine.distance(previous, point);
+            previous.set(point);
+            final double along = track.distanceAlong(track.nearestSegment(point, -1), point);
+            // the first vertex is both the start and the end of the track
+            assertEquals(distance, i == 0 && along > track.length() / 2D ? along - track.length() : along, 1e-9D);
+        }
+    }
+
+    /**
+     * Test that coordinates a few metres off the track project onto the same along-track distance, whether the
+     * <br/>
+     * nearest segment is found next to the previous segment, from the grid index, or from a far away segment.
+     */
+    @Test
+    void testNearestSegmentNearTheTrack() throws Exception {
+        final Track track = Track.load("silverstone.json");
+        final JsonArray coordinates = coordinates();
+        final Random random = new Random(42L);
+        final GeoPoint from = new GeoPoint();
+        final GeoPoint to = new GeoPoint();
+        final GeoPoint point = new GeoPoint();
+        for (int i = 0; i < 10_000; i++) {
+            final int segment = random.nextInt(track.segments());
+            final JsonArray a = coordinates.getJsonArray(segment);
+            final JsonArray b = coordinates.getJsonArray((segment + 1) % coordinates.size());
+            from.set(a.getDouble(1), a.getDouble(0));
+            to.set(b.getDouble(1), b.getDouble(0));
+            final double fraction = random.nextDouble();
+            // up to ~5 metres of GPS noise
+            point.set(a.getDouble(1) + fraction * (b.getDouble(1) - a.getDouble(1)) + (random.nextDouble() - 0.5D) * 9e-5D,
+                    a.getDouble(0) + fraction * (b.getDouble(0) - a.getDouble(0)) + (random.nextDouble() - 0.5D) * 9e-5D);
+
+            final double expected = track.distanceAlong(track.nearestSegment(point, -1), point);
+            assertEquals(expected, track.distanceAlong(track.nearestSegment(point, segment), point), 1e-9D);
+            assertEquals(expected, track.distanceAlong(track.nearestSegment(point,
+                    (segment + track.segments() / 2) % track.segments()), point), 1e-9D);
+            // within the noise of the along-track distance of the original point
+            final double along = track.distanceAlong(segment, from) + fraction * Haversine.distance(from, to);
+            final double difference = Math.abs(expected - along);
+            assertTrue(Math.min(difference, track.length() - difference) < 0.01D);
+        }
+    }
+
+    /**
+     * Test that a point at an along-track distance projects back onto the same distance, around the whole track
+     */
+    @Test
+    void testPointAt() throws Exception {
+        final Track track = Track.load("silverstone.json");
+        final GeoPoint point = new GeoPoint();
+        for (int i = 0; i <= 1000; i++) {
+            final double distance = track.length() * i / 1000D;
+            track.pointAt(distance, point);
+            final double along = track.distanceAlong(track.nearestSegment(point, -1), point);
+            final double difference = Math.abs(along - distance);
+            assertTrue(Math.min(difference, track.length() - difference) < 1e-6D, String.valueOf(distance));
+        }
+        // wrapped around the track
+        track.pointAt(0D, point);
+        final GeoPoint lap = track.pointAt(2D * track.length() + 1e-9D, new GeoPoint());
+        assertEquals(point.getLatitude(), lap.getLatitude(), 1e-9D);
+        assertEquals(point.getLongitude(), lap.getLongitude(), 1e-9D);
+    }
+
+    @Test
+    void testLoadGeoJson(@TempDir final Path dir) throws IOException {
+        final JsonObject lineString = new JsonObject().put("type", "LineString").put("coordinates", coordinates());
+        final Path featureCollection = Files.write(dir.resolve("track.geojson"), new JsonObject()
+                .put("type", "FeatureCollection")
+                .put("features", new JsonArray().add(new JsonObject().put("type", "Feature").put("geometry", lineString)))
+                .encode().getBytes(StandardCharsets.UTF_8));
+        assertEquals(CIRCUIT_LENGTH_IN_KM, Track.load(featureCollection.toString()).length(), 1e-9D);
+        // the closed GeoJSON that is packaged with the application
+        assertEquals(CIRCUIT_LENGTH_IN_KM, Track.load("silverstone_closed.geojson").length(), 1e-9D);
+
+        final Path point = Files.write(dir.resolve("point.geojson"),
+                "{\"type\":\"Point\",\"coordinates\":[-1.0,52.0]}".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> Track.load(point.toString()));
+        assertThrows(IOException.class, () -> Track.load(dir.resolve("missing.geojson").toString()));
+    }
+
+    private static JsonArray coordinates() throws IOException {
+        final Path path = Paths.get(TrackTest.class.getResource("/silverstone.json").getPath());
+        return new JsonObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8)).getJsonArray("coordinates");
+    }
+}
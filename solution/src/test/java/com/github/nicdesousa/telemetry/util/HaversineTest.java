@@ -63,6 +63,61 @@ public class HaversineTest {
         }
     }
 
+    /**
+     * Test if the {@link Haversine#distance(GeoPoint, GeoPoint)} method with cached GeoPoint values calculates the
+     * distance correctly
+     */
+    @Test
+    void testGeoPointDistanceCalculation() {
+        final GeoPoint start = new GeoPoint().set(52.067695316642116D, -1.0241639614105225D);
+        final GeoPoint end = new GeoPoint().set(52.071236872409735D, -1.019829511642456D);
+        final double expectedDistance = 0.49280434203770757D; // distance in kilometres
+        assertEquals(expectedDistance, Haversine.distance(start, end), 1E-12D); // start to end
+        assertEquals(expectedDistance, Haversine.distance(end, start), 1E-12D); // end to start
+        assertEquals(Haversine.distance(start, end), Haversine.distance(start, end, 0D)); // approximation disabled
+        assertEquals(0D, Haversine.distance(start, new GeoPoint().set(start)));
+    }
+
+    /**
+     * Test if the {@link Haversine#distance(GeoPoint, GeoPoint, double)} method's flat-earth approximation is
+     * accurate to within a millimetre for a 0.5 kilometre distance and is only used within the threshold
+     */
+    @Test
+    void testFlatEarthApproximation() {
+        final GeoPoint start = new GeoPoint().set(52.067695316642116D, -1.0241639614105225D);
+        final GeoPoint end = new GeoPoint().set(52.071236872409735D, -1.019829511642456D);
+        final double expectedDistance = 0.49280434203770757D; // distance in kilometres
+        final double flatDistance = Haversine.distance(start, end, 1D);
+        assertNotEquals(Haversine.distance(start, end), flatDistance);
+        assertEquals(expectedDistance, flatDistance, 1E-6D);
+        // a threshold below the distance uses the haversine formula
+        assertEquals(Haversine.distance(start, end), Haversine.distance(start, end, 0.1D));
+    }
+
+    /**
+     * Test if the flat-earth approximation is accurate to within a centimetre for the total circuit length
+     */
+    @Test
+    void testFlatEarthCircuitLengthCalculation() throws Exception {
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        try (InputStream is = this.getClass().getResourceAsStream("/silverstone.json")) {
+            final List<LngLatAlt> coordinates = ((LineString) mapper.readValue(is, GeoJsonObject.class)).getCoordinates();
+            coordinates.add(coordinates.get(0));
+            GeoPoint prev = new GeoPoint().set(coordinates.get(0).getLatitude(), coordinates.get(0).getLongitude());
+            GeoPoint next = new GeoPoint();
+            double totalDistance = 0D;
+            for (int i = 1; i < coordinates.size(); i++) {
+                next.set(coordinates.get(i).getLatitude(), coordinates.get(i).getLongitude());
+                totalDistance += Haversine.distance(prev, next, 1D);
+                final GeoPoint point = prev;
+                prev = next;
+                next = point;
+            }
+            assertEquals(5.119771376289225D, totalDistance, 1E-5D);
+        }
+    }
+
     /**
      * Test if the {@link Haversine#validateCoordinate} method validates the latitude parameter correctly
      */
@@ -75,6 +130,9 @@ public class HaversineTest {
         assertDoesNotThrow(() -> Haversine.validateCoordinate(90D, 0D));
         final Throwable e2 = assertThrows(InputValidationException.class, () -> Haversine.validateCoordinate(91D, 0D));
         assertEquals(Haversine.ERROR_LATITUDE, e2.getMessage());
+
+        final Throwable e3 = assertThrows(InputValidationException.class, () -> Haversine.validateCoordinate(Double.NaN, 0D));
+        assertEquals(Haversine.ERROR_LATITUDE, e3.getMessage());
     }
 
     /**